@@ -0,0 +1,72 @@
+package arc;
+
+import arc.func.*;
+import arc.struct.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Fires an event to a few listeners. The snapshot dispatch looks up a {@link SnapshotSeq} of listeners per class, as
+ * {@link Events} does, while the {@link EventBus} iterates its cached array, with and without supertypes and timing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class EventBusBenchmark{
+    @Param({"1", "8"})
+    int listeners;
+
+    ObjectMap<Object, SnapshotSeq<Cons<?>>> snapshot = new ObjectMap<>();
+    EventBus exact = new EventBus(), hierarchy = new EventBus(true), timed = new EventBus();
+    Event event = new Event();
+
+    @Setup
+    public void setup(){
+        timed.timing = true;
+        for(int i = 0; i < listeners; i++){
+            Cons<Event> listener = e -> e.value++;
+            snapshot.get(Event.class, () -> new SnapshotSeq<>(Cons.class)).add(listener);
+            exact.on(Event.class, listener);
+            hierarchy.on((Class)(i % 2 == 0 ? Event.class : Object.class), listener);
+            timed.on(Event.class, listener);
+        }
+    }
+
+    @Benchmark
+    public void snapshot(){
+        SnapshotSeq<Cons<?>> seq = snapshot.get(event.getClass());
+        if(seq == null) return;
+        Cons[] items = seq.begin();
+        try{
+            for(int i = 0, n = seq.size; i < n; i++){
+                items[i].get(event);
+            }
+        }finally{
+            seq.end();
+        }
+    }
+
+    @Benchmark
+    public void exact(){
+        exact.fire(event);
+    }
+
+    @Benchmark
+    public void hierarchy(){
+        hierarchy.fire(event);
+    }
+
+    @Benchmark
+    public void timed(){
+        timed.fire(event);
+    }
+
+    static class Event{
+        int value;
+    }
+}
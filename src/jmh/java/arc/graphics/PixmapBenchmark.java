@@ -0,0 +1,64 @@
+package arc.graphics;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/** {@link Pixmap#draw} of a sprite-sized pixmap onto a larger one: plain copies, blending, and filtered scaling. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PixmapBenchmark{
+    @Param({"32", "256"})
+    int sourceSize;
+
+    Pixmap target, source;
+
+    @Setup
+    public void setup(){
+        Random random = new Random(42);
+        target = new Pixmap(1024, 1024);
+        source = new Pixmap(sourceSize, sourceSize);
+        target.fill(Color.rgba8888(0.2f, 0.3f, 0.4f, 1f));
+        for(int x = 0; x < sourceSize; x++){
+            for(int y = 0; y < sourceSize; y++){
+                // Some fully transparent and some translucent pixels, as in sprites
+                source.set(x, y, random.nextInt() & (random.nextBoolean() ? 0xffffffff : 0xffffff00));
+            }
+        }
+    }
+
+    @TearDown
+    public void dispose(){
+        target.dispose();
+        source.dispose();
+    }
+
+    @Benchmark
+    public Pixmap copy(){
+        target.draw(source, 100, 100, false);
+        return target;
+    }
+
+    @Benchmark
+    public Pixmap blend(){
+        target.draw(source, 100, 100, true);
+        return target;
+    }
+
+    @Benchmark
+    public Pixmap scaled(){
+        target.draw(source, 0, 0, sourceSize, sourceSize, 100, 100, sourceSize * 2, sourceSize * 2, false, true);
+        return target;
+    }
+
+    @Benchmark
+    public Pixmap scaledFiltered(){
+        target.draw(source, 0, 0, sourceSize, sourceSize, 100, 100, sourceSize * 2, sourceSize * 2, true, true);
+        return target;
+    }
+}
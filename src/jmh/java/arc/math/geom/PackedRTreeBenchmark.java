@@ -0,0 +1,64 @@
+package arc.math.geom;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Turret targeting over static targets: each turret looks for its closest target, with {@link Geometry#findClosest(float, float, Position[])}
+ * and with a {@link PackedRTree} of the targets. Building the tree is measured separately.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackedRTreeBenchmark{
+    @Param({"1000", "10000", "100000"})
+    int targets;
+
+    Vec2[] positions;
+    float[] points;
+    float[] turrets;
+    PackedRTree tree;
+
+    @Setup
+    public void setup(){
+        Random random = new Random(42);
+        float size = (float)Math.sqrt(targets / 16f) * 128f;
+        positions = new Vec2[targets];
+        points = new float[targets * 2];
+        for(int i = 0; i < targets; i++){
+            positions[i] = new Vec2(random.nextFloat() * size, random.nextFloat() * size);
+            points[i * 2] = positions[i].x;
+            points[i * 2 + 1] = positions[i].y;
+        }
+        turrets = new float[200];
+        for(int i = 0; i < turrets.length; i++){
+            turrets[i] = random.nextFloat() * size;
+        }
+        tree = PackedRTree.ofPoints(points);
+    }
+
+    @Benchmark
+    public void findClosest(Blackhole bh){
+        for(int i = 0; i < turrets.length; i += 2){
+            bh.consume(Geometry.findClosest(turrets[i], turrets[i + 1], positions));
+        }
+    }
+
+    @Benchmark
+    public void nearest(Blackhole bh){
+        for(int i = 0; i < turrets.length; i += 2){
+            bh.consume(tree.nearest(turrets[i], turrets[i + 1]));
+        }
+    }
+
+    @Benchmark
+    public PackedRTree build(){
+        return PackedRTree.ofPoints(points);
+    }
+}
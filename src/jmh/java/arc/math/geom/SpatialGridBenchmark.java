@@ -0,0 +1,93 @@
+package arc.math.geom;
+
+import arc.func.*;
+import arc.math.geom.QuadTree.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A frame of moving units: every unit moves, then looks for its neighbours. The {@link QuadTree} is rebuilt each frame, as
+ * removing a unit requires its previous bounds, while the {@link SpatialGrid} updates each unit in place.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialGridBenchmark{
+    @Param({"1000", "10000", "100000"})
+    int units;
+
+    Unit[] array;
+    Rect bounds;
+    QuadTree<Unit> tree;
+    SpatialGrid<Unit> grid;
+    Random random = new Random(42);
+
+    @Setup
+    public void setup(){
+        //Around 16 units per 128x128 area, whatever the count
+        float size = (float)Math.sqrt(units / 16f) * 128f;
+        bounds = new Rect(0, 0, size, size);
+        tree = new QuadTree<>(bounds);
+        grid = new SpatialGrid<>(bounds, 32f);
+        array = new Unit[units];
+        for(int i = 0; i < units; i++){
+            array[i] = new Unit(random.nextFloat() * size, random.nextFloat() * size);
+            tree.insert(array[i]);
+            grid.insert(array[i]);
+        }
+    }
+
+    void move(){
+        for(Unit unit : array){
+            unit.x = Math.max(0, Math.min(bounds.width, unit.x + random.nextFloat() * 2 - 1));
+            unit.y = Math.max(0, Math.min(bounds.height, unit.y + random.nextFloat() * 2 - 1));
+        }
+    }
+
+    @Benchmark
+    public void updateQuadTree(){
+        move();
+        tree.clear();
+        for(Unit unit : array) tree.insert(unit);
+    }
+
+    @Benchmark
+    public void updateGrid(){
+        move();
+        for(Unit unit : array) grid.update(unit);
+    }
+
+    @Benchmark
+    public void queryQuadTree(Blackhole bh){
+        for(Unit unit : array){
+            tree.intersect(unit.x - 24, unit.y - 24, 48, 48, (Cons<Unit>)bh::consume);
+        }
+    }
+
+    @Benchmark
+    public void queryGrid(Blackhole bh){
+        for(Unit unit : array){
+            grid.intersect(unit.x - 24, unit.y - 24, 48, 48, (Cons<Unit>)bh::consume);
+        }
+    }
+
+    static class Unit implements QuadTreeObject{
+        float x, y;
+
+        Unit(float x, float y){
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public void hitbox(Rect out){
+            out.setCentered(x, y, 8f);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package arc.net;
+
+import arc.net.FrameworkMessage.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * TCP throughput of a {@link Client} sending to a {@link Server} over loopback, measured until the server has received
+ * every message, with and without compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(NetBenchmark.batch)
+public class NetBenchmark{
+    static final int batch = 500;
+    static final int port = 54777;
+
+    @Param({"64", "1024"})
+    int messageSize;
+
+    @Param({"false", "true"})
+    boolean compression;
+
+    Server server;
+    Client client;
+    byte[] payload;
+    final AtomicInteger received = new AtomicInteger();
+
+    @Setup
+    public void setup() throws IOException{
+        payload = new byte[messageSize];
+        // Half random, half repetitive, so that compression has something to do
+        new java.util.Random(42).nextBytes(payload);
+        for(int i = 0; i < messageSize / 2; i++) payload[i] = (byte)(i % 16);
+
+        server = new Server(batch * messageSize * 2, messageSize * 2, new Serializer());
+        client = new Client(batch * messageSize * 2, messageSize * 2, new Serializer());
+        if(compression){
+            server.setCompression(new NetCompression());
+            client.setCompression(new NetCompression());
+        }
+
+        server.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof byte[]) received.incrementAndGet();
+            }
+        });
+        server.bind(port);
+        server.start();
+        client.start();
+        client.connect(5000, "127.0.0.1", port);
+    }
+
+    @TearDown
+    public void dispose() throws IOException, InterruptedException{
+        // Let the update threads exit before the selectors are closed
+        client.stop();
+        server.stop();
+        client.getUpdateThread().join(5000);
+        server.getUpdateThread().join(5000);
+        client.dispose();
+        server.dispose();
+    }
+
+    @Benchmark
+    public int send(){
+        received.set(0);
+        for(int i = 0; i < batch; i++) client.sendTCP(payload);
+        while(received.get() < batch){
+            if(!client.isConnected()) throw new IllegalStateException("Disconnected during the benchmark.");
+            Thread.yield();
+        }
+        return received.get();
+    }
+
+    /** Writes the framework messages and byte arrays. */
+    static class Serializer implements NetSerializer{
+        @Override
+        public void write(ByteBuffer buffer, Object object){
+            if(object instanceof byte[]){
+                byte[] data = (byte[])object;
+                buffer.put((byte)0).putInt(data.length).put(data);
+            }else if(object instanceof RegisterTCP){
+                buffer.put((byte)1).putInt(((RegisterTCP)object).connectionID);
+            }else if(object instanceof RegisterUDP){
+                buffer.put((byte)2).putInt(((RegisterUDP)object).connectionID);
+            }else if(object instanceof KeepAlive){
+                buffer.put((byte)3);
+            }else if(object instanceof Ping){
+                Ping ping = (Ping)object;
+                buffer.put((byte)4).putInt(ping.id).put((byte)(ping.isReply ? 1 : 0));
+            }else if(object instanceof Compression){
+                Compression message = (Compression)object;
+                buffer.put((byte)5).putInt(message.dictionaryId).put((byte)(message.isReply ? 1 : 0));
+            }else{
+                throw new IllegalArgumentException("Unknown object: " + object);
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer){
+            byte type = buffer.get();
+            switch(type){
+                case 0:
+                    byte[] data = new byte[buffer.getInt()];
+                    buffer.get(data);
+                    return data;
+                case 1:
+                    RegisterTCP tcp = new RegisterTCP();
+                    tcp.connectionID = buffer.getInt();
+                    return tcp;
+                case 2:
+                    RegisterUDP udp = new RegisterUDP();
+                    udp.connectionID = buffer.getInt();
+                    return udp;
+                case 3:
+                    return FrameworkMessage.keepAlive;
+                case 4:
+                    Ping ping = new Ping();
+                    ping.id = buffer.getInt();
+                    ping.isReply = buffer.get() == 1;
+                    return ping;
+                case 5:
+                    Compression message = new Compression();
+                    message.dictionaryId = buffer.getInt();
+                    message.isReply = buffer.get() == 1;
+                    return message;
+                default:
+                    throw new IllegalArgumentException("Unknown type: " + type);
+            }
+        }
+    }
+}
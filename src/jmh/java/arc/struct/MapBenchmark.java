@@ -0,0 +1,321 @@
+package arc.struct;
+
+import arc.math.geom.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compares the cuckoo maps to the Robin Hood maps and {@link HashMap} on key distributions found in practice:
+ * sequential ids, random hashes, and coordinates packed the way {@link GridMap} and {@link Point2#pack(int, int)} do.
+ * The object maps use the string form of the int keys.
+ * Lookups miss half of the time, and the churn benchmark removes and re-adds keys, which is where the cuckoo stash
+ * and the Robin Hood backward shifts are exercised.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark{
+    @Param({"1000", "100000"})
+    int size;
+
+    @Param({"sequential", "random", "grid"})
+    String distribution;
+
+    int[] intKeys, intMisses;
+    long[] longKeys, longMisses;
+
+    IntMap<Object> intCuckoo;
+    RobinIntMap<Object> intRobin;
+    LongMap<Object> longCuckoo;
+    RobinLongMap<Object> longRobin;
+
+    Integer[] boxedKeys, boxedMisses;
+    Long[] boxedLongKeys, boxedLongMisses;
+    HashMap<Integer, Object> intJava;
+    HashMap<Long, Object> longJava;
+
+    String[] stringKeys, stringMisses;
+    ObjectMap<String, Object> objectCuckoo;
+    RobinObjectMap<String, Object> objectRobin;
+    HashMap<String, Object> objectJava;
+
+    @Setup
+    public void setup(){
+        Random random = new Random(42);
+        int side = (int)Math.ceil(Math.sqrt(size * 2));
+        intKeys = new int[size * 2];
+        longKeys = new long[size * 2];
+
+        for(int i = 0; i < size * 2; i++){
+            switch(distribution){
+                case "sequential":
+                    intKeys[i] = i + 1;
+                    longKeys[i] = i + 1;
+                    break;
+                case "random":
+                    intKeys[i] = random.nextInt();
+                    longKeys[i] = random.nextLong();
+                    break;
+                default:
+                    // A square area centered on the origin, like the tiles around a player
+                    int x = i % side - side / 2, y = i / side - side / 2;
+                    intKeys[i] = Point2.pack(x, y);
+                    longKeys[i] = ((long)x << 32) | (y & 0xffffffffL);
+            }
+        }
+
+        // Shuffle so that the first half are the hits and the second half the misses, wherever they are in the area
+        for(int i = intKeys.length - 1; i > 0; i--){
+            int j = random.nextInt(i + 1);
+            int ti = intKeys[i];
+            intKeys[i] = intKeys[j];
+            intKeys[j] = ti;
+            long tl = longKeys[i];
+            longKeys[i] = longKeys[j];
+            longKeys[j] = tl;
+        }
+        intMisses = Arrays.copyOfRange(intKeys, size, size * 2);
+        longMisses = Arrays.copyOfRange(longKeys, size, size * 2);
+        intKeys = Arrays.copyOf(intKeys, size);
+        longKeys = Arrays.copyOf(longKeys, size);
+
+        boxedKeys = new Integer[size];
+        boxedMisses = new Integer[size];
+        boxedLongKeys = new Long[size];
+        boxedLongMisses = new Long[size];
+        stringKeys = new String[size];
+        stringMisses = new String[size];
+        for(int i = 0; i < size; i++){
+            boxedKeys[i] = intKeys[i];
+            boxedMisses[i] = intMisses[i];
+            boxedLongKeys[i] = longKeys[i];
+            boxedLongMisses[i] = longMisses[i];
+            stringKeys[i] = String.valueOf(intKeys[i]);
+            stringMisses[i] = String.valueOf(intMisses[i]);
+        }
+
+        intCuckoo = new IntMap<>();
+        intRobin = new RobinIntMap<>();
+        longCuckoo = new LongMap<>();
+        longRobin = new RobinLongMap<>();
+        intJava = new HashMap<>();
+        longJava = new HashMap<>();
+        objectCuckoo = new ObjectMap<>();
+        objectRobin = new RobinObjectMap<>();
+        objectJava = new HashMap<>();
+        for(int i = 0; i < size; i++){
+            intCuckoo.put(intKeys[i], this);
+            intRobin.put(intKeys[i], this);
+            intJava.put(boxedKeys[i], this);
+            longCuckoo.put(longKeys[i], this);
+            longRobin.put(longKeys[i], this);
+            longJava.put(boxedLongKeys[i], this);
+            objectCuckoo.put(stringKeys[i], this);
+            objectRobin.put(stringKeys[i], this);
+            objectJava.put(stringKeys[i], this);
+        }
+    }
+
+    @Benchmark
+    public void intCuckooPut(Blackhole bh){
+        IntMap<Object> map = new IntMap<>();
+        for(int key : intKeys) map.put(key, this);
+        bh.consume(map);
+    }
+
+    @Benchmark
+    public void intRobinPut(Blackhole bh){
+        RobinIntMap<Object> map = new RobinIntMap<>();
+        for(int key : intKeys) map.put(key, this);
+        bh.consume(map);
+    }
+
+    @Benchmark
+    public void intCuckooGet(Blackhole bh){
+        for(int i = 0; i < size; i++){
+            bh.consume(intCuckoo.get(intKeys[i]));
+            bh.consume(intCuckoo.get(intMisses[i]));
+        }
+    }
+
+    @Benchmark
+    public void intRobinGet(Blackhole bh){
+        for(int i = 0; i < size; i++){
+            bh.consume(intRobin.get(intKeys[i]));
+            bh.consume(intRobin.get(intMisses[i]));
+        }
+    }
+
+    @Benchmark
+    public void intJavaPut(Blackhole bh){
+        HashMap<Integer, Object> map = new HashMap<>();
+        for(Integer key : boxedKeys) map.put(key, this);
+        bh.consume(map);
+    }
+
+    @Benchmark
+    public void intJavaGet(Blackhole bh){
+        for(int i = 0; i < size; i++){
+            bh.consume(intJava.get(boxedKeys[i]));
+            bh.consume(intJava.get(boxedMisses[i]));
+        }
+    }
+
+    @Benchmark
+    public void intCuckooChurn(){
+        for(int i = 0; i < size; i++){
+            intCuckoo.remove(intKeys[i]);
+            intCuckoo.put(intMisses[i], this);
+        }
+        for(int i = 0; i < size; i++){
+            intCuckoo.remove(intMisses[i]);
+            intCuckoo.put(intKeys[i], this);
+        }
+    }
+
+    @Benchmark
+    public void intRobinChurn(){
+        for(int i = 0; i < size; i++){
+            intRobin.remove(intKeys[i]);
+            intRobin.put(intMisses[i], this);
+        }
+        for(int i = 0; i < size; i++){
+            intRobin.remove(intMisses[i]);
+            intRobin.put(intKeys[i], this);
+        }
+    }
+
+    @Benchmark
+    public void intCuckooIterate(Blackhole bh){
+        for(IntMap.Entry<Object> entry : intCuckoo){
+            bh.consume(entry.key);
+        }
+    }
+
+    @Benchmark
+    public void intRobinIterate(Blackhole bh){
+        for(int i = intRobin.first(); i != -1; i = intRobin.next(i)){
+            bh.consume(intRobin.keyAt(i));
+        }
+    }
+
+    @Benchmark
+    public void longCuckooPut(Blackhole bh){
+        LongMap<Object> map = new LongMap<>();
+        for(long key : longKeys) map.put(key, this);
+        bh.consume(map);
+    }
+
+    @Benchmark
+    public void longRobinPut(Blackhole bh){
+        RobinLongMap<Object> map = new RobinLongMap<>();
+        for(long key : longKeys) map.put(key, this);
+        bh.consume(map);
+    }
+
+    @Benchmark
+    public void longCuckooGet(Blackhole bh){
+        for(int i = 0; i < size; i++){
+            bh.consume(longCuckoo.get(longKeys[i]));
+            bh.consume(longCuckoo.get(longMisses[i]));
+        }
+    }
+
+    @Benchmark
+    public void longRobinGet(Blackhole bh){
+        for(int i = 0; i < size; i++){
+            bh.consume(longRobin.get(longKeys[i]));
+            bh.consume(longRobin.get(longMisses[i]));
+        }
+    }
+
+    @Benchmark
+    public void longJavaPut(Blackhole bh){
+        HashMap<Long, Object> map = new HashMap<>();
+        for(Long key : boxedLongKeys) map.put(key, this);
+        bh.consume(map);
+    }
+
+    @Benchmark
+    public void longJavaGet(Blackhole bh){
+        for(int i = 0; i < size; i++){
+            bh.consume(longJava.get(boxedLongKeys[i]));
+            bh.consume(longJava.get(boxedLongMisses[i]));
+        }
+    }
+
+    @Benchmark
+    public void longCuckooChurn(){
+        for(int i = 0; i < size; i++){
+            longCuckoo.remove(longKeys[i]);
+            longCuckoo.put(longMisses[i], this);
+        }
+        for(int i = 0; i < size; i++){
+            longCuckoo.remove(longMisses[i]);
+            longCuckoo.put(longKeys[i], this);
+        }
+    }
+
+    @Benchmark
+    public void longRobinChurn(){
+        for(int i = 0; i < size; i++){
+            longRobin.remove(longKeys[i]);
+            longRobin.put(longMisses[i], this);
+        }
+        for(int i = 0; i < size; i++){
+            longRobin.remove(longMisses[i]);
+            longRobin.put(longKeys[i], this);
+        }
+    }
+
+    @Benchmark
+    public void objectCuckooPut(Blackhole bh){
+        ObjectMap<String, Object> map = new ObjectMap<>();
+        for(String key : stringKeys) map.put(key, this);
+        bh.consume(map);
+    }
+
+    @Benchmark
+    public void objectRobinPut(Blackhole bh){
+        RobinObjectMap<String, Object> map = new RobinObjectMap<>();
+        for(String key : stringKeys) map.put(key, this);
+        bh.consume(map);
+    }
+
+    @Benchmark
+    public void objectJavaPut(Blackhole bh){
+        HashMap<String, Object> map = new HashMap<>();
+        for(String key : stringKeys) map.put(key, this);
+        bh.consume(map);
+    }
+
+    @Benchmark
+    public void objectCuckooGet(Blackhole bh){
+        for(int i = 0; i < size; i++){
+            bh.consume(objectCuckoo.get(stringKeys[i]));
+            bh.consume(objectCuckoo.get(stringMisses[i]));
+        }
+    }
+
+    @Benchmark
+    public void objectRobinGet(Blackhole bh){
+        for(int i = 0; i < size; i++){
+            bh.consume(objectRobin.get(stringKeys[i]));
+            bh.consume(objectRobin.get(stringMisses[i]));
+        }
+    }
+
+    @Benchmark
+    public void objectJavaGet(Blackhole bh){
+        for(int i = 0; i < size; i++){
+            bh.consume(objectJava.get(stringKeys[i]));
+            bh.consume(objectJava.get(stringMisses[i]));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package arc.struct;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/** The sequential and {@link Parallel} versions of sorting and bulk operations, on large sequences. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelBenchmark{
+    @Param({"100000", "1000000"})
+    int size;
+
+    Integer[] values;
+    int[] ints;
+    Seq<Integer> seq = new Seq<>();
+    IntSeq intSeq = new IntSeq();
+
+    @Setup
+    public void setup(){
+        Random random = new Random(42);
+        values = new Integer[size];
+        ints = new int[size];
+        for(int i = 0; i < size; i++){
+            values[i] = random.nextInt();
+            ints[i] = values[i];
+        }
+        seq.clear();
+        seq.addAll(values);
+    }
+
+    @Benchmark
+    public Seq<Integer> sort(){
+        seq.clear();
+        seq.addAll(values);
+        return seq.sort();
+    }
+
+    @Benchmark
+    public Seq<Integer> parallelSort(){
+        seq.clear();
+        seq.addAll(values);
+        return seq.parallelSort();
+    }
+
+    @Benchmark
+    public IntSeq sortInts(){
+        intSeq.clear();
+        intSeq.addAll(ints);
+        intSeq.sort();
+        return intSeq;
+    }
+
+    @Benchmark
+    public IntSeq parallelSortInts(){
+        intSeq.clear();
+        intSeq.addAll(ints);
+        intSeq.parallelSort();
+        return intSeq;
+    }
+
+    @Benchmark
+    public Seq<Integer> select(){
+        return seq.select(i -> (i & 3) == 0);
+    }
+
+    @Benchmark
+    public Seq<Integer> parallelSelect(){
+        return seq.parallelSelect(i -> (i & 3) == 0);
+    }
+
+    @Benchmark
+    public Seq<String> map(){
+        return seq.map(String::valueOf);
+    }
+
+    @Benchmark
+    public Seq<String> parallelMap(){
+        return seq.parallelMap(String::valueOf);
+    }
+}
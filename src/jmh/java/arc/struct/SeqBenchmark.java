@@ -0,0 +1,100 @@
+package arc.struct;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Adding, removing and sorting with {@link Seq}, next to {@link ArrayList} for reference. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeqBenchmark{
+    @Param({"100", "10000"})
+    int size;
+
+    Integer[] values;
+    Seq<Integer> seq = new Seq<>();
+    Seq<Integer> unordered = new Seq<>(false, 16);
+    ArrayList<Integer> list = new ArrayList<>();
+
+    @Setup
+    public void setup(){
+        Random random = new Random(42);
+        values = new Integer[size];
+        for(int i = 0; i < size; i++) values[i] = random.nextInt();
+    }
+
+    @Benchmark
+    public Seq<Integer> add(){
+        Seq<Integer> seq = new Seq<>();
+        for(Integer value : values) seq.add(value);
+        return seq;
+    }
+
+    @Benchmark
+    public ArrayList<Integer> addArrayList(){
+        ArrayList<Integer> list = new ArrayList<>();
+        for(Integer value : values) list.add(value);
+        return list;
+    }
+
+    /** Removes from the front, which shifts the remaining items of an ordered seq. */
+    @Benchmark
+    public Seq<Integer> removeFirstOrdered(){
+        seq.clear();
+        seq.addAll(values);
+        while(seq.size > 0) seq.remove(0);
+        return seq;
+    }
+
+    /** Removes from the front, which moves the last item into the hole of an unordered seq. */
+    @Benchmark
+    public Seq<Integer> removeFirstUnordered(){
+        unordered.clear();
+        unordered.addAll(values);
+        while(unordered.size > 0) unordered.remove(0);
+        return unordered;
+    }
+
+    @Benchmark
+    public ArrayList<Integer> removeFirstArrayList(){
+        list.clear();
+        Collections.addAll(list, values);
+        while(!list.isEmpty()) list.remove(0);
+        return list;
+    }
+
+    @Benchmark
+    public void removeValue(Blackhole bh){
+        seq.clear();
+        seq.addAll(values);
+        for(int i = 0; i < size; i += 8) bh.consume(seq.remove(values[i]));
+    }
+
+    @Benchmark
+    public Seq<Integer> sort(){
+        seq.clear();
+        seq.addAll(values);
+        return seq.sort();
+    }
+
+    @Benchmark
+    public Seq<Integer> sortComparator(){
+        seq.clear();
+        seq.addAll(values);
+        return seq.sort(Comparator.reverseOrder());
+    }
+
+    @Benchmark
+    public ArrayList<Integer> sortArrayList(){
+        list.clear();
+        Collections.addAll(list, values);
+        list.sort(null);
+        return list;
+    }
+}
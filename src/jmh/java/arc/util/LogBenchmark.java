@@ -0,0 +1,59 @@
+package arc.util;
+
+import arc.util.Log.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Log calls with a handler that discards records: disabled debug calls, which should cost nothing, and the formatting of
+ * enabled records, through {@link Strings#format(String, Object...)} and {@link ColorCodes} as before, and through the
+ * {@link LogTemplate} of {@link DefaultLogFormatter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogBenchmark{
+    static final String text = "&lcPlayer &fi@&fr joined from @ (@ ms)";
+
+    LogHandler handler;
+    LogLevel level;
+    int value = 1234;
+
+    @Setup
+    public void setup(){
+        handler = Log.logger;
+        level = Log.level;
+        Log.logger = new NoopLogHandler();
+        Log.level = LogLevel.info;
+    }
+
+    @TearDown
+    public void tearDown(){
+        Log.logger = handler;
+        Log.level = level;
+    }
+
+    @Benchmark
+    public void disabledVarargs(){
+        Log.log(LogLevel.debug, "value @ @", new Object[]{value, value + 1});
+    }
+
+    @Benchmark
+    public void disabledOverload(){
+        Log.debug("value @ @", value, value + 1);
+    }
+
+    @Benchmark
+    public String formatStrings(){
+        return ColorCodes.apply(Strings.format(text, "Anuke", "127.0.0.1", value), true);
+    }
+
+    @Benchmark
+    public String formatTemplate(){
+        return Log.formatColors(text, true, "Anuke", "127.0.0.1", value);
+    }
+}
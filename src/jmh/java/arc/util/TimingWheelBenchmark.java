@@ -0,0 +1,75 @@
+package arc.util;
+
+import arc.struct.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A frame of delayed callbacks: many tasks are pending, a few expire and are scheduled again. The scan decrements every
+ * pending delay each frame, as {@link Time#update()} used to, while the {@link TimingWheel} only visits expired tasks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimingWheelBenchmark{
+    @Param({"1000", "10000", "100000"})
+    int tasks;
+
+    Random random = new Random(42);
+    Seq<Run> scan = new Seq<>(), removal = new Seq<>();
+    TimingWheel<Run> wheel = new TimingWheel<>(0);
+    long frame;
+
+    @Setup
+    public void setup(){
+        for(int i = 0; i < tasks; i++){
+            Run run = new Run();
+            run.delay = delay();
+            scan.add(run);
+            wheel.add(new Run(), (long)delay());
+        }
+    }
+
+    /** Up to a minute, at 60 frames per second. */
+    float delay(){
+        return 1 + random.nextInt(60 * 60);
+    }
+
+    @Benchmark
+    public int scan(){
+        removal.clear();
+        int expired = 0;
+        for(Run run : scan){
+            run.delay -= 1f;
+            if(run.delay <= 0){
+                removal.add(run);
+                expired++;
+            }
+        }
+        scan.removeAll(removal);
+        for(Run run : removal){
+            run.delay = delay();
+            scan.add(run);
+        }
+        return expired;
+    }
+
+    @Benchmark
+    public int wheel(){
+        int[] expired = {0};
+        wheel.advance(++frame, run -> {
+            expired[0]++;
+            wheel.add(run, frame + (long)delay());
+        });
+        return expired[0];
+    }
+
+    static class Run extends TimingWheel.Entry{
+        float delay;
+    }
+}
@@ -0,0 +1,83 @@
+package arc.util.io;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.concurrent.*;
+
+/**
+ * Round-trips of a mixed record through {@link Writes} and {@link Reads}, over byte array streams
+ * as done for saves, and over {@link ByteBuffer}s as done for packets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(ReadsWritesBenchmark.records)
+public class ReadsWritesBenchmark{
+    static final int records = 1000;
+
+    ReusableByteOutStream byteOut = new ReusableByteOutStream(64 * records);
+    ReusableByteInStream byteIn = new ReusableByteInStream();
+    Writes streamWrites = new Writes(new DataOutputStream(byteOut));
+    Reads streamReads = new Reads(new DataInputStream(byteIn));
+
+    @Param({"false", "true"})
+    boolean direct;
+
+    ByteBuffer buffer;
+    ByteBufferOutput bufferOut;
+    ByteBufferInput bufferIn;
+    Writes bufferWrites;
+    Reads bufferReads;
+
+    @Setup
+    public void setup(){
+        buffer = direct ? ByteBuffer.allocateDirect(64 * records) : ByteBuffer.allocate(64 * records);
+        bufferOut = new ByteBufferOutput(buffer);
+        bufferIn = new ByteBufferInput(buffer);
+        bufferWrites = new Writes(bufferOut);
+        bufferReads = new Reads(bufferIn);
+    }
+
+    static void write(Writes write, int i){
+        write.i(i);
+        write.l(i * 31L);
+        write.s(i);
+        write.b(i);
+        write.f(i * 0.5f);
+        write.d(i * 0.25);
+        write.bool((i & 1) == 0);
+        write.str("record");
+    }
+
+    static long read(Reads read){
+        long sum = read.i() + read.l() + read.s() + read.b();
+        sum += (long)read.f() + (long)read.d();
+        if(read.bool()) sum++;
+        return sum + read.str().length();
+    }
+
+    @Benchmark
+    public long streams(){
+        byteOut.reset();
+        for(int i = 0; i < records; i++) write(streamWrites, i);
+        byteIn.setBytes(byteOut.getBytes(), 0, byteOut.size());
+        long sum = 0;
+        for(int i = 0; i < records; i++) sum += read(streamReads);
+        return sum;
+    }
+
+    @Benchmark
+    public long buffers(){
+        buffer.clear();
+        for(int i = 0; i < records; i++) write(bufferWrites, i);
+        buffer.flip();
+        long sum = 0;
+        for(int i = 0; i < records; i++) sum += read(bufferReads);
+        return sum;
+    }
+}
@@ -0,0 +1,74 @@
+package arc.util.noise;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import java.util.concurrent.*;
+
+/** The noise functions sampled over a map-sized grid, as done by world generation. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(NoiseBenchmark.size * NoiseBenchmark.size)
+public class NoiseBenchmark{
+    static final int size = 128;
+
+    VoronoiNoise voronoi = new VoronoiNoise(42, false);
+
+    @Benchmark
+    public void simplexRaw2d(Blackhole bh){
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                bh.consume(Simplex.raw2d(42, x * 0.05, y * 0.05));
+            }
+        }
+    }
+
+    @Benchmark
+    public void simplexRaw3d(Blackhole bh){
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                bh.consume(Simplex.raw3d(42, x * 0.05, y * 0.05, 0.5));
+            }
+        }
+    }
+
+    @Benchmark
+    public void simplexOctaves(Blackhole bh){
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                bh.consume(Simplex.noise2d(42, 5, 0.5, 1f / 60f, x, y));
+            }
+        }
+    }
+
+    @Benchmark
+    public void ridged(Blackhole bh){
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                bh.consume(Ridged.noise2d(42, x, y, 4, 1f / 60f));
+            }
+        }
+    }
+
+    @Benchmark
+    public void noise(Blackhole bh){
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                bh.consume(Noise.snoise(x, y, 60f, 1f));
+            }
+        }
+    }
+
+    @Benchmark
+    public void voronoi(Blackhole bh){
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                bh.consume(voronoi.noise(x, y, 1f / 30f));
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package arc.util.pooling;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/** Obtaining and freeing batches of objects from several threads at once, with the shared ring and the magazine pool. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@OperationsPerInvocation(PoolBenchmark.batch)
+public class PoolBenchmark{
+    static final int batch = 16;
+
+    Pool<Object> ring = new Pool<Object>(4096){
+        @Override
+        protected Object newObject(){
+            return new Object();
+        }
+    };
+
+    MagazinePool<Object> magazines = new MagazinePool<Object>(4096, 32){
+        @Override
+        protected Object newObject(){
+            return new Object();
+        }
+    };
+
+    @State(Scope.Thread)
+    public static class Held{
+        Object[] objects = new Object[batch];
+    }
+
+    @Benchmark
+    public Object[] ring(Held held){
+        Object[] objects = held.objects;
+        for(int i = 0; i < batch; i++) objects[i] = ring.obtain();
+        for(int i = 0; i < batch; i++) ring.free(objects[i]);
+        return objects;
+    }
+
+    @Benchmark
+    public Object[] magazines(Held held){
+        Object[] objects = held.objects;
+        for(int i = 0; i < batch; i++) objects[i] = magazines.obtain();
+        for(int i = 0; i < batch; i++) magazines.free(objects[i]);
+        return objects;
+    }
+}
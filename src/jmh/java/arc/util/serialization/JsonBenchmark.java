@@ -0,0 +1,98 @@
+package arc.util.serialization;
+
+import arc.util.io.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Parsing and writing of a save-like document with {@link Json}, {@link JsonReader} and the UBJSON reader and writer. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark{
+    @Param({"10", "1000"})
+    int units;
+
+    Json json = new Json();
+    JsonReader reader = new JsonReader();
+    UBJsonReader ubReader = new UBJsonReader();
+    ReusableByteOutStream out = new ReusableByteOutStream(1024);
+    ReusableByteInStream in = new ReusableByteInStream();
+
+    World world;
+    String text;
+    JsonValue tree;
+    byte[] binary;
+
+    @Setup
+    public void setup() throws IOException{
+        Random random = new Random(42);
+        world = new World();
+        world.name = "benchmark";
+        world.version = 7;
+        world.units = new UnitData[units];
+        for(int i = 0; i < units; i++){
+            UnitData unit = new UnitData();
+            unit.id = i;
+            unit.type = "unit" + random.nextInt(20);
+            unit.x = random.nextFloat() * 1000f;
+            unit.y = random.nextFloat() * 1000f;
+            unit.health = random.nextFloat();
+            unit.dead = random.nextBoolean();
+            unit.items = new int[]{random.nextInt(), random.nextInt(), random.nextInt()};
+            world.units[i] = unit;
+        }
+
+        text = json.toJson(world);
+        tree = reader.parse(text);
+        writeBinary();
+        binary = Arrays.copyOf(out.getBytes(), out.size());
+    }
+
+    @Benchmark
+    public JsonValue parse(){
+        return reader.parse(text);
+    }
+
+    @Benchmark
+    public World fromJson(){
+        return json.fromJson(World.class, text);
+    }
+
+    @Benchmark
+    public String toJson(){
+        return json.toJson(world);
+    }
+
+    @Benchmark
+    public JsonValue parseBinary(){
+        in.setBytes(binary);
+        return ubReader.parse(in);
+    }
+
+    @Benchmark
+    public byte[] writeBinary() throws IOException{
+        out.reset();
+        new UBJsonWriter(out).value(tree).flush();
+        return out.getBytes();
+    }
+
+    public static class World{
+        public String name;
+        public int version;
+        public UnitData[] units;
+    }
+
+    public static class UnitData{
+        public int id;
+        public String type;
+        public float x, y, health;
+        public boolean dead;
+        public int[] items;
+    }
+}
@@ -0,0 +1,313 @@
+package arc;
+
+import arc.func.*;
+import arc.struct.*;
+import arc.util.*;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * An event listener system, with an instance per set of listeners. <br>
+ * Listeners are registered by event class, or by trigger object such as an enum value, with a priority: listeners of a
+ * higher priority are called first, and listeners of the same priority in the order they were registered. <br>
+ * The listeners of each type of fired event are flattened into an array, which is built on its first fire and rebuilt when
+ * registering or removing a listener. Arrays are never modified once built, so listeners may register and remove listeners
+ * during a fire without any copy; the changes apply from the next fire. <br>
+ * With {@link #hierarchy}, an event is also given to the listeners of its superclasses and interfaces. <br>
+ * Each type of fired event has {@link EventStats}, counting its fires, and the time taken by its listeners when
+ * {@link #timing} is enabled. <br>
+ * <br>
+ * Events may be fired from any thread. The arrays are published in a map which is replaced, never modified, so firing
+ * only reads it, except for the first fire of a type, which builds its array under the lock of the bus. Registering
+ * and removing listeners also take this lock.
+ */
+@SuppressWarnings("unchecked")
+public class EventBus{
+    private static final Cons<?>[] none = {};
+
+    /** Whether events are also given to the listeners of their superclasses and interfaces. */
+    public final boolean hierarchy;
+    /** Whether to measure the time taken by the listeners of each fire, which costs two calls to {@link Time#nanos()}. */
+    public volatile boolean timing;
+
+    /** Guarded by this bus, as the statistics. */
+    private final ObjectMap<Object, Seq<Listener>> listeners = new ObjectMap<>();
+    /** Copied on write, under the lock of this bus. */
+    private volatile ObjectMap<Object, Dispatch> dispatches = new ObjectMap<>();
+    private final ObjectMap<Object, EventStats> stats = new ObjectMap<>();
+    private int registered;
+
+    /** Gives events to the listeners of their exact class only. */
+    public EventBus(){
+        this(false);
+    }
+
+    /** @param hierarchy Whether events are also given to the listeners of their superclasses and interfaces. */
+    public EventBus(boolean hierarchy){
+        this.hierarchy = hierarchy;
+    }
+
+    /** Handle an event by class, with a priority of 0. */
+    public <T> Cons<T> on(Class<T> type, Cons<T> listener){
+        return on(type, 0, listener);
+    }
+
+    /** Handle an event by class. Listeners of a higher priority are called first. */
+    public <T> Cons<T> on(Class<T> type, int priority, Cons<T> listener){
+        add(type, priority, listener, listener);
+        return listener;
+    }
+
+    /** Handle an event by trigger, such as an enum value, with a priority of 0. */
+    public Runnable run(Object trigger, Runnable listener){
+        return run(trigger, 0, listener);
+    }
+
+    /** Handle an event by trigger, such as an enum value. Listeners of a higher priority are called first. */
+    public Runnable run(Object trigger, int priority, Runnable listener){
+        add(trigger, priority, e -> listener.run(), listener);
+        return listener;
+    }
+
+    /**
+     * Removes a listener given to {@link #on(Class, Cons)} or {@link #run(Object, Runnable)}.
+     * @param type The class or trigger the listener was registered with.
+     * @return whether the listener was registered.
+     */
+    public synchronized boolean remove(Object type, Object listener){
+        Seq<Listener> seq = listeners.get(type);
+        if(seq == null) return false;
+        for(int i = 0; i < seq.size; i++){
+            if(seq.items[i].source == listener){
+                seq.remove(i);
+                if(seq.isEmpty()) listeners.remove(type);
+                invalidate(type);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Removes all listeners. Statistics are kept. */
+    public synchronized void clear(){
+        listeners.clear();
+        dispatches = new ObjectMap<>();
+    }
+
+    /** @return whether there is a listener registered for this class or trigger, not counting supertypes. */
+    public synchronized boolean has(Object type){
+        return listeners.containsKey(type);
+    }
+
+    /** Fires an enum trigger. */
+    public <T extends Enum<T>> void fire(Enum<T> trigger){
+        dispatch(trigger, trigger);
+    }
+
+    /** Fires a non-enum event by its class. */
+    public <T> void fire(T event){
+        dispatch(event.getClass(), event);
+    }
+
+    /** Fires an event as if it were of the given class, or a trigger object with the event as argument. */
+    public <T> void fire(Class<?> type, T event){
+        dispatch(type, event);
+    }
+
+    /** @return the statistics of a fired class or trigger, or null if it was never fired. */
+    public synchronized @Nullable EventStats stats(Object type){
+        return stats.get(type);
+    }
+
+    /** Calls the consumer with each fired class or trigger, and its statistics. */
+    public synchronized void eachStats(Cons2<Object, EventStats> cons){
+        for(ObjectMap.Entry<Object, EventStats> entry : stats){
+            cons.get(entry.key, entry.value);
+        }
+    }
+
+    /** Resets the statistics of all types. */
+    public synchronized void resetStats(){
+        for(EventStats stat : stats.values()){
+            stat.reset();
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void dispatch(Object type, Object event){
+        Dispatch dispatch = dispatches.get(type);
+        if(dispatch == null) dispatch = build(type);
+
+        Cons[] items = dispatch.listeners;
+        EventStats stat = dispatch.stats;
+        stat.fires.increment();
+        if(timing){
+            long start = Time.nanos();
+            for(Cons item : items){
+                item.get(event);
+            }
+            stat.record(Time.nanos() - start);
+        }else{
+            for(Cons item : items){
+                item.get(event);
+            }
+        }
+    }
+
+    /** Builds and publishes the array of a type fired for the first time. */
+    private synchronized Dispatch build(Object type){
+        //Built by another thread in the meantime
+        Dispatch dispatch = dispatches.get(type);
+        if(dispatch != null) return dispatch;
+
+        dispatch = create(type);
+        ObjectMap<Object, Dispatch> copy = new ObjectMap<>(dispatches);
+        copy.put(type, dispatch);
+        dispatches = copy;
+        return dispatch;
+    }
+
+    private Dispatch create(Object type){
+        Seq<Listener> all = new Seq<>(Listener.class);
+        if(hierarchy && type instanceof Class){
+            //Superclasses first, then their interfaces, each type once
+            ObjectSet<Class<?>> visited = new ObjectSet<>();
+            Seq<Class<?>> queue = new Seq<>();
+            for(Class<?> c = (Class<?>)type; c != null; c = c.getSuperclass()){
+                queue.add(c);
+            }
+            for(int i = 0; i < queue.size; i++){
+                Class<?> c = queue.get(i);
+                if(!visited.add(c)) continue;
+                Seq<Listener> seq = listeners.get(c);
+                if(seq != null) all.addAll(seq);
+                queue.addAll(c.getInterfaces());
+            }
+            all.sort(Listener::compareTo);
+        }else{
+            Seq<Listener> seq = listeners.get(type);
+            if(seq != null) all.addAll(seq);
+        }
+
+        Cons<?>[] items = all.isEmpty() ? none : new Cons<?>[all.size];
+        for(int i = 0; i < all.size; i++){
+            items[i] = all.items[i].cons;
+        }
+
+        EventStats stat = stats.get(type);
+        if(stat == null) stats.put(type, stat = new EventStats());
+        return new Dispatch(items, stat);
+    }
+
+    private synchronized void add(Object type, int priority, Cons<?> cons, Object source){
+        Listener listener = new Listener(cons, source, priority, registered++);
+        Seq<Listener> seq = listeners.get(type, () -> new Seq<>(Listener.class));
+        //Kept sorted, so that the arrays of exact types need no sort
+        int index = seq.size;
+        while(index > 0 && seq.items[index - 1].priority < priority) index--;
+        seq.insert(index, listener);
+        invalidate(type);
+    }
+
+    /** Rebuilds the arrays of the fired types whose listeners changed, into a new map. */
+    private void invalidate(Object type){
+        ObjectMap<Object, Dispatch> copy = new ObjectMap<>(dispatches);
+        if(hierarchy && type instanceof Class){
+            //Any subtype may have been fired
+            for(Object key : copy.keys().toSeq()){
+                if(key instanceof Class) copy.put(key, create(key));
+            }
+        }else if(copy.containsKey(type)){
+            copy.put(type, create(type));
+        }
+        dispatches = copy;
+    }
+
+    /**
+     * The number of fires and the time taken by the listeners of a type of event. The fires are counted without lock,
+     * while timed fires are recorded under the lock of the statistics.
+     */
+    public static class EventStats{
+        /** The number of buckets of the {@link #histogram}. */
+        public static final int buckets = 40;
+
+        /** The number of fires, timed or not. */
+        public final LongAdder fires = new LongAdder();
+        /** The number of fires measured with {@link #timing}. */
+        public long timed;
+        /** The total and the longest time taken by the listeners of timed fires, in nanoseconds. */
+        public long totalNanos, maxNanos;
+        /**
+         * The number of timed fires per duration: bucket 0 holds the fires that took 0 nanoseconds, and bucket {@code i} those
+         * that took from 2^(i-1) to 2^i - 1 nanoseconds. The last bucket holds all longer fires.
+         */
+        public final long[] histogram = new long[buckets];
+
+        synchronized void record(long nanos){
+            timed++;
+            totalNanos += nanos;
+            if(nanos > maxNanos) maxNanos = nanos;
+            histogram[Math.min(64 - Long.numberOfLeadingZeros(nanos), buckets - 1)]++;
+        }
+
+        /** @return the mean time of timed fires, in nanoseconds. */
+        public synchronized double meanNanos(){
+            return timed == 0 ? 0 : (double)totalNanos / timed;
+        }
+
+        /**
+         * @param fraction The fraction of timed fires, from 0 to 1.
+         * @return an upper bound of the time in which this fraction of the timed fires completed, in nanoseconds, to a power
+         * of two; or 0 if no fire was timed.
+         */
+        public synchronized long percentileNanos(float fraction){
+            if(timed == 0) return 0;
+            long target = (long)Math.ceil(fraction * timed), count = 0;
+            for(int i = 0; i < buckets - 1; i++){
+                count += histogram[i];
+                if(count >= target && count > 0) return Math.min((1L << i) - 1, maxNanos);
+            }
+            return maxNanos;
+        }
+
+        public synchronized void reset(){
+            fires.reset();
+            timed = totalNanos = maxNanos = 0;
+            for(int i = 0; i < buckets; i++) histogram[i] = 0;
+        }
+
+        @Override
+        public String toString(){
+            return "fires: " + fires.sum() + ", mean: " + Strings.fixed((float)meanNanos() / Time.nanosPerMilli, 3) + "ms, max: " +
+                Strings.fixed((float)maxNanos / Time.nanosPerMilli, 3) + "ms";
+        }
+    }
+
+    private static class Dispatch{
+        final Cons<?>[] listeners;
+        final EventStats stats;
+
+        Dispatch(Cons<?>[] listeners, EventStats stats){
+            this.listeners = listeners;
+            this.stats = stats;
+        }
+    }
+
+    private static class Listener implements Comparable<Listener>{
+        final Cons<?> cons;
+        final Object source;
+        final int priority, order;
+
+        Listener(Cons<?> cons, Object source, int priority, int order){
+            this.cons = cons;
+            this.source = source;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Listener other){
+            return priority != other.priority ? Integer.compare(other.priority, priority) : Integer.compare(order, other.order);
+        }
+    }
+}
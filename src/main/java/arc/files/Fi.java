@@ -397,6 +397,20 @@ public class Fi implements Comparable<Fi>{
         }
     }
 
+    /**
+     * Opens a read-only channel on this file. The channel must be closed by the caller.
+     * @throws ArcRuntimeException if this file handle represents a directory, doesn't exist, or could not be read, or is a {@link FileType#classpath} file.
+     */
+    @SuppressWarnings("resource")
+    public FileChannel channel(){
+        if(type == FileType.classpath) throw new ArcRuntimeException("Cannot open a channel on a classpath file: " + this);
+        try{
+            return new RandomAccessFile(file, "r").getChannel();
+        }catch(Exception ex){
+            throw new ArcRuntimeException("Error opening channel on file: " + this + " (" + type + ")", ex);
+        }
+    }
+
     public Writes writes(boolean append){
         return new Writes(new DataOutputStream(write(append, Streams.defaultBufferSize)));
     }
@@ -0,0 +1,513 @@
+package arc.math.geom;
+
+import arc.func.*;
+import arc.struct.*;
+
+import java.util.*;
+
+/**
+ * A static R-tree of boxes, packed in one pass. Items are sorted along a Hilbert curve, then grouped {@link #nodeSize} at
+ * a time into nodes, level by level up to the root. The whole tree is two flat arrays, with no object per node, which makes
+ * it small and fast to query, but it cannot change once {@link #finish()}ed. Use {@link QuadTree} or {@link SpatialGrid}
+ * for objects that move. <br>
+ * <br>
+ * Items are identified by the order in which they were added. Boxes are given as their minimum and maximum coordinates,
+ * and points as boxes of zero size. Queries do not allocate; they use scratch arrays of the tree, so a tree must not be
+ * queried from several threads at once. Only {@link #search(float, float, float, float, Intc)} can be nested.
+ */
+public class PackedRTree{
+    /** The maximum number of children of a node. */
+    public final int nodeSize;
+    /** The number of items of the tree. */
+    public final int numItems;
+    /** Distance to the item found by the last raycast, in units of the ray length. */
+    public float hitFraction;
+
+    /** The minX, minY, maxX and maxY of each item, then of each node, level by level. */
+    final float[] boxes;
+    /** For each item, its index; for each node, the position of its first child in {@link #boxes}. */
+    final int[] indices;
+    /** The end position of each level in {@link #boxes}. */
+    final int[] levelBounds;
+    private int pos;
+    private float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+
+    private int[] stack = new int[64];
+    private int stackSize;
+    private int[] heapIds = new int[64];
+    private float[] heapValues = new float[64];
+    private int heapSize;
+
+    /** Creates an empty tree with nodes of 16 children, to be filled with {@link #add(float, float, float, float)}. */
+    public PackedRTree(int numItems){
+        this(numItems, 16);
+    }
+
+    /** Creates an empty tree, to be filled with {@link #add(float, float, float, float)}. */
+    public PackedRTree(int numItems, int nodeSize){
+        if(numItems <= 0) throw new IllegalArgumentException("numItems must be > 0: " + numItems);
+        if(nodeSize < 2) throw new IllegalArgumentException("nodeSize must be >= 2: " + nodeSize);
+        this.numItems = numItems;
+        this.nodeSize = nodeSize;
+
+        //Count the nodes of each level
+        int n = numItems, numNodes = n;
+        IntSeq bounds = new IntSeq();
+        bounds.add(n * 4);
+        do{
+            n = (n + nodeSize - 1) / nodeSize;
+            numNodes += n;
+            bounds.add(numNodes * 4);
+        }while(n != 1);
+
+        levelBounds = bounds.toArray();
+        boxes = new float[numNodes * 4];
+        indices = new int[numNodes];
+    }
+
+    /** @return a finished tree of the boxes, given as minX, minY, maxX and maxY for each item. */
+    public static PackedRTree of(float[] boxes){
+        PackedRTree tree = new PackedRTree(boxes.length / 4);
+        for(int i = 0; i < tree.numItems; i++){
+            tree.add(boxes[i * 4], boxes[i * 4 + 1], boxes[i * 4 + 2], boxes[i * 4 + 3]);
+        }
+        tree.finish();
+        return tree;
+    }
+
+    /** @return a finished tree of the points, given as x and y for each item. */
+    public static PackedRTree ofPoints(float[] points){
+        PackedRTree tree = new PackedRTree(points.length / 2);
+        for(int i = 0; i < tree.numItems; i++){
+            tree.add(points[i * 2], points[i * 2 + 1]);
+        }
+        tree.finish();
+        return tree;
+    }
+
+    /** @return the index of the added item. */
+    public int add(float minX, float minY, float maxX, float maxY){
+        if(pos >> 2 >= numItems) throw new IllegalStateException("Added more than " + numItems + " items.");
+        int index = pos >> 2;
+        indices[index] = index;
+        boxes[pos++] = minX;
+        boxes[pos++] = minY;
+        boxes[pos++] = maxX;
+        boxes[pos++] = maxY;
+
+        if(minX < this.minX) this.minX = minX;
+        if(minY < this.minY) this.minY = minY;
+        if(maxX > this.maxX) this.maxX = maxX;
+        if(maxY > this.maxY) this.maxY = maxY;
+        return index;
+    }
+
+    /** @return the index of the added item. */
+    public int add(float x, float y){
+        return add(x, y, x, y);
+    }
+
+    /** @return the index of the added item. */
+    public int add(Rect rect){
+        return add(rect.x, rect.y, rect.x + rect.width, rect.y + rect.height);
+    }
+
+    /** Sorts the items and builds the nodes. Must be called once all items are added, and before any query. */
+    public void finish(){
+        if(pos >> 2 != numItems) throw new IllegalStateException("Added " + (pos >> 2) + " items instead of " + numItems + ".");
+        float[] boxes = this.boxes;
+
+        if(numItems <= nodeSize){
+            //A single node, the root
+            indices[pos >> 2] = 0;
+            boxes[pos++] = minX;
+            boxes[pos++] = minY;
+            boxes[pos++] = maxX;
+            boxes[pos++] = maxY;
+            return;
+        }
+
+        float width = maxX - minX, height = maxY - minY;
+        if(width == 0) width = 1;
+        if(height == 0) height = 1;
+        int[] values = new int[numItems];
+        int hilbertMax = (1 << 16) - 1;
+        for(int i = 0, p = 0; i < numItems; i++, p += 4){
+            int x = (int)(hilbertMax * ((boxes[p] + boxes[p + 2]) / 2 - minX) / width);
+            int y = (int)(hilbertMax * ((boxes[p + 1] + boxes[p + 3]) / 2 - minY) / height);
+            //Flipping the sign bit makes signed comparisons order the unsigned values
+            values[i] = hilbert(x, y) ^ Integer.MIN_VALUE;
+        }
+        sort(values, 0, numItems - 1);
+
+        //Each block of nodeSize nodes gets a parent, level by level
+        for(int level = 0, p = 0; level < levelBounds.length - 1; level++){
+            int end = levelBounds[level];
+            while(p < end){
+                int nodeIndex = p;
+                float nodeMinX = boxes[p], nodeMinY = boxes[p + 1], nodeMaxX = boxes[p + 2], nodeMaxY = boxes[p + 3];
+                p += 4;
+                for(int j = 1; j < nodeSize && p < end; j++, p += 4){
+                    nodeMinX = Math.min(nodeMinX, boxes[p]);
+                    nodeMinY = Math.min(nodeMinY, boxes[p + 1]);
+                    nodeMaxX = Math.max(nodeMaxX, boxes[p + 2]);
+                    nodeMaxY = Math.max(nodeMaxY, boxes[p + 3]);
+                }
+                indices[pos >> 2] = nodeIndex;
+                boxes[pos++] = nodeMinX;
+                boxes[pos++] = nodeMinY;
+                boxes[pos++] = nodeMaxX;
+                boxes[pos++] = nodeMaxY;
+            }
+        }
+    }
+
+    /** @return the bounds of all items. */
+    public Rect getBounds(Rect out){
+        return out.set(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /** Calls the consumer with the index of each item overlapping the box, edges included. */
+    public void search(float minX, float minY, float maxX, float maxY, Intc out){
+        float[] boxes = this.boxes;
+        int leaves = numItems * 4;
+        //Nested searches push above the entries of the outer one
+        int base = stackSize;
+        int nodeIndex = boxes.length - 4;
+        while(true){
+            int end = Math.min(nodeIndex + nodeSize * 4, levelEnd(nodeIndex));
+            for(int p = nodeIndex; p < end; p += 4){
+                if(maxX < boxes[p] || maxY < boxes[p + 1] || minX > boxes[p + 2] || minY > boxes[p + 3]) continue;
+                if(nodeIndex >= leaves){
+                    push(indices[p >> 2]);
+                }else{
+                    out.get(indices[p >> 2]);
+                }
+            }
+            if(stackSize == base) break;
+            nodeIndex = stack[--stackSize];
+        }
+    }
+
+    /** Fills the sequence with the index of each item overlapping the rectangle. */
+    public void search(Rect rect, IntSeq out){
+        search(rect.x, rect.y, rect.x + rect.width, rect.y + rect.height, out::add);
+    }
+
+    /** @return the index of the item nearest to the point and matching the filter, or -1 if there is none within the distance. */
+    public int nearest(float x, float y, float maxDistance, IntBoolf filter){
+        int result = -1;
+        float maxDist2 = maxDistance * maxDistance;
+        float[] boxes = this.boxes;
+        int leaves = numItems * 4;
+        int nodeIndex = boxes.length - 4;
+        heapSize = 0;
+        while(true){
+            int end = Math.min(nodeIndex + nodeSize * 4, levelEnd(nodeIndex));
+            for(int p = nodeIndex; p < end; p += 4){
+                float dx = axisDistance(x, boxes[p], boxes[p + 2]), dy = axisDistance(y, boxes[p + 1], boxes[p + 3]);
+                float dist = dx * dx + dy * dy;
+                if(dist > maxDist2) continue;
+                int index = indices[p >> 2];
+                if(nodeIndex >= leaves){
+                    offer(index << 1, dist);
+                }else if(filter == null || filter.get(index)){
+                    //Items have odd IDs, nodes even ones
+                    offer(index << 1 | 1, dist);
+                }
+            }
+            //Items closer than all remaining nodes are the nearest ones
+            if(heapSize > 0 && (heapIds[0] & 1) != 0){
+                result = poll() >> 1;
+                break;
+            }
+            if(heapSize == 0) break;
+            nodeIndex = poll() >> 1;
+        }
+        heapSize = 0;
+        return result;
+    }
+
+    /** @return the index of the item nearest to the point, or -1 if the tree is empty. */
+    public int nearest(float x, float y){
+        return nearest(x, y, Float.POSITIVE_INFINITY, null);
+    }
+
+    /**
+     * Fills the sequence with the indices of the items nearest to the point, from the nearest to the farthest.
+     * @param maxResults The maximum number of items to find.
+     * @param maxDistance The maximum distance of the items from the point.
+     * @param filter Which items to consider, or null for all of them.
+     */
+    public void nearest(float x, float y, int maxResults, float maxDistance, IntBoolf filter, IntSeq out){
+        if(maxResults <= 0) return;
+        float maxDist2 = maxDistance * maxDistance;
+        float[] boxes = this.boxes;
+        int leaves = numItems * 4, found = 0;
+        int nodeIndex = boxes.length - 4;
+        heapSize = 0;
+        outer:
+        while(true){
+            int end = Math.min(nodeIndex + nodeSize * 4, levelEnd(nodeIndex));
+            for(int p = nodeIndex; p < end; p += 4){
+                float dx = axisDistance(x, boxes[p], boxes[p + 2]), dy = axisDistance(y, boxes[p + 1], boxes[p + 3]);
+                float dist = dx * dx + dy * dy;
+                if(dist > maxDist2) continue;
+                int index = indices[p >> 2];
+                if(nodeIndex >= leaves){
+                    offer(index << 1, dist);
+                }else if(filter == null || filter.get(index)){
+                    offer(index << 1 | 1, dist);
+                }
+            }
+            while(heapSize > 0 && (heapIds[0] & 1) != 0){
+                out.add(poll() >> 1);
+                if(++found == maxResults) break outer;
+            }
+            if(heapSize == 0) break;
+            nodeIndex = poll() >> 1;
+        }
+        heapSize = 0;
+    }
+
+    /**
+     * Finds the first item hit by the segment from {@code (x1, y1)} to {@code (x2, y2)}, that is the one whose box the
+     * segment enters first. The position of the hit along the segment is stored in {@link #hitFraction}.
+     * @param filter Which items to consider, or null for all of them.
+     * @return the index of the item, or -1 if the segment hits none.
+     */
+    public int raycast(float x1, float y1, float x2, float y2, IntBoolf filter){
+        float dx = x2 - x1, dy = y2 - y1;
+        float invX = 1f / dx, invY = 1f / dy;
+        float[] boxes = this.boxes;
+        int leaves = numItems * 4, result = -1;
+        int nodeIndex = boxes.length - 4;
+        heapSize = 0;
+        while(true){
+            int end = Math.min(nodeIndex + nodeSize * 4, levelEnd(nodeIndex));
+            for(int p = nodeIndex; p < end; p += 4){
+                float t = enter(x1, y1, invX, invY, p);
+                if(t < 0) continue;
+                int index = indices[p >> 2];
+                if(nodeIndex >= leaves){
+                    offer(index << 1, t);
+                }else if(filter == null || filter.get(index)){
+                    offer(index << 1 | 1, t);
+                }
+            }
+            //An item entered before any remaining node is entered is the first hit
+            if(heapSize > 0 && (heapIds[0] & 1) != 0){
+                hitFraction = heapValues[0];
+                result = poll() >> 1;
+                break;
+            }
+            if(heapSize == 0) break;
+            nodeIndex = poll() >> 1;
+        }
+        heapSize = 0;
+        return result;
+    }
+
+    /** @return the index of the first item hit by the segment, or -1 if it hits none. */
+    public int raycast(float x1, float y1, float x2, float y2){
+        return raycast(x1, y1, x2, y2, null);
+    }
+
+    /** Calls the consumer with the index of each item hit by the segment from {@code (x1, y1)} to {@code (x2, y2)}, in no particular order. */
+    public void raycastAll(float x1, float y1, float x2, float y2, Intc out){
+        float invX = 1f / (x2 - x1), invY = 1f / (y2 - y1);
+        float[] boxes = this.boxes;
+        int leaves = numItems * 4;
+        int base = stackSize;
+        int nodeIndex = boxes.length - 4;
+        while(true){
+            int end = Math.min(nodeIndex + nodeSize * 4, levelEnd(nodeIndex));
+            for(int p = nodeIndex; p < end; p += 4){
+                if(enter(x1, y1, invX, invY, p) < 0) continue;
+                if(nodeIndex >= leaves){
+                    push(indices[p >> 2]);
+                }else{
+                    out.get(indices[p >> 2]);
+                }
+            }
+            if(stackSize == base) break;
+            nodeIndex = stack[--stackSize];
+        }
+    }
+
+    /** @return where the segment enters the box at the position, from 0 to 1, or -1 if it misses it. */
+    private float enter(float x, float y, float invX, float invY, int p){
+        float[] boxes = this.boxes;
+        float tmin = 0f, tmax = 1f;
+        if(Float.isInfinite(invX)){
+            if(x < boxes[p] || x > boxes[p + 2]) return -1f;
+        }else{
+            float t1 = (boxes[p] - x) * invX, t2 = (boxes[p + 2] - x) * invX;
+            tmin = Math.max(tmin, Math.min(t1, t2));
+            tmax = Math.min(tmax, Math.max(t1, t2));
+        }
+        if(Float.isInfinite(invY)){
+            if(y < boxes[p + 1] || y > boxes[p + 3]) return -1f;
+        }else{
+            float t1 = (boxes[p + 1] - y) * invY, t2 = (boxes[p + 3] - y) * invY;
+            tmin = Math.max(tmin, Math.min(t1, t2));
+            tmax = Math.min(tmax, Math.max(t1, t2));
+        }
+        return tmin <= tmax ? tmin : -1f;
+    }
+
+    /** @return the end position of the level containing the position. */
+    private int levelEnd(int position){
+        for(int bound : levelBounds){
+            if(bound > position) return bound;
+        }
+        return levelBounds[levelBounds.length - 1];
+    }
+
+    private static float axisDistance(float k, float min, float max){
+        return k < min ? min - k : k <= max ? 0 : k - max;
+    }
+
+    private void push(int value){
+        if(stackSize == stack.length) stack = Arrays.copyOf(stack, stackSize * 2);
+        stack[stackSize++] = value;
+    }
+
+    /** Adds an entry to the min-heap of the nearest and raycast queries. */
+    private void offer(int id, float value){
+        if(heapSize == heapIds.length){
+            heapIds = Arrays.copyOf(heapIds, heapSize * 2);
+            heapValues = Arrays.copyOf(heapValues, heapSize * 2);
+        }
+        int[] ids = heapIds;
+        float[] values = heapValues;
+        int i = heapSize++;
+        while(i > 0){
+            int parent = (i - 1) >> 1;
+            if(values[parent] <= value) break;
+            ids[i] = ids[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        ids[i] = id;
+        values[i] = value;
+    }
+
+    /** Removes the entry with the lowest value from the heap. */
+    private int poll(){
+        int[] ids = heapIds;
+        float[] values = heapValues;
+        int top = ids[0];
+        int last = --heapSize;
+        int id = ids[last];
+        float value = values[last];
+        int i = 0, half = last >> 1;
+        while(i < half){
+            int child = 2 * i + 1;
+            if(child + 1 < last && values[child + 1] < values[child]) child++;
+            if(values[child] >= value) break;
+            ids[i] = ids[child];
+            values[i] = values[child];
+            i = child;
+        }
+        ids[i] = id;
+        values[i] = value;
+        return top;
+    }
+
+    /** Quicksorts the items by Hilbert value, down to the order of the nodes; the order within a node does not matter. */
+    private void sort(int[] values, int left, int right){
+        while(left / nodeSize < right / nodeSize){
+            int pivot = values[(left + right) >>> 1];
+            int i = left - 1, j = right + 1;
+            while(true){
+                do i++; while(values[i] < pivot);
+                do j--; while(values[j] > pivot);
+                if(i >= j) break;
+                swap(values, i, j);
+            }
+            //Recurse into the smaller part, loop on the larger one
+            if(j - left < right - j){
+                sort(values, left, j);
+                left = j + 1;
+            }else{
+                sort(values, j + 1, right);
+                right = j;
+            }
+        }
+    }
+
+    private void swap(int[] values, int i, int j){
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+
+        int index = indices[i];
+        indices[i] = indices[j];
+        indices[j] = index;
+
+        float[] boxes = this.boxes;
+        int a = i * 4, b = j * 4;
+        for(int k = 0; k < 4; k++){
+            float box = boxes[a + k];
+            boxes[a + k] = boxes[b + k];
+            boxes[b + k] = box;
+        }
+    }
+
+    /** @return the position of the point along a Hilbert curve of order 16, as an unsigned integer. */
+    static int hilbert(int x, int y){
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int A = a | (b >> 1);
+        int B = (a >> 1) ^ a;
+        int C = ((c >> 1) ^ (b & (d >> 1))) ^ c;
+        int D = ((a & (c >> 1)) ^ (d >> 1)) ^ d;
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        A = ((a & (a >> 2)) ^ (b & (b >> 2)));
+        B = ((a & (b >> 2)) ^ (b & ((a ^ b) >> 2)));
+        C ^= ((a & (c >> 2)) ^ (b & (d >> 2)));
+        D ^= ((b & (c >> 2)) ^ ((a ^ b) & (d >> 2)));
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        A = ((a & (a >> 4)) ^ (b & (b >> 4)));
+        B = ((a & (b >> 4)) ^ (b & ((a ^ b) >> 4)));
+        C ^= ((a & (c >> 4)) ^ (b & (d >> 4)));
+        D ^= ((b & (c >> 4)) ^ ((a ^ b) & (d >> 4)));
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        C ^= ((a & (c >> 8)) ^ (b & (d >> 8)));
+        D ^= ((b & (c >> 8)) ^ ((a ^ b) & (d >> 8)));
+
+        a = C ^ (C >> 1);
+        b = D ^ (D >> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+
+        i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+        i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+        i0 = (i0 | (i0 << 2)) & 0x33333333;
+        i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+        i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+        i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+        i1 = (i1 | (i1 << 2)) & 0x33333333;
+        i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+        return (i1 << 1) | i0;
+    }
+}
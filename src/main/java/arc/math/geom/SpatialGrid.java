@@ -0,0 +1,269 @@
+package arc.math.geom;
+
+import arc.func.*;
+import arc.math.geom.QuadTree.*;
+import arc.struct.*;
+
+import java.util.*;
+
+/**
+ * A uniform grid of cells, for many objects that move every frame. <br>
+ * Each object gets an integer ID, and each cell holds an array of the IDs of the objects overlapping it. The bounds of
+ * the objects are stored alongside, so queries only read flat arrays. {@link #update(QuadTreeObject)} only touches the
+ * cells when the object crossed a cell border, which makes moving an object O(1) instead of a removal and insertion.
+ * <p>
+ * Objects outside the grid bounds are kept in the border cells. The cell size should be around the size of the typical
+ * object and query: smaller cells make objects span many cells, larger ones make queries test many objects. <br>
+ * Queries use the bounds given by the last {@link #insert(QuadTreeObject)} or {@link #update(QuadTreeObject)} of each
+ * object, so objects must be updated after moving. Queries never result in false positives, and can be nested.
+ * @see QuadTree
+ */
+@SuppressWarnings("unchecked")
+public class SpatialGrid<T extends QuadTreeObject>{
+    protected final Rect tmp = new Rect();
+
+    public final Rect bounds;
+    public final float cellSize;
+    /** The number of cells along each axis. */
+    public final int width, height;
+    public int size;
+
+    /** The IDs of the objects of each cell. */
+    private final int[][] cells;
+    private final int[] cellSizes;
+
+    private final ObjectIntMap<T> ids = new ObjectIntMap<>();
+    private Object[] objects = new Object[16];
+    /** The x, y, width and height of each object. */
+    private float[] boxes = new float[16 * 4];
+    /** The first and last cell of each object, on both axes. */
+    private int[] ranges = new int[16 * 4];
+    private int[] freeIds = new int[16];
+    private int freeCount, nextId;
+
+    public SpatialGrid(Rect bounds, float cellSize){
+        if(cellSize <= 0) throw new IllegalArgumentException("cellSize must be > 0: " + cellSize);
+        this.bounds = new Rect(bounds);
+        this.cellSize = cellSize;
+        width = Math.max(1, (int)Math.ceil(bounds.width / cellSize));
+        height = Math.max(1, (int)Math.ceil(bounds.height / cellSize));
+        cells = new int[width * height][];
+        cellSizes = new int[width * height];
+    }
+
+    /** Inserts an object, or updates it if it is already in the grid. */
+    public void insert(T obj){
+        int id = ids.get(obj, -1);
+        if(id != -1){
+            move(id, obj);
+            return;
+        }
+
+        id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+        if(id == objects.length){
+            int capacity = id * 2;
+            objects = Arrays.copyOf(objects, capacity);
+            boxes = Arrays.copyOf(boxes, capacity * 4);
+            ranges = Arrays.copyOf(ranges, capacity * 4);
+        }
+        objects[id] = obj;
+        ids.put(obj, id);
+        size++;
+
+        hitbox(obj);
+        store(id);
+        for(int y = ranges[id * 4 + 1]; y <= ranges[id * 4 + 3]; y++){
+            for(int x = ranges[id * 4]; x <= ranges[id * 4 + 2]; x++){
+                add(x + y * width, id);
+            }
+        }
+    }
+
+    /**
+     * Refreshes the bounds of an object after it moved, moving it to other cells if needed. Objects which are not in the
+     * grid are inserted.
+     */
+    public void update(T obj){
+        int id = ids.get(obj, -1);
+        if(id == -1){
+            insert(obj);
+        }else{
+            move(id, obj);
+        }
+    }
+
+    /** Removes an object. */
+    public boolean remove(T obj){
+        int id = ids.remove(obj, -1);
+        if(id == -1) return false;
+
+        int r = id * 4;
+        for(int y = ranges[r + 1]; y <= ranges[r + 3]; y++){
+            for(int x = ranges[r]; x <= ranges[r + 2]; x++){
+                remove(x + y * width, id);
+            }
+        }
+        objects[id] = null;
+        if(freeCount == freeIds.length) freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        freeIds[freeCount++] = id;
+        size--;
+        return true;
+    }
+
+    public boolean contains(T obj){
+        return ids.containsKey(obj);
+    }
+
+    /** Removes all objects. */
+    public void clear(){
+        Arrays.fill(cellSizes, 0);
+        Arrays.fill(objects, 0, nextId, null);
+        ids.clear();
+        freeCount = nextId = size = 0;
+    }
+
+    /** Processes objects that intersect the given rectangle. */
+    public void intersect(float x, float y, float width, float height, Cons<T> out){
+        intersect(x, y, width, height, o -> {
+            out.get(o);
+            return false;
+        });
+    }
+
+    /**
+     * Processes objects that intersect the given rectangle. Returning true will break out of the function.
+     * @return whether the function was broken out of.
+     */
+    public boolean intersect(float x, float y, float width, float height, Boolf<T> out){
+        return find(x, y, width, height, out) != null;
+    }
+
+    /** Tries to find any object intersecting the rectangle and matching the predicate. */
+    public T find(float x, float y, float width, float height, Boolf<T> out){
+        int minX = cellX(x), minY = cellY(y), maxX = cellX(x + width), maxY = cellY(y + height);
+        float[] boxes = this.boxes;
+        int[] ranges = this.ranges;
+        for(int cy = minY; cy <= maxY; cy++){
+            for(int cx = minX; cx <= maxX; cx++){
+                int cell = cx + cy * this.width;
+                int[] ids = cells[cell];
+                for(int i = 0, n = cellSizes[cell]; i < n; i++){
+                    int id = ids[i], r = id * 4;
+                    //An object spanning several cells is only tested in the first cell it shares with the query
+                    if(cx != Math.max(minX, ranges[r]) || cy != Math.max(minY, ranges[r + 1])) continue;
+
+                    float bx = boxes[r], by = boxes[r + 1];
+                    if(bx < x + width && bx + boxes[r + 2] > x && by < y + height && by + boxes[r + 3] > y){
+                        T obj = (T)objects[id];
+                        if(out.get(obj)) return obj;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** @return whether an object overlaps this rectangle. */
+    public boolean any(float x, float y, float width, float height){
+        return intersect(x, y, width, height, o -> true);
+    }
+
+    /** Processes objects that intersect the given rectangle. */
+    public void intersect(Rect rect, Cons<T> out){
+        intersect(rect.x, rect.y, rect.width, rect.height, out);
+    }
+
+    /** Fills the out parameter with any objects that intersect the given rectangle. */
+    public void intersect(Rect rect, Seq<T> out){
+        intersect(rect.x, rect.y, rect.width, rect.height, out);
+    }
+
+    /** Fills the out parameter with any objects that intersect the given rectangle. */
+    public void intersect(float x, float y, float width, float height, Seq<T> out){
+        intersect(x, y, width, height, (Cons<T>)out::add);
+    }
+
+    /** Adds all objects to the specified Seq. */
+    public void getObjects(Seq<T> out){
+        for(int i = 0; i < nextId; i++){
+            if(objects[i] != null) out.add((T)objects[i]);
+        }
+    }
+
+    /** @return the number of objects in the cell, for tuning the cell size. */
+    public int cellCount(int x, int y){
+        return cellSizes[x + y * width];
+    }
+
+    protected void hitbox(T t){
+        t.hitbox(tmp);
+    }
+
+    private void move(int id, T obj){
+        int r = id * 4;
+        int oldMinX = ranges[r], oldMinY = ranges[r + 1], oldMaxX = ranges[r + 2], oldMaxY = ranges[r + 3];
+        hitbox(obj);
+        store(id);
+        int minX = ranges[r], minY = ranges[r + 1], maxX = ranges[r + 2], maxY = ranges[r + 3];
+        //Most moves stay within the same cells
+        if(minX == oldMinX && minY == oldMinY && maxX == oldMaxX && maxY == oldMaxY) return;
+
+        for(int y = oldMinY; y <= oldMaxY; y++){
+            for(int x = oldMinX; x <= oldMaxX; x++){
+                if(x < minX || x > maxX || y < minY || y > maxY) remove(x + y * width, id);
+            }
+        }
+        for(int y = minY; y <= maxY; y++){
+            for(int x = minX; x <= maxX; x++){
+                if(x < oldMinX || x > oldMaxX || y < oldMinY || y > oldMaxY) add(x + y * width, id);
+            }
+        }
+    }
+
+    /** Stores the bounds in {@link #tmp} as those of the object, and the cells they cover. */
+    private void store(int id){
+        int r = id * 4;
+        boxes[r] = tmp.x;
+        boxes[r + 1] = tmp.y;
+        boxes[r + 2] = tmp.width;
+        boxes[r + 3] = tmp.height;
+        ranges[r] = cellX(tmp.x);
+        ranges[r + 1] = cellY(tmp.y);
+        ranges[r + 2] = cellX(tmp.x + tmp.width);
+        ranges[r + 3] = cellY(tmp.y + tmp.height);
+    }
+
+    private int cellX(float x){
+        int cell = (int)((x - bounds.x) / cellSize);
+        return cell < 0 ? 0 : cell >= width ? width - 1 : cell;
+    }
+
+    private int cellY(float y){
+        int cell = (int)((y - bounds.y) / cellSize);
+        return cell < 0 ? 0 : cell >= height ? height - 1 : cell;
+    }
+
+    private void add(int cell, int id){
+        int[] ids = cells[cell];
+        int size = cellSizes[cell];
+        if(ids == null){
+            cells[cell] = ids = new int[4];
+        }else if(size == ids.length){
+            cells[cell] = ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size] = id;
+        cellSizes[cell] = size + 1;
+    }
+
+    private void remove(int cell, int id){
+        int[] ids = cells[cell];
+        int last = cellSizes[cell] - 1;
+        for(int i = last; i >= 0; i--){
+            if(ids[i] == id){
+                ids[i] = ids[last];
+                cellSizes[cell] = last;
+                return;
+            }
+        }
+    }
+}
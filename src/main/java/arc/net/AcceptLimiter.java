@@ -0,0 +1,81 @@
+package arc.net;
+
+import arc.struct.ObjectMap;
+import arc.struct.ObjectMap.Entries;
+
+import java.net.InetAddress;
+
+/**
+ * Token buckets limiting the rate at which connections are accepted from an address.
+ * Only used by the accepting thread, so it is not thread safe.
+ */
+class AcceptLimiter{
+    /** Maximum number of tracked addresses. Once reached, new addresses are rejected until buckets are refilled. */
+    static final int maxAddresses = 16384;
+    /** Interval between the removals of the full buckets. */
+    static final long cleanupNanos = 10_000_000_000L;
+
+    /** Tokens per nanosecond. */
+    final double rate;
+    final int burst;
+    private final ObjectMap<InetAddress, Bucket> buckets = new ObjectMap<>();
+    private long lastCleanup;
+
+    /**
+     * @param rate sustained number of connections accepted per second from an address.
+     * @param burst maximum number of connections accepted at once from an address.
+     */
+    AcceptLimiter(float rate, int burst){
+        if(rate <= 0) throw new IllegalArgumentException("rate must be positive: " + rate);
+        if(burst < 1) throw new IllegalArgumentException("burst must be at least 1: " + burst);
+        this.rate = rate / 1_000_000_000d;
+        this.burst = burst;
+    }
+
+    /** @return whether a connection from the address can be accepted, consuming a token if so. */
+    boolean tryAcquire(InetAddress address, long nanos){
+        // Cleanup more often when full, but not at each attempt of a flood
+        if(nanos - lastCleanup > (buckets.size >= maxAddresses ? cleanupNanos / 10 : cleanupNanos)) cleanup(nanos);
+
+        Bucket bucket = buckets.get(address);
+        if(bucket == null){
+            // Too many addresses are connecting at the same time
+            if(buckets.size >= maxAddresses) return false;
+            bucket = new Bucket();
+            bucket.tokens = burst;
+            bucket.time = nanos;
+            buckets.put(address, bucket);
+        }else{
+            refill(bucket, nanos);
+        }
+
+        if(bucket.tokens < 1) return false;
+        bucket.tokens--;
+        return true;
+    }
+
+    private void refill(Bucket bucket, long nanos){
+        bucket.tokens = Math.min(burst, bucket.tokens + (nanos - bucket.time) * rate);
+        bucket.time = nanos;
+    }
+
+    /** Forgets the addresses whose bucket is full again, as they would get a new one. */
+    private void cleanup(long nanos){
+        lastCleanup = nanos;
+        for(Entries<InetAddress, Bucket> entries = buckets.entries(); entries.hasNext();){
+            Bucket bucket = entries.next().value;
+            refill(bucket, nanos);
+            if(bucket.tokens >= burst) entries.remove();
+        }
+    }
+
+    /** @return the number of tracked addresses. */
+    int size(){
+        return buckets.size;
+    }
+
+    static class Bucket{
+        double tokens;
+        long time;
+    }
+}
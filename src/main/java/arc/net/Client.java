@@ -22,6 +22,7 @@ public class Client extends Connection implements EndPoint{
     protected final NetSerializer serialization;
     private Selector selector;
     private int emptySelects;
+    private IdleStrategy idleStrategy = IdleStrategy.sleep;
 
     protected volatile boolean tcpRegistered, udpRegistered;
     private Object tcpRegistrationLock = new Object();
@@ -45,19 +46,16 @@ public class Client extends Connection implements EndPoint{
     }
 
     /**
-     * @param writeBufferSize One buffer of this size is allocated.
-     * Objects are serialized to the write buffer where the bytes are queued
-     * until they can be written to the TCP socket.
+     * @param writeBufferSize Size of the pooled segments in which objects are serialized, and default
+     * {@link Connection#setTcpWriteWatermarks(int, int) high watermark} of each connection.
+     * Serialized objects are queued in these segments until they can be written to the TCP socket.
      * <p>
      * Normally the socket is writable and the bytes are written immediately.
-     * If the socket cannot be written to and enough serialized objects are
-     * queued to overflow the buffer, then the connection will be closed.
+     * If the socket cannot be written to, new segments are queued and the connection
+     * stops being {@link Connection#isWritable() writable} once the high watermark is exceeded.
+     * It is closed once the {@link Connection#setTcpWriteLimit(int) write limit} is exceeded.
      * <p>
-     * The write buffer should be sized at least as large as the  largest object
-     * that will be sent, plus some head room to allow for some serialized
-     * objects to be queued in case the buffer is temporarily not writable.
-     * The amount of head room needed is dependent upon the size of objects being
-     * sent and how often they are sent.
+     * The write buffer should be sized at least as large as the largest object that will be sent.
      *
      * @param objectBufferSize One (using only TCP) or three (using both TCP and
      * UDP) buffers of this size are allocated.
@@ -139,7 +137,8 @@ public class Client extends Connection implements EndPoint{
         try{
             if(udpPort != -1) {
                 if (udp != null) udp.dispose();
-                udp = new UdpConnection(serialization, tcp.readBuffer.capacity(), tcp.readBuffer.isDirect());
+                udp = new UdpConnection(serialization, tcp.objectBufferSize, tcp.direct);
+                udp.stats = stats;
             }
 
             long endTime;
@@ -222,11 +221,27 @@ public class Client extends Connection implements EndPoint{
      * May be zero to return immediately if there is no data to process.
      */
     public void update(int timeout) throws IOException{
+        update(timeout, true);
+    }
+
+    /**
+     * Reads or writes any pending data for this client,
+     * without blocking nor calling the {@link #setIdleStrategy(IdleStrategy) idle strategy}. <br>
+     * Intended to be called once per frame by the application thread, instead of running an update thread.
+     * Note that {@link #connect(int, InetAddress, int, int) connecting} must still be done from another thread.
+     * @see NetPoller
+     */
+    @Override
+    public void poll() throws IOException{
+        update(0, false);
+    }
+
+    private void update(int timeout, boolean idle) throws IOException{
         updateThread = Thread.currentThread();
         // Blocks to avoid a select while the selector is used to connect to the server.
         synchronized(updateLock){}
 
-        if(select(timeout)){
+        if(select(timeout, idle)){
             isClosed = false;
             Set<SelectionKey> keys = selector.selectedKeys();
             synchronized(keys){
@@ -244,26 +259,20 @@ public class Client extends Connection implements EndPoint{
         }
 
         if(!isConnected) return;
+        if(udpCoalescing > 0) flushUDP();
         long time = Time.millis();
         if(tcp.isTimedOut(time)) close();
         else keepAlive(time);
         if(isIdle()) notifyIdle();
     }
 
-    boolean select(int timeout) throws IOException {
+    /** @param idle whether to call the {@link #setIdleStrategy(IdleStrategy) idle strategy} if nothing was selected. */
+    boolean select(int timeout, boolean idle) throws IOException {
         long startTime = Time.nanos();
         int select = timeout > 0 ? selector.select(timeout) : selector.selectNow();
         if(select == 0){
-            if(++emptySelects == 100){
-                emptySelects = 0;
-                // NIO freaks and returns immediately with 0 sometimes, so try to keep from hogging the CPU.
-                long elapsedTime = Time.nanosToMillis(Time.nanos() - startTime);
-                long maxWait = Math.min(25, timeout);
-                try{
-                    // Better yielding or using onSpinWait?
-                    if(elapsedTime < maxWait) Thread.sleep(maxWait - elapsedTime);
-                }catch(InterruptedException ignored){}
-            }
+            if(emptySelects < Integer.MAX_VALUE) emptySelects++;
+            if(idle) idleStrategy.idle(emptySelects, timeout, Time.nanos() - startTime);
             return false;
         }else{
             emptySelects = 0;
@@ -271,9 +280,28 @@ public class Client extends Connection implements EndPoint{
         }
     }
 
+    /**
+     * Sets what the update thread does after a select returned nothing.
+     * Defaults to {@link IdleStrategy#sleep}.
+     */
+    public void setIdleStrategy(IdleStrategy idleStrategy){
+        if(idleStrategy == null) throw new IllegalArgumentException("idleStrategy cannot be null.");
+        this.idleStrategy = idleStrategy;
+    }
+
+    /**
+     * Sets the compression accepted when the server offers it, null to disable it.
+     * Must be called before connecting.
+     * @see NetCompression
+     */
+    public void setCompression(NetCompression compression){
+        tcp.setCompression(compression);
+    }
+
     protected void doSelect(SelectionKey selectionKey) throws IOException{
         int ops = selectionKey.readyOps();
         UdpConnection udp = this.udp;
+        stats.selects.increment();
 
         if((ops & SelectionKey.OP_READ) == SelectionKey.OP_READ){
             if(selectionKey.attachment() == tcp){
@@ -281,6 +309,11 @@ public class Client extends Connection implements EndPoint{
                     Object object = tcp.readObject();
                     if(object == null) break;
 
+                    if(object instanceof Compression){
+                        handleCompression((Compression)object);
+                        continue;
+                    }
+
                     //TODO: check for TCP+UDP validation returned by the server?
                     if(!tcpRegistered){
                         if(object instanceof RegisterTCP){
@@ -314,10 +347,11 @@ public class Client extends Connection implements EndPoint{
                 }
 
             }else{
-                if(udp.readFromAddress() == null) return;
-                Object object = udp.readObject();
-                if(object == null) return;
-                notifyReceived(object);
+                // Drain the pending datagrams, which may contain several objects
+                for(int i = 0; i < UdpConnection.maxBatchSize && udp.readFromAddress() != null; i++){
+                    Object object;
+                    while((object = udp.readObject()) != null) notifyReceived(object);
+                }
             }
         }
 
@@ -445,10 +479,11 @@ public class Client extends Connection implements EndPoint{
     }
 
     private void broadcast(int udpPort, DatagramSocket socket) throws IOException{
-        ByteBuffer data = ByteBufferPool.getDirect(16);
+        ByteBuffer data = ByteBufferPool.getHeap(16 + UdpConnection.headerLength(serialization));
         try{
+            data.position(UdpConnection.headerLength(serialization));
             serialization.write(data, FrameworkMessage.discoverHost);
-            data.flip();
+            UdpConnection.frame(serialization, data);
             int len = data.remaining();
 
             for(NetworkInterface iface : Collections.list(NetworkInterface.getNetworkInterfaces())){
@@ -457,7 +492,7 @@ public class Client extends Connection implements EndPoint{
                 for(InterfaceAddress baseAddress : iface.getInterfaceAddresses()){
                     InetAddress address = baseAddress.getBroadcast();
                     if(address == null) continue;
-                    socket.send(new DatagramPacket(data.array(), data.arrayOffset(), len, address, udpPort));
+                    socket.send(new DatagramPacket(data.array(), data.arrayOffset() + data.position(), len, address, udpPort));
                 }
             }
         }finally{
@@ -499,7 +534,7 @@ public class Client extends Connection implements EndPoint{
 
         //multicast
         discoverExecutor.submit(() -> {
-            ByteBuffer data = ByteBufferPool.getDirect(16);
+            ByteBuffer data = ByteBufferPool.getHeap(16);
             try(DatagramSocket socket = new DatagramSocket()){
                 serialization.write(data, FrameworkMessage.discoverHost);
                 data.flip();
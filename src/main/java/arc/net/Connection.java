@@ -2,14 +2,18 @@
 
 package arc.net;
 
+import arc.net.FrameworkMessage.Compression;
 import arc.net.FrameworkMessage.Ping;
 import arc.util.Disposable;
 import arc.util.Time;
+import arc.util.pooling.ByteBufferPool;
 
 import java.io.IOException;
 import java.net.Socket;
 import java.net.*;
-import java.nio.channels.SocketChannel;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
 
 /**
  * Represents a TCP and optionally a UDP connection between a {@link Client} and a {@link Server}.
@@ -24,6 +28,7 @@ public class Connection implements Disposable{
     UdpConnection udp;
     InetSocketAddress udpRemoteAddress;
     protected final DispatchListener listeners = new DispatchListener(true);
+    protected final NetStats stats = new NetStats();
     protected int lastPingID;
     protected long lastPingSendTime;
     protected int returnTripTime;
@@ -31,12 +36,23 @@ public class Connection implements Disposable{
     volatile ArcNetException lastProtocolError;
     private Object arbitraryData;
     boolean tcpOnly;
+    /** The server worker owning this connection, if any. */
+    Server.Worker worker;
+    /** Deserializes the TCP frames off the selector thread, if set. */
+    FrameDecoder decoder;
+    /** Maximum size of a coalesced datagram, 0 if UDP coalescing is disabled. */
+    int udpCoalescing;
+    /** Objects waiting to be sent in the next coalesced datagram. */
+    private ByteBuffer udpPending;
+    private final Object udpPendingLock = new Object();
 
     protected Connection(){
     }
 
     void initialize(NetSerializer serialization, int writeBufferSize, int objectBufferSize, boolean direct){
         tcp = new TcpConnection(serialization, writeBufferSize, objectBufferSize, direct);
+        tcp.writabilityListener = this::notifyWritabilityChanged;
+        tcp.stats = stats;
     }
 
     /**
@@ -102,28 +118,208 @@ public class Connection implements Disposable{
         if(object == null)
             throw new IllegalArgumentException("object cannot be null.");
         checkDisposed();
-        SocketAddress address = udpRemoteAddress;
-        if(address == null && udp != null)
-            address = udp.connectedAddress;
-        if(address == null && isConnected)
-            throw new IllegalStateException("Connection is not connected via UDP.");
+        SocketAddress address = udpAddress();
+
+        try{
+            if(address == null) throw new SocketException("Connection is closed.");
+            if(udpCoalescing > 0) return coalesceUDP(object, null, address);
+            int length = udp.send(object, address);
+            // A server UDP socket is shared, so the stats are attributed here
+            if(length > 0 && !isClientUDP()) stats.udpSent(length);
+            return length;
+        }catch(IOException | ArcNetException ex){
+            close(DcReason.error);
+            ArcNet.handleError(ex);
+            return 0;
+        }
+    }
+
+    /**
+     * Sends a frame made of the serialized {@code header} followed by {@code count} bytes of the file, using TCP.
+     * The file bytes are transferred straight to the socket, without being copied to memory.
+     * @param close whether to close the file channel once the bytes have been written.
+     * @return The number of bytes sent.
+     * @see TcpConnection#sendFile(Object, FileChannel, long, int, boolean)
+     * @see FileSender
+     */
+    public int sendFileTCP(Object header, FileChannel channel, long position, int count, boolean close){
+        if(header == null) throw new IllegalArgumentException("header cannot be null.");
+        checkDisposed();
+
+        try{
+            return tcp.sendFile(header, channel, position, count, close);
+        }catch(IOException | ArcNetException ex){
+            close(DcReason.error);
+            ArcNet.handleError(ex);
+            return 0;
+        }
+    }
+
+    /**
+     * Sends an already serialized frame over the network using TCP.
+     * @return The number of bytes sent.
+     * @see TcpConnection#sendFrame(ByteBuffer)
+     */
+    int sendTCPFrame(ByteBuffer frame){
+        // A broadcast may race with the closing or removal of this connection by another thread
+        if(disposed || !isConnected) return 0;
+
+        try{
+            return tcp.sendFrame(frame);
+        }catch(IOException | ArcNetException ex){
+            if(disposed || !isConnected) return 0;
+            close(DcReason.error);
+            ArcNet.handleError(ex);
+            return 0;
+        }
+    }
+
+    /**
+     * Sends an already serialized datagram over the network using UDP.
+     * @return The number of bytes sent.
+     * @throws IllegalStateException if this connection was not opened with both TCP and UDP.
+     * @see UdpConnection#sendFrame(ByteBuffer, SocketAddress)
+     */
+    int sendUDPFrame(ByteBuffer datagram){
+        if(disposed || !isConnected) return 0;
+        SocketAddress address = udpAddress();
 
         try{
             if(address == null) throw new SocketException("Connection is closed.");
-            return udp.send(object, address);
+            if(udpCoalescing > 0) return coalesceUDP(null, datagram, address);
+            int length = udp.sendFrame(datagram, address);
+            if(length > 0 && !isClientUDP()) stats.udpSent(length);
+            return length;
         }catch(IOException | ArcNetException ex){
+            if(disposed || !isConnected) return 0;
             close(DcReason.error);
             ArcNet.handleError(ex);
             return 0;
         }
     }
 
+    /**
+     * Sets the maximum size of the datagrams in which the objects sent with {@link #sendUDP(Object)} are coalesced,
+     * instead of sending a datagram per object. The coalesced datagram is sent once full or when {@link #flushUDP()}
+     * is called, which the {@link Server} and {@link Client} update threads do after each update.
+     * It should be kept below the path MTU (usually 1400 bytes is safe) to avoid IP fragmentation. <br>
+     * Each coalesced object is written after its length, with {@link NetSerializer#writeLength(ByteBuffer, int)}.
+     * @param maxDatagramSize 0 to disable coalescing.
+     */
+    public void setUDPCoalescing(int maxDatagramSize){
+        if(maxDatagramSize < 0) throw new IllegalArgumentException("maxDatagramSize cannot be < 0: " + maxDatagramSize);
+        flushUDP();
+        synchronized(udpPendingLock){
+            udpCoalescing = maxDatagramSize;
+            if(udpPending != null){
+                ByteBufferPool.free(udpPending);
+                udpPending = null;
+            }
+        }
+    }
+
+    public int getUDPCoalescing(){
+        return udpCoalescing;
+    }
+
+    /**
+     * Sends the objects waiting to be coalesced, if any.
+     * @return The number of bytes sent.
+     */
+    public int flushUDP(){
+        if(disposed || udpPending == null) return 0;
+        SocketAddress address = udpAddress();
+
+        synchronized(udpPendingLock){
+            try{
+                if(address == null) throw new SocketException("Connection is closed.");
+                return flushPendingUDP(address);
+            }catch(IOException | ArcNetException ex){
+                close(DcReason.error);
+                ArcNet.handleError(ex);
+                return 0;
+            }
+        }
+    }
+
+    private SocketAddress udpAddress(){
+        SocketAddress address = udpRemoteAddress;
+        if(address == null && udp != null)
+            address = udp.connectedAddress;
+        if(address == null && isConnected)
+            throw new IllegalStateException("Connection is not connected via UDP.");
+        return address;
+    }
+
+    /** Appends the object, or the datagram, to the pending one; flushing it first if it does not fit. */
+    private int coalesceUDP(Object object, ByteBuffer datagram, SocketAddress address) throws IOException{
+        synchronized(udpPendingLock){
+            int max = udpCoalescing;
+            if(udpPending == null){
+                udpPending = ByteBufferPool.get().obtain(max, tcp.direct);
+            }
+            ByteBuffer pending = udpPending;
+
+            NetSerializer serialization = tcp.serialization;
+            int lengthLength = serialization.getLengthLength();
+            for(int attempt = 0; attempt < 2; attempt++){
+                int start = pending.position();
+                try{
+                    //A coalesced datagram starts with a length of 0, then each object follows its length
+                    if(start == 0) serialization.writeLength(pending, 0);
+                    int lengthStart = pending.position();
+                    if(pending.remaining() < lengthLength) throw new BufferOverflowException();
+                    pending.position(lengthStart + lengthLength);
+                    if(object != null){
+                        long startTime = Time.nanos();
+                        serialization.write(pending, object);
+                        stats.serializationNanos.add(Time.nanos() - startTime);
+                    }else{
+                        ByteBuffer payload = datagram.duplicate();
+                        //A framed datagram may be a coalesced one of a single object
+                        if(UdpConnection.readMarker(serialization, payload)) serialization.readLength(payload);
+                        pending.put(payload);
+                    }
+                    int end = pending.position();
+                    pending.position(lengthStart);
+                    serialization.writeLength(pending, end - lengthStart - lengthLength);
+                    pending.position(end);
+                    return end - start;
+                }catch(BufferOverflowException ex){
+                    pending.position(start);
+                    // Nothing to flush, the object is bigger than a datagram
+                    if(start == 0) break;
+                    flushPendingUDP(address);
+                }catch(Exception ex){
+                    pending.position(start);
+                    throw new ArcNetException("Error serializing object of type: " + object.getClass().getName(), ex);
+                }
+            }
+            throw new ArcNetException("Object is bigger than the maximum coalesced datagram size (" + max + "): "
+                                    + (object != null ? object.getClass().getName() : datagram.remaining() + " bytes"));
+        }
+    }
+
+    private int flushPendingUDP(SocketAddress address) throws IOException{
+        ByteBuffer pending = udpPending;
+        if(pending == null || pending.position() == 0) return 0;
+        pending.flip();
+        try{
+            int length = udp.sendFrame(pending, address);
+            if(length > 0 && !isClientUDP()) stats.udpSent(length);
+            return length;
+        }finally{
+            pending.clear().limit(udpCoalescing);
+        }
+    }
+
     public void close(DcReason reason){
         udpPaused = false;
         boolean wasConnected = isConnected;
         isConnected = false;
         tcp.close();
         if(isClientUDP()) udp.close();
+        if(decoder != null) decoder.clear();
         if(wasConnected) notifyDisconnected(reason);
         setConnected(false);
     }
@@ -141,6 +337,12 @@ public class Connection implements Disposable{
         close(DcReason.closed);
         tcp.dispose();
         if(isClientUDP()) udp.dispose();
+        synchronized(udpPendingLock){
+            if(udpPending != null){
+                ByteBufferPool.free(udpPending);
+                udpPending = null;
+            }
+        }
     }
 
     @Override
@@ -148,6 +350,14 @@ public class Connection implements Disposable{
         return disposed;
     }
 
+    /**
+     * Returns the network counters of this connection.
+     * On a server, UDP counters only include the datagrams attributed to this connection.
+     */
+    public NetStats getStats(){
+        return stats;
+    }
+
     /**
      * Requests the connection to communicate with the remote computer to determine
      * a new value for the {@link #getReturnTripTime() return trip time}.
@@ -227,12 +437,17 @@ public class Connection implements Disposable{
         listeners.idle(this);
     }
 
+    protected void notifyWritabilityChanged(boolean writable){
+        listeners.writabilityChanged(this, writable);
+    }
+
     protected void notifyReceived(Object object){
         if(object instanceof Ping){
             Ping ping = (Ping)object;
             if(ping.isReply){
                 if(ping.id == lastPingID - 1){
                     returnTripTime = (int)Time.sinceMillis(lastPingSendTime);
+                    stats.rtt(returnTripTime);
                 }
             }else{
                 ping.isReply = true;
@@ -244,6 +459,40 @@ public class Connection implements Disposable{
         listeners.received(this, object);
     }
 
+    /**
+     * Offers the remote end to compress the TCP frames, if compression is enabled on this end.
+     * @see NetCompression
+     */
+    void offerCompression(){
+        NetCompression.Codec codec = tcp.codec;
+        if(codec == null) return;
+        codec.offered = true;
+        Compression offer = new Compression();
+        offer.dictionaryId = codec.config.dictionaryId;
+        sendTCP(offer);
+    }
+
+    /**
+     * Answers a compression offer, or acknowledges the reply to an offer.
+     * The TCP connection switches to compressed frames after sending or reading a reply.
+     */
+    void handleCompression(Compression message){
+        NetCompression.Codec codec = tcp.codec;
+        if(codec == null) return;
+        if(message.isReply ? !codec.offered : !codec.config.accepts(message)) return;
+
+        codec.offered = false;
+        Compression reply = new Compression();
+        reply.dictionaryId = codec.config.dictionaryId;
+        reply.isReply = true;
+        sendTCP(reply);
+    }
+
+    /** @return whether the TCP frames are compressed in both directions. */
+    public boolean isCompressed(){
+        return tcp.isCompressed();
+    }
+
     /**
      * Returns the local {@link Client} or {@link Server} to which this connection belongs.
      */
@@ -289,26 +538,57 @@ public class Connection implements Disposable{
      * Returns the number of bytes that are waiting to be written to the TCP socket, if any.
      */
     public int getTcpWriteBufferSize(){
-        return tcp.writeBuffer.position();
+        return tcp.getQueuedBytes();
     }
 
     /**
-     * Returns the number of bytes remaining in the TCP buffer.
-     * Can be used to determine if the write buffer is about to overflow.
+     * Returns the number of bytes that can still be queued before reaching the
+     * {@link #setTcpWriteWatermarks(int, int) high watermark}.
+     * Can be used to determine if the connection is about to stop being writable.
      */
     public int getTcpWriteBufferRemaining(){
-        return tcp.writeBuffer.remaining();
+        return Math.max(0, tcp.highWatermark - tcp.getQueuedBytes());
+    }
+
+    /**
+     * Returns false if more bytes than the high watermark are waiting to be written to the TCP socket,
+     * until they drain below the low watermark.
+     * Sending should be slowed down while the connection is not writable.
+     * @see NetListener#writabilityChanged(Connection, boolean)
+     */
+    public boolean isWritable(){
+        return tcp.isWritable();
+    }
+
+    /**
+     * Sets the amount of bytes waiting to be written to the TCP socket above which the connection
+     * is no longer {@link #isWritable() writable}, and below which it becomes writable again.
+     * The queue itself is only bounded by the {@link #setTcpWriteLimit(int) write limit}.
+     * Defaults to half the write buffer size and the write buffer size.
+     */
+    public void setTcpWriteWatermarks(int lowWatermark, int highWatermark){
+        tcp.setWatermarks(lowWatermark, highWatermark);
+    }
+
+    /**
+     * Sets the most bytes that can wait to be written to the TCP socket, not counting the file bytes of
+     * {@link #sendFileTCP(Object, FileChannel, long, int, boolean)}. Once exceeded, the connection is closed
+     * with an error, as the remote end does not read what is sent to it.
+     * @param maxQueuedBytes 0 for {@link TcpConnection#defaultLimitFactor} times the high watermark, which is the default.
+     */
+    public void setTcpWriteLimit(int maxQueuedBytes){
+        tcp.setMaxQueuedBytes(maxQueuedBytes);
     }
 
     /**
      * @see #setIdleThreshold(float)
      */
     public boolean isIdle(){
-        return tcp.writeBuffer.position() / (float)tcp.writeBuffer.capacity() < tcp.idleThreshold;
+        return tcp.getQueuedBytes() / (float)tcp.highWatermark < tcp.idleThreshold;
     }
 
     /**
-     * If the percent of the TCP write buffer that is filled is less than the
+     * If the percent of the TCP high watermark that is filled is less than the
      * specified threshold, {@link NetListener#idle(Connection)} will be called for
      * each network thread update. Default is 0.1.
      */
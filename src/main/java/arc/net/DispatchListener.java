@@ -69,4 +69,9 @@ public class DispatchListener implements NetListener {
       if (cutIdle && !connection.isIdle()) break;
     }
   }
+
+  @Override
+  public void writabilityChanged(Connection connection, boolean writable) {
+    for (NetListener l : getListeners()) l.writabilityChanged(connection, writable);
+  }
 }
@@ -51,6 +51,15 @@ public interface EndPoint extends Runnable, Disposable{
      */
     void update(int timeout) throws IOException;
 
+    /**
+     * Processes any pending operation without blocking.
+     * @see Client#poll()
+     * @see Server#poll()
+     */
+    default void poll() throws IOException{
+        update(0);
+    }
+
     /**
      * Returns the last thread that called {@link #update(int)} for this end point.
      * This can be useful to detect when long running code will be run on the update thread.
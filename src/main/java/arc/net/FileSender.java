@@ -0,0 +1,83 @@
+package arc.net;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import arc.files.Fi;
+
+/**
+ * Streams a file to a connection, chunk by chunk, when the connection is idle.
+ * <p>
+ * Unlike {@link InputStreamSender}, chunks are never copied to memory:
+ * they are transferred straight from the file to the socket, using {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+ * Each chunk is sent as a single frame, made of the serialized {@link #header(long, int) header} followed by the chunk bytes.
+ * So the header must be serialized as the beginning of an object holding the chunk bytes,
+ * for the remote end to deserialize the frame as a normal object.
+ * <p>
+ * The chunk size, plus the header size, must not exceed the object buffer size of the remote end.
+ */
+abstract public class FileSender extends TcpIdleSender{
+    private final FileChannel channel;
+    private final int chunkSize;
+    private final long end;
+    private long position;
+    private boolean closed;
+
+    /** Sends the whole file. */
+    public FileSender(Fi file, int chunkSize){
+        this(file.channel(), 0, file.length(), chunkSize);
+    }
+
+    /**
+     * Sends {@code count} bytes of the file, starting at {@code position}.
+     * The channel will be closed once sent, or if the connection is closed.
+     */
+    public FileSender(FileChannel channel, long position, long count, int chunkSize){
+        if(chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be positive.");
+        this.channel = channel;
+        this.chunkSize = chunkSize;
+        this.position = position;
+        this.end = position + count;
+    }
+
+    @Override
+    protected boolean send(Connection connection){
+        if(closed) return false;
+        if(position >= end){
+            close();
+            return false;
+        }
+
+        int count = (int)Math.min(chunkSize, end - position);
+        boolean last = position + count >= end;
+        connection.sendFileTCP(header(position, count), channel, position, count, last);
+        position += count;
+        if(last) closed = true; // Will be closed once written
+        return true;
+    }
+
+    /** Chunks are sent by {@link #send(Connection)}. */
+    @Override
+    protected final Object next(){
+        return null;
+    }
+
+    @Override
+    public void disconnected(Connection connection, DcReason reason){
+        close();
+    }
+
+    private void close(){
+        closed = true;
+        try{
+            channel.close();
+        }catch(IOException ignored){}
+    }
+
+    /**
+     * Returns the object to serialize before the chunk bytes.
+     * @param offset position of the chunk in the file.
+     * @param length number of bytes of the chunk, following the header.
+     */
+    abstract protected Object header(long offset, int length);
+}
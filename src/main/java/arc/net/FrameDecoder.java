@@ -0,0 +1,113 @@
+package arc.net;
+
+import arc.struct.Queue;
+import arc.util.pooling.ByteBufferPool;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.*;
+
+/**
+ * Decodes the TCP frames of a connection on an executor, instead of the selector thread.
+ * The frames are decoded and delivered in order, by at most one task of the executor at a time.
+ * When too many frames are pending, the connection stops reading until they are decoded.
+ */
+class FrameDecoder implements Runnable{
+    /** Maximum number of frames decoded by a task, before letting the other connections use the thread. */
+    static final int batchSize = 64;
+    /** Number of pending frames above which reading is paused. */
+    static final int maxPendingFrames = 512;
+
+    final Connection connection;
+    final Server server;
+    final Executor executor;
+    private final Queue<ByteBuffer> frames = new Queue<>(16);
+    private boolean scheduled, throttled;
+
+    FrameDecoder(Connection connection, Server server, Executor executor){
+        this.connection = connection;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /** Queues a frame read by the selector thread. The frame will be freed once decoded. */
+    void submit(ByteBuffer frame){
+        synchronized(frames){
+            frames.addLast(frame);
+            if(frames.size >= maxPendingFrames && !throttled){
+                throttled = true;
+                connection.tcp.throttleReading(true);
+            }
+            if(scheduled) return;
+            scheduled = true;
+        }
+        execute();
+    }
+
+    @Override
+    public void run(){
+        try{
+            for(int i = 0; i < batchSize; i++){
+                ByteBuffer frame;
+                synchronized(frames){
+                    if(frames.isEmpty()){
+                        scheduled = false;
+                        return;
+                    }
+                    frame = frames.removeFirst();
+                    if(throttled && frames.size <= maxPendingFrames / 2){
+                        throttled = false;
+                        connection.tcp.throttleReading(false);
+                    }
+                }
+                decode(frame);
+            }
+        }catch(Throwable ex){
+            // The task must not stay scheduled, or no other task would be
+            synchronized(frames){
+                scheduled = false;
+            }
+            ArcNet.handleError(new ArcNetException("Error in frame decoder of connection: " + connection, ex));
+            connection.close(DcReason.error);
+            return;
+        }
+        // Let the other connections be decoded
+        execute();
+    }
+
+    private void decode(ByteBuffer frame){
+        try{
+            // Objects read before the disconnection are dropped, to not be received after it
+            if(!connection.isConnected) return;
+            Object object = connection.tcp.decode(frame);
+            server.receivedTCP(connection, object);
+        }catch(ArcNetException ex){
+            ArcNet.handleError(new ArcNetException("Error reading TCP from connection: " + connection, ex));
+            connection.close(server.closeReason(ex.getMessage()));
+        }catch(Throwable ex){
+            // Thrown by a listener, the following frames are dropped as for a decoding error
+            ArcNet.handleError(new ArcNetException("Error handling TCP from connection: " + connection, ex));
+            connection.close(DcReason.error);
+        }finally{
+            ByteBufferPool.free(frame);
+        }
+    }
+
+    private void execute(){
+        try{
+            executor.execute(this);
+        }catch(RejectedExecutionException ex){
+            clear();
+            synchronized(frames){
+                scheduled = false;
+            }
+        }
+    }
+
+    /** Frees the pending frames. */
+    void clear(){
+        synchronized(frames){
+            while(!frames.isEmpty()) ByteBufferPool.free(frames.removeFirst());
+            throttled = false;
+        }
+    }
+}
@@ -34,6 +34,16 @@ public interface FrameworkMessage{
     class DiscoverHost implements FrameworkMessage{
     }
 
+    /**
+     * Internal message to negotiate the compression of the TCP frames.
+     * @see NetCompression
+     */
+    class Compression implements FrameworkMessage{
+        /** Identifies the preset dictionary, 0 if there is none. */
+        public int dictionaryId;
+        public boolean isReply;
+    }
+
     /**
      * Internal message to determine round trip time.
      */
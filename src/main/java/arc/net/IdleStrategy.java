@@ -0,0 +1,64 @@
+package arc.net;
+
+import java.util.concurrent.locks.LockSupport;
+
+import arc.util.*;
+
+/**
+ * Decides what an update thread does after a select returned no keys.
+ * <p>
+ * A blocking select already waits for the given timeout, so the strategy mainly matters when polling
+ * with a zero timeout, or when NIO spuriously returns immediately.
+ * Spinning strategies give the lowest latency but keep a core busy, so they should only be used on a dedicated core.
+ * @see Server#setIdleStrategy(IdleStrategy)
+ * @see Client#setIdleStrategy(IdleStrategy)
+ */
+public interface IdleStrategy{
+    /**
+     * Sleeps up to {@code 25} milliseconds, or the select timeout if lower, every {@code 100} empty selects.
+     * This was the only behavior before idle strategies were added.
+     */
+    IdleStrategy sleep = (emptySelects, timeout, elapsedNanos) -> {
+        if(emptySelects % 100 != 0) return;
+        // NIO freaks and returns immediately with 0 sometimes, so try to keep from hogging the CPU.
+        long elapsedTime = Time.nanosToMillis(elapsedNanos);
+        long maxWait = Math.min(25, timeout);
+        try{
+            if(elapsedTime < maxWait) Thread.sleep(maxWait - elapsedTime);
+        }catch(InterruptedException ignored){}
+    };
+
+    /** Never gives the CPU back, only hints the processor that the thread is spinning. */
+    IdleStrategy busySpin = (emptySelects, timeout, elapsedNanos) -> Threads.spinWait();
+
+    /** Gives the CPU to other threads, if any. */
+    IdleStrategy yield = (emptySelects, timeout, elapsedNanos) -> Thread.yield();
+
+    /**
+     * Called after each empty select.
+     * @param emptySelects number of consecutive empty selects, including this one. Capped to {@link Integer#MAX_VALUE}.
+     * @param timeout the select timeout, in milliseconds. Zero when polling.
+     * @param elapsedNanos time spent in the select.
+     */
+    void idle(int emptySelects, int timeout, long elapsedNanos);
+
+    /**
+     * Spins for the first {@code maxSpins} empty selects, then yields for the next {@code maxYields},
+     * then parks the thread for an exponentially growing time, from {@code minParkNanos} to {@code maxParkNanos}.
+     */
+    static IdleStrategy backoff(int maxSpins, int maxYields, long minParkNanos, long maxParkNanos){
+        if(minParkNanos <= 0 || maxParkNanos < minParkNanos)
+            throw new IllegalArgumentException("minParkNanos must be positive and lower than maxParkNanos.");
+        return (emptySelects, timeout, elapsedNanos) -> {
+            if(emptySelects <= maxSpins){
+                Threads.spinWait();
+            }else if(emptySelects - maxSpins <= maxYields){
+                Thread.yield();
+            }else{
+                int shift = Math.min(emptySelects - maxSpins - maxYields - 1, 62);
+                long park = minParkNanos << shift;
+                LockSupport.parkNanos(park <= 0 || park > maxParkNanos || park >> shift != minParkNanos ? maxParkNanos : park);
+            }
+        };
+    }
+}
@@ -0,0 +1,222 @@
+package arc.net;
+
+import arc.net.FrameworkMessage.Compression;
+
+import java.nio.*;
+import java.util.zip.*;
+
+/**
+ * Configures the per-message compression of the TCP frames, using a reusable {@link Deflater} and {@link Inflater} per connection.
+ * <p>
+ * Compression is negotiated per connection: when the server has a compression set, it offers it with a
+ * {@link Compression} message after the {@link FrameworkMessage.RegisterTCP}. A client with a compression set,
+ * using the same dictionary, accepts the offer, and from then each frame payload is prefixed by a marker byte telling
+ * whether it is deflated. Therefore the {@link NetSerializer} must be able to serialize {@link Compression} messages.
+ * <p>
+ * Each message is compressed independently, so a {@link #dictionary} holding bytes frequently found in
+ * the packets, such as a serialized typical world-state packet, greatly improves the ratio of small messages.
+ * Both ends must use the same dictionary, otherwise compression is not negotiated.
+ * <p>
+ * UDP datagrams and the file bytes sent with {@link Connection#sendFileTCP} are never compressed.
+ */
+public class NetCompression{
+    /** Marker of the frame payloads sent as is. */
+    static final byte markerRaw = 0;
+    /** Marker of the frame payloads compressed with a raw deflate stream. */
+    static final byte markerDeflated = 1;
+
+    /** The {@link Deflater} level. */
+    public final int level;
+    /** Payloads smaller than this size, in bytes, are not compressed. */
+    public final int threshold;
+    /** Preset dictionary, may be null. */
+    final byte[] dictionary;
+    /** Identifies the dictionary during the negotiation, 0 if there is none. */
+    final int dictionaryId;
+
+    /** Fast compression of the payloads of at least 128 bytes, without dictionary. */
+    public NetCompression(){
+        this(Deflater.BEST_SPEED, 128, null);
+    }
+
+    public NetCompression(int level, int threshold){
+        this(level, threshold, null);
+    }
+
+    /**
+     * @param dictionary preset dictionary, which should contain the byte sequences that are the most likely
+     *                   to be found in the packets, the most common ones at the end. May be null.
+     */
+    public NetCompression(int level, int threshold, byte[] dictionary){
+        if((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION)
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        if(threshold < 0) throw new IllegalArgumentException("threshold cannot be < 0: " + threshold);
+        this.level = level;
+        this.threshold = threshold;
+        this.dictionary = dictionary == null || dictionary.length == 0 ? null : dictionary.clone();
+
+        if(this.dictionary == null){
+            dictionaryId = 0;
+        }else{
+            Adler32 adler = new Adler32();
+            adler.update(this.dictionary, 0, this.dictionary.length);
+            // 0 is reserved to the absence of dictionary
+            dictionaryId = (int)adler.getValue() | 1;
+        }
+    }
+
+    /** @return whether the remote end uses the same dictionary, and so compression can be enabled. */
+    boolean accepts(Compression offer){
+        return offer.dictionaryId == dictionaryId;
+    }
+
+    /**
+     * The compression state of a connection.
+     * The write and read sides are switched separately, after sending and reading a {@link Compression} reply,
+     * so that the frames already in flight are read as they were written.
+     */
+    static class Codec{
+        final NetCompression config;
+        /** Whether this end offered compression, and must acknowledge the reply of the remote end. */
+        boolean offered;
+        /** Only modified with the write lock of the TCP connection. */
+        boolean writing;
+        /** Only modified by the reading thread. */
+        boolean reading;
+
+        private Deflater deflater;
+        private Inflater inflater;
+        private ByteBuffer raw, frame, inflated;
+        private byte[] input;
+
+        Codec(NetCompression config){
+            this.config = config;
+        }
+
+        /**
+         * Returns the heap buffer in which the payload to encode must be serialized.
+         * Must be called with the write lock.
+         */
+        ByteBuffer raw(int capacity){
+            if(raw == null || raw.capacity() < capacity){
+                raw = ByteBuffer.allocate(capacity).order(ByteOrder.nativeOrder());
+            }
+            raw.clear();
+            raw.limit(capacity);
+            return raw;
+        }
+
+        /**
+         * Encodes the {@link #raw} payload as a frame: its length, the marker and the deflated or raw payload.
+         * Must be called with the write lock.
+         * @param trailing number of bytes that will follow the payload, which is then not compressed.
+         * @return the frame, in read mode.
+         */
+        ByteBuffer encode(NetSerializer serialization, int trailing){
+            ByteBuffer raw = this.raw;
+            raw.flip();
+            int length = raw.remaining(), lengthLength = serialization.getLengthLength();
+            int capacity = lengthLength + 1 + length;
+            if(frame == null || frame.capacity() < capacity){
+                frame = ByteBuffer.allocate(Math.max(capacity, raw.capacity() + lengthLength + 1)).order(ByteOrder.nativeOrder());
+            }
+            ByteBuffer frame = this.frame;
+            frame.clear();
+            frame.position(lengthLength);
+
+            int deflatedLength = trailing == 0 && length >= config.threshold ? deflate(raw.array(), length, frame.array(), lengthLength + 1) : -1;
+            if(deflatedLength >= 0){
+                frame.put(markerDeflated);
+                frame.position(frame.position() + deflatedLength);
+            }else{
+                frame.put(markerRaw);
+                frame.put(raw);
+            }
+
+            int end = frame.position();
+            frame.position(0);
+            serialization.writeLength(frame, end - lengthLength + trailing);
+            frame.position(0);
+            frame.limit(end);
+            return frame;
+        }
+
+        /** @return the deflated length, or -1 if the deflated payload would not be smaller. */
+        private int deflate(byte[] src, int length, byte[] dst, int offset){
+            if(deflater == null) deflater = new Deflater(config.level, true);
+            Deflater deflater = this.deflater;
+            deflater.reset();
+            if(config.dictionary != null) deflater.setDictionary(config.dictionary);
+            deflater.setInput(src, 0, length);
+            deflater.finish();
+            // Leave no room for a deflated payload that is not smaller
+            int max = Math.min(dst.length - offset, length - 1);
+            int deflated = max <= 0 ? 0 : deflater.deflate(dst, offset, max);
+            return deflater.finished() ? deflated : -1;
+        }
+
+        /**
+         * Decodes the frame payload between the position and the limit of the buffer, consuming its marker.
+         * Must be called by the reading thread.
+         * @param maxLength maximum size of an inflated payload.
+         * @return the buffer itself if the payload is not compressed, else a buffer holding the inflated payload.
+         */
+        ByteBuffer decode(ByteBuffer buffer, int maxLength){
+            byte marker = buffer.get();
+            if(marker == markerRaw) return buffer;
+            if(marker != markerDeflated) throw new ArcNetException("Invalid compression marker: " + marker);
+
+            int length = buffer.remaining();
+            byte[] src;
+            int offset;
+            if(buffer.hasArray()){
+                src = buffer.array();
+                offset = buffer.arrayOffset() + buffer.position();
+            }else{
+                if(input == null || input.length < length) input = new byte[Math.max(length, maxLength)];
+                buffer.duplicate().get(input, 0, length);
+                src = input;
+                offset = 0;
+            }
+            buffer.position(buffer.limit());
+
+            if(inflated == null || inflated.capacity() < maxLength){
+                inflated = ByteBuffer.allocate(maxLength).order(ByteOrder.nativeOrder());
+            }
+            ByteBuffer inflated = this.inflated;
+            inflated.clear();
+
+            if(inflater == null) inflater = new Inflater(true);
+            Inflater inflater = this.inflater;
+            inflater.reset();
+            if(config.dictionary != null) inflater.setDictionary(config.dictionary);
+            inflater.setInput(src, offset, length);
+            try{
+                int inflatedLength = inflater.inflate(inflated.array(), 0, maxLength);
+                if(!inflater.finished()){
+                    if(inflatedLength == maxLength) throw new ArcNetException("Unable to inflate payload larger than read buffer: > " + maxLength);
+                    throw new ArcNetException("Truncated compressed payload.");
+                }
+                inflated.limit(inflatedLength);
+            }catch(DataFormatException ex){
+                throw new ArcNetException("Invalid compressed payload.", ex);
+            }
+            return inflated;
+        }
+
+        /** Goes back to uncompressed frames, for a new connection. */
+        void reset(){
+            offered = writing = reading = false;
+        }
+
+        void dispose(){
+            if(deflater != null) deflater.end();
+            if(inflater != null) inflater.end();
+            deflater = null;
+            inflater = null;
+            raw = frame = inflated = null;
+            input = null;
+            reset();
+        }
+    }
+}
@@ -12,7 +12,8 @@ public interface NetListener{
      * Called when the remote end has been connected. This will be invoked
      * before any objects are received by {@link #received(Connection, Object)}.
      * This will be invoked on the same thread as {@link Client#update(int)} and
-     * {@link Server#update(int)}.
+     * {@link Server#update(int)}, or on the thread of the worker owning the connection
+     * if the server uses {@link Server#setWorkers(int) workers}.
      * This method should not block for long periods as other network activity
      * will not be processed until it returns.
      */
@@ -30,7 +31,8 @@ public interface NetListener{
      * Called when an object has been received from the remote end of the
      * connection.
      * This will be invoked on the same thread as {@link Client#update(int)}
-     * and {@link Server#update(int)}.
+     * and {@link Server#update(int)}, or on the thread of the worker owning the
+     * connection if the server uses {@link Server#setWorkers(int) workers}.
      * This method should not block for long periods as other network activity
      * will not be processed until it returns.
      */
@@ -44,6 +46,15 @@ public interface NetListener{
     default void idle(Connection connection){
     }
 
+    /**
+     * Called when the amount of bytes waiting to be written to the TCP socket exceeds the
+     * {@link Connection#setTcpWriteWatermarks(int, int) high watermark} ({@code writable} is false),
+     * or drains back below the low watermark ({@code writable} is true).
+     * There is no guarantee as to what thread will invoke this method.
+     */
+    default void writabilityChanged(Connection connection, boolean writable){
+    }
+
 
     /**
      * Wraps a listener and queues notifications as {@link Runnable runnables}.
@@ -75,6 +86,10 @@ public interface NetListener{
             queue(() -> listener.idle(connection));
         }
 
+        public void writabilityChanged(final Connection connection, final boolean writable){
+            queue(() -> listener.writabilityChanged(connection, writable));
+        }
+
         abstract protected void queue(Runnable runnable);
     }
 
@@ -0,0 +1,32 @@
+package arc.net;
+
+import java.io.IOException;
+
+import arc.ApplicationListener;
+
+/**
+ * Polls an end point once per frame, on the application thread, instead of running a dedicated update thread.
+ * Add it to the application, e.g. {@code Core.app.addListener(new NetPoller(server))},
+ * so listener events are notified in the same thread as the game logic.
+ * <p>
+ * The latency is bounded by the frame duration of the application.
+ * @see EndPoint#poll()
+ */
+public class NetPoller implements ApplicationListener{
+    public final EndPoint endPoint;
+
+    public NetPoller(EndPoint endPoint){
+        if(endPoint == null) throw new IllegalArgumentException("endPoint cannot be null.");
+        this.endPoint = endPoint;
+    }
+
+    @Override
+    public void update(){
+        try{
+            endPoint.poll();
+        }catch(IOException | ArcNetException ex){
+            ArcNet.handleError(ex);
+            endPoint.close();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package arc.net;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Network counters of a connection.
+ * Counters are {@link LongAdder LongAdders}, cheap enough to always be enabled, and can be read from any thread.
+ * Use {@link #snapshot()} to get a consistent view of them.
+ */
+public class NetStats{
+    /**
+     * Upper bounds, in milliseconds, of the return trip time histogram buckets.
+     * The last bucket of the histogram holds the times above the last bound.
+     */
+    public static final int[] rttBounds = {5, 10, 20, 35, 50, 75, 100, 150, 200, 300, 500, 1000};
+
+    final LongAdder tcpBytesSent = new LongAdder(), tcpBytesReceived = new LongAdder(),
+                    tcpPacketsSent = new LongAdder(), tcpPacketsReceived = new LongAdder(),
+                    udpBytesSent = new LongAdder(), udpBytesReceived = new LongAdder(),
+                    udpPacketsSent = new LongAdder(), udpPacketsReceived = new LongAdder(),
+                    serializationNanos = new LongAdder(), deserializationNanos = new LongAdder(),
+                    partialWrites = new LongAdder(), selects = new LongAdder();
+    final AtomicLongArray rttHistogram = new AtomicLongArray(rttBounds.length + 1);
+    /** Only updated with the write lock of the TCP connection. */
+    volatile int writeQueuePeak;
+
+    void tcpSent(int bytes){
+        tcpBytesSent.add(bytes);
+    }
+
+    void tcpReceived(int bytes){
+        tcpBytesReceived.add(bytes);
+    }
+
+    void udpSent(int bytes){
+        udpBytesSent.add(bytes);
+        udpPacketsSent.increment();
+    }
+
+    void udpReceived(int bytes){
+        udpBytesReceived.add(bytes);
+        udpPacketsReceived.increment();
+    }
+
+    void queued(int queuedBytes){
+        if(queuedBytes > writeQueuePeak) writeQueuePeak = queuedBytes;
+    }
+
+    void rtt(int millis){
+        int i = 0;
+        while(i < rttBounds.length && millis > rttBounds[i]) i++;
+        rttHistogram.incrementAndGet(i);
+    }
+
+    public Snapshot snapshot(){
+        return addTo(new Snapshot());
+    }
+
+    /** Adds the counters to the snapshot. The write queue peak is the maximum of both. */
+    public Snapshot addTo(Snapshot out){
+        out.tcpBytesSent += tcpBytesSent.sum();
+        out.tcpBytesReceived += tcpBytesReceived.sum();
+        out.tcpPacketsSent += tcpPacketsSent.sum();
+        out.tcpPacketsReceived += tcpPacketsReceived.sum();
+        out.udpBytesSent += udpBytesSent.sum();
+        out.udpBytesReceived += udpBytesReceived.sum();
+        out.udpPacketsSent += udpPacketsSent.sum();
+        out.udpPacketsReceived += udpPacketsReceived.sum();
+        out.serializationNanos += serializationNanos.sum();
+        out.deserializationNanos += deserializationNanos.sum();
+        out.partialWrites += partialWrites.sum();
+        out.selects += selects.sum();
+        out.writeQueuePeak = Math.max(out.writeQueuePeak, writeQueuePeak);
+        for(int i = 0; i < out.rttHistogram.length; i++) out.rttHistogram[i] += rttHistogram.get(i);
+        return out;
+    }
+
+    /** Adds the counters of this to {@code other}. */
+    void addTo(NetStats other){
+        other.tcpBytesSent.add(tcpBytesSent.sum());
+        other.tcpBytesReceived.add(tcpBytesReceived.sum());
+        other.tcpPacketsSent.add(tcpPacketsSent.sum());
+        other.tcpPacketsReceived.add(tcpPacketsReceived.sum());
+        other.udpBytesSent.add(udpBytesSent.sum());
+        other.udpBytesReceived.add(udpBytesReceived.sum());
+        other.udpPacketsSent.add(udpPacketsSent.sum());
+        other.udpPacketsReceived.add(udpPacketsReceived.sum());
+        other.serializationNanos.add(serializationNanos.sum());
+        other.deserializationNanos.add(deserializationNanos.sum());
+        other.partialWrites.add(partialWrites.sum());
+        other.selects.add(selects.sum());
+        synchronized(other){
+            other.queued(writeQueuePeak);
+        }
+        for(int i = 0; i < rttHistogram.length(); i++) other.rttHistogram.addAndGet(i, rttHistogram.get(i));
+    }
+
+    public void reset(){
+        tcpBytesSent.reset();
+        tcpBytesReceived.reset();
+        tcpPacketsSent.reset();
+        tcpPacketsReceived.reset();
+        udpBytesSent.reset();
+        udpBytesReceived.reset();
+        udpPacketsSent.reset();
+        udpPacketsReceived.reset();
+        serializationNanos.reset();
+        deserializationNanos.reset();
+        partialWrites.reset();
+        selects.reset();
+        writeQueuePeak = 0;
+        for(int i = 0; i < rttHistogram.length(); i++) rttHistogram.set(i, 0);
+    }
+
+    /** A plain copy of the counters. */
+    public static class Snapshot{
+        public long tcpBytesSent, tcpBytesReceived, tcpPacketsSent, tcpPacketsReceived;
+        public long udpBytesSent, udpBytesReceived, udpPacketsSent, udpPacketsReceived;
+        /** Total time spent serializing and deserializing TCP objects. */
+        public long serializationNanos, deserializationNanos;
+        /** Number of socket writes that could not write all queued bytes. */
+        public long partialWrites;
+        /** Number of times the connection has been selected by its selector. */
+        public long selects;
+        /** Highest number of bytes waiting to be written to the TCP socket. */
+        public int writeQueuePeak;
+        /** Number of return trip times within each of the {@link #rttBounds}. */
+        public final long[] rttHistogram = new long[rttBounds.length + 1];
+
+        /** @return an estimation of the return trip time percentile, as the upper bound of its bucket. */
+        public int rttPercentile(float percentile){
+            long total = 0;
+            for(long count : rttHistogram) total += count;
+            if(total == 0) return -1;
+            long target = (long)Math.ceil(total * percentile), count = 0;
+            for(int i = 0; i < rttBounds.length; i++){
+                count += rttHistogram[i];
+                if(count >= target) return rttBounds[i];
+            }
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public String toString(){
+            return "tcp: " + tcpPacketsSent + " sent (" + tcpBytesSent + " B), " + tcpPacketsReceived + " received (" + tcpBytesReceived + " B)"
+                 + ", udp: " + udpPacketsSent + " sent (" + udpBytesSent + " B), " + udpPacketsReceived + " received (" + udpBytesReceived + " B)"
+                 + ", serialization: " + serializationNanos / 1000 + " us, deserialization: " + deserializationNanos / 1000 + " us"
+                 + ", partial writes: " + partialWrites + ", selects: " + selects + ", write queue peak: " + writeQueuePeak + " B";
+        }
+    }
+}
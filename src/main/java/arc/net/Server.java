@@ -1,6 +1,6 @@
 package arc.net;
 
-import arc.func.Cons;
+import arc.func.*;
 import arc.math.*;
 import arc.net.FrameworkMessage.*;
 import arc.struct.*;
@@ -9,8 +9,11 @@ import arc.util.pooling.ByteBufferPool;
 
 import java.io.*;
 import java.net.*;
+import java.nio.*;
 import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 /**
  * Manages TCP and optionally UDP connections from many {@linkplain Client Clients}.
@@ -23,15 +26,43 @@ public class Server implements EndPoint{
 
     private final Selector selector;
     private int emptySelects;
+    private IdleStrategy idleStrategy = IdleStrategy.sleep;
+    private int udpCoalescing, tcpWriteLimit;
+    private NetCompression compression;
+    private Executor decoderExecutor;
+    /** Created by {@link #setDecoderThreads(int)}, and so shut down by this server. */
+    private ExecutorService ownedDecoderExecutor;
     private ServerSocketChannel serverChannel;
     private UdpConnection udp;
 
-    private final IntMap<Connection> connectionsMap = new IntMap<>();
+    /** Read by {@link #getConnection(int)} from any thread. */
+    private final ConcurrentIntMap<Connection> connectionsMap = new ConcurrentIntMap<>();
     private final Seq<Connection> connections = new Seq<>(false);
+    /**
+     * A copy of {@link #connections}, replaced under the {@link #connectionsLock} when they change,
+     * so that they can be iterated from any thread while the workers or decoders add and remove connections.
+     */
+    private volatile Connection[] connectionsSnapshot = {};
     private volatile Connection[] stales = null; // Used to thread-safely remove a connection
     private final ObjectMap<InetSocketAddress, Connection> udpAddressToConnection = new ObjectMap<>();
     private final IntMap<Connection> pendingConnections = new IntMap<>();
     private final Rand rand = new Rand();
+    /** Guards the connection collections, which can be modified by the worker threads. */
+    private final Object connectionsLock = new Object();
+    /** Stats of the removed connections. */
+    private final NetStats removedStats = new NetStats();
+
+    private AcceptLimiter acceptLimiter;
+    private int maxPendingConnections;
+    /** Accepted connections not yet registered by their worker, with their socket. Guarded by the {@link #connectionsLock}. */
+    private final ObjectMap<Connection, SocketChannel> registering = new ObjectMap<>();
+    private final Seq<Connection> timedOutPending = new Seq<>(false, 4, Connection.class);
+    private final LongAdder rateLimitedAccepts = new LongAdder(), pendingLimitedAccepts = new LongAdder(),
+                            filteredAccepts = new LongAdder();
+
+    private int workerCount;
+    private volatile Worker[] workers;
+    private int nextWorker;
 
     private volatile boolean shutdown = true, starting;
     private final Object updateLock = new Object();
@@ -56,19 +87,16 @@ public class Server implements EndPoint{
     }
 
     /**
-     * @param writeBufferSize One buffer of this size is allocated for each connected client.
-     * Objects are serialized to the write buffer where the bytes are queued until they can
-     * be written to the TCP socket.
+     * @param writeBufferSize Size of the pooled segments in which objects are serialized, and default
+     * {@link Connection#setTcpWriteWatermarks(int, int) high watermark} of each connection.
+     * Serialized objects are queued in these segments until they can be written to the TCP socket.
      * <p>
      * Normally the socket is writable and the bytes are written immediately.
-     * If the socket cannot be written to and enough serialized objects are queued to overflow
-     * the buffer, then the connection will be closed.
+     * If the socket cannot be written to, new segments are queued and the connection
+     * stops being {@link Connection#isWritable() writable} once the high watermark is exceeded.
+     * It is closed once the {@link Connection#setTcpWriteLimit(int) write limit} is exceeded.
      * <p>
-     * The write buffer should be sized at least as large as the largest object that will be sent,
-     * plus some head room to allow for some serialized objects to be queued in case the buffer is
-     * temporarily not writable.
-     * The amount of head room needed is dependent upon the size of objects being sent and how often
-     * they are sent.
+     * The write buffer should be sized at least as large as the largest object that will be sent.
      *
      * @param objectBufferSize One (using only TCP) or three (using both TCP and UDP) buffers
      * of this size are allocated.
@@ -120,6 +148,24 @@ public class Server implements EndPoint{
         return connectFilter;
     }
 
+    /**
+     * Sets the number of worker selectors. Must be called before {@link #bind(InetSocketAddress, InetSocketAddress)}.
+     * <p>
+     * By default ({@code 0}), every connection is handled by the {@link #update(int) update thread}.
+     * Otherwise, the update thread only accepts new connections and reads UDP datagrams, while each worker
+     * runs its own selector thread, owning a shard of the TCP connections. <br>
+     * All listener events of a connection, including the UDP ones, are notified on the thread of its worker,
+     * so their ordering is kept per connection.
+     */
+    public void setWorkers(int count){
+        if(count < 0) throw new IllegalArgumentException("count cannot be negative.");
+        workerCount = count;
+    }
+
+    public int getWorkers(){
+        return workerCount;
+    }
+
     /**
      * Opens a TCP only server.
      * @throws IOException if the server could not be opened.
@@ -154,6 +200,15 @@ public class Server implements EndPoint{
                     udp.bind(selector, udpPort);
                 }
 
+                if(workerCount > 0){
+                    Worker[] workers = new Worker[workerCount];
+                    for(int i = 0; i < workers.length; i++){
+                        workers[i] = new Worker(i);
+                        workers[i].start();
+                    }
+                    this.workers = workers;
+                }
+
                 if(multicastGroup != null && (udpPort == null || multicastPort != udpPort.getPort())){
                     discoveryReceiver = new DiscoveryReceiver();
                     discoveryReceiver.start();
@@ -172,12 +227,27 @@ public class Server implements EndPoint{
      */
     @Override
     public void update(int timeout) throws IOException{
+        update(timeout, true);
+    }
+
+    /**
+     * Accepts any new connections and reads or writes any pending data for the current connections,
+     * without blocking nor calling the {@link #setIdleStrategy(IdleStrategy) idle strategy}. <br>
+     * Intended to be called once per frame by the application thread, instead of running an update thread.
+     * @see NetPoller
+     */
+    @Override
+    public void poll() throws IOException{
+        update(0, false);
+    }
+
+    private void update(int timeout, boolean idle) throws IOException{
         updateThread = Thread.currentThread();
         // Blocks to avoid a select while the selector is used to bind the server connection.
         synchronized(updateLock){}
 
         clearStales(); // Clear any staling connections
-        if (!select(timeout)) {
+        if (!select(timeout, idle)) {
             updateConnections();
             return;
         }
@@ -196,17 +266,20 @@ public class Server implements EndPoint{
                     boolean readUDP = doSelectTCP(selectionKey, fromConnection);
                     if (!readUDP) continue;
 
-                    InetSocketAddress fromAddress;
-                    try{
-                        fromAddress = udp.readFromAddress();
-                    }catch(IOException ex){
-                        ArcNet.handleError(ex);
-                        continue;
-                    }
-                    if(fromAddress == null) continue;
-                    fromConnection = udpAddressToConnection.get(fromAddress);
+                    // Drain the pending datagrams
+                    for(int i = 0; i < UdpConnection.maxBatchSize; i++){
+                        InetSocketAddress fromAddress;
+                        try{
+                            fromAddress = udp.readFromAddress();
+                        }catch(IOException ex){
+                            ArcNet.handleError(ex);
+                            break;
+                        }
+                        if(fromAddress == null) break;
+                        fromConnection = udpAddressToConnection.get(fromAddress);
 
-                    doSelectUDP(selectionKey, fromConnection, fromAddress);
+                        doSelectUDP(selectionKey, fromConnection, fromAddress);
+                    }
                 }catch(CancelledKeyException ex){
                     if(fromConnection != null) fromConnection.close(DcReason.error);
                     else selectionKey.channel().close();
@@ -217,20 +290,13 @@ public class Server implements EndPoint{
         updateConnections();
     }
 
-    boolean select(int timeout) throws IOException {
+    /** @param idle whether to call the {@link #setIdleStrategy(IdleStrategy) idle strategy} if nothing was selected. */
+    boolean select(int timeout, boolean idle) throws IOException {
         long startTime = Time.nanos();
         int select = timeout > 0 ? selector.select(timeout) : selector.selectNow();
         if(select == 0){
-            if(++emptySelects == 100){
-                emptySelects = 0;
-                // NIO freaks and returns immediately with 0 sometimes, so try to keep from hogging the CPU.
-                long elapsedTime = Time.nanosToMillis(Time.nanos() - startTime);
-                long maxWait = Math.min(25, timeout);
-                try{
-                    // Better yielding or using onSpinWait?
-                    if(elapsedTime < maxWait) Thread.sleep(maxWait - elapsedTime);
-                }catch(InterruptedException ignored){}
-            }
+            if(emptySelects < Integer.MAX_VALUE) emptySelects++;
+            if(idle) idleStrategy.idle(emptySelects, timeout, Time.nanos() - startTime);
             return false;
         }else{
             emptySelects = 0;
@@ -238,24 +304,107 @@ public class Server implements EndPoint{
         }
     }
 
+    /**
+     * Sets what the update thread does after a select returned nothing.
+     * Defaults to {@link IdleStrategy#sleep}.
+     */
+    public void setIdleStrategy(IdleStrategy idleStrategy){
+        if(idleStrategy == null) throw new IllegalArgumentException("idleStrategy cannot be null.");
+        this.idleStrategy = idleStrategy;
+    }
+
+    /**
+     * Sets the UDP coalescing of the new connections, and of the current ones.
+     * The pending datagrams are flushed after each update.
+     * @see Connection#setUDPCoalescing(int)
+     */
+    public void setUDPCoalescing(int maxDatagramSize){
+        if(maxDatagramSize < 0) throw new IllegalArgumentException("maxDatagramSize cannot be < 0: " + maxDatagramSize);
+        udpCoalescing = maxDatagramSize;
+        for(Connection connection : connectionsSnapshot) connection.setUDPCoalescing(maxDatagramSize);
+    }
+
+    public int getUDPCoalescing(){
+        return udpCoalescing;
+    }
+
+    /**
+     * Sets the write limit of the new connections.
+     * @see Connection#setTcpWriteLimit(int)
+     */
+    public void setTcpWriteLimit(int maxQueuedBytes){
+        if(maxQueuedBytes < 0) throw new IllegalArgumentException("maxQueuedBytes cannot be < 0: " + maxQueuedBytes);
+        tcpWriteLimit = maxQueuedBytes;
+    }
+
+    public int getTcpWriteLimit(){
+        return tcpWriteLimit;
+    }
+
+    /**
+     * Sets the compression offered to the new connections, null to disable it.
+     * The clients must also have a compression set to accept it.
+     * @see NetCompression
+     */
+    public void setCompression(NetCompression compression){
+        this.compression = compression;
+    }
+
+    public NetCompression getCompression(){
+        return compression;
+    }
+
+    /**
+     * Sets the executor on which the TCP frames of the new connections are deserialized,
+     * instead of the selector thread, null to deserialize them on the selector thread. <br>
+     * The objects of a connection are still received in order, but {@link NetListener#received(Connection, Object)}
+     * is then called by the executor threads, so the listeners must be thread safe.
+     */
+    public void setDecoderExecutor(Executor executor){
+        ExecutorService owned = ownedDecoderExecutor;
+        ownedDecoderExecutor = null;
+        decoderExecutor = executor;
+        if(owned != null && owned != executor) owned.shutdown();
+    }
+
+    /**
+     * Deserializes the TCP frames of the new connections on a pool of {@code threads} threads,
+     * which is shut down with this server. 0 to deserialize them on the selector thread.
+     * @see #setDecoderExecutor(Executor)
+     */
+    public void setDecoderThreads(int threads){
+        if(threads < 0) throw new IllegalArgumentException("threads cannot be < 0: " + threads);
+        ExecutorService executor = threads == 0 ? null : Threads.executor("Server Decoder", threads);
+        setDecoderExecutor(executor);
+        ownedDecoderExecutor = executor;
+    }
+
+    public Executor getDecoderExecutor(){
+        return decoderExecutor;
+    }
+
     protected boolean doSelectTCP(SelectionKey selectionKey, Connection fromConnection) throws IOException {
         int ops = selectionKey.readyOps();
         UdpConnection udp = this.udp;
 
         if(fromConnection != null){ // Must be a TCP read or write operation.
+            fromConnection.stats.selects.increment();
             if((ops & SelectionKey.OP_READ) == SelectionKey.OP_READ){
                 try{
-                    while(true){
-                        Object object = fromConnection.tcp.readObject();
-                        if(object == null) break;
-                        if(object instanceof RegisterTCP && udp != null && fromConnection.udpRemoteAddress == null){
-                            pendingConnections.remove(fromConnection.getID());
-                            fromConnection.tcpOnly = true;
-                            addConnection(fromConnection);
-                            fromConnection.notifyConnected();
-                            break;
+                    FrameDecoder decoder = fromConnection.decoder;
+                    if(decoder != null){
+                        // Frames are decoded by the decoder executor
+                        while(true){
+                            ByteBuffer frame = fromConnection.tcp.readFrame();
+                            if(frame == null) break;
+                            decoder.submit(frame);
+                        }
+                    }else{
+                        while(true){
+                            Object object = fromConnection.tcp.readObject();
+                            if(object == null) break;
+                            receivedTCP(fromConnection, object);
                         }
-                        fromConnection.notifyReceived(object);
                     }
                 }catch(IOException | ArcNetException ex){
                     ArcNet.handleError(new ArcNetException("Error reading TCP from connection: " + fromConnection, ex));
@@ -294,6 +443,24 @@ public class Server implements EndPoint{
         return true;
     }
 
+    /** Handles an object read from the TCP connection, on the selector thread or a decoder thread. */
+    void receivedTCP(Connection fromConnection, Object object){
+        if(object instanceof Compression){
+            fromConnection.handleCompression((Compression)object);
+            return;
+        }
+        if(object instanceof RegisterTCP && udp != null && fromConnection.udpRemoteAddress == null){
+            fromConnection.tcpOnly = true;
+            synchronized(connectionsLock){
+                pendingConnections.remove(fromConnection.getID());
+                addConnection(fromConnection);
+            }
+            fromConnection.notifyConnected();
+            return;
+        }
+        fromConnection.notifyReceived(object);
+    }
+
     protected void doSelectUDP(SelectionKey selectionKey, Connection fromConnection, InetSocketAddress fromAddress) throws IOException {
         UdpConnection udp = this.udp;
 
@@ -309,35 +476,60 @@ public class Server implements EndPoint{
             }
         }
 
-        Object object;
-        try{
-            object = udp.readObject();
-        }catch(ArcNetException ex){
-            ArcNet.handleError(new ArcNetException("Error reading UDP from connection: " + fromAddress, ex));
-            return;
+        if(fromConnection != null) fromConnection.stats.udpReceived(udp.readBuffer.position());
+
+        // A datagram may contain several objects
+        while(true){
+            Object object;
+            try{
+                object = udp.readObject();
+            }catch(ArcNetException ex){
+                ArcNet.handleError(new ArcNetException("Error reading UDP from connection: " + fromAddress, ex));
+                return;
+            }
+            if(object == null) return;
+            if(!doReceiveUDP(selectionKey, fromConnection, fromAddress, object)) return;
         }
+    }
+
+    /** @return whether the next objects of the datagram can be read. */
+    private boolean doReceiveUDP(SelectionKey selectionKey, Connection fromConnection, InetSocketAddress fromAddress,
+                                 Object object) throws IOException {
+        UdpConnection udp = this.udp;
 
         if(object instanceof FrameworkMessage){
             if(object instanceof RegisterUDP){
                 // Store the fromAddress on the connection and reply over TCP
                 // with a RegisterUDP to indicate success.
                 int fromConnectionID = ((RegisterUDP)object).connectionID;
-                Connection connection = pendingConnections.remove(fromConnectionID);
-                if(connection == null || connection.udpRemoteAddress != null) return;
-                // It is illegal to register an UDP connection without the same address as the TCP one
-                // Or connection was registered as TCP only
-                InetSocketAddress toAddress = connection.getRemoteAddressTCP();
-                if(connection.tcpOnly || toAddress == null || !fromAddress.getAddress().equals(toAddress.getAddress())){
-                    pendingConnections.put(fromConnectionID, connection);
-                    selectionKey.channel().close();
-                    return;
+                Connection connection;
+                synchronized(connectionsLock){
+                    connection = pendingConnections.remove(fromConnectionID);
+                    if(connection == null || connection.udpRemoteAddress != null) return false;
+                    // It is illegal to register an UDP connection without the same address as the TCP one
+                    // Or connection was registered as TCP only
+                    InetSocketAddress toAddress = connection.getRemoteAddressTCP();
+                    if(connection.tcpOnly || toAddress == null || !fromAddress.getAddress().equals(toAddress.getAddress())){
+                        pendingConnections.put(fromConnectionID, connection);
+                        selectionKey.channel().close();
+                        return false;
+                    }
+
+                    connection.udpRemoteAddress = fromAddress;
+                    addConnection(connection);
                 }
 
-                connection.udpRemoteAddress = fromAddress;
-                addConnection(connection);
-                connection.sendTCP(object);
-                connection.notifyConnected();
-                return;
+                if(connection.worker != null){
+                    Connection registered = connection;
+                    connection.worker.post(() -> {
+                        registered.sendTCP(object);
+                        registered.notifyConnected();
+                    });
+                }else{
+                    connection.sendTCP(object);
+                    connection.notifyConnected();
+                }
+                return false;
             }
 
             if(object instanceof DiscoverHost){
@@ -347,12 +539,18 @@ public class Server implements EndPoint{
                         buff -> udp.datagramChannel.send(buff, fromAddress)
                     );
                 }catch(IOException ignored){}
-                return;
+                return false;
             }
         }
 
-        if(fromConnection == null) return;
-        fromConnection.notifyReceived(object);
+        if(fromConnection == null) return false;
+        if(fromConnection.worker != null){
+            Connection connection = fromConnection;
+            connection.worker.post(() -> connection.notifyReceived(object));
+        }else{
+            fromConnection.notifyReceived(object);
+        }
+        return true;
     }
 
     DcReason closeReason(String errMsg){
@@ -360,20 +558,48 @@ public class Server implements EndPoint{
     }
 
     void updateConnections() {
+        // Workers are updating their own connections
+        if(workers == null){
+            Connection[] connections = connectionsSnapshot;
+            updateConnections(connections, connections.length);
+        }
+        closeTimedOutPending();
+    }
+
+    /** Pending connections are not updated with the others, so they would never time out. */
+    private void closeTimedOutPending(){
         long time = Time.millis();
-        for(int i = 0; i < connections.size; i++){
-            Connection connection = connections.get(i);
-            if(connection.tcp.isTimedOut(time)) connection.close(DcReason.timeout);
-            else if(connection.tcp.needsKeepAlive(time)) connection.sendTCP(FrameworkMessage.keepAlive);
-            if(isStale(connection)) continue; // Avoid more events if its a stale connection
-            if(connection.isIdle()) connection.notifyIdle();
+        Seq<Connection> timedOut = timedOutPending;
+        synchronized(connectionsLock){
+            if(pendingConnections.size == 0) return;
+            for(Connection connection : pendingConnections.values()){
+                if(connection.tcp.isTimedOut(time)) timedOut.add(connection);
+            }
+        }
+        for(int i = 0; i < timedOut.size; i++){
+            timedOut.items[i].close(DcReason.timeout);
         }
+        timedOut.clear();
+    }
+
+    void updateConnections(Connection[] connections, int size) {
+        long time = Time.millis();
+        for(int i = 0; i < size; i++){
+            updateConnection(connections[i], time);
+        }
+    }
+
+    void updateConnection(Connection connection, long time){
+        if(connection.tcp.isTimedOut(time)) connection.close(DcReason.timeout);
+        else if(connection.tcp.needsKeepAlive(time)) connection.sendTCP(FrameworkMessage.keepAlive);
+        if(isStale(connection)) return; // Avoid more events if its a stale connection
+        if(connection.udpCoalescing > 0) connection.flushUDP();
+        if(connection.isIdle()) connection.notifyIdle();
     }
 
     public void keepAlive(){
         long time = Time.millis();
-        for(int i = 0; i < connections.size; i++){
-            Connection connection = connections.get(i);
+        for(Connection connection : connectionsSnapshot){
             if(connection.tcp.needsKeepAlive(time)) connection.sendTCP(FrameworkMessage.keepAlive);
         }
     }
@@ -430,37 +656,142 @@ public class Server implements EndPoint{
     }
 
     private void acceptOperation(SocketChannel socketChannel){
-        if(connectFilter != null){
-            try{
-                String address = ((InetSocketAddress)socketChannel.getRemoteAddress()).getAddress().getHostAddress();
-                if(!connectFilter.accept(address)){
-                    socketChannel.close();
-                    return;
-                }
-            }catch(IOException ignored){}
+        // Cheap checks first, before anything is allocated for the connection
+        InetAddress remote = socketChannel.socket().getInetAddress();
+        AcceptLimiter acceptLimiter = this.acceptLimiter;
+        if(acceptLimiter != null && remote != null && !acceptLimiter.tryAcquire(remote, Time.nanos())){
+            rateLimitedAccepts.increment();
+            reject(socketChannel);
+            return;
+        }
+        if(maxPendingConnections > 0 && getPendingConnectionsSize() >= maxPendingConnections){
+            pendingLimitedAccepts.increment();
+            reject(socketChannel);
+            return;
+        }
+
+        if(connectFilter != null && remote != null && !connectFilter.accept(remote.getHostAddress())){
+            filteredAccepts.increment();
+            reject(socketChannel);
+            return;
         }
 
         Connection connection = newConnection();
         connection.initialize(serializer, writeBufferSize, objectBufferSize, directBuffers);
+        connection.udpCoalescing = udpCoalescing;
+        connection.setTcpWriteLimit(tcpWriteLimit);
+        connection.tcp.setCompression(compression);
+        // Until registered, as the connection may never be
+        connection.tcp.retainSegment = false;
+        Executor decoderExecutor = this.decoderExecutor;
+        if(decoderExecutor != null) connection.decoder = new FrameDecoder(connection, this, decoderExecutor);
         connection.endPoint = this;
         UdpConnection udp = this.udp;
         if(udp != null) connection.udp = udp;
 
+        Worker[] workers = this.workers;
+        if(workers == null){
+            registerOperation(connection, socketChannel, selector);
+            return;
+        }
+
+        // The channel must be registered by the worker thread, as its selector is likely blocked
+        Worker worker = workers[nextWorker];
+        nextWorker = (nextWorker + 1) % workers.length;
+        connection.worker = worker;
+        synchronized(connectionsLock){
+            registering.put(connection, socketChannel);
+        }
+        worker.post(() -> {
+            synchronized(connectionsLock){
+                // Closed with the server
+                if(registering.remove(connection) == null) return;
+            }
+            registerOperation(connection, socketChannel, worker.selector);
+        });
+    }
+
+    private void reject(SocketChannel socketChannel){
+        try{
+            // Reset the connection instead of lingering in TIME_WAIT
+            socketChannel.socket().setSoLinger(true, 0);
+        }catch(IOException ignored){}
+        try{
+            socketChannel.close();
+        }catch(IOException ignored){}
+    }
+
+    /**
+     * Limits the rate at which connections are accepted from an address, using a token bucket per address.
+     * The sockets exceeding it are closed before anything is allocated for them, and counted
+     * by {@link #getRateLimitedAccepts()}.
+     * @param perSecond sustained number of connections accepted per second from an address, 0 to disable the limit.
+     * @param burst maximum number of connections accepted at once from an address.
+     */
+    public void setAcceptRate(float perSecond, int burst){
+        acceptLimiter = perSecond <= 0 ? null : new AcceptLimiter(perSecond, burst);
+    }
+
+    /**
+     * Limits the number of connections which have not finished their registration, by closing the new ones
+     * exceeding it, which are counted by {@link #getPendingLimitedAccepts()}. <br>
+     * Connections that do not finish their registration before their {@link Connection#setTimeout(int) timeout} are closed.
+     * @param max 0 to not limit them.
+     */
+    public void setMaxPendingConnections(int max){
+        if(max < 0) throw new IllegalArgumentException("max cannot be < 0: " + max);
+        maxPendingConnections = max;
+    }
+
+    /** @return the number of connections which have not finished their registration. */
+    public int getPendingConnectionsSize(){
+        synchronized(connectionsLock){
+            return pendingConnections.size + registering.size;
+        }
+    }
+
+    /** @return the number of sockets closed because their address exceeded the {@link #setAcceptRate(float, int) accept rate}. */
+    public long getRateLimitedAccepts(){
+        return rateLimitedAccepts.sum();
+    }
+
+    /** @return the number of sockets closed because too many connections were {@link #setMaxPendingConnections(int) pending}. */
+    public long getPendingLimitedAccepts(){
+        return pendingLimitedAccepts.sum();
+    }
+
+    /** @return the number of sockets closed by the {@link ServerConnectFilter}. */
+    public long getFilteredAccepts(){
+        return filteredAccepts.sum();
+    }
+
+    /** @return the total number of rejected connection attempts. */
+    public long getRejectedAccepts(){
+        return getRateLimitedAccepts() + getPendingLimitedAccepts() + getFilteredAccepts();
+    }
+
+    private void registerOperation(Connection connection, SocketChannel socketChannel, Selector selector){
+        UdpConnection udp = connection.udp;
+
         try{
             SelectionKey selectionKey = connection.tcp.accept(selector, socketChannel);
             selectionKey.attach(connection);
 
-            int id = generateId();
-            connection.id = id;
-            connection.setConnected(true);
-            connection.addListener(dispatchListener);
+            int id;
+            synchronized(connectionsLock){
+                id = generateId();
+                connection.id = id;
+                connection.setConnected(true);
+                connection.addListener(dispatchListener);
 
-            if(udp == null) addConnection(connection);
-            else pendingConnections.put(id, connection);
+                if(udp == null) addConnection(connection);
+                else pendingConnections.put(id, connection);
+            }
 
             RegisterTCP registerConnection = new RegisterTCP();
             registerConnection.connectionID = id;
             connection.sendTCP(registerConnection);
+            connection.offerCompression();
 
             if(udp == null) connection.notifyConnected();
         }catch(IOException ex){
@@ -485,7 +816,7 @@ public class Server implements EndPoint{
         return new Connection();
     }
 
-    private void addStale(Connection con){
+    private synchronized void addStale(Connection con){
         if(con == null) return;
         Connection[] stales = this.stales;
         this.stales = stales == null ? new Connection[] {con} : Structs.add(stales, con);
@@ -507,34 +838,54 @@ public class Server implements EndPoint{
     }
 
     private void clearStales(){
-        Connection[] stales = this.stales;
-        this.stales = null;
+        Connection[] stales;
+        synchronized(this){
+            stales = this.stales;
+            this.stales = null;
+        }
         if(stales == null) return;
         Structs.each(this::removeConnection, stales);
     }
 
     protected void addConnection(Connection connection){
-        connections.add(connection);
-        connectionsMap.put(connection.getID(), connection);
-        if(connection.udpRemoteAddress == null) return;
-        udpAddressToConnection.put(connection.udpRemoteAddress, connection);
+        connection.tcp.retainSegment = true;
+        synchronized(connectionsLock){
+            connections.add(connection);
+            connectionsSnapshot = connections.toArray(Connection.class);
+            connectionsMap.put(connection.getID(), connection);
+            if(connection.udpRemoteAddress != null)
+                udpAddressToConnection.put(connection.udpRemoteAddress, connection);
+        }
+        if(connection.worker != null) connection.worker.add(connection);
     }
 
-    /** The connection will be disposed, it must not be used after that. */
+    /**
+     * The connection will be disposed, it must not be used after that. <br>
+     * If the connection is owned by a worker, it will be disposed by the worker thread.
+     */
     protected void removeConnection(Connection connection){
-        connection.dispose();
-        connections.remove(connection);
-        connectionsMap.remove(connection.getID());
-        pendingConnections.remove(connection.getID());
-        if(connection.udpRemoteAddress == null) return;
-        udpAddressToConnection.remove(connection.udpRemoteAddress);
+        if(connection.worker != null) connection.worker.remove(connection);
+        else connection.dispose();
+        synchronized(connectionsLock){
+            if(connections.remove(connection)){
+                connection.stats.addTo(removedStats);
+                connectionsSnapshot = connections.toArray(Connection.class);
+            }
+            connectionsMap.remove(connection.getID());
+            pendingConnections.remove(connection.getID());
+            if(connection.udpRemoteAddress != null)
+                udpAddressToConnection.remove(connection.udpRemoteAddress);
+        }
     }
 
     protected void clearConnections(){
-        connections.clear();
-        connectionsMap.clear();
-        pendingConnections.clear();
-        udpAddressToConnection.clear();
+        synchronized(connectionsLock){
+            connections.clear();
+            connectionsSnapshot = new Connection[0];
+            connectionsMap.clear();
+            pendingConnections.clear();
+            udpAddressToConnection.clear();
+        }
     }
 
     public Connection getConnection(int connectionID){
@@ -542,29 +893,73 @@ public class Server implements EndPoint{
     }
 
     public Connection getConnectionIndex(int index){
-        return connections.get(index);
+        return connectionsSnapshot[index];
     }
 
     public int getConnectionsSize(){
-        return connections.size;
+        return connectionsSnapshot.length;
+    }
+
+    /**
+     * Returns the registered connections at the time of the call. The array must not be modified.
+     * This method is thread safe.
+     */
+    public Connection[] getConnections(){
+        return connectionsSnapshot;
+    }
+
+    /**
+     * Returns the sum of the stats of all connections, including the ones removed since this server has been created.
+     * The write queue peak is the highest one of them.
+     */
+    public NetStats.Snapshot getStats(){
+        synchronized(connectionsLock){
+            NetStats.Snapshot snapshot = removedStats.snapshot();
+            for(int i = 0; i < connections.size; i++){
+                connections.get(i).stats.addTo(snapshot);
+            }
+            return snapshot;
+        }
     }
 
     public void eachConnections(Cons<Connection> consumer) {
-        connections.each(consumer);
+        for(Connection connection : connectionsSnapshot){
+            consumer.get(connection);
+        }
     }
 
-    // TODO: Provide mechanism for sending to multiple clients without serializing multiple times.
+    /*
+     * The broadcast methods serialize the object only once, into a pooled buffer,
+     * which is then copied into the write buffer of each targeted connection.
+     */
 
     public void sendToAllTCP(Object object){
-        for(int i = 0; i < connections.size; i++){
-            connections.get(i).sendTCP(object);
-        }
+        sendToAllTCP(null, object);
     }
 
     public void sendToAllExceptTCP(int connectionID, Object object){
-        for(int i = 0; i < connections.size; i++){
-            Connection connection = connections.get(i);
-            if(connection.getID() != connectionID) connection.sendTCP(object);
+        sendToAllTCP(c -> c.getID() != connectionID, object);
+    }
+
+    /**
+     * Sends the object to every connection accepted by the {@code filter}, using TCP.
+     * @param filter May be null to send to all connections.
+     */
+    public void sendToAllTCP(Boolf<Connection> filter, Object object){
+        if(object == null) throw new IllegalArgumentException("object cannot be null.");
+        Connection[] connections = connectionsSnapshot;
+        if(connections.length == 0) return;
+
+        ByteBuffer frame = ByteBufferPool.get().obtain(writeBufferSize, directBuffers);
+        try{
+            TcpConnection.writeFrame(serializer, frame, object);
+            frame.flip();
+
+            for(Connection connection : connections){
+                if(filter == null || filter.get(connection)) connection.sendTCPFrame(frame);
+            }
+        }finally{
+            ByteBufferPool.free(frame);
         }
     }
 
@@ -574,15 +969,37 @@ public class Server implements EndPoint{
     }
 
     public void sendToAllUDP(Object object){
-        for(int i = 0; i < connections.size; i++){
-            connections.get(i).sendUDP(object);
-        }
+        sendToAllUDP(null, object);
     }
 
     public void sendToAllExceptUDP(int connectionID, Object object){
-        for(int i = 0; i < connections.size; i++){
-            Connection connection = connections.get(i);
-            if(connection.getID() != connectionID) connection.sendUDP(object);
+        sendToAllUDP(c -> c.getID() != connectionID, object);
+    }
+
+    /**
+     * Sends the object to every connection accepted by the {@code filter}, using UDP.
+     * @param filter May be null to send to all connections.
+     */
+    public void sendToAllUDP(Boolf<Connection> filter, Object object){
+        if(object == null) throw new IllegalArgumentException("object cannot be null.");
+        Connection[] connections = connectionsSnapshot;
+        if(connections.length == 0) return;
+
+        ByteBuffer datagram = ByteBufferPool.get().obtain(objectBufferSize, directBuffers);
+        try{
+            try{
+                datagram.position(UdpConnection.headerLength(serializer));
+                serializer.write(datagram, object);
+            }catch(Exception ex){
+                throw new ArcNetException("Error serializing object of type: " + object.getClass().getName(), ex);
+            }
+            UdpConnection.frame(serializer, datagram);
+
+            for(Connection connection : connections){
+                if(filter == null || filter.get(connection)) connection.sendUDPFrame(datagram);
+            }
+        }finally{
+            ByteBufferPool.free(datagram);
         }
     }
 
@@ -610,7 +1027,31 @@ public class Server implements EndPoint{
      * Closes all open connections and the server port(s).
      */
     public void close(){
+        // Stop the workers first, to avoid disposing connections while they are being read
+        Worker[] workers = this.workers;
+        if(workers != null){
+            this.workers = null;
+            for(Worker worker : workers) worker.stop();
+        }
+
         eachConnections(Connection::dispose);
+        // The pending connections, and the accepted sockets the workers did not register
+        Seq<Connection> pending = new Seq<>(Connection.class);
+        Seq<SocketChannel> unregistered = new Seq<>(SocketChannel.class);
+        synchronized(connectionsLock){
+            pending.addAll(pendingConnections.values());
+            for(ObjectMap.Entry<Connection, SocketChannel> entry : registering){
+                pending.add(entry.key);
+                unregistered.add(entry.value);
+            }
+            registering.clear();
+        }
+        pending.each(Connection::dispose);
+        for(SocketChannel socketChannel : unregistered){
+            try{
+                socketChannel.close();
+            }catch(IOException ignored){}
+        }
         clearConnections();
         stales = null;
 
@@ -649,6 +1090,7 @@ public class Server implements EndPoint{
     @Override
     public void dispose(){
         close();
+        setDecoderExecutor(null);
         try{
             selector.close();
         }catch(IOException ignored){}
@@ -706,6 +1148,128 @@ public class Server implements EndPoint{
         }
     }
 
+    /**
+     * A selector thread owning a shard of the server connections.
+     * Connections are assigned to workers in a round-robin way when accepted.
+     */
+    protected class Worker implements Runnable{
+        public final int index;
+        final Selector selector;
+        final TaskQueue tasks = new TaskQueue();
+        /** Registered connections owned by this worker. Must only be used by the worker thread. */
+        final Seq<Connection> connections = new Seq<>(false, 16, Connection.class);
+        private volatile boolean running;
+        private Thread thread;
+
+        Worker(int index) throws IOException{
+            this.index = index;
+            Selector s;
+            try{
+                s = NioUtils.newOptimizedSelector();
+            }catch(RuntimeException ignored){
+                s = NioUtils.newSelector();
+            }
+            selector = s;
+        }
+
+        /** Runs the task on the worker thread. This method is thread safe. */
+        public void post(Runnable task){
+            tasks.post(task);
+            selector.wakeup();
+        }
+
+        void add(Connection connection){
+            if(Thread.currentThread() == thread) connections.add(connection);
+            else post(() -> connections.add(connection));
+        }
+
+        void remove(Connection connection){
+            post(() -> {
+                connections.remove(connection);
+                connection.dispose();
+            });
+        }
+
+        void start(){
+            running = true;
+            thread = Threads.daemon("Server Worker " + index, this);
+        }
+
+        void stop(){
+            running = false;
+            selector.wakeup();
+            if(thread == null || Thread.currentThread() == thread) return;
+            try{
+                thread.join(5000);
+            }catch(InterruptedException ignored){}
+        }
+
+        @Override
+        public void run(){
+            try{
+                while(running){
+                    runTasks();
+                    if(selector.select(250) > 0) processKeys();
+                    runTasks();
+                    long time = Time.millis();
+                    for(int i = 0; i < connections.size; i++){
+                        Connection connection = connections.items[i];
+                        try{
+                            updateConnection(connection, time);
+                        }catch(RuntimeException ex){
+                            failed(connection, ex);
+                        }
+                    }
+                }
+            }catch(IOException ex){
+                ArcNet.handleError(ex);
+                // The connections of a failed selector would never be read again
+                for(int i = 0; i < connections.size; i++){
+                    connections.items[i].close(DcReason.error);
+                }
+            }finally{
+                running = false;
+                tasks.clear();
+                try{
+                    selector.close();
+                }catch(IOException ignored){}
+            }
+        }
+
+        /** A task throwing does not stop the worker, the remaining tasks are run after the next select. */
+        private void runTasks(){
+            try{
+                tasks.run();
+            }catch(RuntimeException ex){
+                ArcNet.handleError(new ArcNetException("Error in task of server worker " + index + ".", ex));
+            }
+        }
+
+        private void processKeys(){
+            Set<SelectionKey> keys = selector.selectedKeys();
+            for(Iterator<SelectionKey> iter = keys.iterator(); iter.hasNext();){
+                SelectionKey selectionKey = iter.next();
+                iter.remove();
+                Connection fromConnection = (Connection)selectionKey.attachment();
+                if(fromConnection == null || isStale(fromConnection)) continue;
+
+                try{
+                    doSelectTCP(selectionKey, fromConnection);
+                }catch(CancelledKeyException ex){
+                    fromConnection.close(DcReason.error);
+                }catch(IOException | RuntimeException ex){
+                    failed(fromConnection, ex);
+                }
+            }
+        }
+
+        /** Reports an error thrown while handling a connection, and closes it, instead of stopping the worker. */
+        private void failed(Connection connection, Exception ex){
+            ArcNet.handleError(new ArcNetException("Error in server worker " + index + " for connection: " + connection, ex));
+            connection.close(DcReason.error);
+        }
+    }
+
     public interface ServerConnectFilter{
         boolean accept(String address);
     }
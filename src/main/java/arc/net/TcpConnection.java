@@ -2,11 +2,14 @@
 
 package arc.net;
 
-import java.io.IOException;
+import java.io.*;
 import java.net.*;
-import java.nio.ByteBuffer;
+import java.nio.*;
 import java.nio.channels.*;
 
+import arc.func.Boolc;
+import arc.net.FrameworkMessage.Compression;
+import arc.struct.Queue;
 import arc.util.Disposable;
 import arc.util.Time;
 import arc.util.pooling.ByteBufferPool;
@@ -16,33 +19,79 @@ import arc.util.pooling.ByteBufferPool;
  */
 @SuppressWarnings("resource")
 public class TcpConnection implements Disposable{
+    /** The default limit of the queued bytes, as a multiple of the high watermark. */
+    public static final int defaultLimitFactor = 16;
+
     SocketChannel socketChannel;
     int keepAliveMillis = 8000;
-    final ByteBuffer readBuffer, writeBuffer;
+    /** Obtained on the first read, so that connections which never send anything do not hold it. */
+    ByteBuffer readBuffer;
+    final int objectBufferSize;
     int timeoutMillis = 12000;
     float idleThreshold = 0.1f;
+    /**
+     * When more than {@link #highWatermark} bytes are queued, the connection is no longer writable,
+     * until the queue drains below {@link #lowWatermark} bytes.
+     */
+    int highWatermark, lowWatermark;
+    /**
+     * The most bytes that can be queued, above which the connection is closed with an error,
+     * as the remote end is not reading them. 0 for {@link #defaultLimitFactor} times the high watermark.
+     * The bytes of file regions are not counted, as they are not held in memory.
+     */
+    int maxQueuedBytes;
+    /** Notified, outside of the write lock, when the connection becomes writable or not. */
+    Boolc writabilityListener;
+    /** Replaced by the stats of the owning {@link Connection}. */
+    NetStats stats = new NetStats();
+    /** The compression state, null if compression is not enabled on this end. */
+    volatile NetCompression.Codec codec;
 
     final NetSerializer serialization;
+    /** Size of the pooled segments in which objects are serialized before being written to the socket. */
+    final int segmentSize;
+    final boolean direct;
     private SelectionKey selectionKey;
     private volatile long lastWriteTime, lastReadTime;
     private int currentObjectLength;
     private final Object writeLock = new Object();
-    private volatile boolean readPaused, disposed;
+    /**
+     * Contains segments ({@link ByteBuffer}) and {@link FileRegion file regions}.
+     * Segments are in read mode, the pending bytes are between their position and limit.
+     */
+    private final Queue<Object> writeQueue = new Queue<>(8);
+    private ByteBuffer[] gatherBuffers = new ByteBuffer[8];
+    private volatile int queuedBytes;
+    /** The part of the queued bytes in file regions. Must be used with the {@link #writeLock}. */
+    private int queuedFileBytes;
+    private volatile boolean readPaused, disposed, writable = true;
+    /** Whether reading is paused by the {@link FrameDecoder}, independently of {@link #readPaused}. */
+    private volatile boolean readThrottled;
+    /**
+     * Whether the last segment is kept once written, for the next objects.
+     * Disabled by the server while the connection is pending, so that half-open connections do not hold a segment.
+     */
+    volatile boolean retainSegment = true;
 
     public TcpConnection(NetSerializer serialization, int writeBufferSize, int objectBufferSize, boolean direct){
         this.serialization = serialization;
-        writeBuffer = ByteBufferPool.get().obtain(writeBufferSize, direct);
-        readBuffer = ByteBufferPool.get().obtain(objectBufferSize, direct);
-        readBuffer.flip();
+        this.segmentSize = writeBufferSize;
+        this.direct = direct;
+        highWatermark = writeBufferSize;
+        lowWatermark = writeBufferSize / 2;
+        this.objectBufferSize = objectBufferSize;
     }
 
     public SelectionKey accept(Selector selector, SocketChannel socketChannel) throws IOException{
         checkDisposed();
-        writeBuffer.clear();
-        readBuffer.clear();
-        readBuffer.flip();
+        clearWriteQueue();
+        resetCompression();
+        if(readBuffer != null){
+            readBuffer.clear();
+            readBuffer.flip();
+        }
         currentObjectLength = 0;
-        readPaused = false;
+        readPaused = readThrottled = false;
 
         try{
             this.socketChannel = socketChannel;
@@ -63,11 +112,14 @@ public class TcpConnection implements Disposable{
     public void connect(Selector selector, SocketAddress remoteAddress, int timeout) throws IOException{
         checkDisposed();
         close();
-        writeBuffer.clear();
-        readBuffer.clear();
-        readBuffer.flip();
+        clearWriteQueue();
+        resetCompression();
+        if(readBuffer != null){
+            readBuffer.clear();
+            readBuffer.flip();
+        }
         currentObjectLength = 0;
-        readPaused = false;
+        readPaused = readThrottled = false;
 
         try{
             SocketChannel socketChannel = selector.provider().openSocketChannel();
@@ -89,21 +141,63 @@ public class TcpConnection implements Disposable{
     }
 
     public Object readObject() throws IOException{
+        int length = nextFrame();
+        if(length < 0) return null;
+
+        int startPosition = readBuffer.position();
+        int oldLimit = readBuffer.limit();
+        readBuffer.limit(startPosition + length);
+        try{
+            return decode(readBuffer);
+        }finally{
+            readBuffer.limit(oldLimit);
+        }
+    }
+
+    /**
+     * Reads the next frame into a pooled buffer, to be {@link #decode(ByteBuffer) decoded} by another thread.
+     * The buffer must be freed with {@link ByteBufferPool#free(ByteBuffer)} once decoded.
+     * @return null if the frame is not complete yet.
+     */
+    public ByteBuffer readFrame() throws IOException{
+        int length = nextFrame();
+        if(length < 0) return null;
+
+        ByteBuffer frame = ByteBufferPool.get().obtain(length, direct);
+        int oldLimit = readBuffer.limit();
+        readBuffer.limit(readBuffer.position() + length);
+        frame.put(readBuffer);
+        readBuffer.limit(oldLimit);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Reads from the socket until the next frame is complete.
+     * @return the frame length, the frame starting at the read buffer position, or -1 if it is not complete yet.
+     */
+    private int nextFrame() throws IOException{
         checkDisposed();
         SocketChannel socketChannel = checkConnected();
-        if(readPaused) return null; // ensure
+        if(readBuffer == null){
+            readBuffer = ByteBufferPool.get().obtain(objectBufferSize, direct);
+            readBuffer.flip();
+        }
 
         if(currentObjectLength == 0){
             // Read the length of the next object from the socket.
             int lengthLength = serialization.getLengthLength();
             if(readBuffer.remaining() < lengthLength){
+                // Pausing only stops reading the socket, otherwise the frames already read would wait for more bytes
+                if(readPaused || readThrottled) return -1;
                 readBuffer.compact();
                 int bytesRead = socketChannel.read(readBuffer);
                 readBuffer.flip();
                 if(bytesRead == -1) throw new SocketException("Connection is closed.");
+                stats.tcpReceived(bytesRead);
                 lastReadTime = Time.millis();
 
-                if(readBuffer.remaining() < lengthLength) return null;
+                if(readBuffer.remaining() < lengthLength) return -1;
             }
             currentObjectLength = serialization.readLength(readBuffer);
 
@@ -116,101 +210,457 @@ public class TcpConnection implements Disposable{
         int length = currentObjectLength;
         if(readBuffer.remaining() < length){
             // Fill the tcpInputStream.
+            if(readPaused || readThrottled) return -1;
             readBuffer.compact();
             int bytesRead = socketChannel.read(readBuffer);
             readBuffer.flip();
             if(bytesRead == -1) throw new SocketException("Connection is closed.");
+            stats.tcpReceived(bytesRead);
             lastReadTime = Time.millis();
 
-            if(readBuffer.remaining() < length) return null;
+            if(readBuffer.remaining() < length) return -1;
         }
         currentObjectLength = 0;
+        return length;
+    }
 
-        int startPosition = readBuffer.position();
-        int oldLimit = readBuffer.limit();
-        readBuffer.limit(startPosition + length);
+    /**
+     * Deserializes the object of a frame, between the position and the limit of the buffer.
+     * Frames must be decoded in order, as they can switch the decompression on.
+     */
+    Object decode(ByteBuffer frame){
         Object object;
+        long startTime = Time.nanos();
+        NetCompression.Codec codec = this.codec;
+        ByteBuffer input = frame;
         try{
-            object = serialization.read(readBuffer);
+            if(codec != null && codec.reading) input = codec.decode(frame, objectBufferSize);
+            object = serialization.read(input);
+        }catch(ArcNetException ex){
+            throw ex;
         }catch(Exception ex){
             throw new ArcNetException("Error during deserialization.", ex);
-        }finally {
-            readBuffer.limit(oldLimit);
         }
 
-        if(readBuffer.position() - startPosition != length)
+        if(input.hasRemaining() || frame.hasRemaining())
             throw new ArcNetException("Incorrect number of bytes ("
-                                    + (startPosition + length - readBuffer.position())
+                                    + (input.hasRemaining() ? input.remaining() : frame.remaining())
                                     + " remaining) used to deserialize object: " + object);
 
+        stats.deserializationNanos.add(Time.nanos() - startTime);
+        stats.tcpPacketsReceived.increment();
+        // The following frames of the remote end are compressed
+        if(codec != null && object instanceof Compression && ((Compression)object).isReply) codec.reading = true;
         return object;
     }
 
     public void writeOperation() throws IOException{
+        boolean changed;
         synchronized(writeLock){
             if(writeToSocket()){
                 // Write successful, clear OP_WRITE.
-                selectionKey.interestOps(readPaused ? 0 : SelectionKey.OP_READ);
+                selectionKey.interestOps(readPaused || readThrottled ? 0 : SelectionKey.OP_READ);
             }
             lastWriteTime = Time.millis();
+            changed = updateWritability();
         }
+        if(changed) notifyWritability();
     }
 
+    /**
+     * Writes as much queued segments as possible in a single gathering write,
+     * and file regions using {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+     * Fully written segments are freed, except the last one which is kept for the next objects if {@link #retainSegment}.
+     * @return whether all queued bytes have been written.
+     */
     private boolean writeToSocket() throws IOException{
         checkDisposed();
         SocketChannel socketChannel = checkConnected();
+        Queue<Object> queue = writeQueue;
+
+        while(queuedBytes > 0){
+            freeWrittenSegments();
+            long written;
+
+            if(queue.first() instanceof FileRegion){
+                FileRegion region = (FileRegion)queue.first();
+                written = region.transferTo(socketChannel);
+                queuedFileBytes -= (int)written;
+                if(region.remaining == 0){
+                    queue.removeFirst();
+                    region.release();
+                }
+            }else{
+                int count = 0;
+                while(count < queue.size && queue.get(count) instanceof ByteBuffer) count++;
+                ByteBuffer[] buffers = gatherBuffers;
+                if(buffers.length < count) buffers = gatherBuffers = new ByteBuffer[Math.max(count, buffers.length * 2)];
+                for(int i = 0; i < count; i++) buffers[i] = (ByteBuffer)queue.get(i);
+
+                written = socketChannel.write(buffers, 0, count);
+                for(int i = 0; i < count; i++) buffers[i] = null;
+            }
 
-        ByteBuffer buffer = writeBuffer;
-        buffer.flip();
-        while(buffer.hasRemaining()){
-            if(socketChannel.write(buffer) == 0) break;
+            queuedBytes -= (int)written;
+            stats.tcpSent((int)written);
+            if(written == 0) break;
+        }
+        freeWrittenSegments();
+        if(queuedBytes > 0) stats.partialWrites.increment();
+
+        if(queuedBytes == 0 && queue.size == 1 && queue.first() instanceof ByteBuffer){
+            if(retainSegment){
+                // Reuse the last segment from the start.
+                ByteBuffer last = (ByteBuffer)queue.first();
+                last.position(0);
+                last.limit(0);
+            }else{
+                ByteBufferPool.free((ByteBuffer)queue.removeFirst());
+            }
         }
-        buffer.compact();
+        return queuedBytes == 0;
+    }
 
-        return buffer.position() == 0;
+    private void freeWrittenSegments(){
+        Queue<Object> queue = writeQueue;
+        while(queue.size > 1 && queue.first() instanceof ByteBuffer && !((ByteBuffer)queue.first()).hasRemaining()){
+            ByteBufferPool.free((ByteBuffer)queue.removeFirst());
+        }
     }
 
     /** This method is thread safe. */
     public int send(Object object) throws IOException{
         checkDisposed();
         checkConnected();
+        boolean changed;
+        int length;
         synchronized(writeLock){
-            int start = writeBuffer.position();
-            int lengthLength = serialization.getLengthLength();
+            // Disposing clears the queue with the lock held, so nothing is queued afterwards
+            checkDisposed();
+            boolean wasEmpty = queuedBytes == 0;
+            length = queue(object, 0);
+            // The following frames of this end are compressed
+            NetCompression.Codec codec = this.codec;
+            if(codec != null && object instanceof Compression && ((Compression)object).isReply) codec.writing = true;
+
+            changed = flush(wasEmpty, length);
+        }
+        if(changed) notifyWritability();
+        return length;
+    }
 
-            try{
-                // Leave room for length.
-                writeBuffer.position(writeBuffer.position() + lengthLength);
+    /**
+     * Queues a frame made of the serialized {@code header} followed by {@code count} bytes of the file,
+     * which will be transferred straight to the socket, without being copied to memory. <br>
+     * The frame length includes the file bytes, so the header must be serialized as the beginning of an object
+     * holding {@code count} bytes, for the remote end to deserialize the frame as a normal object. <br>
+     * This method is thread safe.
+     * @param close whether to close the file channel once the region has been written, or the connection cleared.
+     */
+    public int sendFile(Object header, FileChannel channel, long position, int count, boolean close) throws IOException{
+        checkDisposed();
+        checkConnected();
+        if(count <= 0) throw new IllegalArgumentException("count must be positive.");
+        boolean changed;
+        int length;
+        synchronized(writeLock){
+            // Disposing clears the queue with the lock held, so nothing is queued afterwards
+            checkDisposed();
+            boolean wasEmpty = queuedBytes == 0;
+            length = queue(header, count) + count;
+            writeQueue.addLast(new FileRegion(channel, position, count, close));
+            queuedFileBytes += count;
+
+            changed = flush(wasEmpty, length);
+        }
+        if(changed) notifyWritability();
+        return length;
+    }
 
-                // Write data.
-                serialization.write(writeBuffer, object);
-            }catch(Throwable ex){
-                throw new ArcNetException("Error serializing object of type: " + object.getClass().getName(), ex);
+    /**
+     * Queues an already serialized frame, length included, as returned by {@link #writeFrame(NetSerializer, ByteBuffer, Object)}.
+     * The frame position is left untouched, so the same frame can be sent to several connections. <br>
+     * This method is thread safe.
+     */
+    public int sendFrame(ByteBuffer frame) throws IOException{
+        checkDisposed();
+        checkConnected();
+        boolean changed;
+        int length;
+        synchronized(writeLock){
+            // Disposing clears the queue with the lock held, so nothing is queued afterwards
+            checkDisposed();
+            boolean wasEmpty = queuedBytes == 0;
+            NetCompression.Codec codec = this.codec;
+            if(codec != null && codec.writing){
+                // Re-encode the payload, as the frame was serialized without compression
+                int position = frame.position(), lengthLength = serialization.getLengthLength();
+                ByteBuffer raw = codec.raw(Math.max(segmentSize, frame.remaining()));
+                frame.position(position + lengthLength);
+                raw.put(frame);
+                frame.position(position);
+                length = append(codec.encode(serialization, 0));
+            }else{
+                length = append(frame);
+            }
+
+            changed = flush(wasEmpty, length);
+        }
+        if(changed) notifyWritability();
+        return length;
+    }
+
+    /**
+     * Copies the frame at the end of the last queued segment, or in a new segment if there is not enough room left.
+     * The frame position is left untouched. Must be called with the {@link #writeLock}.
+     * @return the number of bytes queued.
+     */
+    private int append(ByteBuffer frame){
+        int length = frame.remaining();
+        ByteBuffer segment = lastSegment();
+        if(segment == null || segment.capacity() - segment.limit() < length){
+            segment = ByteBufferPool.get().obtain(Math.max(segmentSize, length), direct);
+            segment.limit(0);
+            writeQueue.addLast(segment);
+        }
+
+        int position = frame.position(), start = segment.position(), end = segment.limit();
+        segment.limit(end + length);
+        segment.position(end);
+        segment.put(frame);
+        segment.position(start);
+        frame.position(position);
+        return length;
+    }
+
+    /** @return the last queued segment, or {@code null} if the queue is empty or ends with a file region. */
+    private ByteBuffer lastSegment(){
+        Object last = writeQueue.isEmpty() ? null : writeQueue.last();
+        return last instanceof ByteBuffer ? (ByteBuffer)last : null;
+    }
+
+    /**
+     * Serializes the object at the end of the last queued segment,
+     * or in a new segment if there is not enough room left.
+     * @param trailing number of bytes that will follow the object in the frame.
+     * @return the number of bytes queued.
+     */
+    private int queue(Object object, int trailing){
+        NetCompression.Codec codec = this.codec;
+        if(codec != null && codec.writing) return queueCompressed(codec, object, trailing);
+
+        ByteBuffer segment = lastSegment();
+        if(segment != null && segment.capacity() - segment.limit() > serialization.getLengthLength()){
+            int start = segment.position(), end = segment.limit();
+            segment.limit(segment.capacity());
+            segment.position(end);
+            long startTime = Time.nanos();
+            try{
+                int length = writeFrame(serialization, segment, object, trailing) - end;
+                stats.serializationNanos.add(Time.nanos() - startTime);
+                segment.limit(end + length);
+                segment.position(start);
+                return length;
+            }catch(ArcNetException ex){
+                segment.limit(end);
+                segment.position(start);
+                // Else retry in a new segment
+                if(!(ex.getCause() instanceof BufferOverflowException)) throw ex;
             }
-            int end = writeBuffer.position();
+        }
 
-            // Write data length.
-            writeBuffer.position(start);
-            serialization.writeLength(writeBuffer, end - lengthLength - start);
-            writeBuffer.position(end);
+        segment = ByteBufferPool.get().obtain(segmentSize, direct);
+        int length;
+        long startTime = Time.nanos();
+        try{
+            length = writeFrame(serialization, segment, object, trailing);
+            stats.serializationNanos.add(Time.nanos() - startTime);
+        }catch(ArcNetException ex){
+            ByteBufferPool.free(segment);
+            throw ex;
+        }
+        segment.flip();
+        writeQueue.addLast(segment);
+        return length;
+    }
 
+    /**
+     * Serializes the object in the scratch buffer of the codec, to queue it as a compressed frame.
+     * @see #queue(Object, int)
+     */
+    private int queueCompressed(NetCompression.Codec codec, Object object, int trailing){
+        ByteBuffer raw = codec.raw(segmentSize);
+        long startTime = Time.nanos();
+        try{
+            serialization.write(raw, object);
+        }catch(Throwable ex){
+            throw new ArcNetException("Error serializing object of type: " + object.getClass().getName(), ex);
+        }
+        stats.serializationNanos.add(Time.nanos() - startTime);
+        return append(codec.encode(serialization, trailing));
+    }
+
+    /**
+     * Must be called with the {@link #writeLock}, after {@code length} bytes have been queued.
+     * @return whether the writability changed.
+     */
+    private boolean flush(boolean wasEmpty, int length) throws IOException{
+        queuedBytes += length;
+        stats.queued(queuedBytes);
+        stats.tcpPacketsSent.increment();
+        try{
             // Write to socket if no data was queued.
-            if(start == 0 && !writeToSocket()){
+            if(wasEmpty && !writeToSocket()){
                 // A partial write, set OP_WRITE to be notified when more
                 // writing can occur.
-                selectionKey.interestOps((readPaused ? 0 : SelectionKey.OP_READ) | SelectionKey.OP_WRITE);
+                selectionKey.interestOps((readPaused || readThrottled ? 0 : SelectionKey.OP_READ) | SelectionKey.OP_WRITE);
             }else{
                 // Full write, wake up selector so idle event will be fired.
                 selectionKey.selector().wakeup();
             }
+        }catch(CancelledKeyException ex){
+            // Closed by another thread
+            throw new SocketException("Connection is closed.");
+        }
 
-            lastWriteTime = Time.millis();
-            return end - start;
+        lastWriteTime = Time.millis();
+        // Checked once written, as the socket may take more than the limit at once
+        long limit = getMaxQueuedBytes();
+        if(queuedBytes - queuedFileBytes > limit)
+            throw new ArcNetException("Write queue exceeded its limit of " + limit + " bytes: " + (queuedBytes - queuedFileBytes) + " bytes queued.");
+        return updateWritability();
+    }
+
+    /** Must be called with the {@link #writeLock}. */
+    private boolean updateWritability(){
+        if(writable && queuedBytes > highWatermark){
+            writable = false;
+            return true;
+        }else if(!writable && queuedBytes <= lowWatermark){
+            writable = true;
+            return true;
+        }
+        return false;
+    }
+
+    private void notifyWritability(){
+        Boolc listener = writabilityListener;
+        if(listener != null) listener.get(writable);
+    }
+
+    private void clearWriteQueue(){
+        synchronized(writeLock){
+            while(!writeQueue.isEmpty()){
+                Object next = writeQueue.removeFirst();
+                if(next instanceof FileRegion) ((FileRegion)next).release();
+                else ByteBufferPool.free((ByteBuffer)next);
+            }
+            queuedBytes = queuedFileBytes = 0;
+            writable = true;
         }
     }
 
+    /** @return the number of bytes waiting to be written to the socket. */
+    public int getQueuedBytes(){
+        return queuedBytes;
+    }
+
+    /** @return whether the queued bytes have not exceeded the high watermark, or have drained below the low one since. */
+    public boolean isWritable(){
+        return writable;
+    }
+
+    /**
+     * Sets the amount of queued bytes above which the connection stops being writable,
+     * and below which it becomes writable again.
+     */
+    public void setWatermarks(int lowWatermark, int highWatermark){
+        if(highWatermark <= 0) throw new IllegalArgumentException("highWatermark must be positive.");
+        if(lowWatermark < 0 || lowWatermark > highWatermark)
+            throw new IllegalArgumentException("lowWatermark must be between 0 and highWatermark.");
+        boolean changed;
+        synchronized(writeLock){
+            this.lowWatermark = lowWatermark;
+            this.highWatermark = highWatermark;
+            changed = updateWritability();
+        }
+        if(changed) notifyWritability();
+    }
+
+    /**
+     * Sets the most bytes that can be queued, not counting the file regions.
+     * Once exceeded, sending throws and the connection is closed with an error.
+     * @param maxQueuedBytes 0 for {@link #defaultLimitFactor} times the high watermark.
+     */
+    public void setMaxQueuedBytes(int maxQueuedBytes){
+        if(maxQueuedBytes < 0) throw new IllegalArgumentException("maxQueuedBytes cannot be < 0: " + maxQueuedBytes);
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    /** @return the most bytes that can be queued before the connection is closed. */
+    public long getMaxQueuedBytes(){
+        return maxQueuedBytes > 0 ? maxQueuedBytes : (long)highWatermark * defaultLimitFactor;
+    }
+
+    /** Enables the compression on this end, which still has to be negotiated with the remote end. */
+    void setCompression(NetCompression compression){
+        NetCompression.Codec old = codec;
+        codec = compression == null ? null : new NetCompression.Codec(compression);
+        if(old != null){
+            synchronized(writeLock){
+                old.dispose();
+            }
+        }
+    }
+
+    private void resetCompression(){
+        NetCompression.Codec codec = this.codec;
+        if(codec == null) return;
+        synchronized(writeLock){
+            codec.reset();
+        }
+    }
+
+    /** @return whether the frames are compressed in both directions. */
+    public boolean isCompressed(){
+        NetCompression.Codec codec = this.codec;
+        return codec != null && codec.writing && codec.reading;
+    }
+
+    /**
+     * Serializes the object, prefixed by its length, at the current position of the buffer.
+     * @return the buffer position after the frame.
+     */
+    static int writeFrame(NetSerializer serialization, ByteBuffer buffer, Object object){
+        return writeFrame(serialization, buffer, object, 0);
+    }
+
+    /** @param trailing number of bytes that will follow the object, and are included in the frame length. */
+    static int writeFrame(NetSerializer serialization, ByteBuffer buffer, Object object, int trailing){
+        int start = buffer.position();
+        int lengthLength = serialization.getLengthLength();
+
+        try{
+            // Leave room for length.
+            buffer.position(buffer.position() + lengthLength);
+
+            // Write data.
+            serialization.write(buffer, object);
+        }catch(Throwable ex){
+            buffer.position(start);
+            throw new ArcNetException("Error serializing object of type: " + object.getClass().getName(), ex);
+        }
+        int end = buffer.position();
+
+        // Write data length.
+        buffer.position(start);
+        serialization.writeLength(buffer, end - lengthLength - start + trailing);
+        buffer.position(end);
+        return end;
+    }
+
     public void close(){
-        readPaused = false;
+        readPaused = readThrottled = false;
         if(socketChannel == null) return;
         try{
             socketChannel.close();
@@ -228,9 +678,18 @@ public class TcpConnection implements Disposable{
         if(disposed) return;
         disposed = true;
         close();
-        selectionKey = null;
-        ByteBufferPool.free(readBuffer);
-        ByteBufferPool.free(writeBuffer);
+        synchronized(writeLock){
+            selectionKey = null;
+        }
+        if(readBuffer != null) ByteBufferPool.free(readBuffer);
+        readBuffer = null;
+        clearWriteQueue();
+        NetCompression.Codec codec = this.codec;
+        if(codec != null){
+            synchronized(writeLock){
+                codec.dispose();
+            }
+        }
     }
 
     @Override
@@ -239,7 +698,8 @@ public class TcpConnection implements Disposable{
     }
 
     /**
-     * Pause/resume reading. Does nothing if not connected.
+     * Pause/resume reading from the socket. Does nothing if not connected.
+     * The objects of the bytes already read are still received.
      * Be aware that pausing for too long can lead to a timeout.
      */
     public void pauseReading(boolean paused){
@@ -247,12 +707,33 @@ public class TcpConnection implements Disposable{
         synchronized(writeLock){
             if(readPaused == paused || selectionKey == null) return;
             readPaused = paused;
-            int ops = selectionKey.interestOps();
-            selectionKey.interestOps(paused ? (ops & ~SelectionKey.OP_READ) : (ops | SelectionKey.OP_READ));
-            selectionKey.selector().wakeup();
+            updateReadInterest();
+        }
+    }
+
+    /**
+     * Pause/resume reading while the {@link FrameDecoder} has too many pending frames.
+     * Reading stays paused while either this or {@link #pauseReading(boolean)} pauses it.
+     */
+    void throttleReading(boolean throttled){
+        if(socketChannel == null) return;
+        synchronized(writeLock){
+            if(readThrottled == throttled || selectionKey == null) return;
+            readThrottled = throttled;
+            try{
+                updateReadInterest();
+            }catch(CancelledKeyException ignored){
+                // Closed by another thread
+            }
         }
     }
 
+    private void updateReadInterest(){
+        int ops = selectionKey.interestOps();
+        selectionKey.interestOps(readPaused || readThrottled ? (ops & ~SelectionKey.OP_READ) : (ops | SelectionKey.OP_READ));
+        selectionKey.selector().wakeup();
+    }
+
     public boolean isReadingPaused() {
         return readPaused;
     }
@@ -270,4 +751,34 @@ public class TcpConnection implements Disposable{
         if(channel == null) throw new SocketException("Connection is closed.");
         return channel;
     }
+
+    /** A region of a file, queued to be transferred straight to the socket. */
+    static class FileRegion{
+        final FileChannel channel;
+        final boolean close;
+        long position, remaining;
+
+        FileRegion(FileChannel channel, long position, long count, boolean close){
+            this.channel = channel;
+            this.position = position;
+            this.remaining = count;
+            this.close = close;
+        }
+
+        long transferTo(WritableByteChannel target) throws IOException{
+            long transferred = channel.transferTo(position, remaining, target);
+            if(transferred == 0 && position >= channel.size())
+                throw new EOFException("File region is beyond the end of the file.");
+            position += transferred;
+            remaining -= transferred;
+            return transferred;
+        }
+
+        void release(){
+            if(!close) return;
+            try{
+                channel.close();
+            }catch(IOException ignored){}
+        }
+    }
 }
@@ -11,16 +11,25 @@ abstract public class TcpIdleSender implements NetListener{
             start();
         }
         do{
-            Object object = next();
-            if(object == null){
+            if(!send(connection)){
                 connection.removeListener(this);
                 break;
-            }else{
-                connection.sendTCP(object);
             }
         }while(connection.isIdle());
     }
 
+    /**
+     * Sends the {@link #next() next object}.
+     * Subclasses can override this method to send something else than a single object.
+     * @return false if there is nothing more to send.
+     */
+    protected boolean send(Connection connection){
+        Object object = next();
+        if(object == null) return false;
+        connection.sendTCP(object);
+        return true;
+    }
+
     /**
      * Called once, before the first send.
      * Subclasses can override this method to send something
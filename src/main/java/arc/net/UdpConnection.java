@@ -16,6 +16,9 @@ import arc.util.pooling.ByteBufferPool;
  */
 @SuppressWarnings("resource")
 public class UdpConnection implements Disposable{
+    /** Maximum number of datagrams read per select, so TCP connections are not starved. */
+    static final int maxBatchSize = 64;
+
     InetSocketAddress connectedAddress;
     DatagramChannel datagramChannel;
     int keepAliveMillis = 19000;
@@ -25,6 +28,12 @@ public class UdpConnection implements Disposable{
     private final Object writeLock = new Object();
     private long lastCommunicationTime;
     private volatile boolean readPaused, disposed;
+    /** Whether the read buffer has been flipped, and objects are being read from it. */
+    private boolean reading;
+    /** Whether the datagram being read is coalesced, with a length before each object. */
+    private boolean coalesced;
+    /** On a client, replaced by the stats of the client connection. */
+    NetStats stats = new NetStats();
 
     public UdpConnection(NetSerializer serialization, int bufferSize, boolean direct){
         this.serialization = serialization;
@@ -80,35 +89,114 @@ public class UdpConnection implements Disposable{
         if(datagramChannel == null) throw new SocketException("Connection is closed.");
         if(readPaused) return null;
         lastCommunicationTime = Time.millis();
+        // Drop what remains of the previous datagram
+        readBuffer.clear();
+        reading = false;
 
-        if(!datagramChannel.isConnected())
-            return (InetSocketAddress)datagramChannel.receive(readBuffer); //always null on Android >= 5.0
-        datagramChannel.read(readBuffer);
+        if(!datagramChannel.isConnected()){
+            InetSocketAddress address = (InetSocketAddress)datagramChannel.receive(readBuffer); //always null on Android >= 5.0
+            if(address != null) stats.udpReceived(readBuffer.position());
+            return address;
+        }
+        if(datagramChannel.read(readBuffer) <= 0) return null;
+        stats.udpReceived(readBuffer.position());
         return connectedAddress;
     }
 
+    /**
+     * Reads the next object of the last received datagram.
+     * A datagram may contain several objects, if the remote end {@link Connection#setUDPCoalescing(int) coalesces} them.
+     * @return null if there is no more objects in the datagram.
+     */
     public Object readObject(){
         if(disposed) return null;
         if(readPaused) {
             readBuffer.clear();
+            reading = false;
             return null;
         }
-        readBuffer.flip();
+        if(!reading){
+            readBuffer.flip();
+            reading = true;
+            coalesced = readMarker(serialization, readBuffer);
+        }
+        if(!readBuffer.hasRemaining()){
+            readBuffer.clear();
+            reading = false;
+            return null;
+        }
+
+        long startTime = Time.nanos();
         try{
-            try{
-                Object object = serialization.read(readBuffer);
+            Object object;
+            if(coalesced){
+                if(readBuffer.remaining() < serialization.getLengthLength())
+                    throw new ArcNetException("Incomplete length of coalesced object: " + readBuffer.remaining() + " bytes remaining.");
+                int length = serialization.readLength(readBuffer), limit = readBuffer.limit(), end = readBuffer.position() + length;
+                if(length > readBuffer.remaining())
+                    throw new ArcNetException("Invalid length of coalesced object: " + length + " (" + readBuffer.remaining() + " bytes remaining)");
+
+                readBuffer.limit(end);
+                try{
+                    object = serialization.read(readBuffer);
+                }finally{
+                    readBuffer.limit(limit);
+                }
+                if(readBuffer.position() != end)
+                    throw new ArcNetException("Incorrect number of bytes (" + (end - readBuffer.position())
+                                            + " remaining) used to deserialize object: " + object);
+            }else{
+                object = serialization.read(readBuffer);
                 if(readBuffer.hasRemaining())
                     throw new ArcNetException("Incorrect number of bytes (" + readBuffer.remaining()
                                             + " remaining) used to deserialize object: " + object);
-                return object;
-            }catch(Exception ex){
-                throw new ArcNetException("Error during UDP deserialization.", ex);
             }
-        }finally{
+            stats.deserializationNanos.add(Time.nanos() - startTime);
+            return object;
+        }catch(Exception ex){
             readBuffer.clear();
+            reading = false;
+            throw new ArcNetException("Error during UDP deserialization.", ex);
+        }
+    }
+
+    /**
+     * The number of bytes to leave before an object serialized into a datagram, for {@link #frame(NetSerializer, ByteBuffer)}.
+     */
+    static int headerLength(NetSerializer serialization){
+        return serialization.getLengthLength() * 2;
+    }
+
+    /**
+     * Flips a datagram, whose object was serialized after {@link #headerLength(NetSerializer)} reserved bytes. <br>
+     * A datagram starting with a length of 0 is coalesced, with a length before each object; so an object whose bytes start
+     * the same way is sent as a coalesced datagram of this only object. Otherwise, the datagram starts at the object.
+     */
+    static void frame(NetSerializer serialization, ByteBuffer buffer){
+        int header = headerLength(serialization), end = buffer.position();
+        buffer.limit(end).position(header);
+        if(readMarker(serialization, buffer)){
+            buffer.position(0);
+            serialization.writeLength(buffer, 0);
+            serialization.writeLength(buffer, end - header);
+            buffer.position(0);
+        }else{
+            buffer.position(header);
         }
     }
 
+    /**
+     * Reads the length of 0 starting a coalesced datagram.
+     * @return whether the datagram is coalesced. If it is not, the position of the buffer is left untouched.
+     */
+    static boolean readMarker(NetSerializer serialization, ByteBuffer buffer){
+        if(buffer.remaining() < serialization.getLengthLength()) return false;
+        int position = buffer.position();
+        if(serialization.readLength(buffer) == 0) return true;
+        buffer.position(position);
+        return false;
+    }
+
     /**
      * This method is thread safe.
      */
@@ -119,18 +207,22 @@ public class UdpConnection implements Disposable{
 
         synchronized(writeLock){
             try{
+                long startTime = Time.nanos();
                 try{
+                    writeBuffer.position(headerLength(serialization));
                     serialization.write(writeBuffer, object);
                 }catch(Exception ex){
                     throw new ArcNetException("Error serializing object of type: " + object.getClass().getName(), ex);
                 }
-                writeBuffer.flip();
-                int length = writeBuffer.limit();
+                stats.serializationNanos.add(Time.nanos() - startTime);
+                frame(serialization, writeBuffer);
+                int length = writeBuffer.remaining();
                 datagramChannel.send(writeBuffer, address);
 
                 lastCommunicationTime = Time.millis();
 
                 boolean wasFullWrite = !writeBuffer.hasRemaining();
+                if(wasFullWrite) stats.udpSent(length);
                 return wasFullWrite ? length : -1;
             }finally{
                 writeBuffer.clear();
@@ -138,6 +230,31 @@ public class UdpConnection implements Disposable{
         }
     }
 
+    /**
+     * Sends an already serialized datagram, {@link #frame(NetSerializer, ByteBuffer) framed} or coalesced.
+     * The datagram position is left untouched, so the same datagram can be sent to several addresses. <br>
+     * This method is thread safe.
+     */
+    public int sendFrame(ByteBuffer datagram, SocketAddress address) throws IOException{
+        checkDisposed();
+        DatagramChannel datagramChannel = this.datagramChannel;
+        if(datagramChannel == null) throw new SocketException("Connection is closed.");
+
+        int position = datagram.position();
+        try{
+            int length = datagram.remaining();
+            datagramChannel.send(datagram, address);
+
+            lastCommunicationTime = Time.millis();
+
+            boolean wasFullWrite = !datagram.hasRemaining();
+            if(wasFullWrite) stats.udpSent(length);
+            return wasFullWrite ? length : -1;
+        }finally{
+            datagram.position(position);
+        }
+    }
+
     public void close(){
         connectedAddress = null;
         if(datagramChannel == null) return;
@@ -0,0 +1,489 @@
+package arc.struct;
+
+import arc.func.*;
+import arc.math.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A thread safe unordered map that uses long keys, without boxing them. <br>
+ * <br>
+ * The map is split in segments, each one guarded by its own lock for writes, while reads never lock.
+ * A segment is an open addressing table with linear probing, whose slots are only reused by the same key,
+ * so a reader can never see the value of another key. Removed entries are dropped when the table is rehashed. <br>
+ * <br>
+ * Null values are not allowed, as null means absent. Iteration is weakly consistent: it never throws because of
+ * concurrent modifications, and returns the entries as they were at some point during the iteration.
+ * @see LongMap
+ */
+@SuppressWarnings("unchecked")
+public class ConcurrentLongMap<V> implements Iterable<ConcurrentLongMap.Entry<V>>{
+    private static final int EMPTY = 0;
+
+    final Segment<V>[] segments;
+    final int segmentShift;
+
+    /** Creates a new map with an initial capacity of 64 and 16 segments. */
+    public ConcurrentLongMap(){
+        this(64, 16);
+    }
+
+    public ConcurrentLongMap(int initialCapacity){
+        this(initialCapacity, 16);
+    }
+
+    /**
+     * @param concurrencyLevel the number of threads expected to write at the same time.
+     * If not a power of two, it is increased to the next nearest power of two.
+     */
+    @SuppressWarnings("rawtypes")
+    public ConcurrentLongMap(int initialCapacity, int concurrencyLevel){
+        if(initialCapacity < 0) throw new IllegalArgumentException("initialCapacity must be >= 0: " + initialCapacity);
+        if(concurrencyLevel <= 0) throw new IllegalArgumentException("concurrencyLevel must be > 0: " + concurrencyLevel);
+        int count = Mathf.nextPowerOfTwo(Math.min(concurrencyLevel, 1 << 16));
+        segmentShift = 32 - Integer.numberOfTrailingZeros(count);
+        segments = new Segment[count];
+        int capacity = Math.max(initialCapacity / count, 4);
+        for(int i = 0; i < count; i++) segments[i] = new Segment<>(capacity);
+    }
+
+    static int hash(long key){
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    private Segment<V> segment(int hash){
+        // The high bits pick the segment, the low bits the slot
+        return segmentShift == 32 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    public V get(long key){
+        int hash = hash(key);
+        return segment(hash).get(key, hash);
+    }
+
+    public V get(long key, V defaultValue){
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Returns the value for the key, or puts and returns the value created by the provider.
+     * The provider is called at most once per key, with the lock of the segment held.
+     */
+    public V get(long key, Prov<V> defaultValue){
+        V value = get(key);
+        if(value != null) return value;
+        int hash = hash(key);
+        return segment(hash).compute(key, hash, defaultValue);
+    }
+
+    public boolean containsKey(long key){
+        return get(key) != null;
+    }
+
+    /** @return the old value of the key, or null if it was absent. */
+    public V put(long key, V value){
+        if(value == null) throw new IllegalArgumentException("value cannot be null.");
+        int hash = hash(key);
+        return segment(hash).put(key, hash, value, false);
+    }
+
+    /** @return the current value of the key, or null if it was absent and the value has been put. */
+    public V putIfAbsent(long key, V value){
+        if(value == null) throw new IllegalArgumentException("value cannot be null.");
+        int hash = hash(key);
+        return segment(hash).put(key, hash, value, true);
+    }
+
+    /** @return the removed value, or null if the key was absent. */
+    public V remove(long key){
+        int hash = hash(key);
+        return segment(hash).remove(key, hash, null);
+    }
+
+    /** Removes the key only if it is mapped to the value, compared by identity. */
+    public boolean remove(long key, V value){
+        if(value == null) return false;
+        int hash = hash(key);
+        return segment(hash).remove(key, hash, value) != null;
+    }
+
+    /** @return the number of entries, which may already be outdated if the map is modified concurrently. */
+    public int size(){
+        int size = 0;
+        for(Segment<V> segment : segments) size += segment.size;
+        return size;
+    }
+
+    public boolean isEmpty(){
+        for(Segment<V> segment : segments){
+            if(segment.size != 0) return false;
+        }
+        return true;
+    }
+
+    public void clear(){
+        for(Segment<V> segment : segments) segment.clear();
+    }
+
+    public void each(Cons2<Long, V> cons){
+        for(Entry<V> entry : entries()){
+            cons.get(entry.key, entry.value);
+        }
+    }
+
+    public void eachValue(Cons<V> cons){
+        for(Segment<V> segment : segments){
+            V zero = segment.zeroValue;
+            if(zero != null) cons.get(zero);
+            Table<V> table = segment.table;
+            for(int i = 0; i < table.capacity; i++){
+                if(table.keys.get(i) == EMPTY) continue;
+                V value = table.values.get(i);
+                if(value != null) cons.get(value);
+            }
+        }
+    }
+
+    @Override
+    public int hashCode(){
+        int h = 0;
+        for(Entry<V> entry : entries()){
+            h += (int)(entry.key ^ (entry.key >>> 32)) * 31 ^ entry.value.hashCode();
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj){
+        if(obj == this) return true;
+        if(!(obj instanceof ConcurrentLongMap)) return false;
+        ConcurrentLongMap<V> other = (ConcurrentLongMap<V>)obj;
+        if(other.size() != size()) return false;
+        for(Entry<V> entry : entries()){
+            if(!entry.value.equals(other.get(entry.key))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder buffer = new StringBuilder(32);
+        buffer.append('[');
+        for(Entry<V> entry : entries()){
+            if(buffer.length() > 1) buffer.append(", ");
+            buffer.append(entry.key).append('=').append(entry.value);
+        }
+        buffer.append(']');
+        return buffer.toString();
+    }
+
+    @Override
+    public Iterator<Entry<V>> iterator(){
+        return entries();
+    }
+
+    /**
+     * Returns a new iterator for the entries in the map. Remove is supported.
+     * Unlike {@link LongMap#entries()}, a new instance is returned each time, so it can be used by several threads.
+     */
+    public Entries<V> entries(){
+        return new Entries<>(this);
+    }
+
+    /** @see #entries() */
+    public Values<V> values(){
+        return new Values<>(this);
+    }
+
+    /** @see #entries() */
+    public Keys keys(){
+        return new Keys(this);
+    }
+
+    static final class Table<V>{
+        final int capacity, mask, threshold;
+        final AtomicLongArray keys;
+        final AtomicReferenceArray<V> values;
+
+        Table(int capacity){
+            this.capacity = capacity;
+            mask = capacity - 1;
+            threshold = capacity * 3 / 4;
+            keys = new AtomicLongArray(capacity);
+            values = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    static final class Segment<V>{
+        volatile Table<V> table;
+        volatile V zeroValue;
+        volatile int size;
+        /** Number of used slots, including the ones of removed entries. */
+        int used;
+
+        Segment(int capacity){
+            table = new Table<>(Mathf.nextPowerOfTwo(capacity * 2));
+        }
+
+        V get(long key, int hash){
+            if(key == 0) return zeroValue;
+            Table<V> table = this.table;
+            for(int i = hash & table.mask; ; i = (i + 1) & table.mask){
+                long k = table.keys.get(i);
+                if(k == key) return table.values.get(i);
+                if(k == EMPTY) return null;
+            }
+        }
+
+        synchronized V put(long key, int hash, V value, boolean onlyIfAbsent){
+            if(key == 0){
+                V old = zeroValue;
+                if(old == null) size++;
+                if(old == null || !onlyIfAbsent) zeroValue = value;
+                return old;
+            }
+
+            Table<V> table = this.table;
+            int i = slot(table, key, hash);
+            if(table.keys.get(i) == key){
+                V old = table.values.get(i);
+                if(old == null) size++;
+                if(old == null || !onlyIfAbsent) table.values.set(i, value);
+                return old;
+            }
+
+            if(used >= table.threshold){
+                rehash();
+                table = this.table;
+                i = slot(table, key, hash);
+            }
+            // The value must be visible before the key
+            table.values.set(i, value);
+            table.keys.set(i, key);
+            used++;
+            size++;
+            return null;
+        }
+
+        synchronized V compute(long key, int hash, Prov<V> prov){
+            V value = get(key, hash);
+            if(value != null) return value;
+            value = prov.get();
+            if(value == null) throw new IllegalArgumentException("value cannot be null.");
+            put(key, hash, value, false);
+            return value;
+        }
+
+        /** @param expected the value that must be removed, or null to remove any value. */
+        synchronized V remove(long key, int hash, V expected){
+            if(key == 0){
+                V old = zeroValue;
+                if(old == null || expected != null && old != expected) return null;
+                zeroValue = null;
+                size--;
+                return old;
+            }
+
+            Table<V> table = this.table;
+            int i = slot(table, key, hash);
+            if(table.keys.get(i) != key) return null;
+            V old = table.values.get(i);
+            if(old == null || expected != null && old != expected) return null;
+            // The key stays, so that the slot is only reused by it
+            table.values.set(i, null);
+            size--;
+            return old;
+        }
+
+        synchronized void clear(){
+            table = new Table<>(Math.min(table.capacity, 8));
+            zeroValue = null;
+            size = 0;
+            used = 0;
+        }
+
+        /** @return the slot of the key, or the empty slot where it would be put. */
+        private static int slot(Table<?> table, long key, int hash){
+            for(int i = hash & table.mask; ; i = (i + 1) & table.mask){
+                long k = table.keys.get(i);
+                if(k == key || k == EMPTY) return i;
+            }
+        }
+
+        /** Copies the present entries into a new table, published once filled. */
+        private void rehash(){
+            Table<V> old = table;
+            int present = size - (zeroValue != null ? 1 : 0);
+            Table<V> table = new Table<>(Math.max(Mathf.nextPowerOfTwo((present + 1) * 2), 8));
+            int used = 0;
+            for(int i = 0; i < old.capacity; i++){
+                long key = old.keys.get(i);
+                V value = old.values.get(i);
+                if(key == EMPTY || value == null) continue;
+                int slot = slot(table, key, hash(key));
+                table.values.set(slot, value);
+                table.keys.set(slot, key);
+                used++;
+            }
+            this.used = used;
+            this.table = table;
+        }
+    }
+
+    public static class Entry<V>{
+        public long key;
+        public V value;
+
+        @Override
+        public String toString(){
+            return key + "=" + value;
+        }
+    }
+
+    private static class MapIterator<V>{
+        final ConcurrentLongMap<V> map;
+        public boolean hasNext;
+        int segmentIndex = -1, nextIndex;
+        Table<V> table;
+        long nextKey, currentKey;
+        V nextValue;
+        boolean removable;
+
+        MapIterator(ConcurrentLongMap<V> map){
+            this.map = map;
+            advanceSegment();
+        }
+
+        /** Moves to the zero value of the next segment. */
+        private void advanceSegment(){
+            while(++segmentIndex < map.segments.length){
+                Segment<V> segment = map.segments[segmentIndex];
+                table = segment.table;
+                nextIndex = -1;
+                V zero = segment.zeroValue;
+                if(zero != null){
+                    nextKey = 0;
+                    nextValue = zero;
+                    hasNext = true;
+                    return;
+                }
+                if(findNextIndex()) return;
+            }
+            hasNext = false;
+            table = null;
+            nextValue = null;
+        }
+
+        private boolean findNextIndex(){
+            Table<V> table = this.table;
+            while(++nextIndex < table.capacity){
+                long key = table.keys.get(nextIndex);
+                if(key == EMPTY) continue;
+                V value = table.values.get(nextIndex);
+                if(value == null) continue;
+                nextKey = key;
+                nextValue = value;
+                hasNext = true;
+                return true;
+            }
+            return false;
+        }
+
+        void advance(){
+            if(!hasNext) throw new NoSuchElementException();
+            currentKey = nextKey;
+            removable = true;
+            if(!findNextIndex()) advanceSegment();
+        }
+
+        public void remove(){
+            if(!removable) throw new IllegalStateException("next must be called before remove.");
+            map.remove(currentKey);
+            removable = false;
+        }
+
+        public boolean hasNext(){
+            return hasNext;
+        }
+    }
+
+    public static class Entries<V> extends MapIterator<V> implements Iterable<Entry<V>>, Iterator<Entry<V>>{
+        private final Entry<V> entry = new Entry<>();
+
+        public Entries(ConcurrentLongMap<V> map){
+            super(map);
+        }
+
+        /** Note the same entry instance is returned each time this method is called. */
+        @Override
+        public Entry<V> next(){
+            entry.key = nextKey;
+            entry.value = nextValue;
+            advance();
+            return entry;
+        }
+
+        @Override
+        public Iterator<Entry<V>> iterator(){
+            return this;
+        }
+    }
+
+    public static class Values<V> extends MapIterator<V> implements Iterable<V>, Iterator<V>{
+        public Values(ConcurrentLongMap<V> map){
+            super(map);
+        }
+
+        @Override
+        public V next(){
+            V value = nextValue;
+            advance();
+            return value;
+        }
+
+        /** Returns a new array containing the remaining values. */
+        public Seq<V> toArray(){
+            Seq<V> array = new Seq<>(true, map.size());
+            while(hasNext) array.add(next());
+            return array;
+        }
+
+        @Override
+        public Iterator<V> iterator(){
+            return this;
+        }
+    }
+
+    public static class Keys extends MapIterator<Object> implements Iterable<Long>, Iterator<Long>{
+        public Keys(ConcurrentLongMap<?> map){
+            super((ConcurrentLongMap<Object>)map);
+        }
+
+        @Override
+        public Long next(){
+            return nextKey();
+        }
+
+        /** Same as {@link #next()}, without boxing the key. */
+        public long nextKey(){
+            long key = nextKey;
+            advance();
+            return key;
+        }
+
+        /** Returns a new array containing the remaining keys. */
+        public LongSeq toArray(){
+            LongSeq array = new LongSeq(true, map.size());
+            while(hasNext) array.add(nextKey());
+            return array;
+        }
+
+        @Override
+        public Iterator<Long> iterator(){
+            return this;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package arc.struct;
+
+import arc.math.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A thread safe unordered map that uses object keys and int values, without boxing the values. <br>
+ * <br>
+ * The map is split in segments, each one guarded by its own lock for writes, while reads never lock.
+ * A segment is an open addressing table with linear probing. A removed key is replaced by a tombstone, and its slot is not
+ * reused until the table is rehashed, so a reader can never see the value of another key. <br>
+ * <br>
+ * Null keys are not allowed. Iteration is weakly consistent: it never throws because of concurrent modifications,
+ * and returns the entries as they were at some point during the iteration.
+ * @see ObjectIntMap
+ */
+@SuppressWarnings("unchecked")
+public class ConcurrentObjectIntMap<K> implements Iterable<ConcurrentObjectIntMap.Entry<K>>{
+    private static final Object TOMBSTONE = new Object();
+
+    final Segment[] segments;
+    final int segmentShift;
+
+    /** Creates a new map with an initial capacity of 64 and 16 segments. */
+    public ConcurrentObjectIntMap(){
+        this(64, 16);
+    }
+
+    public ConcurrentObjectIntMap(int initialCapacity){
+        this(initialCapacity, 16);
+    }
+
+    /**
+     * @param concurrencyLevel the number of threads expected to write at the same time.
+     * If not a power of two, it is increased to the next nearest power of two.
+     */
+    public ConcurrentObjectIntMap(int initialCapacity, int concurrencyLevel){
+        if(initialCapacity < 0) throw new IllegalArgumentException("initialCapacity must be >= 0: " + initialCapacity);
+        if(concurrencyLevel <= 0) throw new IllegalArgumentException("concurrencyLevel must be > 0: " + concurrencyLevel);
+        int count = Mathf.nextPowerOfTwo(Math.min(concurrencyLevel, 1 << 16));
+        segmentShift = 32 - Integer.numberOfTrailingZeros(count);
+        segments = new Segment[count];
+        int capacity = Math.max(initialCapacity / count, 4);
+        for(int i = 0; i < count; i++) segments[i] = new Segment(capacity);
+    }
+
+    static int hash(Object key){
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private Segment segment(int hash){
+        // The high bits pick the segment, the low bits the slot
+        return segmentShift == 32 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    /** @return 0 if the key is absent. */
+    public int get(K key){
+        return get(key, 0);
+    }
+
+    /** @param defaultValue Returned if the key was not associated with a value. */
+    public int get(K key, int defaultValue){
+        if(key == null) throw new IllegalArgumentException("key cannot be null.");
+        int hash = hash(key);
+        return segment(hash).get(key, hash, defaultValue);
+    }
+
+    public boolean containsKey(K key){
+        if(key == null) throw new IllegalArgumentException("key cannot be null.");
+        int hash = hash(key);
+        return segment(hash).contains(key, hash);
+    }
+
+    public void put(K key, int value){
+        if(key == null) throw new IllegalArgumentException("key cannot be null.");
+        int hash = hash(key);
+        segment(hash).update(key, hash, 0, value, false);
+    }
+
+    public int increment(K key){
+        return increment(key, 0, 1);
+    }
+
+    public int increment(K key, int amount){
+        return increment(key, 0, amount);
+    }
+
+    /**
+     * Atomically returns the key's current value and increments the stored value.
+     * If the key is not in the map, defaultValue + increment is put into the map.
+     */
+    public int increment(K key, int defaultValue, int increment){
+        if(key == null) throw new IllegalArgumentException("key cannot be null.");
+        int hash = hash(key);
+        return segment(hash).update(key, hash, defaultValue, increment, true);
+    }
+
+    /** @return 0 as default value. */
+    public int remove(K key){
+        return remove(key, 0);
+    }
+
+    /** @return the value that was removed, or defaultValue. */
+    public int remove(K key, int defaultValue){
+        if(key == null) throw new IllegalArgumentException("key cannot be null.");
+        int hash = hash(key);
+        return segment(hash).remove(key, hash, defaultValue);
+    }
+
+    /** @return the sum of all entry values. */
+    public int sum(){
+        int sum = 0;
+        for(Entry<K> entry : entries()){
+            sum += entry.value;
+        }
+        return sum;
+    }
+
+    /** @return the number of entries, which may already be outdated if the map is modified concurrently. */
+    public int size(){
+        int size = 0;
+        for(Segment segment : segments) size += segment.size;
+        return size;
+    }
+
+    public boolean isEmpty(){
+        for(Segment segment : segments){
+            if(segment.size != 0) return false;
+        }
+        return true;
+    }
+
+    public void clear(){
+        for(Segment segment : segments) segment.clear();
+    }
+
+    @Override
+    public int hashCode(){
+        int h = 0;
+        for(Entry<K> entry : entries()){
+            h += entry.key.hashCode() ^ entry.value;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj){
+        if(obj == this) return true;
+        if(!(obj instanceof ConcurrentObjectIntMap)) return false;
+        ConcurrentObjectIntMap<K> other = (ConcurrentObjectIntMap<K>)obj;
+        if(other.size() != size()) return false;
+        for(Entry<K> entry : entries()){
+            int otherValue = other.get(entry.key, 0);
+            if(otherValue != entry.value || (otherValue == 0 && !other.containsKey(entry.key))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder buffer = new StringBuilder(32);
+        buffer.append('{');
+        for(Entry<K> entry : entries()){
+            if(buffer.length() > 1) buffer.append(", ");
+            buffer.append(entry.key).append('=').append(entry.value);
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    @Override
+    public Entries<K> iterator(){
+        return entries();
+    }
+
+    /**
+     * Returns a new iterator for the entries in the map. Remove is supported.
+     * Unlike {@link ObjectIntMap#entries()}, a new instance is returned each time, so it can be used by several threads.
+     */
+    public Entries<K> entries(){
+        return new Entries<>(this);
+    }
+
+    /** @see #entries() */
+    public Values values(){
+        return new Values(this);
+    }
+
+    /** @see #entries() */
+    public Keys<K> keys(){
+        return new Keys<>(this);
+    }
+
+    static final class Table{
+        final int capacity, mask, threshold;
+        final AtomicReferenceArray<Object> keys;
+        final AtomicIntegerArray values;
+
+        Table(int capacity){
+            this.capacity = capacity;
+            mask = capacity - 1;
+            threshold = capacity * 3 / 4;
+            keys = new AtomicReferenceArray<>(capacity);
+            values = new AtomicIntegerArray(capacity);
+        }
+    }
+
+    static final class Segment{
+        volatile Table table;
+        volatile int size;
+        /** Number of used slots, including the tombstones. */
+        int used;
+
+        Segment(int capacity){
+            table = new Table(Mathf.nextPowerOfTwo(capacity * 2));
+        }
+
+        int get(Object key, int hash, int defaultValue){
+            Table table = this.table;
+            for(int i = hash & table.mask; ; i = (i + 1) & table.mask){
+                Object k = table.keys.get(i);
+                if(k == null) return defaultValue;
+                // The value is read after the key, which is published after it
+                if(k == key || (k != TOMBSTONE && k.equals(key))) return table.values.get(i);
+            }
+        }
+
+        boolean contains(Object key, int hash){
+            Table table = this.table;
+            for(int i = hash & table.mask; ; i = (i + 1) & table.mask){
+                Object k = table.keys.get(i);
+                if(k == null) return false;
+                if(k == key || (k != TOMBSTONE && k.equals(key))) return true;
+            }
+        }
+
+        /**
+         * Puts the value, or increments the current value if {@code increment} is true.
+         * @return the previous value, or {@code defaultValue} if the key was absent.
+         */
+        synchronized int update(Object key, int hash, int defaultValue, int value, boolean increment){
+            Table table = this.table;
+            int i = find(table, key, hash);
+            if(table.keys.get(i) != null){
+                int old = table.values.get(i);
+                table.values.set(i, increment ? old + value : value);
+                return old;
+            }
+
+            if(used >= table.threshold){
+                rehash();
+                table = this.table;
+                i = find(table, key, hash);
+            }
+            // The value must be visible before the key
+            table.values.set(i, increment ? defaultValue + value : value);
+            table.keys.set(i, key);
+            used++;
+            size++;
+            return defaultValue;
+        }
+
+        synchronized int remove(Object key, int hash, int defaultValue){
+            Table table = this.table;
+            int i = find(table, key, hash);
+            if(table.keys.get(i) == null) return defaultValue;
+            // The slot keeps its value until the rehash, for the readers which have already matched the key
+            table.keys.set(i, TOMBSTONE);
+            size--;
+            return table.values.get(i);
+        }
+
+        synchronized void clear(){
+            table = new Table(Math.min(table.capacity, 8));
+            size = 0;
+            used = 0;
+        }
+
+        /** @return the slot of the key, or the empty slot where it would be put. Must be called with the lock. */
+        static int find(Table table, Object key, int hash){
+            for(int i = hash & table.mask; ; i = (i + 1) & table.mask){
+                Object k = table.keys.get(i);
+                if(k == null || k == key || (k != TOMBSTONE && k.equals(key))) return i;
+            }
+        }
+
+        /** Copies the present entries into a new table, published once filled. */
+        private void rehash(){
+            Table old = table;
+            Table table = new Table(Math.max(Mathf.nextPowerOfTwo((size + 1) * 2), 8));
+            int used = 0;
+            for(int i = 0; i < old.capacity; i++){
+                Object key = old.keys.get(i);
+                if(key == null || key == TOMBSTONE) continue;
+                int slot = find(table, key, hash(key));
+                table.values.set(slot, old.values.get(i));
+                table.keys.set(slot, key);
+                used++;
+            }
+            this.used = used;
+            this.table = table;
+        }
+    }
+
+    public static class Entry<K>{
+        public K key;
+        public int value;
+
+        @Override
+        public String toString(){
+            return key + "=" + value;
+        }
+    }
+
+    private static class MapIterator<K>{
+        final ConcurrentObjectIntMap<K> map;
+        public boolean hasNext;
+        int segmentIndex = -1, nextIndex;
+        Table table;
+        K nextKey, currentKey;
+        int nextValue;
+
+        MapIterator(ConcurrentObjectIntMap<K> map){
+            this.map = map;
+            advanceSegment();
+        }
+
+        private void advanceSegment(){
+            while(++segmentIndex < map.segments.length){
+                table = map.segments[segmentIndex].table;
+                nextIndex = -1;
+                if(findNextIndex()) return;
+            }
+            hasNext = false;
+            table = null;
+            nextKey = null;
+        }
+
+        private boolean findNextIndex(){
+            Table table = this.table;
+            while(++nextIndex < table.capacity){
+                Object key = table.keys.get(nextIndex);
+                if(key == null || key == TOMBSTONE) continue;
+                nextKey = (K)key;
+                nextValue = table.values.get(nextIndex);
+                hasNext = true;
+                return true;
+            }
+            return false;
+        }
+
+        void advance(){
+            if(!hasNext) throw new NoSuchElementException();
+            currentKey = nextKey;
+            if(!findNextIndex()) advanceSegment();
+        }
+
+        public void remove(){
+            if(currentKey == null) throw new IllegalStateException("next must be called before remove.");
+            map.remove(currentKey);
+            currentKey = null;
+        }
+
+        public boolean hasNext(){
+            return hasNext;
+        }
+    }
+
+    public static class Entries<K> extends MapIterator<K> implements Iterable<Entry<K>>, Iterator<Entry<K>>{
+        private final Entry<K> entry = new Entry<>();
+
+        public Entries(ConcurrentObjectIntMap<K> map){
+            super(map);
+        }
+
+        /** Note the same entry instance is returned each time this method is called. */
+        @Override
+        public Entry<K> next(){
+            entry.key = nextKey;
+            entry.value = nextValue;
+            advance();
+            return entry;
+        }
+
+        @Override
+        public Iterator<Entry<K>> iterator(){
+            return this;
+        }
+    }
+
+    public static class Values extends MapIterator<Object> implements Iterable<Integer>, Iterator<Integer>{
+        public Values(ConcurrentObjectIntMap<?> map){
+            super((ConcurrentObjectIntMap<Object>)map);
+        }
+
+        @Override
+        public Integer next(){
+            return nextValue();
+        }
+
+        /** Same as {@link #next()}, without boxing the value. */
+        public int nextValue(){
+            int value = nextValue;
+            advance();
+            return value;
+        }
+
+        /** Returns a new array containing the remaining values. */
+        public IntSeq toArray(){
+            IntSeq array = new IntSeq(true, map.size());
+            while(hasNext) array.add(nextValue());
+            return array;
+        }
+
+        @Override
+        public Iterator<Integer> iterator(){
+            return this;
+        }
+    }
+
+    public static class Keys<K> extends MapIterator<K> implements Iterable<K>, Iterator<K>{
+        public Keys(ConcurrentObjectIntMap<K> map){
+            super(map);
+        }
+
+        @Override
+        public K next(){
+            K key = nextKey;
+            advance();
+            return key;
+        }
+
+        /** Returns a new array containing the remaining keys. */
+        public Seq<K> toArray(){
+            Seq<K> array = new Seq<>(true, map.size());
+            while(hasNext) array.add(next());
+            return array;
+        }
+
+        @Override
+        public Iterator<K> iterator(){
+            return this;
+        }
+    }
+}
@@ -164,6 +164,12 @@ public class DelayedRemovalSeq<T> extends Seq<T>{
         return super.sort(comparator);
     }
 
+    @Override
+    public Seq<T> parallelSort(Comparator<? super T> comparator){
+        if(iterating > 0) throw new IllegalStateException("Invalid between begin/end.");
+        return super.parallelSort(comparator);
+    }
+
     @Override
     public Seq<T> reverse(){
         if(iterating > 0) throw new IllegalStateException("Invalid between begin/end.");
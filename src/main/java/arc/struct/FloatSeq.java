@@ -349,6 +349,11 @@ public class FloatSeq implements Iterable<Float>{
         Arrays.sort(items, 0, size);
     }
 
+    /** Sorts with a fork/join merge sort, for large arrays. Arrays smaller than {@link Parallel#threshold} are sorted in place. */
+    public void parallelSort(){
+        Parallel.sort(items, 0, size);
+    }
+
     public void reverse(){
         float[] items = this.items;
         for(int i = 0, lastIndex = size - 1, n = size / 2; i < n; i++){
@@ -0,0 +1,302 @@
+package arc.struct;
+
+import arc.files.*;
+import arc.func.*;
+
+import java.nio.*;
+
+/**
+ * A resizable, ordered or unordered long array stored off the heap, in direct buffers or in a memory-mapped file.
+ * Growing adds a segment rather than copying the items, so appending stays cheap at any size. <br>
+ * The memory must be released with {@link #dispose()}.
+ * @see LongSeq
+ * @see OffHeapSeq
+ */
+public class OffHeapLongSeq extends OffHeapSeq{
+    private LongBuffer[] views;
+
+    /** Creates an ordered sequence with segments of {@code 65536} items. */
+    public OffHeapLongSeq(){
+        this(true, defaultSegmentShift);
+    }
+
+    /**
+     * @param ordered If false, methods that remove elements may change the order of other elements in the sequence, which
+     * avoids a memory copy.
+     * @param segmentShift The number of items of a segment, as a power of two.
+     */
+    public OffHeapLongSeq(boolean ordered, int segmentShift){
+        super(3, ordered, segmentShift, null);
+    }
+
+    /** Creates an ordered sequence backed by a file, starting with the items it contains. */
+    public OffHeapLongSeq(Fi file){
+        this(file, defaultSegmentShift);
+    }
+
+    /** Creates an ordered sequence backed by a file, starting with the items it contains. */
+    public OffHeapLongSeq(Fi file, int segmentShift){
+        super(3, true, segmentShift, file);
+    }
+
+    public static OffHeapLongSeq with(long... array){
+        OffHeapLongSeq seq = new OffHeapLongSeq();
+        seq.addAll(array);
+        return seq;
+    }
+
+    @Override
+    protected void segmentAdded(int index, ByteBuffer buffer){
+        //May be called by the super constructor, before fields are initialized
+        if(views == null || index == views.length){
+            LongBuffer[] newViews = new LongBuffer[segments.length];
+            if(views != null) System.arraycopy(views, 0, newViews, 0, index);
+            views = newViews;
+        }
+        views[index] = buffer.asLongBuffer();
+    }
+
+    @Override
+    protected void segmentRemoved(int index){
+        views[index] = null;
+    }
+
+    public void each(Longc iterator){
+        LongBuffer[] views = this.views;
+        int size = this.size;
+        for(int i = 0; i < size; i++){
+            iterator.get(views[i >>> shift].get(i & mask));
+        }
+    }
+
+    public int count(long value){
+        int out = 0;
+        for(int i = 0; i < size; i++){
+            if(views[i >>> shift].get(i & mask) == value){
+                out++;
+            }
+        }
+        return out;
+    }
+
+    public long sum(){
+        long sum = 0;
+        for(int i = 0; i < size; i++){
+            sum += views[i >>> shift].get(i & mask);
+        }
+        return sum;
+    }
+
+    public void add(long value){
+        if(size == capacity()) reserve(size + 1);
+        views[size >>> shift].put(size & mask, value);
+        size++;
+    }
+
+    public void add(long value1, long value2){
+        add(value1);
+        add(value2);
+    }
+
+    public void add(long value1, long value2, long value3){
+        add(value1);
+        add(value2);
+        add(value3);
+    }
+
+    public void add(long value1, long value2, long value3, long value4){
+        add(value1);
+        add(value2);
+        add(value3);
+        add(value4);
+    }
+
+    public void addAll(LongSeq array){
+        addAll(array.items, 0, array.size);
+    }
+
+    public void addAll(long... array){
+        addAll(array, 0, array.length);
+    }
+
+    /** Copies the items in bulk, segment by segment. */
+    public void addAll(long[] array, int offset, int length){
+        if(offset + length > array.length) throw new IllegalArgumentException("offset + length must be <= length: " + offset + " + " + length + " <= " + array.length);
+        reserve(size + length);
+        while(length > 0){
+            LongBuffer view = views[size >>> shift];
+            int n = Math.min(length, segmentLength - (size & mask));
+            view.position(size & mask);
+            view.put(array, offset, n);
+            offset += n;
+            length -= n;
+            size += n;
+        }
+    }
+
+    public void addAll(OffHeapLongSeq array){
+        reserve(size + array.size);
+        for(int i = 0, n = array.size; i < n; i++){
+            add(array.views[i >>> array.shift].get(i & array.mask));
+        }
+    }
+
+    public long get(int index){
+        checkIndex(index);
+        return views[index >>> shift].get(index & mask);
+    }
+
+    public void set(int index, long value){
+        checkIndex(index);
+        views[index >>> shift].put(index & mask, value);
+    }
+
+    public void incr(int index, long value){
+        checkIndex(index);
+        LongBuffer view = views[index >>> shift];
+        view.put(index & mask, view.get(index & mask) + value);
+    }
+
+    public void mul(int index, long value){
+        checkIndex(index);
+        LongBuffer view = views[index >>> shift];
+        view.put(index & mask, view.get(index & mask) * value);
+    }
+
+    public void insert(int index, long value){
+        insertSlot(index);
+        views[index >>> shift].put(index & mask, value);
+    }
+
+    public void swap(int first, int second){
+        if(first >= size) throw new IndexOutOfBoundsException("first can't be >= size: " + first + " >= " + size);
+        if(second >= size) throw new IndexOutOfBoundsException("second can't be >= size: " + second + " >= " + size);
+        long firstValue = views[first >>> shift].get(first & mask);
+        views[first >>> shift].put(first & mask, views[second >>> shift].get(second & mask));
+        views[second >>> shift].put(second & mask, firstValue);
+    }
+
+    public boolean contains(long value){
+        return indexOf(value) != -1;
+    }
+
+    public int indexOf(long value){
+        for(int i = 0, n = size; i < n; i++)
+            if(views[i >>> shift].get(i & mask) == value) return i;
+        return -1;
+    }
+
+    public int lastIndexOf(long value){
+        for(int i = size - 1; i >= 0; i--)
+            if(views[i >>> shift].get(i & mask) == value) return i;
+        return -1;
+    }
+
+    public boolean removeValue(long value){
+        int index = indexOf(value);
+        if(index == -1) return false;
+        removeIndex(index);
+        return true;
+    }
+
+    /** Removes and returns the item at the specified index. */
+    public long removeIndex(int index){
+        long value = get(index);
+        removeSlot(index);
+        return value;
+    }
+
+    /** Removes and returns the last item. */
+    public long pop(){
+        long value = peek();
+        size--;
+        return value;
+    }
+
+    /** Returns the last item. */
+    public long peek(){
+        if(size == 0) throw new IllegalStateException("Array is empty.");
+        return get(size - 1);
+    }
+
+    /** Returns the first item. */
+    public long first(){
+        if(size == 0) throw new IllegalStateException("Array is empty.");
+        return get(0);
+    }
+
+    public long[] toArray(){
+        return toArray(new long[size], 0);
+    }
+
+    /** Copies the items in bulk into the specified array, at the specified offset. */
+    public long[] toArray(long[] array, int offset){
+        if(offset + size > array.length) throw new IllegalArgumentException("array is too small: " + (offset + size) + " > " + array.length);
+        for(int i = 0; i < size; ){
+            LongBuffer view = views[i >>> shift];
+            int n = Math.min(size - i, segmentLength);
+            view.position(0);
+            view.get(array, offset + i, n);
+            i += n;
+        }
+        return array;
+    }
+
+    /** @return a heap copy of this sequence. */
+    public LongSeq toSeq(){
+        LongSeq seq = new LongSeq(ordered, size);
+        toArray(seq.items, 0);
+        seq.size = size;
+        return seq;
+    }
+
+    @Override
+    public int hashCode(){
+        if(!ordered) return super.hashCode();
+        int h = 1;
+        for(int i = 0, n = size; i < n; i++){
+            long value = views[i >>> shift].get(i & mask);
+            h = h * 31 + (int)(value ^ (value >>> 32));
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object object){
+        if(object == this) return true;
+        if(!ordered) return false;
+        if(!(object instanceof OffHeapLongSeq)) return false;
+        OffHeapLongSeq array = (OffHeapLongSeq)object;
+        if(!array.ordered) return false;
+        int n = size;
+        if(n != array.size) return false;
+        for(int i = 0; i < n; i++)
+            if(get(i) != array.get(i)) return false;
+        return true;
+    }
+
+    @Override
+    public String toString(){
+        if(size == 0) return "[]";
+        StringBuilder buffer = new StringBuilder(32);
+        buffer.append('[');
+        buffer.append(get(0));
+        for(int i = 1; i < size; i++){
+            buffer.append(", ");
+            buffer.append(get(i));
+        }
+        buffer.append(']');
+        return buffer.toString();
+    }
+
+    public String toString(String separator){
+        if(size == 0) return "";
+        StringBuilder buffer = new StringBuilder(32);
+        buffer.append(get(0));
+        for(int i = 1; i < size; i++){
+            buffer.append(separator);
+            buffer.append(get(i));
+        }
+        return buffer.toString();
+    }
+}
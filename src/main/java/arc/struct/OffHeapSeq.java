@@ -0,0 +1,320 @@
+package arc.struct;
+
+import arc.Files.*;
+import arc.files.*;
+import arc.func.*;
+import arc.util.*;
+import arc.util.io.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.*;
+
+/**
+ * The storage of the off-heap primitive sequences: segments of native memory, either direct buffers or regions of
+ * a memory-mapped file. The sequence grows by adding segments, so the elements are never copied to a larger buffer,
+ * and it does not weigh on the garbage collector no matter its size. <br>
+ * The memory is held until {@link #dispose()} is called; a disposed sequence cannot be used anymore.
+ * <p>
+ * A sequence backed by a file keeps its elements in it, in little-endian order. The file is truncated to the size of
+ * the sequence on {@link #dispose()}, and a sequence later opened on the same file starts with these elements.
+ * @see OffHeapIntSeq
+ * @see OffHeapFloatSeq
+ * @see OffHeapLongSeq
+ */
+public abstract class OffHeapSeq implements Disposable{
+    /** The default number of elements of a segment, as a power of two. */
+    public static final int defaultSegmentShift = 16;
+    private static final Cons<ByteBuffer> cleaner = findCleaner();
+
+    public int size;
+    public boolean ordered;
+    /** The number of elements of a segment. */
+    public final int segmentLength;
+
+    protected final int shift, mask, elementShift;
+    protected ByteBuffer[] segments = new ByteBuffer[0];
+    protected int segmentCount;
+
+    private final Fi file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private byte[] scratch;
+    private boolean disposed;
+
+    /**
+     * @param elementShift The size of an element in bytes, as a power of two.
+     * @param segmentShift The number of elements of a segment, as a power of two.
+     * @param file The file backing the sequence, or null to use direct buffers.
+     */
+    protected OffHeapSeq(int elementShift, boolean ordered, int segmentShift, Fi file){
+        if(segmentShift < 4 || segmentShift + elementShift > 30) throw new IllegalArgumentException("segmentShift must be between 4 and " + (30 - elementShift) + ": " + segmentShift);
+        this.elementShift = elementShift;
+        this.ordered = ordered;
+        this.shift = segmentShift;
+        this.segmentLength = 1 << segmentShift;
+        this.mask = segmentLength - 1;
+        this.file = file;
+
+        if(file != null){
+            if(file.type() == FileType.classpath || file.type() == FileType.internal) throw new ArcRuntimeException("Cannot map a read-only file: " + file);
+            try{
+                file.parent().mkdirs();
+                raf = new RandomAccessFile(file.file(), "rw");
+                channel = raf.getChannel();
+                long length = channel.size() >> elementShift;
+                if(length > Integer.MAX_VALUE) throw new ArcRuntimeException("File is too large: " + file);
+                ensureCapacity((int)length);
+                size = (int)length;
+            }catch(IOException e){
+                Streams.close(raf);
+                throw new ArcRuntimeException("Error mapping file: " + file, e);
+            }
+        }
+    }
+
+    /** Called when a segment is added, to create the typed view of its buffer. */
+    protected abstract void segmentAdded(int index, ByteBuffer buffer);
+
+    /** Called when the last segment is removed. */
+    protected abstract void segmentRemoved(int index);
+
+    /** @return the number of elements that can be held without adding a segment. */
+    public int capacity(){
+        return segmentCount << shift;
+    }
+
+    /** @return the number of bytes of native memory or file held by the segments. */
+    public long byteSize(){
+        return (long)capacity() << elementShift;
+    }
+
+    /** @return the file backing this sequence, or null if it uses direct buffers. */
+    public Fi file(){
+        return file;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    public void clear(){
+        size = 0;
+    }
+
+    /** Adds segments to accommodate the specified number of additional items. The existing items are not moved. */
+    public void ensureCapacity(int additionalCapacity){
+        if(additionalCapacity < 0) throw new IllegalArgumentException("additionalCapacity must be >= 0: " + additionalCapacity);
+        reserve(size + additionalCapacity);
+    }
+
+    /** Sets the size, adding segments if needed. New items are zero in a new segment, and undefined otherwise. */
+    public void setSize(int newSize){
+        if(newSize < 0) throw new IllegalArgumentException("newSize must be >= 0: " + newSize);
+        reserve(newSize);
+        size = newSize;
+    }
+
+    /** Reduces the size of the sequence to the specified size. If the sequence is already smaller, nothing is done. */
+    public void truncate(int newSize){
+        if(size > newSize) size = newSize;
+    }
+
+    /** Releases the segments past the ones needed by the items. */
+    public void shrink(){
+        int needed = (size + mask) >>> shift;
+        while(segmentCount > needed){
+            int index = --segmentCount;
+            segmentRemoved(index);
+            free(segments[index]);
+            segments[index] = null;
+        }
+        if(channel != null){
+            try{
+                channel.truncate(byteSize());
+            }catch(IOException ignored){
+                //The file may not shrink while a region is still mapped, which is harmless
+            }
+        }
+    }
+
+    /** Removes the items between the specified indices, inclusive. */
+    public void removeRange(int start, int end){
+        if(end >= size) throw new IndexOutOfBoundsException("end can't be >= size: " + end + " >= " + size);
+        if(start > end) throw new IndexOutOfBoundsException("start can't be > end: " + start + " > " + end);
+        int count = end - start + 1;
+        if(ordered){
+            move(start + count, start, size - (start + count));
+        }else{
+            //Only the items past the range need to fill it
+            int tail = Math.min(count, size - end - 1);
+            move(size - tail, start, tail);
+        }
+        size -= count;
+    }
+
+    /** Releases the native memory and closes the file, if any. For a file, the size of the sequence is kept. */
+    @Override
+    public void dispose(){
+        if(disposed) return;
+        disposed = true;
+        for(int i = segmentCount - 1; i >= 0; i--){
+            segmentRemoved(i);
+            free(segments[i]);
+            segments[i] = null;
+        }
+        segmentCount = 0;
+        if(channel != null){
+            try{
+                channel.truncate((long)size << elementShift);
+            }catch(IOException e){
+                throw new ArcRuntimeException("Error truncating file: " + file, e);
+            }finally{
+                Streams.close(raf);
+                channel = null;
+                raf = null;
+            }
+        }
+        size = 0;
+    }
+
+    @Override
+    public boolean isDisposed(){
+        return disposed;
+    }
+
+    /** Adds segments until the specified number of items fits. */
+    protected void reserve(int capacity){
+        if(disposed) throw new IllegalStateException("The sequence is disposed.");
+        if(capacity < 0) throw new IllegalArgumentException("Capacity overflow: " + capacity);
+        while(capacity() < capacity){
+            int index = segmentCount;
+            int bytes = segmentLength << elementShift;
+            ByteBuffer buffer;
+            if(channel != null){
+                try{
+                    //Mapping past the end of the file extends it
+                    buffer = channel.map(MapMode.READ_WRITE, (long)index * bytes, bytes);
+                }catch(IOException e){
+                    throw new ArcRuntimeException("Error mapping file: " + file, e);
+                }
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+            }else{
+                buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+            }
+
+            //Only the array of segments is copied when growing, not the items
+            if(index == segments.length){
+                ByteBuffer[] newSegments = new ByteBuffer[Math.max(4, index * 2)];
+                System.arraycopy(segments, 0, newSegments, 0, index);
+                segments = newSegments;
+            }
+            segments[index] = buffer;
+            segmentAdded(index, buffer);
+            segmentCount++;
+        }
+    }
+
+    /** Makes room for an item at the specified index, shifting the following ones if the sequence is ordered. */
+    protected void insertSlot(int index){
+        if(index > size) throw new IndexOutOfBoundsException("index can't be > size: " + index + " > " + size);
+        reserve(size + 1);
+        if(ordered){
+            move(index, index + 1, size - index);
+        }else if(index < size){
+            move(index, size, 1);
+        }
+        size++;
+    }
+
+    /** Removes the item at the specified index, which was read beforehand. */
+    protected void removeSlot(int index){
+        size--;
+        if(ordered){
+            move(index + 1, index, size - index);
+        }else if(index < size){
+            move(size, index, 1);
+        }
+    }
+
+    /** Copies items between indices, correctly when the ranges overlap. Bulk copies are done segment by segment. */
+    protected void move(int from, int to, int count){
+        if(count <= 0 || from == to) return;
+        if(scratch == null) scratch = new byte[8192];
+        int chunk = scratch.length >> elementShift;
+        if(to < from){
+            while(count > 0){
+                int n = Math.min(count, Math.min(chunk, Math.min(segmentLength - (from & mask), segmentLength - (to & mask))));
+                copy(from, to, n);
+                from += n;
+                to += n;
+                count -= n;
+            }
+        }else{
+            int fromEnd = from + count, toEnd = to + count;
+            while(count > 0){
+                int n = Math.min(count, Math.min(chunk, Math.min(((fromEnd - 1) & mask) + 1, ((toEnd - 1) & mask) + 1)));
+                fromEnd -= n;
+                toEnd -= n;
+                copy(fromEnd, toEnd, n);
+                count -= n;
+            }
+        }
+    }
+
+    /** Copies items within single segments, through the scratch array so that overlapping is not an issue. */
+    private void copy(int from, int to, int count){
+        int bytes = count << elementShift;
+        ByteBuffer source = segments[from >>> shift], dest = segments[to >>> shift];
+        source.limit(source.capacity()).position((from & mask) << elementShift);
+        source.get(scratch, 0, bytes);
+        dest.limit(dest.capacity()).position((to & mask) << elementShift);
+        dest.put(scratch, 0, bytes);
+    }
+
+    protected void checkIndex(int index){
+        if(index >= size) throw new IndexOutOfBoundsException("index can't be >= size: " + index + " >= " + size);
+    }
+
+    /** Frees the memory of a direct or mapped buffer now, instead of when it is garbage collected, if the runtime allows it. */
+    static void free(ByteBuffer buffer){
+        cleaner.get(buffer);
+    }
+
+    private static Cons<ByteBuffer> findCleaner(){
+        //Java 9+
+        try{
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return buffer -> {
+                try{
+                    invokeCleaner.invoke(unsafe, buffer);
+                }catch(Exception ignored){
+                }
+            };
+        }catch(Throwable ignored){
+        }
+
+        //Java 8
+        try{
+            Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                try{
+                    Object cleaner = cleanerMethod.invoke(buffer);
+                    if(cleaner != null) clean.invoke(cleaner);
+                }catch(Exception ignored){
+                }
+            };
+        }catch(Throwable ignored){
+        }
+
+        //Left to the garbage collector
+        return buffer -> {};
+    }
+}
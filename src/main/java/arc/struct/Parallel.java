@@ -0,0 +1,314 @@
+package arc.struct;
+
+import arc.func.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Fork/join versions of the sorts and bulk operations of {@link Seq} and of the primitive sequences, run on the common
+ * pool. The work is split in chunks of {@link #threshold} items; anything smaller than that runs on the calling thread,
+ * as splitting it would cost more than it saves. <br>
+ * Functions passed to these methods are called from several threads at once and in no particular order, so they must not
+ * depend on shared mutable state. Chunk results are combined in index order, so results are deterministic.
+ */
+@SuppressWarnings("unchecked")
+public class Parallel{
+    /** The number of items processed by a single task. */
+    public static int threshold = 8192;
+
+    /** Sorts the range of the array with a stable parallel merge sort. Chunks are sorted with {@link Sort}. */
+    public static <T> void sort(T[] items, int from, int to, Comparator<? super T> comparator){
+        if(to - from <= threshold){
+            Sort.instance().sort(items, comparator, from, to);
+            return;
+        }
+        Object[] buffer = new Object[items.length];
+        ForkJoinPool.commonPool().invoke(new SortTask((Object[])items, buffer, from, to, (Comparator<Object>)comparator, threshold));
+    }
+
+    /** Sorts the range of the array in natural order, with a stable parallel merge sort. */
+    public static <T> void sort(T[] items, int from, int to){
+        sort(items, from, to, (a, b) -> ((Comparable<Object>)a).compareTo(b));
+    }
+
+    public static void sort(int[] items, int from, int to){
+        Arrays.parallelSort(items, from, to);
+    }
+
+    public static void sort(float[] items, int from, int to){
+        Arrays.parallelSort(items, from, to);
+    }
+
+    public static void sort(long[] items, int from, int to){
+        Arrays.parallelSort(items, from, to);
+    }
+
+    /** Calls the consumer with each item. */
+    public static <T> void each(Seq<T> seq, Cons<? super T> consumer){
+        T[] items = seq.items;
+        int chunk = threshold;
+        chunks(seq.size, chunk, (from, to) -> {
+            for(int i = from; i < to; i++){
+                consumer.get(items[i]);
+            }
+        });
+    }
+
+    /** @return a new sequence of the mapped items, written in place in a pre-sized array. */
+    public static <T, R> Seq<R> map(Seq<T> seq, Func<T, R> mapper){
+        T[] items = seq.items;
+        int chunk = threshold;
+        int size = seq.size;
+        Seq<R> out = new Seq<>(size);
+        Object[] result = out.items;
+        chunks(size, chunk, (from, to) -> {
+            for(int i = from; i < to; i++){
+                result[i] = mapper.get(items[i]);
+            }
+        });
+        out.size = size;
+        return out;
+    }
+
+    /**
+     * @return a new sequence of the items matching the predicate, in order. The predicate is called once per item; the
+     * matches of each chunk are counted first, so that the output can be allocated at its exact size.
+     */
+    public static <T> Seq<T> select(Seq<T> seq, Boolf<T> predicate){
+        T[] items = seq.items;
+        int chunk = threshold;
+        int size = seq.size, chunkCount = chunkCount(size, chunk);
+        boolean[] matches = new boolean[size];
+        int[] offsets = new int[chunkCount + 1];
+        chunks(size, chunk, (from, to) -> {
+            int count = 0;
+            for(int i = from; i < to; i++){
+                matches[i] = predicate.get(items[i]);
+                if(matches[i]) count++;
+            }
+            offsets[from / chunk + 1] = count;
+        });
+        for(int i = 0; i < chunkCount; i++){
+            offsets[i + 1] += offsets[i];
+        }
+
+        Seq<T> out = new Seq<>(offsets[chunkCount]);
+        Object[] result = out.items;
+        chunks(size, chunk, (from, to) -> {
+            int index = offsets[from / chunk];
+            for(int i = from; i < to; i++){
+                if(matches[i]) result[index++] = items[i];
+            }
+        });
+        out.size = offsets[chunkCount];
+        return out;
+    }
+
+    /** @return the number of items matching the predicate. */
+    public static <T> int count(Seq<T> seq, Boolf<T> predicate){
+        T[] items = seq.items;
+        int chunk = threshold;
+        int[] counts = new int[chunkCount(seq.size, chunk)];
+        chunks(seq.size, chunk, (from, to) -> {
+            int count = 0;
+            for(int i = from; i < to; i++){
+                if(predicate.get(items[i])) count++;
+            }
+            counts[from / chunk] = count;
+        });
+        int count = 0;
+        for(int c : counts) count += c;
+        return count;
+    }
+
+    /**
+     * Folds each chunk from the identity, then combines the chunk results in order.
+     * @param identity A value which the reducer and the combiner leave unchanged, as it is used once per chunk.
+     */
+    public static <T, R> R reduce(Seq<T> seq, R identity, Func2<T, R, R> reducer, Func2<R, R, R> combiner){
+        T[] items = seq.items;
+        int chunk = threshold;
+        Object[] results = new Object[chunkCount(seq.size, chunk)];
+        chunks(seq.size, chunk, (from, to) -> {
+            R result = identity;
+            for(int i = from; i < to; i++){
+                result = reducer.get(items[i], result);
+            }
+            results[from / chunk] = result;
+        });
+        R result = identity;
+        for(Object r : results){
+            result = combiner.get(result, (R)r);
+        }
+        return result;
+    }
+
+    public static <T> float sumf(Seq<T> seq, Floatf<T> summer){
+        T[] items = seq.items;
+        int chunk = threshold;
+        float[] sums = new float[chunkCount(seq.size, chunk)];
+        chunks(seq.size, chunk, (from, to) -> {
+            float sum = 0;
+            for(int i = from; i < to; i++){
+                sum += summer.get(items[i]);
+            }
+            sums[from / chunk] = sum;
+        });
+        float sum = 0;
+        for(float s : sums) sum += s;
+        return sum;
+    }
+
+    public static <T> int sum(Seq<T> seq, Intf<T> summer){
+        T[] items = seq.items;
+        int chunk = threshold;
+        int[] sums = new int[chunkCount(seq.size, chunk)];
+        chunks(seq.size, chunk, (from, to) -> {
+            int sum = 0;
+            for(int i = from; i < to; i++){
+                sum += summer.get(items[i]);
+            }
+            sums[from / chunk] = sum;
+        });
+        int sum = 0;
+        for(int s : sums) sum += s;
+        return sum;
+    }
+
+    static int chunkCount(int size, int chunk){
+        return (size + chunk - 1) / chunk;
+    }
+
+    /** Calls the action with each chunk of {@code [0, size)}, in parallel unless there is a single chunk. */
+    static void chunks(int size, int chunk, Intc2 action){
+        int count = chunkCount(size, chunk);
+        if(count <= 1){
+            if(size > 0) action.get(0, size);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new ChunkTask(action, 0, count, size, chunk));
+    }
+
+    static final class ChunkTask extends RecursiveAction{
+        final Intc2 action;
+        final int first, last, size, chunkSize;
+
+        ChunkTask(Intc2 action, int first, int last, int size, int chunkSize){
+            this.action = action;
+            this.first = first;
+            this.last = last;
+            this.size = size;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute(){
+            if(last - first == 1){
+                action.get(first * chunkSize, Math.min(size, (first + 1) * chunkSize));
+                return;
+            }
+            int mid = (first + last) >>> 1;
+            invokeAll(new ChunkTask(action, first, mid, size, chunkSize), new ChunkTask(action, mid, last, size, chunkSize));
+        }
+    }
+
+    /** Sorts both halves, then merges them through the buffer. */
+    static final class SortTask extends RecursiveAction{
+        final Object[] items, buffer;
+        final int from, to, threshold;
+        final Comparator<Object> comparator;
+
+        SortTask(Object[] items, Object[] buffer, int from, int to, Comparator<Object> comparator, int threshold){
+            this.items = items;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from <= threshold){
+                //Each worker thread has its own Sort, and its reusable working memory
+                Sort.instance().sort(items, comparator, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask(items, buffer, from, mid, comparator, threshold), new SortTask(items, buffer, mid, to, comparator, threshold));
+
+            //Already in order, which is common for partially sorted input
+            if(comparator.compare(items[mid - 1], items[mid]) <= 0) return;
+
+            System.arraycopy(items, from, buffer, from, to - from);
+            new MergeTask(buffer, from, mid, mid, to, items, from, comparator, threshold).compute();
+        }
+    }
+
+    /** Merges two sorted ranges of the source into the destination, splitting both around the middle of the larger one. */
+    static final class MergeTask extends RecursiveAction{
+        final Object[] source, dest;
+        final int lo1, hi1, lo2, hi2, to, threshold;
+        final Comparator<Object> comparator;
+
+        MergeTask(Object[] source, int lo1, int hi1, int lo2, int hi2, Object[] dest, int to, Comparator<Object> comparator, int threshold){
+            this.source = source;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dest = dest;
+            this.to = to;
+            this.comparator = comparator;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute(){
+            if((hi1 - lo1) + (hi2 - lo2) <= threshold){
+                merge();
+                return;
+            }
+
+            int mid1, mid2;
+            if(hi1 - lo1 >= hi2 - lo2){
+                mid1 = (lo1 + hi1) >>> 1;
+                //Equal items of the second range go after the pivot, which keeps the sort stable
+                mid2 = search(source[mid1], lo2, hi2, false);
+            }else{
+                mid2 = (lo2 + hi2) >>> 1;
+                mid1 = search(source[mid2], lo1, hi1, true);
+            }
+            int split = to + (mid1 - lo1) + (mid2 - lo2);
+            invokeAll(
+                new MergeTask(source, lo1, mid1, lo2, mid2, dest, to, comparator, threshold),
+                new MergeTask(source, mid1, hi1, mid2, hi2, dest, split, comparator, threshold)
+            );
+        }
+
+        /** @return the first index of the range whose item is greater than the key, or greater or equal if not {@code after}. */
+        int search(Object key, int low, int high, boolean after){
+            while(low < high){
+                int mid = (low + high) >>> 1;
+                int cmp = comparator.compare(source[mid], key);
+                if(cmp < 0 || (after && cmp == 0)){
+                    low = mid + 1;
+                }else{
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        void merge(){
+            Object[] source = this.source, dest = this.dest;
+            int i = lo1, j = lo2, k = to;
+            while(i < hi1 && j < hi2){
+                dest[k++] = comparator.compare(source[j], source[i]) < 0 ? source[j++] : source[i++];
+            }
+            while(i < hi1) dest[k++] = source[i++];
+            while(j < hi2) dest[k++] = source[j++];
+        }
+    }
+}
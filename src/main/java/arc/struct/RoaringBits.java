@@ -0,0 +1,1086 @@
+package arc.struct;
+
+import arc.func.*;
+
+import java.util.*;
+
+/**
+ * A compressed bitset, for sparse or clustered indices over a large range. This is a roaring bitmap: indices are split
+ * in chunks of 65536, and each non-empty chunk is stored in a container of its own, either a sorted array of up to
+ * 4096 indices, a dense bitmap of 8 KiB, or a list of runs of consecutive indices. Empty chunks cost nothing, and the set
+ * operations work container by container, so they skip the chunks only one of the sets has. <br>
+ * <br>
+ * Containers switch between array and bitmap as their cardinality changes. Runs are only created by {@link #set(int, int)}
+ * and by {@link #optimize()}, which re-encodes each container in its most compact form. <br>
+ * Like {@link Bits}, indices must not be negative.
+ * @see Bits
+ */
+public class RoaringBits{
+    /** The maximum cardinality of an array container, above which a bitmap is smaller. */
+    static final int arrayMax = 4096;
+
+    char[] keys;
+    Container[] containers;
+    int count;
+
+    public RoaringBits(){
+        keys = new char[4];
+        containers = new Container[4];
+    }
+
+    /** Creates a copy of the specified bitset. */
+    public RoaringBits(RoaringBits other){
+        count = other.count;
+        keys = Arrays.copyOf(other.keys, Math.max(4, count));
+        containers = new Container[keys.length];
+        for(int i = 0; i < count; i++){
+            containers[i] = other.containers[i].copy();
+        }
+    }
+
+    public static RoaringBits with(int... indices){
+        RoaringBits bits = new RoaringBits();
+        for(int index : indices) bits.set(index);
+        return bits;
+    }
+
+    /** Creates a compressed copy of a dense bitset, converting whole words at a time. */
+    public static RoaringBits of(Bits bits){
+        RoaringBits out = new RoaringBits();
+        long[] words = bits.bits;
+        for(int offset = 0; offset < words.length; offset += 1024){
+            long[] chunk = new long[1024];
+            System.arraycopy(words, offset, chunk, 0, Math.min(1024, words.length - offset));
+            Container container = fromWords(chunk);
+            if(container != null) out.append(offset >>> 10, container);
+        }
+        return out;
+    }
+
+    public static RoaringBits of(IntSet set){
+        RoaringBits out = new RoaringBits();
+        out.addAll(set);
+        return out;
+    }
+
+    public void addAll(IntSet set){
+        set.each(this::set);
+    }
+
+    public void addAll(IntSeq array){
+        for(int i = 0; i < array.size; i++){
+            set(array.items[i]);
+        }
+    }
+
+    public void addAll(int... array){
+        for(int index : array) set(index);
+    }
+
+    /** @return whether the bit is set */
+    public boolean get(int index){
+        if(index < 0) return false;
+        int i = find(index >>> 16);
+        return i >= 0 && containers[i].contains(index & 0xffff);
+    }
+
+    /** @param index the index of the bit to set */
+    public void set(int index){
+        checkIndex(index);
+        int i = find(index >>> 16);
+        if(i >= 0){
+            containers[i] = containers[i].add(index & 0xffff);
+        }else{
+            insert(-i - 1, index >>> 16, new ArrayContainer().add(index & 0xffff));
+        }
+    }
+
+    public void set(int index, boolean value){
+        if(value){
+            set(index);
+        }else{
+            clear(index);
+        }
+    }
+
+    /**
+     * Sets a range of bits. Whole chunks are stored as a single run.
+     * @param from index to start from, inclusive.
+     * @param to index to end at, exclusive.
+     */
+    public void set(int from, int to){
+        if(from >= to) return;
+        checkIndex(from);
+        for(int key = from >>> 16, last = (to - 1) >>> 16; key <= last; key++){
+            int start = key == from >>> 16 ? from & 0xffff : 0;
+            int end = key == last ? ((to - 1) & 0xffff) + 1 : 0x10000;
+            int i = find(key);
+            if(i >= 0){
+                containers[i] = containers[i].add(start, end);
+            }else{
+                insert(-i - 1, key, new RunContainer(new char[]{(char)start, (char)(end - start - 1)}, 1));
+            }
+        }
+    }
+
+    /**
+     * Returns the bit at the given index and sets it in one go.
+     * @return whether the bit was set before invocation
+     */
+    public boolean getAndSet(int index){
+        checkIndex(index);
+        int i = find(index >>> 16);
+        if(i < 0){
+            insert(-i - 1, index >>> 16, new ArrayContainer().add(index & 0xffff));
+            return false;
+        }
+        Container container = containers[i];
+        int cardinality = container.cardinality();
+        containers[i] = container = container.add(index & 0xffff);
+        return container.cardinality() == cardinality;
+    }
+
+    /**
+     * Returns the bit at the given index and clears it in one go.
+     * @return whether the bit was set before invocation
+     */
+    public boolean getAndClear(int index){
+        if(index < 0) return false;
+        int i = find(index >>> 16);
+        if(i < 0) return false;
+        Container container = containers[i];
+        int cardinality = container.cardinality();
+        container = container.remove(index & 0xffff);
+        if(container == null){
+            remove(i);
+            return true;
+        }
+        containers[i] = container;
+        return container.cardinality() != cardinality;
+    }
+
+    /** @param index the index of the bit to clear */
+    public void clear(int index){
+        getAndClear(index);
+    }
+
+    /** @param index the index of the bit to flip */
+    public void flip(int index){
+        if(!getAndClear(index)) set(index);
+    }
+
+    /** Clears the entire bitset */
+    public void clear(){
+        Arrays.fill(containers, 0, count, null);
+        count = 0;
+    }
+
+    /** @return true if this bitset contains no bits that are set to true */
+    public boolean isEmpty(){
+        return count == 0;
+    }
+
+    /** @return the number of bits set to true */
+    public int cardinality(){
+        int cardinality = 0;
+        for(int i = 0; i < count; i++){
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /** @return the index of the highest set bit plus one, or zero if no bit is set */
+    public int length(){
+        if(count == 0) return 0;
+        return (keys[count - 1] << 16 | containers[count - 1].last()) + 1;
+    }
+
+    /**
+     * Returns the index of the first bit that is set to true that occurs on or after the specified starting index. If no such bit
+     * exists then -1 is returned.
+     */
+    public int nextSetBit(int fromIndex){
+        if(fromIndex < 0) fromIndex = 0;
+        int i = find(fromIndex >>> 16);
+        if(i >= 0){
+            int value = containers[i].next(fromIndex & 0xffff);
+            if(value != -1) return keys[i] << 16 | value;
+            i++;
+        }else{
+            i = -i - 1;
+        }
+        return i < count ? keys[i] << 16 | containers[i].next(0) : -1;
+    }
+
+    /** Returns the index of the first bit that is set to false that occurs on or after the specified starting index. */
+    public int nextClearBit(int fromIndex){
+        if(fromIndex < 0) fromIndex = 0;
+        int key = fromIndex >>> 16, low = fromIndex & 0xffff;
+        int i = find(key);
+        if(i < 0) return fromIndex;
+        //Full chunks continue into the next one
+        for(; i < count && keys[i] == key; i++, key++, low = 0){
+            int value = containers[i].nextAbsent(low);
+            if(value < 0x10000) return key << 16 | value;
+        }
+        return key << 16;
+    }
+
+    /** Calls the consumer with each set bit, in ascending order. */
+    public void each(Intc cons){
+        for(int i = 0; i < count; i++){
+            containers[i].each(keys[i] << 16, cons);
+        }
+    }
+
+    public int[] toArray(){
+        int[] out = new int[cardinality()];
+        int n = 0;
+        for(int i = 0; i < count; i++){
+            Container container = containers[i];
+            int high = keys[i] << 16;
+            for(int value = container.next(0); value != -1; value = container.nextAfter(value)){
+                out[n++] = high | value;
+            }
+        }
+        return out;
+    }
+
+    public IntSeq toSeq(){
+        return new IntSeq(toArray());
+    }
+
+    public IntSet toIntSet(){
+        IntSet set = new IntSet(cardinality());
+        each(set::add);
+        return set;
+    }
+
+    /** @return a dense copy of this bitset, filled whole words at a time. */
+    public Bits toBits(){
+        if(count == 0) return new Bits();
+        //Containers fill whole chunks
+        Bits bits = new Bits(((keys[count - 1] + 1) << 16) - 1);
+        for(int i = 0; i < count; i++){
+            containers[i].fill(bits.bits, keys[i] << 10);
+        }
+        return bits;
+    }
+
+    /**
+     * Performs a logical <b>AND</b> of this bitset with the argument bitset. Only the chunks both sets have are compared.
+     * @param other a bitset
+     */
+    public void and(RoaringBits other){
+        int n = 0;
+        for(int i = 0, j = 0; i < count && j < other.count; ){
+            char a = keys[i], b = other.keys[j];
+            if(a < b){
+                i++;
+            }else if(a > b){
+                j++;
+            }else{
+                Container container = and(containers[i], other.containers[j]);
+                if(container != null){
+                    keys[n] = a;
+                    containers[n++] = container;
+                }
+                i++;
+                j++;
+            }
+        }
+        Arrays.fill(containers, n, count, null);
+        count = n;
+    }
+
+    /**
+     * Clears all of the bits in this bitset whose corresponding bit is set in the specified bitset.
+     * @param other a bitset
+     */
+    public void andNot(RoaringBits other){
+        int n = 0;
+        for(int i = 0, j = 0; i < count; ){
+            char a = keys[i];
+            while(j < other.count && other.keys[j] < a) j++;
+            Container container = j < other.count && other.keys[j] == a ? andNot(containers[i], other.containers[j]) : containers[i];
+            if(container != null){
+                keys[n] = a;
+                containers[n++] = container;
+            }
+            i++;
+        }
+        Arrays.fill(containers, n, count, null);
+        count = n;
+    }
+
+    /**
+     * Performs a logical <b>OR</b> of this bitset with the argument bitset.
+     * @param other a bitset
+     */
+    public void or(RoaringBits other){
+        merge(other, false);
+    }
+
+    /**
+     * Performs a logical <b>XOR</b> of this bitset with the argument bitset.
+     * @param other a bitset
+     */
+    public void xor(RoaringBits other){
+        merge(other, true);
+    }
+
+    private void merge(RoaringBits other, boolean xor){
+        int capacity = Math.max(4, count + other.count);
+        char[] outKeys = new char[capacity];
+        Container[] out = new Container[capacity];
+        int n = 0;
+        for(int i = 0, j = 0; i < count || j < other.count; ){
+            int a = i < count ? keys[i] : Integer.MAX_VALUE, b = j < other.count ? other.keys[j] : Integer.MAX_VALUE;
+            Container container;
+            if(a < b){
+                container = containers[i++];
+            }else if(a > b){
+                container = other.containers[j++].copy();
+            }else{
+                container = xor ? xor(containers[i++], other.containers[j++]) : or(containers[i++], other.containers[j++]);
+            }
+            if(container != null){
+                outKeys[n] = (char)Math.min(a, b);
+                out[n++] = container;
+            }
+        }
+        keys = outKeys;
+        containers = out;
+        count = n;
+    }
+
+    /**
+     * Returns true if the specified bitset has any bits set to true that are also set to true in this bitset.
+     * @param other a bitset
+     */
+    public boolean intersects(RoaringBits other){
+        for(int i = 0, j = 0; i < count && j < other.count; ){
+            char a = keys[i], b = other.keys[j];
+            if(a < b){
+                i++;
+            }else if(a > b){
+                j++;
+            }else if(intersects(containers[i++], other.containers[j++])){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if this bitset is a super set of the specified set.
+     * @param other a bitset
+     */
+    public boolean containsAll(RoaringBits other){
+        int i = 0;
+        for(int j = 0; j < other.count; j++){
+            char b = other.keys[j];
+            while(i < count && keys[i] < b) i++;
+            if(i == count || keys[i] != b || !containsAll(containers[i], other.containers[j])) return false;
+        }
+        return true;
+    }
+
+    /** Converts each container to the most compact of the array, bitmap and run encodings. */
+    public void optimize(){
+        for(int i = 0; i < count; i++){
+            containers[i] = containers[i].optimize();
+        }
+    }
+
+    /** @return the approximate number of bytes used by the containers. */
+    public long byteSize(){
+        long bytes = keys.length * 2L + containers.length * 4L;
+        for(int i = 0; i < count; i++){
+            bytes += containers[i].bytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public int hashCode(){
+        int h = 0;
+        for(int i = 0; i < count; i++){
+            Container container = containers[i];
+            int high = keys[i] << 16;
+            for(int value = container.next(0); value != -1; value = container.nextAfter(value)){
+                h = 31 * h + (high | value);
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj){
+        if(this == obj) return true;
+        if(!(obj instanceof RoaringBits)) return false;
+        RoaringBits other = (RoaringBits)obj;
+        if(count != other.count) return false;
+        for(int i = 0; i < count; i++){
+            Container a = containers[i], b = other.containers[i];
+            if(keys[i] != other.keys[i] || a.cardinality() != b.cardinality() || !containsAll(a, b)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString(){
+        if(count == 0) return "[]";
+        StringBuilder buffer = new StringBuilder(32);
+        buffer.append('[');
+        each(value -> {
+            if(buffer.length() > 1) buffer.append(", ");
+            buffer.append(value);
+        });
+        buffer.append(']');
+        return buffer.toString();
+    }
+
+    private void checkIndex(int index){
+        if(index < 0) throw new IndexOutOfBoundsException("index can't be < 0: " + index);
+    }
+
+    /** @return the index of the container of the specified key, or (-(insertion point) - 1) if there is none. */
+    private int find(int key){
+        char[] keys = this.keys;
+        int low = 0, high = count - 1;
+        while(low <= high){
+            int mid = (low + high) >>> 1;
+            int midKey = keys[mid];
+            if(midKey < key){
+                low = mid + 1;
+            }else if(midKey > key){
+                high = mid - 1;
+            }else{
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insert(int index, int key, Container container){
+        if(count == keys.length){
+            keys = Arrays.copyOf(keys, count * 2);
+            containers = Arrays.copyOf(containers, count * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, count - index);
+        System.arraycopy(containers, index, containers, index + 1, count - index);
+        keys[index] = (char)key;
+        containers[index] = container;
+        count++;
+    }
+
+    private void append(int key, Container container){
+        insert(count, key, container);
+    }
+
+    private void remove(int index){
+        count--;
+        System.arraycopy(keys, index + 1, keys, index, count - index);
+        System.arraycopy(containers, index + 1, containers, index, count - index);
+        containers[count] = null;
+    }
+
+    static Container and(Container a, Container b){
+        if(a instanceof ArrayContainer) return ((ArrayContainer)a).filter(b, true);
+        if(b instanceof ArrayContainer) return ((ArrayContainer)b).filter(a, true);
+        long[] words = a.toWords(), other = b.toWords();
+        for(int i = 0; i < 1024; i++) words[i] &= other[i];
+        return fromWords(words);
+    }
+
+    static Container andNot(Container a, Container b){
+        if(a instanceof ArrayContainer) return ((ArrayContainer)a).filter(b, false);
+        long[] words = a.toWords(), other = b.toWords();
+        for(int i = 0; i < 1024; i++) words[i] &= ~other[i];
+        return fromWords(words);
+    }
+
+    static Container or(Container a, Container b){
+        if(a instanceof ArrayContainer && b instanceof ArrayContainer && a.cardinality() + b.cardinality() <= arrayMax){
+            return ((ArrayContainer)a).merge((ArrayContainer)b, false);
+        }
+        long[] words = a.toWords();
+        b.fill(words, 0);
+        return fromWords(words);
+    }
+
+    static Container xor(Container a, Container b){
+        if(a instanceof ArrayContainer && b instanceof ArrayContainer && a.cardinality() + b.cardinality() <= arrayMax){
+            return ((ArrayContainer)a).merge((ArrayContainer)b, true);
+        }
+        long[] words = a.toWords(), other = b.toWords();
+        for(int i = 0; i < 1024; i++) words[i] ^= other[i];
+        return fromWords(words);
+    }
+
+    static boolean intersects(Container a, Container b){
+        if(b instanceof ArrayContainer){
+            Container swap = a;
+            a = b;
+            b = swap;
+        }
+        if(a instanceof ArrayContainer){
+            ArrayContainer array = (ArrayContainer)a;
+            for(int i = 0; i < array.cardinality; i++){
+                if(b.contains(array.content[i])) return true;
+            }
+            return false;
+        }
+        long[] words = a.words(), other = b.words();
+        for(int i = 0; i < 1024; i++){
+            if((words[i] & other[i]) != 0) return true;
+        }
+        return false;
+    }
+
+    /** @return whether a contains all the values of b. */
+    static boolean containsAll(Container a, Container b){
+        if(b.cardinality() > a.cardinality()) return false;
+        if(b instanceof ArrayContainer){
+            ArrayContainer array = (ArrayContainer)b;
+            for(int i = 0; i < array.cardinality; i++){
+                if(!a.contains(array.content[i])) return false;
+            }
+            return true;
+        }
+        long[] words = a.words(), other = b.words();
+        for(int i = 0; i < 1024; i++){
+            if((other[i] & ~words[i]) != 0) return false;
+        }
+        return true;
+    }
+
+    /** @return the container of the bits of a chunk, taking ownership of the words, or null if no bit is set. */
+    static Container fromWords(long[] words){
+        int cardinality = 0;
+        for(long word : words) cardinality += Long.bitCount(word);
+        if(cardinality == 0) return null;
+        if(cardinality > arrayMax) return new BitmapContainer(words, cardinality);
+
+        char[] content = new char[cardinality];
+        int n = 0;
+        for(int i = 0; i < 1024; i++){
+            long word = words[i];
+            while(word != 0){
+                content[n++] = (char)(i << 6 | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return new ArrayContainer(content, cardinality);
+    }
+
+    /** Sets the bits from {@code from}, inclusive, to {@code to}, exclusive. */
+    static void setRange(long[] words, int offset, int from, int to){
+        if(from >= to) return;
+        int first = offset + (from >>> 6), last = offset + ((to - 1) >>> 6);
+        long firstMask = -1L << from, lastMask = -1L >>> -to;
+        if(first == last){
+            words[first] |= firstMask & lastMask;
+        }else{
+            words[first] |= firstMask;
+            for(int i = first + 1; i < last; i++) words[i] = -1L;
+            words[last] |= lastMask;
+        }
+    }
+
+    /** The values of a chunk, as 16-bit integers. */
+    abstract static class Container{
+        abstract int cardinality();
+
+        abstract boolean contains(int value);
+
+        /** @return this container with the value added, or a container of another type holding it. */
+        abstract Container add(int value);
+
+        /** Adds the values from {@code from}, inclusive, to {@code to}, exclusive. */
+        abstract Container add(int from, int to);
+
+        /** @return this container without the value, a container of another type, or null if it is empty. */
+        abstract Container remove(int value);
+
+        /** @return the first value greater or equal to {@code from}, or -1 if there is none. */
+        abstract int next(int from);
+
+        /** @return the first value greater or equal to {@code from} which is absent, or 65536 if there is none. */
+        abstract int nextAbsent(int from);
+
+        abstract int last();
+
+        abstract void each(int high, Intc cons);
+
+        /** Sets the bits of the values in the words, starting at the specified word. */
+        abstract void fill(long[] words, int offset);
+
+        /** @return the number of runs of consecutive values. */
+        abstract int runs();
+
+        abstract Container copy();
+
+        abstract int bytes();
+
+        int nextAfter(int value){
+            return value == 0xffff ? -1 : next(value + 1);
+        }
+
+        /** @return the words of a bitmap holding the values, which may be those of this container; must not be modified. */
+        long[] words(){
+            return toWords();
+        }
+
+        /** @return a new bitmap of the values. */
+        long[] toWords(){
+            long[] words = new long[1024];
+            fill(words, 0);
+            return words;
+        }
+
+        /** @return the most compact encoding of the values. */
+        Container optimize(){
+            int cardinality = cardinality(), runs = runs();
+            int runBytes = runs * 4, otherBytes = cardinality <= arrayMax ? cardinality * 2 : 8192;
+            if(runBytes < otherBytes){
+                if(this instanceof RunContainer) return this;
+                char[] content = new char[runs * 2];
+                int n = 0;
+                for(int value = next(0); value != -1; ){
+                    int end = nextAbsent(value);
+                    content[n++] = (char)value;
+                    content[n++] = (char)(end - value - 1);
+                    value = end < 0x10000 ? next(end) : -1;
+                }
+                return new RunContainer(content, runs);
+            }
+            if(cardinality <= arrayMax) return this instanceof ArrayContainer ? this : fromWords(toWords());
+            return this instanceof BitmapContainer ? this : new BitmapContainer(toWords(), cardinality);
+        }
+    }
+
+    /** A sorted array of values, for sparse chunks. */
+    static final class ArrayContainer extends Container{
+        char[] content;
+        int cardinality;
+
+        ArrayContainer(){
+            content = new char[4];
+        }
+
+        ArrayContainer(char[] content, int cardinality){
+            this.content = content;
+            this.cardinality = cardinality;
+        }
+
+        private int index(int value){
+            return Arrays.binarySearch(content, 0, cardinality, (char)value);
+        }
+
+        @Override
+        int cardinality(){
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int value){
+            return index(value) >= 0;
+        }
+
+        @Override
+        Container add(int value){
+            int index = index(value);
+            if(index >= 0) return this;
+            if(cardinality == arrayMax) return new BitmapContainer(toWords(), cardinality).add(value);
+
+            index = -index - 1;
+            if(cardinality == content.length) content = Arrays.copyOf(content, Math.min(arrayMax, cardinality * 2));
+            System.arraycopy(content, index, content, index + 1, cardinality - index);
+            content[index] = (char)value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container add(int from, int to){
+            if(cardinality + (to - from) > arrayMax) return new BitmapContainer(toWords(), cardinality).add(from, to);
+            Container container = this;
+            for(int value = from; value < to; value++){
+                container = container.add(value);
+            }
+            return container;
+        }
+
+        @Override
+        Container remove(int value){
+            int index = index(value);
+            if(index < 0) return this;
+            cardinality--;
+            System.arraycopy(content, index + 1, content, index, cardinality - index);
+            return cardinality == 0 ? null : this;
+        }
+
+        @Override
+        int next(int from){
+            int index = index(from);
+            if(index >= 0) return from;
+            index = -index - 1;
+            return index < cardinality ? content[index] : -1;
+        }
+
+        @Override
+        int nextAbsent(int from){
+            int index = index(from);
+            if(index < 0) return from;
+            int value = from;
+            while(index < cardinality && content[index] == value){
+                index++;
+                value++;
+            }
+            return value;
+        }
+
+        @Override
+        int last(){
+            return content[cardinality - 1];
+        }
+
+        @Override
+        void each(int high, Intc cons){
+            char[] content = this.content;
+            for(int i = 0, n = cardinality; i < n; i++){
+                cons.get(high | content[i]);
+            }
+        }
+
+        @Override
+        void fill(long[] words, int offset){
+            for(int i = 0; i < cardinality; i++){
+                int value = content[i];
+                words[offset + (value >>> 6)] |= 1L << value;
+            }
+        }
+
+        @Override
+        int runs(){
+            int runs = 0;
+            for(int i = 0; i < cardinality; i++){
+                if(i == 0 || content[i] != content[i - 1] + 1) runs++;
+            }
+            return runs;
+        }
+
+        /** @return the values which are, or are not, in the other container. */
+        ArrayContainer filter(Container other, boolean keep){
+            char[] out = new char[cardinality];
+            int n = 0;
+            for(int i = 0; i < cardinality; i++){
+                if(other.contains(content[i]) == keep) out[n++] = content[i];
+            }
+            return n == 0 ? null : new ArrayContainer(out, n);
+        }
+
+        /** @return the union, or the symmetric difference, of both arrays. */
+        ArrayContainer merge(ArrayContainer other, boolean xor){
+            char[] out = new char[cardinality + other.cardinality];
+            int n = 0, i = 0, j = 0;
+            while(i < cardinality && j < other.cardinality){
+                char a = content[i], b = other.content[j];
+                if(a < b){
+                    out[n++] = a;
+                    i++;
+                }else if(a > b){
+                    out[n++] = b;
+                    j++;
+                }else{
+                    if(!xor) out[n++] = a;
+                    i++;
+                    j++;
+                }
+            }
+            while(i < cardinality) out[n++] = content[i++];
+            while(j < other.cardinality) out[n++] = other.content[j++];
+            return n == 0 ? null : new ArrayContainer(out, n);
+        }
+
+        @Override
+        Container copy(){
+            return new ArrayContainer(Arrays.copyOf(content, Math.max(cardinality, 1)), cardinality);
+        }
+
+        @Override
+        int bytes(){
+            return content.length * 2;
+        }
+    }
+
+    /** A bitmap of the 65536 values, for dense chunks. */
+    static final class BitmapContainer extends Container{
+        final long[] words;
+        int cardinality;
+
+        BitmapContainer(long[] words, int cardinality){
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality(){
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int value){
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(int value){
+            long word = words[value >>> 6];
+            if((word & (1L << value)) == 0){
+                words[value >>> 6] = word | (1L << value);
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container add(int from, int to){
+            setRange(words, 0, from, to);
+            cardinality = 0;
+            for(long word : words) cardinality += Long.bitCount(word);
+            return this;
+        }
+
+        @Override
+        Container remove(int value){
+            long word = words[value >>> 6];
+            if((word & (1L << value)) == 0) return this;
+            words[value >>> 6] = word & ~(1L << value);
+            cardinality--;
+            return cardinality <= arrayMax ? fromWords(words) : this;
+        }
+
+        @Override
+        int next(int from){
+            int index = from >>> 6;
+            long word = words[index] & (-1L << from);
+            while(true){
+                if(word != 0) return index << 6 | Long.numberOfTrailingZeros(word);
+                if(++index == 1024) return -1;
+                word = words[index];
+            }
+        }
+
+        @Override
+        int nextAbsent(int from){
+            int index = from >>> 6;
+            long word = ~words[index] & (-1L << from);
+            while(true){
+                if(word != 0) return index << 6 | Long.numberOfTrailingZeros(word);
+                if(++index == 1024) return 0x10000;
+                word = ~words[index];
+            }
+        }
+
+        @Override
+        int last(){
+            for(int i = 1023; i >= 0; i--){
+                if(words[i] != 0) return i << 6 | (63 - Long.numberOfLeadingZeros(words[i]));
+            }
+            return -1;
+        }
+
+        @Override
+        void each(int high, Intc cons){
+            long[] words = this.words;
+            for(int i = 0; i < 1024; i++){
+                long word = words[i];
+                while(word != 0){
+                    cons.get(high | i << 6 | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        void fill(long[] words, int offset){
+            for(int i = 0; i < 1024; i++){
+                words[offset + i] |= this.words[i];
+            }
+        }
+
+        @Override
+        int runs(){
+            int runs = 0;
+            long previous = 0;
+            for(long word : words){
+                //A run starts at each set bit following a clear bit
+                runs += Long.bitCount(word & ~(word << 1 | previous >>> 63));
+                previous = word;
+            }
+            return runs;
+        }
+
+        @Override
+        long[] words(){
+            return words;
+        }
+
+        @Override
+        long[] toWords(){
+            return words.clone();
+        }
+
+        @Override
+        Container copy(){
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        int bytes(){
+            return 8192;
+        }
+    }
+
+    /** Runs of consecutive values, stored as start and length minus one, for clustered chunks. */
+    static final class RunContainer extends Container{
+        char[] runs;
+        int count, cardinality;
+
+        RunContainer(char[] runs, int count){
+            this.runs = runs;
+            this.count = count;
+            for(int i = 0; i < count; i++){
+                cardinality += runs[i * 2 + 1] + 1;
+            }
+        }
+
+        /** @return the index of the last run starting at or before the value, or -1 if there is none. */
+        private int floor(int value){
+            int low = 0, high = count - 1;
+            while(low <= high){
+                int mid = (low + high) >>> 1;
+                if(runs[mid * 2] <= value){
+                    low = mid + 1;
+                }else{
+                    high = mid - 1;
+                }
+            }
+            return low - 1;
+        }
+
+        private int end(int run){
+            return runs[run * 2] + runs[run * 2 + 1];
+        }
+
+        /** @return an array or bitmap of the values, to be modified. */
+        private Container expand(){
+            return fromWords(toWords());
+        }
+
+        @Override
+        int cardinality(){
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int value){
+            int run = floor(value);
+            return run >= 0 && value <= end(run);
+        }
+
+        @Override
+        Container add(int value){
+            return contains(value) ? this : expand().add(value);
+        }
+
+        @Override
+        Container add(int from, int to){
+            char[] out = new char[(count + 1) * 2];
+            int n = 0, start = from, end = to - 1;
+            boolean placed = false;
+            for(int i = 0; i < count; i++){
+                int runStart = runs[i * 2], runEnd = end(i);
+                if(runEnd + 1 < start){
+                    out[n++] = (char)runStart;
+                    out[n++] = (char)(runEnd - runStart);
+                }else if(runStart > end + 1){
+                    if(!placed){
+                        out[n++] = (char)start;
+                        out[n++] = (char)(end - start);
+                        placed = true;
+                    }
+                    out[n++] = (char)runStart;
+                    out[n++] = (char)(runEnd - runStart);
+                }else{
+                    //Overlapping or adjacent, merged into the new run
+                    start = Math.min(start, runStart);
+                    end = Math.max(end, runEnd);
+                }
+            }
+            if(!placed){
+                out[n++] = (char)start;
+                out[n++] = (char)(end - start);
+            }
+            return new RunContainer(out, n / 2);
+        }
+
+        @Override
+        Container remove(int value){
+            if(!contains(value)) return this;
+            return cardinality == 1 ? null : expand().remove(value);
+        }
+
+        @Override
+        int next(int from){
+            int run = floor(from);
+            if(run >= 0 && from <= end(run)) return from;
+            return run + 1 < count ? runs[(run + 1) * 2] : -1;
+        }
+
+        @Override
+        int nextAbsent(int from){
+            int run = floor(from);
+            return run >= 0 && from <= end(run) ? end(run) + 1 : from;
+        }
+
+        @Override
+        int last(){
+            return end(count - 1);
+        }
+
+        @Override
+        void each(int high, Intc cons){
+            for(int i = 0; i < count; i++){
+                for(int value = runs[i * 2], end = end(i); value <= end; value++){
+                    cons.get(high | value);
+                }
+            }
+        }
+
+        @Override
+        void fill(long[] words, int offset){
+            for(int i = 0; i < count; i++){
+                setRange(words, offset, runs[i * 2], end(i) + 1);
+            }
+        }
+
+        @Override
+        int runs(){
+            return count;
+        }
+
+        @Override
+        Container copy(){
+            return new RunContainer(Arrays.copyOf(runs, count * 2), count);
+        }
+
+        @Override
+        int bytes(){
+            return runs.length * 2;
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package arc.struct;
+
+import arc.func.*;
+import arc.math.*;
+
+import java.util.*;
+
+/**
+ * An unordered map that uses long keys. This implementation is a Robin Hood hash map: linear probing where an entry
+ * takes the slot of an entry closer to its ideal slot, which bounds the probe lengths, and backward-shift deletion,
+ * so no tombstones are left behind. Null values are allowed. No allocation is done except when growing the table size. <br>
+ * <br>
+ * Unlike the cuckoo hash {@link LongMap}, inserts never degrade into push chains nor premature resizes with clustered keys,
+ * such as packed coordinates. The entries can be iterated without allocation, nested or not, with a cursor:
+ * <pre>{@code
+ * for(int i = map.first(); i != -1; i = map.next(i)){
+ *     long key = map.keyAt(i);
+ *     V value = map.valueAt(i);
+ * }
+ * }</pre>
+ * @see LongMap
+ */
+@SuppressWarnings("unchecked")
+public class RobinLongMap<V> implements Iterable<RobinLongMap.Entry<V>>{
+    private static final int EMPTY = 0;
+
+    public int size;
+
+    /** The key 0 is stored in the extra slot at the end of the tables. */
+    long[] keyTable;
+    V[] valueTable;
+    int capacity;
+    boolean hasZeroValue;
+
+    private final float loadFactor;
+    private int mask, shift, threshold;
+
+    private Entries<V> entries;
+    private Values<V> values;
+    private Keys keys;
+
+    /** Creates a new map with an initial capacity of 51 and a load factor of 0.8. */
+    public RobinLongMap(){
+        this(51, 0.8f);
+    }
+
+    /**
+     * Creates a new map with a load factor of 0.8.
+     * @param initialCapacity If not a power of two, it is increased to the next nearest power of two.
+     */
+    public RobinLongMap(int initialCapacity){
+        this(initialCapacity, 0.8f);
+    }
+
+    /**
+     * Creates a new map with the specified initial capacity and load factor. This map will hold initialCapacity items before
+     * growing the backing table.
+     * @param initialCapacity If not a power of two, it is increased to the next nearest power of two.
+     */
+    public RobinLongMap(int initialCapacity, float loadFactor){
+        if(initialCapacity < 0) throw new IllegalArgumentException("initialCapacity must be >= 0: " + initialCapacity);
+        if(loadFactor <= 0 || loadFactor >= 1) throw new IllegalArgumentException("loadFactor must be > 0 and < 1: " + loadFactor);
+        this.loadFactor = loadFactor;
+        initialCapacity = Mathf.nextPowerOfTwo((int)Math.ceil(initialCapacity / loadFactor));
+        if(initialCapacity > 1 << 30) throw new IllegalArgumentException("initialCapacity is too large: " + initialCapacity);
+        allocate(Math.max(initialCapacity, 2));
+    }
+
+    /** Creates a new map identical to the specified map. */
+    public RobinLongMap(RobinLongMap<? extends V> map){
+        this.loadFactor = map.loadFactor;
+        allocate(map.capacity);
+        System.arraycopy(map.keyTable, 0, keyTable, 0, map.keyTable.length);
+        System.arraycopy(map.valueTable, 0, valueTable, 0, map.valueTable.length);
+        size = map.size;
+        hasZeroValue = map.hasZeroValue;
+    }
+
+    private void allocate(int capacity){
+        this.capacity = capacity;
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        threshold = Math.min((int)(capacity * loadFactor), capacity - 1);
+        keyTable = new long[capacity + 1];
+        valueTable = (V[])new Object[capacity + 1];
+    }
+
+    /** Fibonacci hashing: the top bits of the product depend on all the bits of the key. */
+    static int place(long key, int shift){
+        return (int)((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /** @return the index of the key, or -1 if it is absent. */
+    int locate(long key){
+        if(key == 0) return hasZeroValue ? capacity : -1;
+        long[] keyTable = this.keyTable;
+        int mask = this.mask, shift = this.shift;
+        for(int i = place(key, shift), distance = 0; ; i = (i + 1) & mask, distance++){
+            long other = keyTable[i];
+            if(other == key) return i;
+            // An entry closer to its ideal slot means the key would have taken its slot
+            if(other == EMPTY || ((i - place(other, shift)) & mask) < distance) return -1;
+        }
+    }
+
+    public V put(long key, V value){
+        if(key == 0){
+            V old = valueTable[capacity];
+            valueTable[capacity] = value;
+            if(!hasZeroValue){
+                hasZeroValue = true;
+                size++;
+                return null;
+            }
+            return old;
+        }
+
+        long[] keyTable = this.keyTable;
+        int mask = this.mask, shift = this.shift;
+        int i = place(key, shift), distance = 0;
+        for(; ; i = (i + 1) & mask, distance++){
+            long other = keyTable[i];
+            if(other == key){
+                V old = valueTable[i];
+                valueTable[i] = value;
+                return old;
+            }
+            if(other == EMPTY || ((i - place(other, shift)) & mask) < distance) break;
+        }
+
+        if(size++ >= threshold){
+            resize(capacity << 1);
+            insert(key, value, place(key, this.shift), 0);
+        }else{
+            // The lookup stopped where the key belongs
+            insert(key, value, i, distance);
+        }
+        return null;
+    }
+
+    /** Inserts a key known to be absent, starting at a slot where it belongs. */
+    private void insert(long key, V value, int index, int distance){
+        long[] keyTable = this.keyTable;
+        V[] valueTable = this.valueTable;
+        int mask = this.mask, shift = this.shift;
+        for(int i = index; ; i = (i + 1) & mask, distance++){
+            long other = keyTable[i];
+            if(other == EMPTY){
+                keyTable[i] = key;
+                valueTable[i] = value;
+                return;
+            }
+
+            int otherDistance = (i - place(other, shift)) & mask;
+            if(otherDistance < distance){
+                // Take the slot of the richer entry, which continues probing
+                V otherValue = valueTable[i];
+                keyTable[i] = key;
+                valueTable[i] = value;
+                key = other;
+                value = otherValue;
+                distance = otherDistance;
+            }
+        }
+    }
+
+    public void putAll(RobinLongMap<? extends V> map){
+        ensureCapacity(map.size);
+        for(int i = map.first(); i != -1; i = map.next(i)){
+            put(map.keyAt(i), map.valueAt(i));
+        }
+    }
+
+    public V get(long key){
+        int index = locate(key);
+        return index == -1 ? null : valueTable[index];
+    }
+
+    public V get(long key, V defaultValue){
+        int index = locate(key);
+        return index == -1 ? defaultValue : valueTable[index];
+    }
+
+    /** Returns the value for the key, or puts and returns the value created by the provider. */
+    public V get(long key, Prov<V> defaultValue){
+        int index = locate(key);
+        if(index != -1) return valueTable[index];
+        V value = defaultValue.get();
+        put(key, value);
+        return value;
+    }
+
+    public boolean containsKey(long key){
+        return locate(key) != -1;
+    }
+
+    public boolean containsValue(Object value, boolean identity){
+        for(int i = first(); i != -1; i = next(i)){
+            V other = valueTable[i];
+            if(identity ? other == value : value == null ? other == null : value.equals(other)) return true;
+        }
+        return false;
+    }
+
+    public V remove(long key){
+        int index = locate(key);
+        if(index == -1) return null;
+        V old = valueTable[index];
+        removeIndex(index);
+        return old;
+    }
+
+    private void removeIndex(int index){
+        size--;
+        if(index == capacity){
+            hasZeroValue = false;
+            valueTable[capacity] = null;
+            return;
+        }
+
+        // Shift back the following entries which are not in their ideal slot
+        long[] keyTable = this.keyTable;
+        V[] valueTable = this.valueTable;
+        int mask = this.mask, shift = this.shift;
+        int next = (index + 1) & mask;
+        long key;
+        while((key = keyTable[next]) != EMPTY && next != place(key, shift)){
+            keyTable[index] = key;
+            valueTable[index] = valueTable[next];
+            index = next;
+            next = (next + 1) & mask;
+        }
+        keyTable[index] = EMPTY;
+        valueTable[index] = null;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /** Clears the map and reduces the size of the backing arrays to be the specified capacity if they are larger. */
+    public void clear(int maximumCapacity){
+        int tableSize = Mathf.nextPowerOfTwo(Math.max(2, (int)Math.ceil(maximumCapacity / loadFactor)));
+        if(capacity <= tableSize){
+            clear();
+            return;
+        }
+        size = 0;
+        hasZeroValue = false;
+        allocate(tableSize);
+    }
+
+    public void clear(){
+        if(size == 0) return;
+        Arrays.fill(keyTable, EMPTY);
+        Arrays.fill(valueTable, null);
+        size = 0;
+        hasZeroValue = false;
+    }
+
+    /**
+     * Increases the size of the backing array to accommodate the specified number of additional items. Useful before adding many
+     * items to avoid multiple backing array resizes.
+     */
+    public void ensureCapacity(int additionalCapacity){
+        int sizeNeeded = size + additionalCapacity;
+        if(sizeNeeded >= threshold) resize(Mathf.nextPowerOfTwo((int)Math.ceil(sizeNeeded / loadFactor)));
+    }
+
+    private void resize(int newSize){
+        int oldCapacity = capacity;
+        long[] oldKeyTable = keyTable;
+        V[] oldValueTable = valueTable;
+
+        allocate(newSize);
+        keyTable[capacity] = 0;
+        valueTable[capacity] = oldValueTable[oldCapacity];
+
+        for(int i = 0; i < oldCapacity; i++){
+            long key = oldKeyTable[i];
+            if(key != EMPTY) insert(key, oldValueTable[i], place(key, shift), 0);
+        }
+    }
+
+    /** @return the index of the first entry, or -1 if the map is empty. */
+    public int first(){
+        return next(-1);
+    }
+
+    /** @return the index of the entry following the one at the specified index, or -1 if there is none. */
+    public int next(int index){
+        long[] keyTable = this.keyTable;
+        for(int i = index + 1; i < capacity; i++){
+            if(keyTable[i] != EMPTY) return i;
+        }
+        return index < capacity && hasZeroValue ? capacity : -1;
+    }
+
+    /** @return the key of the entry at the specified index. */
+    public long keyAt(int index){
+        return keyTable[index];
+    }
+
+    /** @return the value of the entry at the specified index. */
+    public V valueAt(int index){
+        return valueTable[index];
+    }
+
+    public void setValueAt(int index, V value){
+        valueTable[index] = value;
+    }
+
+    public void each(Longc key, Cons<V> value){
+        for(int i = first(); i != -1; i = next(i)){
+            key.get(keyTable[i]);
+            value.get(valueTable[i]);
+        }
+    }
+
+    public void eachValue(Cons<V> cons){
+        for(int i = first(); i != -1; i = next(i)){
+            cons.get(valueTable[i]);
+        }
+    }
+
+    public void eachKey(Longc cons){
+        for(int i = first(); i != -1; i = next(i)){
+            cons.get(keyTable[i]);
+        }
+    }
+
+    @Override
+    public int hashCode(){
+        int h = 0;
+        for(int i = first(); i != -1; i = next(i)){
+            h += (int)(keyTable[i] ^ keyTable[i] >>> 32) * 31;
+            V value = valueTable[i];
+            if(value != null) h += value.hashCode();
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj){
+        if(obj == this) return true;
+        if(!(obj instanceof RobinLongMap)) return false;
+        RobinLongMap<V> other = (RobinLongMap<V>)obj;
+        if(other.size != size) return false;
+        for(int i = first(); i != -1; i = next(i)){
+            int index = other.locate(keyTable[i]);
+            if(index == -1) return false;
+            V value = valueTable[i], otherValue = other.valueTable[index];
+            if(value == null ? otherValue != null : !value.equals(otherValue)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString(){
+        if(size == 0) return "[]";
+        StringBuilder buffer = new StringBuilder(32);
+        buffer.append('[');
+        for(int i = first(); i != -1; i = next(i)){
+            if(buffer.length() > 1) buffer.append(", ");
+            buffer.append(keyTable[i]).append('=').append(valueTable[i]);
+        }
+        buffer.append(']');
+        return buffer.toString();
+    }
+
+    @Override
+    public Iterator<Entry<V>> iterator(){
+        return entries();
+    }
+
+    /**
+     * Returns an iterator for the entries in the map. Note that the same iterator instance is returned each time this method is
+     * called, so it cannot be nested; use the {@link #first()} cursor or the {@link Entries} constructor instead.
+     */
+    public Entries<V> entries(){
+        if(entries == null) entries = new Entries<>(this);
+        entries.reset();
+        return entries;
+    }
+
+    /** @see #entries() */
+    public Values<V> values(){
+        if(values == null) values = new Values<>(this);
+        values.reset();
+        return values;
+    }
+
+    /** @see #entries() */
+    public Keys keys(){
+        if(keys == null) keys = new Keys(this);
+        keys.reset();
+        return keys;
+    }
+
+    public static class Entry<V>{
+        public long key;
+        public V value;
+
+        @Override
+        public String toString(){
+            return key + "=" + value;
+        }
+    }
+
+    private static class MapIterator<V>{
+        final RobinLongMap<V> map;
+        public boolean hasNext;
+        int nextIndex, currentIndex;
+
+        MapIterator(RobinLongMap<V> map){
+            this.map = map;
+            reset();
+        }
+
+        public void reset(){
+            currentIndex = -1;
+            nextIndex = map.first();
+            hasNext = nextIndex != -1;
+        }
+
+        int advance(){
+            if(!hasNext) throw new NoSuchElementException();
+            currentIndex = nextIndex;
+            nextIndex = map.next(nextIndex);
+            hasNext = nextIndex != -1;
+            return currentIndex;
+        }
+
+        /** Removing shifts the following entries back, which would be skipped or returned twice, so it is not supported. */
+        public void remove(){
+            throw new UnsupportedOperationException("Use RobinLongMap#remove outside of the iteration.");
+        }
+
+        public boolean hasNext(){
+            return hasNext;
+        }
+    }
+
+    public static class Entries<V> extends MapIterator<V> implements Iterable<Entry<V>>, Iterator<Entry<V>>{
+        private final Entry<V> entry = new Entry<>();
+
+        public Entries(RobinLongMap<V> map){
+            super(map);
+        }
+
+        /** Note the same entry instance is returned each time this method is called. */
+        @Override
+        public Entry<V> next(){
+            int index = advance();
+            entry.key = map.keyTable[index];
+            entry.value = map.valueTable[index];
+            return entry;
+        }
+
+        @Override
+        public Iterator<Entry<V>> iterator(){
+            return this;
+        }
+    }
+
+    public static class Values<V> extends MapIterator<V> implements Iterable<V>, Iterator<V>{
+        public Values(RobinLongMap<V> map){
+            super(map);
+        }
+
+        @Override
+        public V next(){
+            return map.valueTable[advance()];
+        }
+
+        /** Returns a new array containing the remaining values. */
+        public Seq<V> toArray(){
+            Seq<V> array = new Seq<>(true, map.size);
+            while(hasNext) array.add(next());
+            return array;
+        }
+
+        @Override
+        public Iterator<V> iterator(){
+            return this;
+        }
+    }
+
+    public static class Keys extends MapIterator<Object> implements Iterable<Long>, Iterator<Long>{
+        public Keys(RobinLongMap<?> map){
+            super((RobinLongMap<Object>)map);
+        }
+
+        @Override
+        public Long next(){
+            return nextKey();
+        }
+
+        /** Same as {@link #next()}, without boxing the key. */
+        public long nextKey(){
+            return map.keyTable[advance()];
+        }
+
+        /** Returns a new array containing the remaining keys. */
+        public LongSeq toArray(){
+            LongSeq array = new LongSeq(true, map.size);
+            while(hasNext) array.add(nextKey());
+            return array;
+        }
+
+        @Override
+        public Iterator<Long> iterator(){
+            return this;
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package arc.struct;
+
+import arc.func.*;
+import arc.math.*;
+
+import java.util.*;
+
+/**
+ * An unordered map. This implementation is a Robin Hood hash map: linear probing where an entry takes the slot of
+ * an entry closer to its ideal slot, which bounds the probe lengths, and backward-shift deletion, so no tombstones
+ * are left behind. Null values are allowed, null keys are not. No allocation is done except when growing the table size. <br>
+ * <br>
+ * Key hash codes are mixed before use, so keys with poorly distributed hash codes do not cluster. The entries can be
+ * iterated without allocation, nested or not, with a cursor:
+ * <pre>{@code
+ * for(int i = map.first(); i != -1; i = map.next(i)){
+ *     K key = map.keyAt(i);
+ *     V value = map.valueAt(i);
+ * }
+ * }</pre>
+ * @see ObjectMap
+ */
+@SuppressWarnings("unchecked")
+public class RobinObjectMap<K, V> implements Iterable<ObjectMap.Entry<K, V>>{
+    public int size;
+
+    K[] keyTable;
+    V[] valueTable;
+    int capacity;
+
+    private final float loadFactor;
+    private int mask, shift, threshold;
+
+    private Entries<K, V> entries;
+    private Values<V> values;
+    private Keys<K> keys;
+
+    /** Creates a new map with an initial capacity of 51 and a load factor of 0.8. */
+    public RobinObjectMap(){
+        this(51, 0.8f);
+    }
+
+    /**
+     * Creates a new map with a load factor of 0.8.
+     * @param initialCapacity If not a power of two, it is increased to the next nearest power of two.
+     */
+    public RobinObjectMap(int initialCapacity){
+        this(initialCapacity, 0.8f);
+    }
+
+    /**
+     * Creates a new map with the specified initial capacity and load factor. This map will hold initialCapacity items before
+     * growing the backing table.
+     * @param initialCapacity If not a power of two, it is increased to the next nearest power of two.
+     */
+    public RobinObjectMap(int initialCapacity, float loadFactor){
+        if(initialCapacity < 0) throw new IllegalArgumentException("initialCapacity must be >= 0: " + initialCapacity);
+        if(loadFactor <= 0 || loadFactor >= 1) throw new IllegalArgumentException("loadFactor must be > 0 and < 1: " + loadFactor);
+        this.loadFactor = loadFactor;
+        initialCapacity = Mathf.nextPowerOfTwo((int)Math.ceil(initialCapacity / loadFactor));
+        if(initialCapacity > 1 << 30) throw new IllegalArgumentException("initialCapacity is too large: " + initialCapacity);
+        allocate(Math.max(initialCapacity, 2));
+    }
+
+    /** Creates a new map identical to the specified map. */
+    public RobinObjectMap(RobinObjectMap<? extends K, ? extends V> map){
+        this.loadFactor = map.loadFactor;
+        allocate(map.capacity);
+        System.arraycopy(map.keyTable, 0, keyTable, 0, capacity);
+        System.arraycopy(map.valueTable, 0, valueTable, 0, capacity);
+        size = map.size;
+    }
+
+    private void allocate(int capacity){
+        this.capacity = capacity;
+        mask = capacity - 1;
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        threshold = Math.min((int)(capacity * loadFactor), capacity - 1);
+        keyTable = (K[])new Object[capacity];
+        valueTable = (V[])new Object[capacity];
+    }
+
+    /** Fibonacci hashing: the top bits of the product depend on all the bits of the hash code. */
+    static int place(Object key, int shift){
+        return (key.hashCode() * 0x9E3779B9) >>> shift;
+    }
+
+    /** @return the index of the key, or -1 if it is absent. */
+    int locate(Object key){
+        if(key == null) throw new IllegalArgumentException("key cannot be null.");
+        K[] keyTable = this.keyTable;
+        int mask = this.mask, shift = this.shift;
+        for(int i = place(key, shift), distance = 0; ; i = (i + 1) & mask, distance++){
+            K other = keyTable[i];
+            if(other == null) return -1;
+            if(other == key || other.equals(key)) return i;
+            // An entry closer to its ideal slot means the key would have taken its slot
+            if(((i - place(other, shift)) & mask) < distance) return -1;
+        }
+    }
+
+    /** Returns the old value associated with the specified key, or null. */
+    public V put(K key, V value){
+        if(key == null) throw new IllegalArgumentException("key cannot be null.");
+        K[] keyTable = this.keyTable;
+        int mask = this.mask, shift = this.shift;
+        int i = place(key, shift), distance = 0;
+        for(; ; i = (i + 1) & mask, distance++){
+            K other = keyTable[i];
+            if(other == null) break;
+            if(other == key || other.equals(key)){
+                V old = valueTable[i];
+                valueTable[i] = value;
+                return old;
+            }
+            if(((i - place(other, shift)) & mask) < distance) break;
+        }
+
+        if(size++ >= threshold){
+            resize(capacity << 1);
+            insert(key, value, place(key, this.shift), 0);
+        }else{
+            // The lookup stopped where the key belongs
+            insert(key, value, i, distance);
+        }
+        return null;
+    }
+
+    /** Inserts a key known to be absent, starting at a slot where it belongs. */
+    private void insert(K key, V value, int index, int distance){
+        K[] keyTable = this.keyTable;
+        V[] valueTable = this.valueTable;
+        int mask = this.mask, shift = this.shift;
+        for(int i = index; ; i = (i + 1) & mask, distance++){
+            K other = keyTable[i];
+            if(other == null){
+                keyTable[i] = key;
+                valueTable[i] = value;
+                return;
+            }
+
+            int otherDistance = (i - place(other, shift)) & mask;
+            if(otherDistance < distance){
+                // Take the slot of the richer entry, which continues probing
+                V otherValue = valueTable[i];
+                keyTable[i] = key;
+                valueTable[i] = value;
+                key = other;
+                value = otherValue;
+                distance = otherDistance;
+            }
+        }
+    }
+
+    public void putAll(RobinObjectMap<? extends K, ? extends V> map){
+        ensureCapacity(map.size);
+        for(int i = map.first(); i != -1; i = map.next(i)){
+            put(map.keyAt(i), map.valueAt(i));
+        }
+    }
+
+    public V get(K key){
+        int index = locate(key);
+        return index == -1 ? null : valueTable[index];
+    }
+
+    public V get(K key, V defaultValue){
+        int index = locate(key);
+        return index == -1 ? defaultValue : valueTable[index];
+    }
+
+    /** Returns the value for the key, or puts and returns the value created by the supplier. */
+    public V get(K key, Prov<V> supplier){
+        int index = locate(key);
+        if(index != -1) return valueTable[index];
+        V value = supplier.get();
+        put(key, value);
+        return value;
+    }
+
+    public boolean containsKey(K key){
+        return locate(key) != -1;
+    }
+
+    public boolean containsValue(Object value, boolean identity){
+        for(int i = first(); i != -1; i = next(i)){
+            V other = valueTable[i];
+            if(identity ? other == value : value == null ? other == null : value.equals(other)) return true;
+        }
+        return false;
+    }
+
+    /** Returns the key for the specified value, or null if it is not in the map. */
+    public K findKey(Object value, boolean identity){
+        for(int i = first(); i != -1; i = next(i)){
+            V other = valueTable[i];
+            if(identity ? other == value : value == null ? other == null : value.equals(other)) return keyTable[i];
+        }
+        return null;
+    }
+
+    public V remove(K key){
+        int index = locate(key);
+        if(index == -1) return null;
+        V old = valueTable[index];
+        removeIndex(index);
+        return old;
+    }
+
+    private void removeIndex(int index){
+        size--;
+
+        // Shift back the following entries which are not in their ideal slot
+        K[] keyTable = this.keyTable;
+        V[] valueTable = this.valueTable;
+        int mask = this.mask, shift = this.shift;
+        int next = (index + 1) & mask;
+        K key;
+        while((key = keyTable[next]) != null && next != place(key, shift)){
+            keyTable[index] = key;
+            valueTable[index] = valueTable[next];
+            index = next;
+            next = (next + 1) & mask;
+        }
+        keyTable[index] = null;
+        valueTable[index] = null;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /** Clears the map and reduces the size of the backing arrays to be the specified capacity if they are larger. */
+    public void clear(int maximumCapacity){
+        int tableSize = Mathf.nextPowerOfTwo(Math.max(2, (int)Math.ceil(maximumCapacity / loadFactor)));
+        if(capacity <= tableSize){
+            clear();
+            return;
+        }
+        size = 0;
+        allocate(tableSize);
+    }
+
+    public void clear(){
+        if(size == 0) return;
+        Arrays.fill(keyTable, null);
+        Arrays.fill(valueTable, null);
+        size = 0;
+    }
+
+    /**
+     * Increases the size of the backing array to accommodate the specified number of additional items. Useful before adding many
+     * items to avoid multiple backing array resizes.
+     */
+    public void ensureCapacity(int additionalCapacity){
+        int sizeNeeded = size + additionalCapacity;
+        if(sizeNeeded >= threshold) resize(Mathf.nextPowerOfTwo((int)Math.ceil(sizeNeeded / loadFactor)));
+    }
+
+    private void resize(int newSize){
+        int oldCapacity = capacity;
+        K[] oldKeyTable = keyTable;
+        V[] oldValueTable = valueTable;
+
+        allocate(newSize);
+
+        for(int i = 0; i < oldCapacity; i++){
+            K key = oldKeyTable[i];
+            if(key != null) insert(key, oldValueTable[i], place(key, shift), 0);
+        }
+    }
+
+    /** @return the index of the first entry, or -1 if the map is empty. */
+    public int first(){
+        return next(-1);
+    }
+
+    /** @return the index of the entry following the one at the specified index, or -1 if there is none. */
+    public int next(int index){
+        K[] keyTable = this.keyTable;
+        for(int i = index + 1; i < capacity; i++){
+            if(keyTable[i] != null) return i;
+        }
+        return -1;
+    }
+
+    /** @return the key of the entry at the specified index. */
+    public K keyAt(int index){
+        return keyTable[index];
+    }
+
+    /** @return the value of the entry at the specified index. */
+    public V valueAt(int index){
+        return valueTable[index];
+    }
+
+    public void setValueAt(int index, V value){
+        valueTable[index] = value;
+    }
+
+    public void each(Cons2<K, V> cons){
+        for(int i = first(); i != -1; i = next(i)){
+            cons.get(keyTable[i], valueTable[i]);
+        }
+    }
+
+    @Override
+    public int hashCode(){
+        int h = 0;
+        for(int i = first(); i != -1; i = next(i)){
+            h += keyTable[i].hashCode();
+            V value = valueTable[i];
+            if(value != null) h += value.hashCode();
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj){
+        if(obj == this) return true;
+        if(!(obj instanceof RobinObjectMap)) return false;
+        RobinObjectMap<K, V> other = (RobinObjectMap<K, V>)obj;
+        if(other.size != size) return false;
+        for(int i = first(); i != -1; i = next(i)){
+            int index = other.locate(keyTable[i]);
+            if(index == -1) return false;
+            V value = valueTable[i], otherValue = other.valueTable[index];
+            if(value == null ? otherValue != null : !value.equals(otherValue)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString(){
+        if(size == 0) return "{}";
+        StringBuilder buffer = new StringBuilder(32);
+        buffer.append('{');
+        for(int i = first(); i != -1; i = next(i)){
+            if(buffer.length() > 1) buffer.append(", ");
+            buffer.append(keyTable[i]).append('=').append(valueTable[i]);
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    @Override
+    public Entries<K, V> iterator(){
+        return entries();
+    }
+
+    /**
+     * Returns an iterator for the entries in the map. Note that the same iterator instance is returned each time this method is
+     * called, so it cannot be nested; use the {@link #first()} cursor or the {@link Entries} constructor instead.
+     */
+    public Entries<K, V> entries(){
+        if(entries == null) entries = new Entries<>(this);
+        entries.reset();
+        return entries;
+    }
+
+    /** @see #entries() */
+    public Values<V> values(){
+        if(values == null) values = new Values<>(this);
+        values.reset();
+        return values;
+    }
+
+    /** @see #entries() */
+    public Keys<K> keys(){
+        if(keys == null) keys = new Keys<>(this);
+        keys.reset();
+        return keys;
+    }
+
+    private static class MapIterator<K, V>{
+        final RobinObjectMap<K, V> map;
+        public boolean hasNext;
+        int nextIndex, currentIndex;
+
+        MapIterator(RobinObjectMap<K, V> map){
+            this.map = map;
+            reset();
+        }
+
+        public void reset(){
+            currentIndex = -1;
+            nextIndex = map.first();
+            hasNext = nextIndex != -1;
+        }
+
+        int advance(){
+            if(!hasNext) throw new NoSuchElementException();
+            currentIndex = nextIndex;
+            nextIndex = map.next(nextIndex);
+            hasNext = nextIndex != -1;
+            return currentIndex;
+        }
+
+        /** Removing shifts the following entries back, which would be skipped or returned twice, so it is not supported. */
+        public void remove(){
+            throw new UnsupportedOperationException("Use RobinObjectMap#remove outside of the iteration.");
+        }
+
+        public boolean hasNext(){
+            return hasNext;
+        }
+    }
+
+    public static class Entries<K, V> extends MapIterator<K, V> implements Iterable<ObjectMap.Entry<K, V>>, Iterator<ObjectMap.Entry<K, V>>{
+        private final ObjectMap.Entry<K, V> entry = new ObjectMap.Entry<>();
+
+        public Entries(RobinObjectMap<K, V> map){
+            super(map);
+        }
+
+        /** Note the same entry instance is returned each time this method is called. */
+        @Override
+        public ObjectMap.Entry<K, V> next(){
+            int index = advance();
+            entry.key = map.keyTable[index];
+            entry.value = map.valueTable[index];
+            return entry;
+        }
+
+        @Override
+        public Entries<K, V> iterator(){
+            return this;
+        }
+    }
+
+    public static class Values<V> extends MapIterator<Object, V> implements Iterable<V>, Iterator<V>{
+        public Values(RobinObjectMap<?, V> map){
+            super((RobinObjectMap<Object, V>)map);
+        }
+
+        @Override
+        public V next(){
+            return map.valueTable[advance()];
+        }
+
+        /** Returns a new array containing the remaining values. */
+        public Seq<V> toSeq(){
+            Seq<V> array = new Seq<>(true, map.size);
+            while(hasNext) array.add(next());
+            return array;
+        }
+
+        @Override
+        public Values<V> iterator(){
+            return this;
+        }
+    }
+
+    public static class Keys<K> extends MapIterator<K, Object> implements Iterable<K>, Iterator<K>{
+        public Keys(RobinObjectMap<K, ?> map){
+            super((RobinObjectMap<K, Object>)map);
+        }
+
+        @Override
+        public K next(){
+            return map.keyTable[advance()];
+        }
+
+        /** Returns a new array containing the remaining keys. */
+        public Seq<K> toSeq(){
+            Seq<K> array = new Seq<>(true, map.size);
+            while(hasNext) array.add(next());
+            return array;
+        }
+
+        @Override
+        public Keys<K> iterator(){
+            return this;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package arc.struct;
+
+import arc.func.*;
+import arc.math.*;
+
+import java.util.*;
+
+/**
+ * An unordered set. This implementation is a Robin Hood hash set: linear probing where an item takes the slot of
+ * an item closer to its ideal slot, which bounds the probe lengths, and backward-shift deletion, so no tombstones
+ * are left behind. Null items are not allowed. No allocation is done except when growing the table size. <br>
+ * <br>
+ * The items can be iterated without allocation, nested or not, with a cursor:
+ * <pre>{@code
+ * for(int i = set.first(); i != -1; i = set.next(i)){
+ *     T item = set.itemAt(i);
+ * }
+ * }</pre>
+ * @see ObjectSet
+ * @see RobinObjectMap
+ */
+@SuppressWarnings("unchecked")
+public class RobinObjectSet<T> implements Iterable<T>{
+    public int size;
+
+    T[] keyTable;
+    int capacity;
+
+    private final float loadFactor;
+    private int mask, shift, threshold;
+
+    private SetIterator<T> iterator;
+
+    /** Creates a new set with an initial capacity of 51 and a load factor of 0.8. */
+    public RobinObjectSet(){
+        this(51, 0.8f);
+    }
+
+    /**
+     * Creates a new set with a load factor of 0.8.
+     * @param initialCapacity If not a power of two, it is increased to the next nearest power of two.
+     */
+    public RobinObjectSet(int initialCapacity){
+        this(initialCapacity, 0.8f);
+    }
+
+    /**
+     * Creates a new set with the specified initial capacity and load factor. This set will hold initialCapacity items before
+     * growing the backing table.
+     * @param initialCapacity If not a power of two, it is increased to the next nearest power of two.
+     */
+    public RobinObjectSet(int initialCapacity, float loadFactor){
+        if(initialCapacity < 0) throw new IllegalArgumentException("initialCapacity must be >= 0: " + initialCapacity);
+        if(loadFactor <= 0 || loadFactor >= 1) throw new IllegalArgumentException("loadFactor must be > 0 and < 1: " + loadFactor);
+        this.loadFactor = loadFactor;
+        initialCapacity = Mathf.nextPowerOfTwo((int)Math.ceil(initialCapacity / loadFactor));
+        if(initialCapacity > 1 << 30) throw new IllegalArgumentException("initialCapacity is too large: " + initialCapacity);
+        allocate(Math.max(initialCapacity, 2));
+    }
+
+    /** Creates a new set identical to the specified set. */
+    public RobinObjectSet(RobinObjectSet<? extends T> set){
+        this.loadFactor = set.loadFactor;
+        allocate(set.capacity);
+        System.arraycopy(set.keyTable, 0, keyTable, 0, capacity);
+        size = set.size;
+    }
+
+    public static <T> RobinObjectSet<T> with(T... array){
+        RobinObjectSet<T> set = new RobinObjectSet<>(array.length);
+        for(T item : array) set.add(item);
+        return set;
+    }
+
+    private void allocate(int capacity){
+        this.capacity = capacity;
+        mask = capacity - 1;
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        threshold = Math.min((int)(capacity * loadFactor), capacity - 1);
+        keyTable = (T[])new Object[capacity];
+    }
+
+    /** @return the index of the item, or -1 if it is absent. */
+    int locate(Object key){
+        if(key == null) throw new IllegalArgumentException("key cannot be null.");
+        T[] keyTable = this.keyTable;
+        int mask = this.mask, shift = this.shift;
+        for(int i = RobinObjectMap.place(key, shift), distance = 0; ; i = (i + 1) & mask, distance++){
+            T other = keyTable[i];
+            if(other == null) return -1;
+            if(other == key || other.equals(key)) return i;
+            // An item closer to its ideal slot means the key would have taken its slot
+            if(((i - RobinObjectMap.place(other, shift)) & mask) < distance) return -1;
+        }
+    }
+
+    /** Returns true if the key was not already in the set. */
+    public boolean add(T key){
+        if(key == null) throw new IllegalArgumentException("key cannot be null.");
+        T[] keyTable = this.keyTable;
+        int mask = this.mask, shift = this.shift;
+        int i = RobinObjectMap.place(key, shift), distance = 0;
+        for(; ; i = (i + 1) & mask, distance++){
+            T other = keyTable[i];
+            if(other == null) break;
+            if(other == key || other.equals(key)) return false;
+            if(((i - RobinObjectMap.place(other, shift)) & mask) < distance) break;
+        }
+
+        if(size++ >= threshold){
+            resize(capacity << 1);
+            insert(key, RobinObjectMap.place(key, this.shift), 0);
+        }else{
+            // The lookup stopped where the key belongs
+            insert(key, i, distance);
+        }
+        return true;
+    }
+
+    /** Inserts a key known to be absent, starting at a slot where it belongs. */
+    private void insert(T key, int index, int distance){
+        T[] keyTable = this.keyTable;
+        int mask = this.mask, shift = this.shift;
+        for(int i = index; ; i = (i + 1) & mask, distance++){
+            T other = keyTable[i];
+            if(other == null){
+                keyTable[i] = key;
+                return;
+            }
+
+            int otherDistance = (i - RobinObjectMap.place(other, shift)) & mask;
+            if(otherDistance < distance){
+                // Take the slot of the richer item, which continues probing
+                keyTable[i] = key;
+                key = other;
+                distance = otherDistance;
+            }
+        }
+    }
+
+    public void addAll(Seq<? extends T> array){
+        ensureCapacity(array.size);
+        for(int i = 0; i < array.size; i++) add(array.items[i]);
+    }
+
+    public void addAll(T... array){
+        ensureCapacity(array.length);
+        for(T item : array) add(item);
+    }
+
+    public void addAll(RobinObjectSet<? extends T> set){
+        ensureCapacity(set.size);
+        for(int i = set.first(); i != -1; i = set.next(i)) add(set.itemAt(i));
+    }
+
+    /** Returns true if the key was removed. */
+    public boolean remove(T key){
+        int index = locate(key);
+        if(index == -1) return false;
+        size--;
+
+        // Shift back the following items which are not in their ideal slot
+        T[] keyTable = this.keyTable;
+        int mask = this.mask, shift = this.shift;
+        int next = (index + 1) & mask;
+        T other;
+        while((other = keyTable[next]) != null && next != RobinObjectMap.place(other, shift)){
+            keyTable[index] = other;
+            index = next;
+            next = (next + 1) & mask;
+        }
+        keyTable[index] = null;
+        return true;
+    }
+
+    public boolean contains(T key){
+        return locate(key) != -1;
+    }
+
+    /** @return the item in the set equal to the key, or null if there is none. */
+    public T get(T key){
+        int index = locate(key);
+        return index == -1 ? null : keyTable[index];
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /** Clears the set and reduces the size of the backing arrays to be the specified capacity if they are larger. */
+    public void clear(int maximumCapacity){
+        int tableSize = Mathf.nextPowerOfTwo(Math.max(2, (int)Math.ceil(maximumCapacity / loadFactor)));
+        if(capacity <= tableSize){
+            clear();
+            return;
+        }
+        size = 0;
+        allocate(tableSize);
+    }
+
+    public void clear(){
+        if(size == 0) return;
+        Arrays.fill(keyTable, null);
+        size = 0;
+    }
+
+    /**
+     * Increases the size of the backing array to accommodate the specified number of additional items. Useful before adding many
+     * items to avoid multiple backing array resizes.
+     */
+    public void ensureCapacity(int additionalCapacity){
+        int sizeNeeded = size + additionalCapacity;
+        if(sizeNeeded >= threshold) resize(Mathf.nextPowerOfTwo((int)Math.ceil(sizeNeeded / loadFactor)));
+    }
+
+    private void resize(int newSize){
+        int oldCapacity = capacity;
+        T[] oldKeyTable = keyTable;
+
+        allocate(newSize);
+
+        for(int i = 0; i < oldCapacity; i++){
+            T key = oldKeyTable[i];
+            if(key != null) insert(key, RobinObjectMap.place(key, shift), 0);
+        }
+    }
+
+    /** @return the index of the first item, or -1 if the set is empty. */
+    public int first(){
+        return next(-1);
+    }
+
+    /** @return the index of the item following the one at the specified index, or -1 if there is none. */
+    public int next(int index){
+        T[] keyTable = this.keyTable;
+        for(int i = index + 1; i < capacity; i++){
+            if(keyTable[i] != null) return i;
+        }
+        return -1;
+    }
+
+    /** @return the item at the specified index. */
+    public T itemAt(int index){
+        return keyTable[index];
+    }
+
+    public void each(Cons<? super T> cons){
+        for(int i = first(); i != -1; i = next(i)){
+            cons.get(keyTable[i]);
+        }
+    }
+
+    public Seq<T> toSeq(){
+        Seq<T> array = new Seq<>(true, size);
+        for(int i = first(); i != -1; i = next(i)) array.add(keyTable[i]);
+        return array;
+    }
+
+    @Override
+    public int hashCode(){
+        int h = 0;
+        for(int i = first(); i != -1; i = next(i)){
+            h += keyTable[i].hashCode();
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj){
+        if(obj == this) return true;
+        if(!(obj instanceof RobinObjectSet)) return false;
+        RobinObjectSet<T> other = (RobinObjectSet<T>)obj;
+        if(other.size != size) return false;
+        for(int i = first(); i != -1; i = next(i)){
+            if(other.locate(keyTable[i]) == -1) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString(){
+        if(size == 0) return "{}";
+        StringBuilder buffer = new StringBuilder(32);
+        buffer.append('{');
+        for(int i = first(); i != -1; i = next(i)){
+            if(buffer.length() > 1) buffer.append(", ");
+            buffer.append(keyTable[i]);
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    /**
+     * Returns an iterator for the items in the set. Note that the same iterator instance is returned each time this method is
+     * called, so it cannot be nested; use the {@link #first()} cursor or the {@link SetIterator} constructor instead.
+     */
+    @Override
+    public SetIterator<T> iterator(){
+        if(iterator == null) iterator = new SetIterator<>(this);
+        iterator.reset();
+        return iterator;
+    }
+
+    public static class SetIterator<T> implements Iterable<T>, Iterator<T>{
+        final RobinObjectSet<T> set;
+        public boolean hasNext;
+        int nextIndex;
+
+        public SetIterator(RobinObjectSet<T> set){
+            this.set = set;
+            reset();
+        }
+
+        public void reset(){
+            nextIndex = set.first();
+            hasNext = nextIndex != -1;
+        }
+
+        @Override
+        public boolean hasNext(){
+            return hasNext;
+        }
+
+        @Override
+        public T next(){
+            if(!hasNext) throw new NoSuchElementException();
+            T key = set.keyTable[nextIndex];
+            nextIndex = set.next(nextIndex);
+            hasNext = nextIndex != -1;
+            return key;
+        }
+
+        /** Removing shifts the following items back, which would be skipped or returned twice, so it is not supported. */
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException("Use RobinObjectSet#remove outside of the iteration.");
+        }
+
+        @Override
+        public SetIterator<T> iterator(){
+            return this;
+        }
+    }
+}
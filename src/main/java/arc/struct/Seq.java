@@ -194,6 +194,14 @@ public class Seq<T> implements Iterable<T>, Eachable<T>{
         return sum;
     }
 
+    public float parallelSumf(Floatf<T> summer){
+        return Parallel.sumf(this, summer);
+    }
+
+    public int parallelSum(Intf<T> summer){
+        return Parallel.sum(this, summer);
+    }
+
     public <E extends T> void each(Boolf<? super T> pred, Cons<E> consumer){
         int size = this.size;
         T[] items = this.items;
@@ -211,6 +219,11 @@ public class Seq<T> implements Iterable<T>, Eachable<T>{
         }
     }
 
+    /** Calls the consumer with each item, from several threads at once and in no particular order. */
+    public void parallelEach(Cons<? super T> consumer){
+        Parallel.each(this, consumer);
+    }
+
     /** Replaces values without creating a new array. */
     public void replace(Func<T, T> mapper){
         for(int i = 0; i < size; i++){
@@ -245,6 +258,11 @@ public class Seq<T> implements Iterable<T>, Eachable<T>{
         return arr;
     }
 
+    /** Returns a new array with the mapped values, mapped in parallel. The mapper is called from several threads at once. */
+    public <R> Seq<R> parallelMap(Func<T, R> mapper){
+        return Parallel.map(this, mapper);
+    }
+
     /** @return a new int array with the mapped values. */
     public IntSeq mapInt(Intf<T> mapper){
         IntSeq arr = new IntSeq(size);
@@ -283,6 +301,11 @@ public class Seq<T> implements Iterable<T>, Eachable<T>{
         return result;
     }
 
+    /** @see Parallel#reduce(Seq, Object, Func2, Func2) */
+    public <R> R parallelReduce(R identity, Func2<T, R, R> reducer, Func2<R, R, R> combiner){
+        return Parallel.reduce(this, identity, reducer, combiner);
+    }
+
     public boolean allMatch(Boolf<T> predicate){
         for(int i = 0; i < size; i++){
             if(!predicate.get(items[i])){
@@ -910,6 +933,20 @@ public class Seq<T> implements Iterable<T>, Eachable<T>{
         return this;
     }
 
+    /**
+     * Sorts this array with a stable fork/join merge sort, for large arrays. The array elements must implement
+     * {@link Comparable}. Arrays smaller than {@link Parallel#threshold} are sorted on the calling thread.
+     */
+    public Seq<T> parallelSort(){
+        return parallelSort((a, b) -> ((Comparable<T>)a).compareTo(b));
+    }
+
+    /** Sorts this array with a stable fork/join merge sort. The comparator is called from several threads at once. */
+    public Seq<T> parallelSort(Comparator<? super T> comparator){
+        Parallel.sort(items, 0, size, comparator);
+        return this;
+    }
+
     public Seq<T> selectFrom(Seq<T> base, Boolf<T> predicate){
         clear();
         base.each(t -> {
@@ -943,6 +980,11 @@ public class Seq<T> implements Iterable<T>, Eachable<T>{
         return arr;
     }
 
+    /** Allocates a new array with all elements that match the predicate, tested in parallel. */
+    public Seq<T> parallelSelect(Boolf<T> predicate){
+        return Parallel.select(this, predicate);
+    }
+
     /** Removes everything that does not match this predicate. */
     public Seq<T> retainAll(Boolf<T> predicate){
         return removeAll(e -> !predicate.get(e));
@@ -958,6 +1000,10 @@ public class Seq<T> implements Iterable<T>, Eachable<T>{
         return count;
     }
 
+    public int parallelCount(Boolf<T> predicate){
+        return Parallel.count(this, predicate);
+    }
+
     /**
      * Selects the nth-lowest element from the Seq according to Comparator ranking. This might partially sort the Array. The
      * array must have a size greater than 0, or a {@link ArcRuntimeException} will be thrown.
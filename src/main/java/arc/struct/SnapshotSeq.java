@@ -162,6 +162,12 @@ public class SnapshotSeq<T> extends Seq<T>{
         return super.sort(comparator);
     }
 
+    @Override
+    public Seq<T> parallelSort(Comparator<? super T> comparator){
+        modified();
+        return super.parallelSort(comparator);
+    }
+
     @Override
     public Seq<T> reverse(){
         modified();
@@ -0,0 +1,297 @@
+package arc.util;
+
+import arc.files.*;
+import arc.math.*;
+import arc.util.Log.*;
+import arc.util.io.*;
+
+import java.io.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * A {@link LogHandler} which does not write on the logging thread. <br>
+ * Records are put in a bounded ring buffer, without locking, and a daemon thread writes them in batches, either to
+ * {@link System#out} with the colors of {@link DefaultLogHandler}, or to a file which is rotated once it grows too large.
+ * When the buffer is full, records are handled according to the {@link OverflowPolicy}; the number of dropped records is
+ * counted per level, and written along the next batch. <br>
+ * Call {@link #flush()} to wait for the pending records to be written, and {@link #dispose()} to stop the thread.
+ */
+public class AsyncLogHandler implements LogHandler, Disposable{
+    /** The most records written at once. */
+    private static final int batchSize = 256;
+    /** How long the writer sleeps when it may have missed a wake up, in nanoseconds. */
+    private static final long idleNanos = 50 * Time.nanosPerMilli;
+    private static final LogLevel[] levelValues = LogLevel.values();
+
+    public final OverflowPolicy policy;
+    /** With {@link OverflowPolicy#sample}, the logging thread waits for one record out of this many; the others are dropped. */
+    public int sampleRate = 16;
+
+    private final int mask;
+    /** The ring buffer, as a Vyukov bounded queue: the sequence of a slot tells whether it can be written or read. */
+    private final AtomicLongArray sequences;
+    private final LogLevel[] levels;
+    private final String[] texts;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private final AtomicLongArray dropped = new AtomicLongArray(levelValues.length);
+    /** The position of the writer, only accessed by its thread. */
+    private long head;
+    private volatile long written;
+    private volatile boolean waiting, running = true;
+    private final Thread thread;
+
+    private final @Nullable Fi file;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private @Nullable Writer fileWriter;
+    private long fileSize;
+    private final StringBuilder batch = new StringBuilder();
+    private final String lineSeparator = System.lineSeparator();
+    private long reportedDrops;
+
+    /** Writes to {@link System#out} through a buffer of 8192 records, dropping records when it is full. */
+    public AsyncLogHandler(){
+        this(8192, OverflowPolicy.drop);
+    }
+
+    /** Writes to {@link System#out}, with the colors of {@link DefaultLogHandler}. */
+    public AsyncLogHandler(int capacity, OverflowPolicy policy){
+        this(null, 0, 0, capacity, policy);
+    }
+
+    /**
+     * Writes to a file, without colors, or to {@link System#out} if it is null. Once the file is larger than the maximum
+     * size, it is renamed with the number 1 before its extension, older files are renamed with the next number, and the
+     * oldest are deleted.
+     * @param maxFileSize The size over which the file is rotated, in bytes.
+     * @param maxFiles The number of old files to keep.
+     */
+    public AsyncLogHandler(@Nullable Fi file, long maxFileSize, int maxFiles, int capacity, OverflowPolicy policy){
+        if(capacity <= 0) throw new IllegalArgumentException("capacity must be > 0: " + capacity);
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.policy = policy;
+
+        capacity = Mathf.nextPowerOfTwo(capacity);
+        mask = capacity - 1;
+        sequences = new AtomicLongArray(capacity);
+        for(int i = 0; i < capacity; i++) sequences.set(i, i);
+        levels = new LogLevel[capacity];
+        texts = new String[capacity];
+
+        if(file != null) open();
+        thread = Threads.daemon("Log Writer", this::run);
+    }
+
+    @Override
+    public void log(LogLevel level, String text){
+        if(offer(level, text)) return;
+
+        //The writer cannot wait for itself, nor for a stopped writer
+        boolean wait = running && Thread.currentThread() != thread &&
+            (policy == OverflowPolicy.block || (policy == OverflowPolicy.sample && overflows.getAndIncrement() % sampleRate == 0));
+        if(wait){
+            while(!offer(level, text)){
+                if(!running){
+                    wait = false;
+                    break;
+                }
+                LockSupport.unpark(thread);
+                Thread.yield();
+            }
+        }
+        if(!wait) dropped.incrementAndGet(level.ordinal());
+    }
+
+    /** Blocks until the records logged before this call are written. */
+    public void flush(){
+        long target = tail.get();
+        while(written < target && thread.isAlive()){
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    /** @return the number of records dropped since the creation of this handler. */
+    public long dropped(){
+        long total = 0;
+        for(int i = 0; i < levelValues.length; i++) total += dropped.get(i);
+        return total;
+    }
+
+    /** @return the number of records of this level dropped since the creation of this handler. */
+    public long dropped(LogLevel level){
+        return dropped.get(level.ordinal());
+    }
+
+    /** @return the number of records waiting to be written. */
+    public int pending(){
+        return (int)(tail.get() - written);
+    }
+
+    /** Writes the pending records, then stops the writer thread and closes the file. Records logged afterwards are dropped. */
+    @Override
+    public void dispose(){
+        running = false;
+        LockSupport.unpark(thread);
+        try{
+            thread.join();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isDisposed(){
+        return !running;
+    }
+
+    /**
+     * Appends a record to the batch, including the line separator. Called from the writer thread.
+     * @param toFile Whether the record is written to a file, rather than to {@link System#out}.
+     */
+    protected void format(LogLevel level, String text, boolean toFile, StringBuilder out){
+        if(toFile){
+            out.append(ColorCodes.apply(text, false));
+        }else{
+            out.append(DefaultLogHandler.line(level, text));
+        }
+        out.append(lineSeparator);
+    }
+
+    private boolean offer(LogLevel level, String text){
+        while(true){
+            long pos = tail.get();
+            int index = (int)pos & mask;
+            long sequence = sequences.get(index);
+            if(sequence == pos){
+                if(tail.compareAndSet(pos, pos + 1)){
+                    levels[index] = level;
+                    texts[index] = text;
+                    sequences.lazySet(index, pos + 1);
+                    if(waiting){
+                        waiting = false;
+                        LockSupport.unpark(thread);
+                    }
+                    return true;
+                }
+            }else if(sequence < pos){
+                //The writer has not read this slot yet
+                return false;
+            }
+        }
+    }
+
+    private void run(){
+        while(true){
+            boolean stop = !running;
+            if(drain() == 0){
+                if(stop) break;
+                waiting = true;
+                if(sequences.get((int)head & mask) != head + 1) LockSupport.parkNanos(this, idleNanos);
+                waiting = false;
+            }
+        }
+        close();
+    }
+
+    /** Writes up to one batch of records. */
+    private int drain(){
+        int count = 0;
+        for(; count < batchSize; count++){
+            int index = (int)head & mask;
+            if(sequences.get(index) != head + 1) break;
+            LogLevel level = levels[index];
+            String text = texts[index];
+            texts[index] = null;
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+
+            try{
+                format(level, text, file != null, batch);
+            }catch(Throwable t){
+                //A broken record must not stop the writer
+                batch.append(text).append(lineSeparator);
+            }
+        }
+
+        long drops = dropped();
+        if(drops != reportedDrops){
+            format(LogLevel.warn, "Dropped " + (drops - reportedDrops) + " log records.", file != null, batch);
+            reportedDrops = drops;
+        }
+
+        if(batch.length() > 0){
+            write();
+            batch.setLength(0);
+        }
+        written = head;
+        return count;
+    }
+
+    private void write(){
+        if(file == null){
+            System.out.print(batch);
+            System.out.flush();
+            return;
+        }
+
+        try{
+            if(fileWriter == null) open();
+            fileWriter.append(batch);
+            fileWriter.flush();
+            fileSize += batch.length();
+            if(maxFileSize > 0 && fileSize >= maxFileSize) rotate();
+        }catch(Throwable t){
+            //Writing to the console is all that can be done
+            System.err.println("Failed to write to log file " + file + ": " + t);
+            close();
+        }
+    }
+
+    private void open(){
+        fileWriter = new BufferedWriter(file.writer(true), 8192);
+        fileSize = file.length();
+    }
+
+    private void rotate(){
+        close();
+        if(maxFiles <= 0){
+            file.delete();
+        }else{
+            rotated(maxFiles).delete();
+            for(int i = maxFiles - 1; i >= 1; i--){
+                Fi old = rotated(i);
+                if(old.exists()) old.moveTo(rotated(i + 1));
+            }
+            file.moveTo(rotated(1));
+        }
+        open();
+    }
+
+    /** @return the file with the number inserted before its extension. */
+    private Fi rotated(int number){
+        String extension = file.extension();
+        return file.sibling(file.nameWithoutExtension() + "." + number + (extension.isEmpty() ? "" : "." + extension));
+    }
+
+    private void close(){
+        if(fileWriter != null){
+            Streams.close(fileWriter);
+            fileWriter = null;
+        }
+    }
+
+    /** What happens to a record logged while the buffer is full. */
+    public enum OverflowPolicy{
+        /** The logging thread waits for the writer to make space. No record is lost. */
+        block,
+        /** The record is dropped. The logging thread never waits. */
+        drop,
+        /** The logging thread waits for one record out of {@link #sampleRate}, the others are dropped. */
+        sample
+    }
+}
@@ -0,0 +1,182 @@
+package arc.util;
+
+import arc.files.*;
+import arc.util.Log.*;
+import arc.util.io.*;
+import arc.util.serialization.*;
+import arc.util.serialization.JsonWriter.*;
+
+import java.io.*;
+import java.nio.charset.*;
+
+/**
+ * A {@link LogHandler} writing each record as a line of JSON, for log aggregators:
+ * <pre>
+ * {"time":1700000000000,"level":"info","thread":"main","tag":"Net","message":"Anuke joined in 12 ms","template":"@ joined in @ ms","args":["Anuke",12]}
+ * </pre>
+ * The time is in milliseconds since the epoch. The tag is taken from a message starting with {@code [tag] }, as written by
+ * {@link Log#infoTag(String, String)}. The template and the arguments, with numbers and booleans kept as such, are only
+ * known when {@link Log#formatter} is a {@link JsonLogFormatter}; install both with {@link #install()}. <br>
+ * Each record is written by a {@link JsonWriter} into a reused line buffer, copied to the output once complete, so a
+ * record failing midway is dropped whole. The output is buffered, and flushed after each record unless {@link #autoFlush}
+ * is disabled. Non-finite numbers are written as strings, as JSON has no token for them. Errors while writing are not
+ * thrown, but can be checked with {@link #checkError()}.
+ */
+public class JsonLogHandler implements LogHandler, Disposable{
+    private static final ThreadLocal<Record> records = Threads.local(Record::new);
+
+    /** Whether to flush after each record. When disabled, records are written once the buffer is full, or on {@link #flush()}. */
+    public boolean autoFlush = true;
+
+    private final Writer writer;
+    /** The record being written, before it is copied to the {@link #writer}. */
+    private final CharArrayWriter line = new CharArrayWriter(256);
+    /** Whether disposing closes the writer, which is not the case of {@link System#out}. */
+    private final boolean closeWriter;
+    private JsonWriter json;
+    private boolean error, disposed;
+
+    /** Writes to {@link System#out}, which is flushed but not closed on {@link #dispose()}. */
+    public JsonLogHandler(){
+        this(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), false);
+    }
+
+    /** Appends to the file. */
+    public JsonLogHandler(Fi file){
+        this(file.writer(true));
+    }
+
+    public JsonLogHandler(Writer writer){
+        this(writer, true);
+    }
+
+    /** @param closeWriter Whether {@link #dispose()} closes the writer. */
+    public JsonLogHandler(Writer writer, boolean closeWriter){
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer, 8192);
+        this.closeWriter = closeWriter;
+        json = createJson();
+    }
+
+    /** Sets this handler as {@link Log#logger}, and a {@link JsonLogFormatter} as {@link Log#formatter}. */
+    public JsonLogHandler install(){
+        Log.formatter = new JsonLogFormatter();
+        Log.logger = this;
+        return this;
+    }
+
+    @Override
+    public synchronized void log(LogLevel level, String text){
+        //The arguments given to the formatter for this text, on this thread
+        Record record = records.get();
+        if(disposed){
+            record.clear();
+            return;
+        }
+        boolean captured = record.message == text;
+
+        try{
+            json.object();
+            json.set("time", Time.millis());
+            json.set("level", level.name());
+            json.set("thread", Thread.currentThread().getName());
+
+            String message = captured ? text : ColorCodes.apply(text, false);
+            int end;
+            if(message.startsWith("[") && (end = message.indexOf("] ")) > 1){
+                json.set("tag", message.substring(1, end));
+                message = message.substring(end + 2);
+            }
+            json.set("message", message);
+
+            if(captured && record.args.length > 0){
+                json.set("template", record.template);
+                json.array("args");
+                for(Object arg : record.args){
+                    json.value(arg == null || arg instanceof Boolean || (arg instanceof Number && isFinite((Number)arg)) ? arg : Strings.stringify(arg));
+                }
+                json.pop();
+            }
+            json.pop();
+            line.write('\n');
+            line.writeTo(writer);
+            if(autoFlush) writer.flush();
+        }catch(IOException | RuntimeException e){
+            error = true;
+            //The JSON writer may be left inside the record
+            json = createJson();
+        }finally{
+            line.reset();
+            record.clear();
+        }
+    }
+
+    private static boolean isFinite(Number number){
+        if(number instanceof Double) return !((Double)number).isInfinite() && !((Double)number).isNaN();
+        if(number instanceof Float) return !((Float)number).isInfinite() && !((Float)number).isNaN();
+        return true;
+    }
+
+    private JsonWriter createJson(){
+        JsonWriter json = new JsonWriter(line);
+        json.setOutputType(OutputType.json);
+        return json;
+    }
+
+    /** Writes the buffered records. */
+    public synchronized void flush(){
+        if(disposed) return;
+        try{
+            writer.flush();
+        }catch(IOException e){
+            error = true;
+        }
+    }
+
+    /** Flushes the output, and returns whether writing a record failed since the creation of this handler. */
+    public boolean checkError(){
+        flush();
+        return error;
+    }
+
+    /** Flushes the output, and closes it unless it is {@link System#out}. Later records are ignored. */
+    @Override
+    public synchronized void dispose(){
+        if(disposed) return;
+        flush();
+        disposed = true;
+        if(closeWriter) Streams.close(writer);
+    }
+
+    @Override
+    public boolean isDisposed(){
+        return disposed;
+    }
+
+    /**
+     * Formats messages without colors, and keeps the template and arguments of the last message of each thread for the
+     * {@link JsonLogHandler}.
+     */
+    public static class JsonLogFormatter extends DefaultLogFormatter{
+        @Override
+        public String format(String text, boolean useColors, Object... args){
+            String message = super.format(text, false, args);
+            Record record = records.get();
+            record.message = message;
+            record.template = args.length == 0 ? message : LogTemplate.get(text, false).text;
+            record.args = args;
+            return message;
+        }
+    }
+
+    private static class Record{
+        static final Object[] empty = {};
+
+        String message, template;
+        Object[] args = empty;
+
+        void clear(){
+            message = template = null;
+            args = empty;
+        }
+    }
+}
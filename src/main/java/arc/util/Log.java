@@ -11,19 +11,44 @@ public class Log{
     public static LogHandler logger = new DefaultLogHandler();
     public static LogFormatter formatter = new DefaultLogFormatter();
 
+    /** @return whether records of this level are logged. */
+    public static boolean enabled(LogLevel level){
+        return Log.level.ordinal() <= level.ordinal();
+    }
+
     public static void log(LogLevel level, String text, Object... args){
         if(Log.level.ordinal() > level.ordinal()) return;
         logger.log(level, format(text, args));
     }
 
+    //The overloads below check the level before boxing their arguments or allocating an array for them
+
+    public static void log(LogLevel level, String text, Object arg){ if(enabled(level)) log(level, text, new Object[]{arg}); }
+    public static void log(LogLevel level, String text, Object arg1, Object arg2){ if(enabled(level)) log(level, text, new Object[]{arg1, arg2}); }
+    public static void log(LogLevel level, String text, Object arg1, Object arg2, Object arg3){ if(enabled(level)) log(level, text, new Object[]{arg1, arg2, arg3}); }
+    public static void log(LogLevel level, String text, int arg){ if(enabled(level)) log(level, text, (Object)arg); }
+    public static void log(LogLevel level, String text, long arg){ if(enabled(level)) log(level, text, (Object)arg); }
+    public static void log(LogLevel level, String text, float arg){ if(enabled(level)) log(level, text, (Object)arg); }
+    public static void log(LogLevel level, String text, double arg){ if(enabled(level)) log(level, text, (Object)arg); }
+    public static void log(LogLevel level, String text, char arg){ if(enabled(level)) log(level, text, (Object)arg); }
+
     public static void debug(String text, Object... args){
         log(LogLevel.debug, text, args);
     }
     
     public static void debug(Object object){
-        debug(String.valueOf(object), empty);
+        if(enabled(LogLevel.debug)) debug(String.valueOf(object), empty);
     }
 
+    public static void debug(String text, Object arg){ log(LogLevel.debug, text, arg); }
+    public static void debug(String text, Object arg1, Object arg2){ log(LogLevel.debug, text, arg1, arg2); }
+    public static void debug(String text, Object arg1, Object arg2, Object arg3){ log(LogLevel.debug, text, arg1, arg2, arg3); }
+    public static void debug(String text, int arg){ log(LogLevel.debug, text, arg); }
+    public static void debug(String text, long arg){ log(LogLevel.debug, text, arg); }
+    public static void debug(String text, float arg){ log(LogLevel.debug, text, arg); }
+    public static void debug(String text, double arg){ log(LogLevel.debug, text, arg); }
+    public static void debug(String text, char arg){ log(LogLevel.debug, text, arg); }
+
     public static void infoList(Object... args){
         if(level.ordinal() > LogLevel.info.ordinal()) return;
         StringBuilder build = new StringBuilder();
@@ -35,7 +60,7 @@ public class Log{
     }
 
     public static void infoTag(String tag, String text){
-        log(LogLevel.info, "[" + tag + "] " + text);
+        if(enabled(LogLevel.info)) log(LogLevel.info, "[" + tag + "] " + text);
     }
 
     public static void info(String text, Object... args){
@@ -43,22 +68,50 @@ public class Log{
     }
 
     public static void info(Object object){
-        info(String.valueOf(object), empty);
+        if(enabled(LogLevel.info)) info(String.valueOf(object), empty);
     }
 
+    public static void info(String text, Object arg){ log(LogLevel.info, text, arg); }
+    public static void info(String text, Object arg1, Object arg2){ log(LogLevel.info, text, arg1, arg2); }
+    public static void info(String text, Object arg1, Object arg2, Object arg3){ log(LogLevel.info, text, arg1, arg2, arg3); }
+    public static void info(String text, int arg){ log(LogLevel.info, text, arg); }
+    public static void info(String text, long arg){ log(LogLevel.info, text, arg); }
+    public static void info(String text, float arg){ log(LogLevel.info, text, arg); }
+    public static void info(String text, double arg){ log(LogLevel.info, text, arg); }
+    public static void info(String text, char arg){ log(LogLevel.info, text, arg); }
+
     public static void warn(String text, Object... args){
         log(LogLevel.warn, text, args);
     }
 
+    public static void warn(String text, Object arg){ log(LogLevel.warn, text, arg); }
+    public static void warn(String text, Object arg1, Object arg2){ log(LogLevel.warn, text, arg1, arg2); }
+    public static void warn(String text, Object arg1, Object arg2, Object arg3){ log(LogLevel.warn, text, arg1, arg2, arg3); }
+    public static void warn(String text, int arg){ log(LogLevel.warn, text, arg); }
+    public static void warn(String text, long arg){ log(LogLevel.warn, text, arg); }
+    public static void warn(String text, float arg){ log(LogLevel.warn, text, arg); }
+    public static void warn(String text, double arg){ log(LogLevel.warn, text, arg); }
+    public static void warn(String text, char arg){ log(LogLevel.warn, text, arg); }
+
     public static void errTag(String tag, String text){
-        log(LogLevel.err, "[" + tag + "] " + text);
+        if(enabled(LogLevel.err)) log(LogLevel.err, "[" + tag + "] " + text);
     }
 
     public static void err(String text, Object... args){
         log(LogLevel.err, text, args);
     }
 
+    public static void err(String text, Object arg){ log(LogLevel.err, text, arg); }
+    public static void err(String text, Object arg1, Object arg2){ log(LogLevel.err, text, arg1, arg2); }
+    public static void err(String text, Object arg1, Object arg2, Object arg3){ log(LogLevel.err, text, arg1, arg2, arg3); }
+    public static void err(String text, int arg){ log(LogLevel.err, text, arg); }
+    public static void err(String text, long arg){ log(LogLevel.err, text, arg); }
+    public static void err(String text, float arg){ log(LogLevel.err, text, arg); }
+    public static void err(String text, double arg){ log(LogLevel.err, text, arg); }
+    public static void err(String text, char arg){ log(LogLevel.err, text, arg); }
+
     public static void err(Throwable th){
+        if(!enabled(LogLevel.err)) return;
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
         th.printStackTrace(pw);
@@ -66,6 +119,7 @@ public class Log{
     }
 
     public static void err(String text, Throwable th){
+        if(!enabled(LogLevel.err)) return;
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
         th.printStackTrace(pw);
@@ -109,22 +163,52 @@ public class Log{
     }
     
 
+    /**
+     * Formats through the cached {@link LogTemplate} of the text, into a builder reused by each thread, so that the only
+     * copy is the resulting string.
+     */
     public static class DefaultLogFormatter implements LogFormatter{
+        private static final ThreadLocal<StringBuilder> builders = Threads.local(StringBuilder::new);
+
         @Override
         public String format(String text, boolean useColors, Object... args){
-            return ColorCodes.apply(Strings.format(text, args), useColors);
+            //Texts without arguments are often built at runtime, and would fill the cache
+            if(args.length == 0) return ColorCodes.apply(text, useColors);
+            LogTemplate template = LogTemplate.get(text, useColors);
+            if(template.placeholders() == 0) return template.text;
+
+            StringBuilder out = builders.get();
+            out.setLength(0);
+            template.format(out, args);
+            String result = out.toString();
+            //Do not keep the memory of a huge record
+            if(out.capacity() > 8192){
+                out.setLength(0);
+                out.trimToSize();
+            }
+            return result;
         }
     }
 
     public static class DefaultLogHandler implements LogHandler{
         @Override
         public void log(LogLevel level, String text){
-            System.out.println(format((
+            System.out.println(line(level, text));
+        }
+
+        /** @return the text with the colors of the level, as printed by this handler. */
+        public static String line(LogLevel level, String text){
+            return format(color(level) + text + "&fr");
+        }
+
+        /** @return the color codes put before the text of the level. */
+        public static String color(LogLevel level){
+            return
                 level == LogLevel.debug ? "&lc&fb" :
                 level == LogLevel.info ? "&fb" :
                 level == LogLevel.warn ? "&ly&fb" :
                 level == LogLevel.err ? "&lr&fb" :
-                "") + text + "&fr"));
+                "";
         }
     }
 
@@ -0,0 +1,101 @@
+package arc.util;
+
+import java.util.concurrent.*;
+
+/**
+ * A log text split at its '@' placeholders, with its color codes already applied, so that formatting it only appends the
+ * parts and the arguments. Templates of texts with placeholders are cached by text, up to {@link #maxCached} per color
+ * mode; texts built at runtime beyond that are compiled on each use.
+ */
+public class LogTemplate{
+    /** The most templates cached for each color mode. */
+    public static int maxCached = 4096;
+
+    private static final ConcurrentHashMap<String, LogTemplate> colored = new ConcurrentHashMap<>(), plain = new ConcurrentHashMap<>();
+
+    /** The whole text, with colors applied. */
+    public final String text;
+    /** The text between placeholders; there is one more part than placeholders. */
+    final String[] parts;
+    final boolean useColors;
+
+    public LogTemplate(String text, boolean useColors){
+        this.useColors = useColors;
+        this.text = ColorCodes.apply(text, useColors);
+
+        int count = 0;
+        for(int i = 0; i < text.length(); i++){
+            if(text.charAt(i) == '@') count++;
+        }
+        parts = new String[count + 1];
+        if(count == 0){
+            parts[0] = this.text;
+        }else{
+            for(int i = 0, start = 0, part = 0; i <= text.length(); i++){
+                if(i == text.length() || text.charAt(i) == '@'){
+                    parts[part++] = ColorCodes.apply(text.substring(start, i), useColors);
+                    start = i + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the cached template of the text, compiling it if needed. Only the texts with placeholders are cached, as the
+     * others have nothing to format.
+     */
+    public static LogTemplate get(String text, boolean useColors){
+        ConcurrentHashMap<String, LogTemplate> cache = useColors ? colored : plain;
+        LogTemplate template = cache.get(text);
+        if(template == null){
+            template = new LogTemplate(text, useColors);
+            if(template.placeholders() > 0 && cache.size() < maxCached) cache.put(text, template);
+        }
+        return template;
+    }
+
+    /** Removes all cached templates, which is needed after changing the color codes. */
+    public static void clearCache(){
+        colored.clear();
+        plain.clear();
+    }
+
+    /** @return the number of '@' placeholders. */
+    public int placeholders(){
+        return parts.length - 1;
+    }
+
+    /**
+     * Appends the text with the arguments in place of its placeholders, as {@link Strings#format(String, Object...)} and
+     * {@link ColorCodes#apply(String, boolean)} would. Placeholders beyond the last argument are kept.
+     */
+    public void format(StringBuilder out, Object... args){
+        if(args.length == 0){
+            out.append(text);
+            return;
+        }
+        out.append(parts[0]);
+        for(int i = 1; i < parts.length; i++){
+            if(i <= args.length){
+                append(out, args[i - 1]);
+            }else{
+                out.append('@');
+            }
+            out.append(parts[i]);
+        }
+    }
+
+    private void append(StringBuilder out, Object arg){
+        //Numbers are appended without an intermediate string
+        if(arg instanceof Integer){
+            out.append((int)(Integer)arg);
+        }else if(arg instanceof Long){
+            out.append((long)(Long)arg);
+        }else{
+            String string = Strings.stringify(arg);
+            //Arguments may hold color codes too
+            if(string.contains(ColorCodes.prefix)) string = ColorCodes.apply(string, useColors);
+            out.append(string);
+        }
+    }
+}
@@ -4,12 +4,24 @@ import arc.*;
 import arc.func.*;
 import arc.struct.*;
 
+import java.lang.invoke.*;
 import java.util.concurrent.*;
 
 /**
  * Utilities for threaded programming.
  */
 public class Threads{
+    private static final MethodHandle onSpinWait;
+
+    static{
+        MethodHandle handle;
+        try{
+            handle = MethodHandles.lookup().findStatic(Thread.class, "onSpinWait", MethodType.methodType(void.class));
+        }catch(Exception ignored){
+            handle = null;
+        }
+        onSpinWait = handle;
+    }
 
     public static <T> ThreadLocal<T> local(Prov<T> prov){
         return new ThreadLocal<T>(){
@@ -92,6 +104,14 @@ public class Threads{
         }
     }
 
+    /** Calls {@code Thread.onSpinWait()} when running on Java 9 or later, does nothing otherwise. */
+    public static void spinWait(){
+        if(onSpinWait == null) return;
+        try{
+            onSpinWait.invokeExact();
+        }catch(Throwable ignored){}
+    }
+
     public static void sleep(long ms){
         try{
             Thread.sleep(ms);
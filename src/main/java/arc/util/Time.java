@@ -20,17 +20,43 @@ public class Time{
 
     private static double timeRaw, globalTimeRaw;
 
-    private static Seq<DelayRun> runs = new Seq<>();
-    private static Seq<DelayRun> removal = new Seq<>();
+    /** The number of time units of {@link #runs} per tick. */
+    private static final float runResolution = 64f;
+
+    /** The ticks elapsed since startup, only advanced by {@link #update()}. */
+    private static double runTime;
+    private static TimingWheel<DelayRun> runs = new TimingWheel<>(0);
+    private static final Cons<DelayRun> finishRun = run -> {
+        run.finish.run();
+        Pools.free(run);
+    };
     private static LongSeq marks = new LongSeq();
     private static Floatp deltaimpl = () -> Math.min(Core.app.getDeltaTime() * toSeconds, 3f);
 
+    /**
+     * @return a copy of the pending tasks, with their remaining delay.
+     * @deprecated tasks are kept in a {@link TimingWheel}, modifying the copy has no effect.
+     */
+    @Deprecated
     public static Seq<DelayRun> getRuns(){
-        return runs;
+        Seq<DelayRun> out = new Seq<>(runs.size);
+        runs.each(run -> {
+            run.delay = (float)(run.getDeadline() / runResolution - runTime);
+            out.add(run);
+        });
+        return out;
     }
 
+    /**
+     * Replaces the pending tasks.
+     * @deprecated use {@link #clear()} and {@link #run(float, Runnable)}.
+     */
+    @Deprecated
     public static void setRuns(Seq<DelayRun> runs){
-        Time.runs = runs;
+        Time.runs.clear();
+        for(DelayRun run : runs){
+            schedule(run);
+        }
     }
 
     /** Runs a task with a delay of several ticks. If Time.clear() is called, this task will be cancelled. */
@@ -38,7 +64,11 @@ public class Time{
         DelayRun run = Pools.obtain(DelayRun.class, DelayRun::new);
         run.finish = r;
         run.delay = delay;
-        runs.add(run);
+        schedule(run);
+    }
+
+    private static void schedule(DelayRun run){
+        runs.add(run, (long)Math.ceil((runTime + run.delay) * runResolution));
     }
 
     /** Runs a task with a delay of several ticks. Unless the application is closed, this task will always complete. */
@@ -73,7 +103,7 @@ public class Time{
 
     public static void update(){
         timeRaw += delta;
-        removal.clear();
+        runTime += delta;
 
         if(Double.isInfinite(timeRaw) || Double.isNaN(timeRaw)){
             timeRaw = 0;
@@ -82,17 +112,8 @@ public class Time{
         time = (float)timeRaw;
         globalTime = (float)globalTimeRaw;
 
-        for(DelayRun run : runs){
-            run.delay -= delta;
-
-            if(run.delay <= 0){
-                run.finish.run();
-                removal.add(run);
-                Pools.free(run);
-            }
-        }
-
-        runs.removeAll(removal);
+        //Only the tasks that expire are visited
+        runs.advance((long)Math.floor(runTime * runResolution), finishRun);
     }
 
     public static double getInternalTime(){
@@ -105,6 +126,7 @@ public class Time{
     }
 
     public static void clear(){
+        runs.each(Pools::free);
         runs.clear();
     }
 
@@ -195,7 +217,7 @@ public class Time{
         return millis() - prevTime;
     }
 
-    public static class DelayRun implements Poolable{
+    public static class DelayRun extends TimingWheel.Entry implements Poolable{
         float delay;
         Runnable finish;
 
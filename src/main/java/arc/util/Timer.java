@@ -4,6 +4,7 @@ import arc.Application;
 import arc.ApplicationListener;
 import arc.Core;
 import arc.Files;
+import arc.func.Cons;
 import arc.struct.Seq;
 
 /**
@@ -17,7 +18,9 @@ public class Timer{
     static final Object threadLock = new Object();
     static TimerThread thread;
 
-    final Seq<Task> tasks = new Seq<>(false, 8);
+    final TimingWheel<Task> tasks = new TimingWheel<>(Time.nanosMillis());
+    private final Cons<Task> expire = this::expire;
+    private long timeMillis;
 
     public Timer(){
         start();
@@ -141,10 +144,9 @@ public class Timer{
                 if(task.timer != null) throw new IllegalArgumentException("The same task may not be scheduled twice.");
                 task.timer = this;
                 task.delayMillis = (long)(delaySeconds * Time.millisPerSecond);
-                task.executeTimeMillis = Time.nanosMillis() + task.delayMillis;
                 task.intervalMillis = (long)(intervalSeconds * Time.millisPerSecond);
                 task.repeatCount = repeatCount;
-                tasks.add(task);
+                tasks.add(task, Time.nanosMillis() + task.delayMillis);
             }
         }
         synchronized(threadLock){
@@ -173,13 +175,12 @@ public class Timer{
 
     /** Cancels all tasks. */
     public synchronized void clear(){
-        for(int i = 0, n = tasks.size; i < n; i++){
-            Task task = tasks.get(i);
+        tasks.each(task -> {
             synchronized(task){
-                task.delayMillis = task.executeTimeMillis = 0;
+                task.delayMillis = task.deadline = 0;
                 task.timer = null;
             }
-        }
+        });
         tasks.clear();
     }
 
@@ -192,46 +193,36 @@ public class Timer{
     }
 
     synchronized long update(long timeMillis, long waitMillis){
-        for(int i = 0, n = tasks.size; i < n; i++){
-            Task task = tasks.get(i);
-            synchronized(task){
-                if(task.executeTimeMillis > timeMillis){
-                    waitMillis = Math.min(waitMillis, task.executeTimeMillis - timeMillis);
-                    continue;
-                }
-                if(task.repeatCount == 0){
-                    task.timer = null;
-                    tasks.remove(i);
-                    i--;
-                    n--;
-                }else{
-                    task.executeTimeMillis = timeMillis + task.intervalMillis;
-                    waitMillis = Math.min(waitMillis, task.intervalMillis);
-                    if(task.repeatCount > 0) task.repeatCount--;
-                }
-                task.app.post(task);
+        //Only the tasks that expire are visited, rather than every task
+        this.timeMillis = timeMillis;
+        tasks.advance(timeMillis, expire);
+        return Math.min(waitMillis, Math.max(tasks.nextDeadline() - timeMillis, 0));
+    }
+
+    private void expire(Task task){
+        synchronized(task){
+            if(task.repeatCount == 0){
+                task.timer = null;
+            }else{
+                tasks.add(task, timeMillis + task.intervalMillis);
+                if(task.repeatCount > 0) task.repeatCount--;
             }
+            task.app.post(task);
         }
-        return waitMillis;
     }
 
     /** Adds the specified delay to all tasks. */
     public synchronized void delay(long delayMillis){
-        for(int i = 0, n = tasks.size; i < n; i++){
-            Task task = tasks.get(i);
-            synchronized(task){
-                task.executeTimeMillis += delayMillis;
-            }
-        }
+        tasks.delay(delayMillis);
     }
 
     /**
      * Runnable that can be scheduled on a {@link Timer}.
      * @author Nathan Sweet
      */
-    static abstract public class Task implements Runnable{
+    static abstract public class Task extends TimingWheel.Entry implements Runnable{
         final Application app;
-        long delayMillis, executeTimeMillis, intervalMillis;
+        long delayMillis, intervalMillis;
         int repeatCount;
         volatile Timer timer;
 
@@ -252,14 +243,14 @@ public class Timer{
             if(timer != null){
                 synchronized(timer){
                     synchronized(this){
-                        delayMillis = executeTimeMillis = 0;
+                        timer.tasks.remove(this);
+                        delayMillis = deadline = 0;
                         this.timer = null;
-                        timer.tasks.remove(this, true);
                     }
                 }
             }else{
                 synchronized(this){
-                    delayMillis = executeTimeMillis = 0;
+                    delayMillis = deadline = 0;
                     this.timer = null;
                 }
             }
@@ -267,9 +258,14 @@ public class Timer{
 
         /** Reschelude this task in future. Does nothing if task was previously canceled or finished. */
         public void reschedule(){
-            synchronized(this){
-                if(timer == null) return;
-                executeTimeMillis = Time.nanosMillis() + delayMillis;
+            Timer timer = this.timer;
+            if(timer == null) return;
+            synchronized(timer){
+                synchronized(this){
+                    if(this.timer != timer) return;
+                    timer.tasks.remove(this);
+                    timer.tasks.add(this, Time.nanosMillis() + delayMillis);
+                }
             }
             synchronized(threadLock){
                 threadLock.notifyAll();
@@ -293,7 +289,7 @@ public class Timer{
 
         /** Returns the time in milliseconds when this task will be executed next. */
         public synchronized long getExecuteTimeMillis(){
-            return executeTimeMillis;
+            return deadline;
         }
     }
 
@@ -0,0 +1,251 @@
+package arc.util;
+
+import arc.func.*;
+import arc.struct.*;
+
+/**
+ * A hierarchical timing wheel, which schedules entries to expire at a time given as a long, in any unit. <br>
+ * The wheel has 6 levels of 64 slots. A slot of the first level holds the entries expiring at one time unit, a slot of the
+ * second one 64 units, and so on. Entries are doubly linked in their slot, so adding and removing an entry is O(1).
+ * Advancing the wheel only visits the slots holding entries: when the time reaches a slot of a higher level, its entries
+ * are moved down to the lower levels, at most once per level. Entries further than 2^36 units away wait in the last level
+ * until they come in range. <br>
+ * <br>
+ * Entries expire in the order of their deadlines, and never before it. This class is not thread safe.
+ */
+@SuppressWarnings("unchecked")
+public class TimingWheel<T extends TimingWheel.Entry>{
+    private static final int bits = 6, slots = 1 << bits, mask = slots - 1, levels = 6;
+    /** The buckets of the entries that expired, after the slots of each level. */
+    private static final int due = levels * slots, firing = due + 1;
+
+    private final Entry[] heads = new Entry[firing + 1], tails = new Entry[firing + 1];
+    /** A bit set per level, of the slots holding entries. */
+    private final long[] occupied = new long[levels];
+    private long time;
+    /** The number of entries in the wheel. */
+    public int size;
+
+    /** @param time The current time. */
+    public TimingWheel(long time){
+        this.time = time;
+    }
+
+    /** @return the time given to the last {@link #advance(long, Cons)}. */
+    public long getTime(){
+        return time;
+    }
+
+    /** Schedules an entry to expire once the time reaches the deadline. Entries whose deadline is passed expire on the next advance. */
+    public void add(T entry, long deadline){
+        if(entry.wheel != null) throw new IllegalArgumentException("The same entry may not be added twice.");
+        entry.wheel = this;
+        entry.deadline = deadline;
+        size++;
+        place(entry);
+    }
+
+    /** @return whether the entry was in the wheel. */
+    public boolean remove(T entry){
+        if(entry.wheel != this) return false;
+        unlink(entry);
+        entry.wheel = null;
+        size--;
+        return true;
+    }
+
+    public boolean contains(T entry){
+        return entry.wheel == this;
+    }
+
+    /**
+     * Moves the time forward, calling the consumer with each entry whose deadline is passed, after removing it. The consumer
+     * may add and remove entries; entries added with a passed deadline expire on the next advance.
+     */
+    public void advance(long now, Cons<T> expired){
+        //Entries added with a passed deadline, or left over by a consumer that threw
+        transfer(due, firing);
+        fire(expired);
+
+        long next;
+        while((next = nextSlot()) <= now){
+            time = next;
+            cascade();
+            int slot = (int)next & mask;
+            if((occupied[0] & (1L << slot)) != 0) transfer(slot, firing);
+            fire(expired);
+        }
+        if(now > time) time = now;
+    }
+
+    /** @return the earliest time at which an entry may expire, or {@link Long#MAX_VALUE} if the wheel is empty. */
+    public long nextDeadline(){
+        return heads[due] != null || heads[firing] != null ? time : nextSlot();
+    }
+
+    /** Adds the amount to the deadline of every entry. */
+    public void delay(long amount){
+        Seq<Entry> entries = new Seq<>(size);
+        each(entries::add);
+        for(Entry entry : entries){
+            unlink(entry);
+            entry.deadline += amount;
+            place(entry);
+        }
+    }
+
+    /** Calls the consumer with each entry, in no particular order. The wheel must not be modified meanwhile. */
+    public void each(Cons<T> cons){
+        for(Entry head : heads){
+            for(Entry entry = head; entry != null; entry = entry.next){
+                cons.get((T)entry);
+            }
+        }
+    }
+
+    /** Removes all entries. */
+    public void clear(){
+        for(int i = 0; i < heads.length; i++){
+            Entry entry = heads[i];
+            while(entry != null){
+                Entry next = entry.next;
+                entry.prev = entry.next = null;
+                entry.wheel = null;
+                entry = next;
+            }
+            heads[i] = tails[i] = null;
+        }
+        for(int i = 0; i < levels; i++) occupied[i] = 0;
+        size = 0;
+    }
+
+    /** @return the start of the next slot holding entries, or {@link Long#MAX_VALUE} if there is none. */
+    private long nextSlot(){
+        //Entries of lower levels always expire before those of higher ones
+        for(int level = 0; level < levels; level++){
+            int shift = level * bits;
+            int digit = (int)(time >> shift) & mask;
+            long pending = occupied[level] & (-2L << digit);
+            if(pending != 0){
+                long block = (time >> (shift + bits)) << (shift + bits);
+                return block | ((long)Long.numberOfTrailingZeros(pending) << shift);
+            }
+        }
+        //Only entries beyond the range of the last level are left, waiting for the next cycle
+        if(occupied[levels - 1] != 0) return ((time >> (levels * bits)) + 1) << (levels * bits);
+        return Long.MAX_VALUE;
+    }
+
+    /** Moves down the entries of the slots starting at the current time, from the highest level. */
+    private void cascade(){
+        for(int level = levels - 1; level > 0; level--){
+            int shift = level * bits;
+            if((time & ((1L << shift) - 1)) != 0) continue;
+            int slot = (int)(time >> shift) & mask;
+            if((occupied[level] & (1L << slot)) == 0) continue;
+
+            int bucket = level * slots + slot;
+            Entry entry = heads[bucket];
+            heads[bucket] = tails[bucket] = null;
+            occupied[level] &= ~(1L << slot);
+            while(entry != null){
+                Entry next = entry.next;
+                entry.prev = entry.next = null;
+                if(entry.deadline <= time){
+                    link(entry, firing);
+                }else{
+                    place(entry);
+                }
+                entry = next;
+            }
+        }
+    }
+
+    /** Links the entry in the lowest level whose current block contains its deadline. */
+    private void place(Entry entry){
+        long deadline = entry.deadline;
+        if(deadline <= time){
+            link(entry, due);
+            return;
+        }
+        for(int level = 0; level < levels; level++){
+            int shift = level * bits;
+            if((deadline >> (shift + bits)) == (time >> (shift + bits))){
+                link(entry, level * slots + ((int)(deadline >> shift) & mask));
+                return;
+            }
+        }
+        //The first slot of the last level is cascaded when the next cycle starts
+        link(entry, (levels - 1) * slots);
+    }
+
+    private void fire(Cons<T> expired){
+        Entry entry;
+        while((entry = heads[firing]) != null){
+            unlink(entry);
+            entry.wheel = null;
+            size--;
+            expired.get((T)entry);
+        }
+    }
+
+    /** Appends the entries of a bucket to another one. */
+    private void transfer(int from, int to){
+        Entry head = heads[from];
+        if(head == null) return;
+        for(Entry entry = head; entry != null; entry = entry.next){
+            entry.bucket = to;
+        }
+        if(tails[to] == null){
+            heads[to] = head;
+        }else{
+            tails[to].next = head;
+            head.prev = tails[to];
+        }
+        tails[to] = tails[from];
+        heads[from] = tails[from] = null;
+        if(from < due) occupied[from >> bits] &= ~(1L << (from & mask));
+    }
+
+    private void link(Entry entry, int bucket){
+        entry.bucket = bucket;
+        Entry tail = tails[bucket];
+        if(tail == null){
+            heads[bucket] = entry;
+        }else{
+            tail.next = entry;
+            entry.prev = tail;
+        }
+        tails[bucket] = entry;
+        if(bucket < due) occupied[bucket >> bits] |= 1L << (bucket & mask);
+    }
+
+    private void unlink(Entry entry){
+        int bucket = entry.bucket;
+        if(entry.prev == null){
+            heads[bucket] = entry.next;
+        }else{
+            entry.prev.next = entry.next;
+        }
+        if(entry.next == null){
+            tails[bucket] = entry.prev;
+        }else{
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = entry.next = null;
+        if(heads[bucket] == null && bucket < due) occupied[bucket >> bits] &= ~(1L << (bucket & mask));
+    }
+
+    /** An entry of a {@link TimingWheel}, linked to the other entries of its slot. */
+    public static abstract class Entry{
+        long deadline;
+        int bucket;
+        Entry prev, next;
+        TimingWheel<?> wheel;
+
+        /** @return the time at which this entry expires, if it is in a wheel. */
+        public long getDeadline(){
+            return deadline;
+        }
+    }
+}
@@ -25,11 +25,28 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 
+/**
+ * Pools heap and direct buffers in buckets of sizes multiple of a {@link #factor}, optionally slicing the small direct
+ * buffers from a {@link SlabAllocator}. <br>
+ * An obtained buffer is owned by its caller until it {@link #release(ByteBuffer) releases} it, after which it must no
+ * longer be used. Buffers that are never released are simply garbage collected, except those of the {@link #slabs},
+ * which keep their slot forever. So a pool with slabs must only be used by code releasing every buffer it obtains.
+ */
 public final class ByteBufferPool {
-  private static final ByteBufferPool INSTANCE = new ByteBufferPool();
+  private static volatile ByteBufferPool instance = new ByteBufferPool();
 
+  /** @return the shared pool, without {@link #slabs} unless one was {@link #set(ByteBufferPool) set}. */
   public static ByteBufferPool get() {
-    return INSTANCE;
+    return instance;
+  }
+
+  /**
+   * Replaces the shared pool, for example by one with {@link #slabs}. <br>
+   * Must be called at startup, before any buffer is obtained, as buffers are released to the current pool.
+   */
+  public static void set(ByteBufferPool pool) {
+    if (pool == null) throw new IllegalArgumentException("pool cannot be null.");
+    instance = pool;
   }
 
   public static ByteBuffer getHeap(int size) {
@@ -52,6 +69,11 @@ public final class ByteBufferPool {
   protected final ConcurrentHashMap<Integer, Pool<ByteBuffer>> heaps, directs;
   protected final Function<Integer, Pool<ByteBuffer>> newBucket;
   public final int factor, bucketCap;
+  /**
+   * Allocator of the direct buffers up to its {@link SlabAllocator#maxSize}, or {@code null}. <br>
+   * Direct buffers that are too large, or obtained once the allocator is full, are allocated separately in buckets.
+   */
+  public final SlabAllocator slabs;
 
   /** Creates a buffer pool with a default {@link #factor} and {@link #bucketCap} of {@code 1024}. */
   public ByteBufferPool() {
@@ -59,11 +81,16 @@ public final class ByteBufferPool {
   }
 
   public ByteBufferPool(int factor, int bucketCap) {
+    this(factor, bucketCap, null);
+  }
+
+  public ByteBufferPool(int factor, int bucketCap, SlabAllocator slabs) {
     this.heaps = new ConcurrentHashMap<>(8);
     this.directs = new ConcurrentHashMap<>(8);
     this.factor = factor;
     this.bucketCap = bucketCap;
     this.newBucket = c -> new Pool.NullablePool<>();
+    this.slabs = slabs;
   }
 
   protected ConcurrentHashMap<Integer, Pool<ByteBuffer>> getBuckets(boolean direct) {
@@ -89,10 +116,15 @@ public final class ByteBufferPool {
 
   /**
    * Get a buffer of the given {@code size} from free pool, or a new one. <br>
-   * Capacity is rounded to the upper {@link #factor}, but limited to the given {@code size}.
+   * Capacity is rounded to the upper {@link #factor}, or to the size class of the {@link #slabs},
+   * but limited to the given {@code size}.
    */
   public ByteBuffer obtain(int size, boolean direct) {
     if (size <= 0) return direct ? EMPTY_DIRECT : EMPTY_HEAP;
+    if (direct && slabs != null) {
+      ByteBuffer buf = slabs.obtain(size);
+      if (buf != null) return (ByteBuffer)buf.order(ByteOrder.nativeOrder()).limit(size);
+    }
     int bucketSize = toFactor(bucketOf(size));
     Pool<ByteBuffer> bucket = getBuckets(direct).get(bucketSize);
     ByteBuffer buf = null;
@@ -105,13 +137,15 @@ public final class ByteBufferPool {
   }
 
   /**
-   * Double release protection not handled!
+   * Double release protection not handled, except for the buffers of the {@link #slabs}!
    * @return whether the buffer was added to the free buffer pool.
    *         A buffer might not be added for several reason: a {@code null} value, zero capacity,
    *         not at the defined {@link #factor}, or simply because the associated bucket is full.
    */
   public boolean release(ByteBuffer buf) {
-    if (buf == null || buf.capacity() <= 0 || buf.capacity() % factor != 0) return false;
+    if (buf == null || buf.capacity() <= 0) return false;
+    if (slabs != null && buf.isDirect() && slabs.owns(buf)) return slabs.free(buf);
+    if (buf.capacity() % factor != 0) return false;
     return getBuckets(buf.isDirect()).computeIfAbsent(buf.capacity(), newBucket).offer(buf);
   }
 
@@ -0,0 +1,154 @@
+package arc.util.pooling;
+
+/**
+ * A pool with per-thread caches, for objects obtained and freed by many threads at once. <br>
+ * This is the magazine allocator: each thread caches free objects in two arrays, the magazines, and only exchanges
+ * a full or an empty magazine with the shared depot when both are empty or full. Most {@link #obtain()} and
+ * {@link #free(Object)} calls do not touch shared state, and the depot lock is taken once every {@link #magazineSize}
+ * operations at most.
+ * <p>
+ * The {@link #capacity} bounds the number of free objects in the depot; each thread can additionally cache up to
+ * {@code 2 * magazineSize} free objects, which are dropped when the thread ends. Objects freed by one thread can be
+ * obtained by another once their magazine reached the depot.
+ * @see Pool
+ */
+@SuppressWarnings("unchecked")
+abstract public class MagazinePool<T> extends Pool<T>{
+    /** The number of objects in a magazine. */
+    public final int magazineSize;
+
+    private final ThreadLocal<Cache> caches = new ThreadLocal<Cache>(){
+        @Override
+        protected Cache initialValue(){
+            return new Cache();
+        }
+    };
+    /** Full magazines, and emptied ones kept to be reused. Guarded by {@link #depot}. */
+    private final Object[][] depot, empty;
+    private int depotSize, emptySize;
+
+    /** Creates a pool with a maximum capacity of {@code 2048} objects in magazines of {@code 32} objects. */
+    public MagazinePool(){
+        this(2048, 32);
+    }
+
+    /** @param capacity The maximum number of free objects to store in the depot. */
+    public MagazinePool(int capacity){
+        this(capacity, 32);
+    }
+
+    /**
+     * @param capacity The maximum number of free objects to store in the depot, rounded down to a number of magazines.
+     * @param magazineSize The number of objects a thread obtains or frees before exchanging a magazine with the depot.
+     */
+    public MagazinePool(int capacity, int magazineSize){
+        super(capacity, false);
+        if(magazineSize < 1) throw new IllegalArgumentException("magazineSize must be at least 1: " + magazineSize);
+        this.magazineSize = magazineSize;
+        int magazines = Math.max(1, capacity / magazineSize);
+        depot = new Object[magazines][];
+        empty = new Object[magazines][];
+    }
+
+    @Override
+    public T poll(){
+        Cache cache = caches.get();
+        if(cache.loadedSize == 0){
+            if(cache.previousSize > 0){
+                cache.swap();
+            }else if(!cache.reload()){
+                misses.increment();
+                return null;
+            }
+        }
+
+        hits.increment();
+        Object[] loaded = cache.loaded;
+        T object = (T)loaded[--cache.loadedSize];
+        loaded[cache.loadedSize] = null;
+        return object;
+    }
+
+    @Override
+    public boolean offer(T object){
+        if(object == null) throw new IllegalArgumentException("object cannot be null.");
+        Cache cache = caches.get();
+        if(cache.loadedSize == magazineSize){
+            if(cache.previousSize == 0){
+                cache.swap();
+            }else if(!cache.unload()){
+                overflows.increment();
+                return false;
+            }
+        }
+
+        reset(object);
+        cache.loaded[cache.loadedSize++] = object;
+        return true;
+    }
+
+    /** Removes the free objects of the depot and of the calling thread. The caches of other threads are left as is. */
+    @Override
+    public void clear(){
+        caches.remove();
+        synchronized(depot){
+            for(int i = 0; i < depotSize; i++) depot[i] = null;
+            depotSize = 0;
+        }
+    }
+
+    /** The number of objects in the depot and in the cache of the calling thread. */
+    @Override
+    public int getFree(){
+        Cache cache = caches.get();
+        synchronized(depot){
+            return depotSize * magazineSize + cache.loadedSize + cache.previousSize;
+        }
+    }
+
+    /** The magazines of a thread. The previous magazine is always either full or empty. */
+    private final class Cache{
+        Object[] loaded = new Object[magazineSize], previous = new Object[magazineSize];
+        int loadedSize, previousSize;
+
+        void swap(){
+            Object[] magazine = loaded;
+            int size = loadedSize;
+            loaded = previous;
+            loadedSize = previousSize;
+            previous = magazine;
+            previousSize = size;
+        }
+
+        /** Exchanges the empty loaded magazine for a full one of the depot. */
+        boolean reload(){
+            synchronized(depot){
+                if(depotSize == 0) return false;
+                if(emptySize < empty.length) empty[emptySize++] = loaded;
+                loaded = depot[--depotSize];
+                depot[depotSize] = null;
+            }
+            loadedSize = magazineSize;
+            return true;
+        }
+
+        /** Gives the full previous magazine to the depot, then makes the full loaded magazine the previous one. */
+        boolean unload(){
+            Object[] magazine = null;
+            synchronized(depot){
+                if(depotSize == depot.length) return false;
+                depot[depotSize++] = previous;
+                peak = Math.max(peak, depotSize * magazineSize);
+                if(emptySize > 0){
+                    magazine = empty[--emptySize];
+                    empty[emptySize] = null;
+                }
+            }
+            previous = loaded;
+            previousSize = magazineSize;
+            loaded = magazine == null ? new Object[magazineSize] : magazine;
+            loadedSize = 0;
+            return true;
+        }
+    }
+}
@@ -2,12 +2,14 @@ package arc.util.pooling;
 
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import arc.struct.Seq;
 
 /**
  * A pool of objects that can be reused to avoid allocation.
  * The implementation is thread-safe, lock-less, and pool array is preallocated.
+ * All threads share the same array; see {@link MagazinePool} for a pool with per-thread caches.
  * @author Nathan Sweet
  * @see Pools
  */
@@ -18,6 +20,8 @@ abstract public class Pool<T>{
     private final AtomicInteger head, tail;
     /** The highest number of free objects. Can be reset any time. */
     public volatile int peak;
+    /** Statistics, see {@link #getHits()}, {@link #getMisses()} and {@link #getOverflows()}. */
+    protected final LongAdder hits = new LongAdder(), misses = new LongAdder(), overflows = new LongAdder();
 
     /** Creates a pool with a maximum capacity of {@code 2048} objects. */
     public Pool(){
@@ -32,6 +36,14 @@ abstract public class Pool<T>{
       tail = new AtomicInteger(0);
     }
 
+    /** For the subclasses storing the free objects themselves, the shared array is not allocated. */
+    Pool(int capacity, boolean shared){
+        this.capacity = capacity;
+        pool = shared ? new AtomicReferenceArray<>(capacity) : null;
+        head = shared ? new AtomicInteger(0) : null;
+        tail = shared ? new AtomicInteger(0) : null;
+    }
+
     abstract protected T newObject();
 
     /**
@@ -46,6 +58,14 @@ abstract public class Pool<T>{
 
     /** Same as {@link #obtain()}, but returns {@code null} instead of allocating a new object if the pool is empty. */
     public T poll(){
+        T e = take();
+        if(e == null) misses.increment();
+        else hits.increment();
+        return e;
+    }
+
+    /** Removes the next free object of the shared array, without counting a hit or a miss. */
+    private T take(){
         for(;;){
             int h = head.get();
             int t = tail.get();
@@ -79,7 +99,10 @@ abstract public class Pool<T>{
             int t = tail.get();
             int h = head.get();
             int i = (t + 1) % capacity;
-            if(i == h) return false; // Pool full
+            if(i == h){ // Pool full
+                overflows.increment();
+                return false;
+            }
             if(tail.compareAndSet(t, i)){
                 peak = Math.max(peak, (t - h + capacity) % capacity);
                 reset(object);
@@ -125,9 +148,9 @@ abstract public class Pool<T>{
         }
     }
 
-    /** Removes all free objects from this pool. */
+    /** Removes all free objects from this pool. The {@link #getHits() hits} and {@link #getMisses() misses} are left as is. */
     public void clear(){
-        while(poll() != null);
+        while(take() != null);
     }
 
     /**
@@ -138,6 +161,29 @@ abstract public class Pool<T>{
       return (tail.get() - head.get() + capacity) % capacity;
     }
 
+    /** @return the number of times {@link #poll()} or {@link #obtain()} returned a free object. */
+    public long getHits(){
+        return hits.sum();
+    }
+
+    /** @return the number of times {@link #poll()} or {@link #obtain()} found no free object. */
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    /** @return the number of objects that were not stored because the pool was full. */
+    public long getOverflows(){
+        return overflows.sum();
+    }
+
+    /** Resets the {@link #getHits() hits}, {@link #getMisses() misses}, {@link #getOverflows() overflows} and {@link #peak}. */
+    public void resetStats(){
+        hits.reset();
+        misses.reset();
+        overflows.reset();
+        peak = 0;
+    }
+
     /** Objects implementing this interface will have {@link #reset()} called when passed to {@link Pool#free(Object)}. */
     public interface Poolable{
         /** Resets the object for reuse. Object references should be nulled and fields may be set to default values. */
@@ -0,0 +1,311 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package arc.util.pooling;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import arc.struct.Seq;
+import arc.util.Log;
+
+
+/**
+ * Direct buffers sliced out of large chunks, by power-of-two size classes. <br>
+ * A chunk of native memory is allocated when a size class has no free slot left, and is carved into slots of that size,
+ * which are then reused forever. The total size of the chunks is bounded by {@link #maxBytes}; once reached,
+ * {@link #obtain(int)} returns {@code null} and the caller must allocate the buffer by other means.
+ * <p>
+ * As slots are never given back to the system, a buffer not {@link #free(ByteBuffer) freed} is lost until the allocator is.
+ * {@link #findLeaks(long)} lists the buffers obtained for too long, with the stack trace of their allocation
+ * when {@link #trackLeaks} is enabled.
+ */
+public class SlabAllocator {
+  /** The smallest and largest size classes. Requests above {@link #maxSize} are not served. */
+  public final int minSize, maxSize;
+  /** The maximum size of the chunks of a size class, and the maximum total size of all chunks. */
+  public final int chunkSize;
+  public final long maxBytes;
+  /** Whether to record the stack trace of each {@link #obtain(int)}, which is costly, to be reported with leaks. */
+  public volatile boolean trackLeaks;
+
+  private final SizeClass[] classes;
+  private final int minShift;
+  private final AtomicLong reserved = new AtomicLong();
+  /** Copied on write, as slots are only added when a chunk is allocated. */
+  private volatile IdentityHashMap<ByteBuffer, Slot> owners = new IdentityHashMap<>();
+  private final Object ownersLock = new Object();
+
+  /** Creates an allocator of size classes from 1 KiB to 1 MiB, using up to 64 MiB of native memory. */
+  public SlabAllocator() {
+    this(1024, 1 << 20, 64L << 20);
+  }
+
+  /**
+   * @param minSize the smallest size class, a power of two.
+   * @param chunkSize the largest size class and the maximum size of a chunk, a power of two.
+   * @param maxBytes the maximum total size of the chunks.
+   */
+  public SlabAllocator(int minSize, int chunkSize, long maxBytes) {
+    if (minSize <= 0 || (minSize & (minSize - 1)) != 0)
+      throw new IllegalArgumentException("minSize must be a power of two: " + minSize);
+    if (chunkSize < minSize || (chunkSize & (chunkSize - 1)) != 0)
+      throw new IllegalArgumentException("chunkSize must be a power of two, and at least minSize: " + chunkSize);
+    this.minSize = minSize;
+    this.maxSize = chunkSize;
+    this.chunkSize = chunkSize;
+    this.maxBytes = maxBytes;
+    minShift = Integer.numberOfTrailingZeros(minSize);
+
+    classes = new SizeClass[Integer.numberOfTrailingZeros(chunkSize) - minShift + 1];
+    for (int i=0; i<classes.length; i++) classes[i] = new SizeClass(minSize << i, chunkSize);
+  }
+
+  /** @return the index of the size class fitting the given {@code size}, or {@code -1} if it is too large. */
+  public int classOf(int size) {
+    if (size > maxSize) return -1;
+    if (size <= minSize) return 0;
+    return 32 - Integer.numberOfLeadingZeros(size - 1) - minShift;
+  }
+
+  /** @return the size class fitting the given {@code size}, or {@code null} if it is too large. */
+  public SizeClass sizeClass(int size) {
+    int index = classOf(size);
+    return index == -1 ? null : classes[index];
+  }
+
+  /** @return a copy of the size classes, from the smallest to the largest. */
+  public SizeClass[] getClasses() {
+    return classes.clone();
+  }
+
+  /**
+   * Get a cleared direct buffer with a capacity of the size class fitting {@code size}.
+   * @return the buffer, or {@code null} if {@code size} is above {@link #maxSize} or the {@link #maxBytes} are used.
+   */
+  public ByteBuffer obtain(int size) {
+    int index = classOf(Math.max(size, 1));
+    if (index == -1) return null;
+    SizeClass sc = classes[index];
+
+    Slot slot;
+    synchronized (sc) {
+      if (sc.freeSize == 0 && !allocateChunk(sc)) {
+        sc.exhausted.increment();
+        return null;
+      }
+      slot = sc.free[--sc.freeSize];
+      sc.free[sc.freeSize] = null;
+      sc.inUse++;
+      slot.inUse = true;
+      slot.obtainedAt = System.nanoTime();
+      slot.trace = trackLeaks ? new Throwable("Buffer of " + sc.size + " bytes obtained here") : null;
+    }
+    sc.obtained.increment();
+    return (ByteBuffer)slot.buffer.clear();
+  }
+
+  /** @return whether the buffer is a slot of this allocator, freed or not. */
+  public boolean owns(ByteBuffer buf) {
+    return buf != null && owners.get(buf) != null;
+  }
+
+  /**
+   * Gives a slot back to its size class.
+   * @return whether the buffer was freed; {@code false} if it is not a slot of this allocator, or is already freed.
+   */
+  public boolean free(ByteBuffer buf) {
+    if (buf == null) return false;
+    Slot slot = owners.get(buf);
+    if (slot == null) return false;
+    SizeClass sc = slot.sizeClass;
+    synchronized (sc) {
+      if (!slot.inUse) return false; // Double release
+      slot.inUse = false;
+      slot.trace = null;
+      sc.inUse--;
+      sc.free[sc.freeSize++] = slot;
+    }
+    sc.freed.increment();
+    return true;
+  }
+
+  /** Carves a new chunk into free slots. Must hold the lock of the size class. */
+  private boolean allocateChunk(SizeClass sc) {
+    long bytes = sc.chunkSize;
+    for (;;) {
+      long current = reserved.get();
+      if (current + bytes > maxBytes) return false;
+      if (reserved.compareAndSet(current, current + bytes)) break;
+    }
+
+    ByteBuffer chunk = ByteBuffer.allocateDirect(sc.chunkSize);
+    int count = sc.chunkSize / sc.size;
+    Slot[] slots = new Slot[count];
+    for (int i=0; i<count; i++) {
+      chunk.limit((i + 1) * sc.size).position(i * sc.size);
+      slots[i] = new Slot(sc, chunk.slice());
+    }
+
+    synchronized (ownersLock) {
+      IdentityHashMap<ByteBuffer, Slot> copy = new IdentityHashMap<>(owners);
+      for (Slot slot : slots) copy.put(slot.buffer, slot);
+      owners = copy;
+    }
+
+    sc.slots.addAll(slots);
+    if (sc.free.length < sc.slots.size) {
+      Slot[] free = new Slot[sc.slots.size];
+      System.arraycopy(sc.free, 0, free, 0, sc.freeSize);
+      sc.free = free;
+    }
+    // Reversed so that the first slots are obtained first
+    for (int i=count-1; i>=0; i--) sc.free[sc.freeSize++] = slots[i];
+    sc.chunks++;
+    return true;
+  }
+
+  /** @return the total size of the allocated chunks. */
+  public long getReservedBytes() {
+    return reserved.get();
+  }
+
+  /** @return the total size of the buffers currently obtained. */
+  public long getUsedBytes() {
+    long used = 0;
+    for (SizeClass sc : classes) used += (long)sc.getInUse() * sc.size;
+    return used;
+  }
+
+  /** @return the buffers obtained more than {@code minAgeMillis} ago and not freed yet. */
+  public Seq<Slot> findLeaks(long minAgeMillis) {
+    Seq<Slot> leaks = new Seq<>(Slot.class);
+    long now = System.nanoTime(), minAge = TimeUnit.MILLISECONDS.toNanos(minAgeMillis);
+    for (SizeClass sc : classes) {
+      synchronized (sc) {
+        for (Slot slot : sc.slots) {
+          if (slot.inUse && now - slot.obtainedAt >= minAge) leaks.add(slot);
+        }
+      }
+    }
+    return leaks;
+  }
+
+  /**
+   * Logs the buffers obtained more than {@code minAgeMillis} ago and not freed yet.
+   * @return the number of such buffers.
+   */
+  public int reportLeaks(long minAgeMillis) {
+    Seq<Slot> leaks = findLeaks(minAgeMillis);
+    for (Slot slot : leaks) {
+      Throwable trace = slot.trace;
+      if (trace != null) Log.err(Log.format("Buffer of @ bytes not freed after @ ms", slot.sizeClass.size, slot.getAge()), trace);
+      else Log.warn("Buffer of @ bytes not freed after @ ms. Enable SlabAllocator.trackLeaks to know where it was obtained.",
+                    slot.sizeClass.size, slot.getAge());
+    }
+    return leaks.size;
+  }
+
+
+  /** The slots of a size, and their statistics. */
+  public static class SizeClass {
+    /** The capacity of the buffers, and the size of the chunks carved into them. */
+    public final int size, chunkSize;
+
+    private final Seq<Slot> slots = new Seq<>(Slot.class);
+    private Slot[] free = new Slot[0];
+    private int freeSize, inUse, chunks;
+    private final LongAdder obtained = new LongAdder(), freed = new LongAdder(), exhausted = new LongAdder();
+
+    SizeClass(int size, int maxChunkSize) {
+      this.size = size;
+      // Enough slots per chunk to be worth it, without reserving much memory for rarely used sizes
+      this.chunkSize = (int)Math.min(maxChunkSize, Math.max(64 * 1024, size * 16L));
+    }
+
+    /** @return the number of chunks allocated. */
+    public synchronized int getChunks() {
+      return chunks;
+    }
+
+    /** @return the number of slots, obtained or free. */
+    public synchronized int getSlots() {
+      return slots.size;
+    }
+
+    /** @return the number of slots currently obtained. */
+    public synchronized int getInUse() {
+      return inUse;
+    }
+
+    /** @return the number of slots ready to be obtained without allocating a chunk. */
+    public synchronized int getFree() {
+      return freeSize;
+    }
+
+    /** @return the number of buffers obtained so far. */
+    public long getObtained() {
+      return obtained.sum();
+    }
+
+    /** @return the number of buffers freed so far. */
+    public long getFreed() {
+      return freed.sum();
+    }
+
+    /** @return the number of requests not served because the allocator reached its maximum size. */
+    public long getExhausted() {
+      return exhausted.sum();
+    }
+
+    @Override
+    public String toString() {
+      return "SizeClass{size=" + size + ", chunks=" + getChunks() + ", slots=" + getSlots() + ", inUse=" + getInUse()
+           + ", obtained=" + getObtained() + ", freed=" + getFreed() + ", exhausted=" + getExhausted() + "}";
+    }
+  }
+
+
+  /** A buffer of a chunk. */
+  public static class Slot {
+    public final SizeClass sizeClass;
+    final ByteBuffer buffer;
+    boolean inUse;
+    long obtainedAt;
+    Throwable trace;
+
+    Slot(SizeClass sizeClass, ByteBuffer buffer) {
+      this.sizeClass = sizeClass;
+      this.buffer = buffer;
+    }
+
+    /** @return the number of milliseconds since the buffer was obtained. */
+    public long getAge() {
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - obtainedAt);
+    }
+
+    /** @return where the buffer was obtained, if {@link SlabAllocator#trackLeaks} was enabled at that time. */
+    public Throwable getTrace() {
+      return trace;
+    }
+  }
+}
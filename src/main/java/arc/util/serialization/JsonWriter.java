@@ -171,6 +171,7 @@ public class JsonWriter extends Writer implements BaseJsonWriter{
             Strings.replace(buffer, '\r', "\\r");
             Strings.replace(buffer, '\n', "\\n");
             Strings.replace(buffer, '\t', "\\t");
+            if(this == OutputType.json) escapeControl(buffer);
             if(this == OutputType.minimal && !string.equals("true") && !string.equals("false") && !string.equals("null")
             && !string.contains("//") && !string.contains("/*")){
                 int length = buffer.length();
@@ -187,6 +188,7 @@ public class JsonWriter extends Writer implements BaseJsonWriter{
             Strings.replace(buffer, '\r', "\\r");
             Strings.replace(buffer, '\n', "\\n");
             Strings.replace(buffer, '\t', "\\t");
+            if(this == OutputType.json) escapeControl(buffer);
             switch(this){
                 case minimal:
                     if(!value.contains("//") && !value.contains("/*") && minimalNamePattern.matcher(buffer).matches())
@@ -198,6 +200,20 @@ public class JsonWriter extends Writer implements BaseJsonWriter{
                     return '"' + buffer.toString() + '"';
             }
         }
+
+        /**
+         * Escapes the control characters which have no short escape, such as those of ANSI color codes, as strict JSON
+         * requires. The other output types keep them as is.
+         */
+        private static void escapeControl(StringBuilder buffer){
+            for(int i = buffer.length() - 1; i >= 0; i--){
+                char c = buffer.charAt(i);
+                if(c < ' '){
+                    buffer.replace(i, i + 1, "\\u00");
+                    buffer.insert(i + 4, Character.forDigit(c >> 4, 16)).insert(i + 5, Character.forDigit(c & 15, 16));
+                }
+            }
+        }
     }
 
     private class JsonObject{
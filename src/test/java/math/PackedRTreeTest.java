@@ -0,0 +1,105 @@
+package math;
+
+import arc.math.geom.*;
+import arc.struct.*;
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PackedRTreeTest{
+
+    @Test
+    public void matchesBruteForce(){
+        Random random = new Random(5);
+        int count = 3000;
+        float[] boxes = new float[count * 4];
+        for(int i = 0; i < count; i++){
+            float x = random.nextFloat() * 1000, y = random.nextFloat() * 1000, size = random.nextFloat() * (i % 10 == 0 ? 50 : 5);
+            boxes[i * 4] = x;
+            boxes[i * 4 + 1] = y;
+            boxes[i * 4 + 2] = x + size;
+            boxes[i * 4 + 3] = y + size;
+        }
+        PackedRTree tree = PackedRTree.of(boxes);
+
+        for(int q = 0; q < 100; q++){
+            float x = random.nextFloat() * 1000, y = random.nextFloat() * 1000, w = random.nextFloat() * 100, h = random.nextFloat() * 100;
+            IntSet expected = new IntSet();
+            for(int i = 0; i < count; i++){
+                if(boxes[i * 4] <= x + w && boxes[i * 4 + 1] <= y + h && boxes[i * 4 + 2] >= x && boxes[i * 4 + 3] >= y) expected.add(i);
+            }
+            IntSeq found = new IntSeq();
+            tree.search(x, y, x + w, y + h, found::add);
+            assertEquals(expected.size, found.size);
+            for(int i = 0; i < found.size; i++) assertTrue(expected.contains(found.get(i)));
+
+            //Nearest items, skipping odd ones
+            IntSeq nearest = new IntSeq();
+            tree.nearest(x, y, 10, 200f, i -> i % 2 == 0, nearest);
+            float[] dists = new float[count];
+            IntSeq sorted = new IntSeq();
+            for(int i = 0; i < count; i++){
+                dists[i] = dst2(boxes, i, x, y);
+                if(i % 2 == 0 && dists[i] <= 200f * 200f) sorted.add(i);
+            }
+            assertEquals(Math.min(10, sorted.size), nearest.size);
+            float last = 0f;
+            for(int i = 0; i < nearest.size; i++){
+                float dist = dists[nearest.get(i)];
+                assertTrue(dist >= last);
+                last = dist;
+            }
+            int closer = 0;
+            for(int i = 0; i < sorted.size; i++){
+                if(dists[sorted.get(i)] < last) closer++;
+            }
+            assertTrue(closer <= nearest.size);
+
+            int best = tree.nearest(x, y);
+            for(int i = 0; i < count; i++) assertTrue(dists[best] <= dists[i]);
+        }
+    }
+
+    @Test
+    public void raycast(){
+        PackedRTree tree = new PackedRTree(40, 4);
+        for(int i = 0; i < 40; i++){
+            tree.add(i * 10, 0, i * 10 + 5, 5);
+        }
+        tree.finish();
+
+        assertEquals(4, tree.raycast(37, 2, 400, 2));
+        assertEquals(3f / 363f, tree.hitFraction, 0.0001f);
+        //Starting inside a box hits it right away
+        assertEquals(3, tree.raycast(32, 2, 400, 2));
+        assertEquals(0f, tree.hitFraction, 0f);
+        assertEquals(39, tree.raycast(500, 2, 32, 2));
+        assertEquals(4, tree.raycast(32, 2, 400, 2, i -> i != 3));
+        assertEquals(-1, tree.raycast(0, 10, 400, 10));
+        //A vertical ray
+        assertEquals(7, tree.raycast(72, -10, 72, 10));
+
+        IntSeq hits = new IntSeq();
+        tree.raycastAll(32, 2, 98, 2, hits::add);
+        hits.sort();
+        assertArrayEquals(new int[]{3, 4, 5, 6, 7, 8, 9}, hits.toArray());
+    }
+
+    @Test
+    public void nestedSearch(){
+        PackedRTree tree = PackedRTree.ofPoints(new float[]{0, 0, 1, 1, 2, 2, 50, 50});
+        int[] pairs = {0};
+        tree.search(-1, -1, 3, 3, a -> tree.search(-1, -1, 3, 3, b -> pairs[0]++));
+        assertEquals(9, pairs[0]);
+        assertEquals(3, tree.nearest(40, 40));
+        assertEquals(-1, tree.nearest(20, 20, 5f, null));
+    }
+
+    static float dst2(float[] boxes, int i, float x, float y){
+        float dx = Math.max(0, Math.max(boxes[i * 4] - x, x - boxes[i * 4 + 2]));
+        float dy = Math.max(0, Math.max(boxes[i * 4 + 1] - y, y - boxes[i * 4 + 3]));
+        return dx * dx + dy * dy;
+    }
+}
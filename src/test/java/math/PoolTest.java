@@ -6,6 +6,11 @@ import arc.util.*;
 import arc.util.pooling.*;
 import org.junit.*;
 
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.Assert.*;
+
 public class PoolTest{
 
     @Test
@@ -46,6 +51,100 @@ public class PoolTest{
         Log.info("Total memory allocated: @ mb", Strings.fixed((post - start)/1024f/1024f, 1));
     }
 
+    @Test
+    public void stats(){
+        Pool<Object> pool = new Pool<Object>(4){
+            @Override
+            protected Object newObject(){
+                return new Object();
+            }
+        };
+
+        Object a = pool.obtain(), b = pool.obtain();
+        assertEquals(2, pool.getMisses());
+        pool.free(a);
+        pool.free(b);
+        pool.free(new Object());
+        // The ring keeps one slot empty
+        pool.free(new Object());
+        assertEquals(1, pool.getOverflows());
+        assertSame(a, pool.obtain());
+        assertEquals(1, pool.getHits());
+
+        pool.resetStats();
+        assertEquals(0, pool.getHits() + pool.getMisses() + pool.getOverflows());
+    }
+
+    @Test
+    public void magazines(){
+        AtomicInteger created = new AtomicInteger();
+        MagazinePool<Object> pool = new MagazinePool<Object>(8, 4){
+            @Override
+            protected Object newObject(){
+                created.incrementAndGet();
+                return new Object();
+            }
+        };
+
+        Seq<Object> objects = new Seq<>();
+        for(int i = 0; i < 20; i++) objects.add(pool.obtain());
+        assertEquals(20, pool.getMisses());
+
+        // Two magazines in the thread cache, two in the depot, the rest overflows
+        pool.freeAll(objects);
+        assertEquals(16, pool.getFree());
+        assertEquals(4, pool.getOverflows());
+        assertEquals(8, pool.peak);
+
+        for(int i = 0; i < 16; i++) assertNotNull(pool.poll());
+        assertNull(pool.poll());
+        assertEquals(16, pool.getHits());
+        assertEquals(20, created.get());
+    }
+
+    @Test
+    public void magazinesAcrossThreads() throws Exception{
+        AtomicInteger created = new AtomicInteger();
+        MagazinePool<int[]> pool = new MagazinePool<int[]>(1024, 16){
+            @Override
+            protected int[] newObject(){
+                created.incrementAndGet();
+                return new int[1];
+            }
+        };
+
+        int threads = 4;
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        AtomicInteger shared = new AtomicInteger();
+        Future<?>[] futures = new Future[threads];
+        for(int t = 0; t < threads; t++){
+            futures[t] = exec.submit(() -> {
+                Seq<int[]> held = new Seq<>();
+                for(int i = 0; i < 100000; i++){
+                    int[] object = pool.obtain();
+                    // An object must never be handed to two owners at once
+                    if(object[0]++ != 0) shared.incrementAndGet();
+                    held.add(object);
+                    if(held.size >= 40){
+                        for(int[] h : held){
+                            h[0] = 0;
+                            pool.free(h);
+                        }
+                        held.clear();
+                    }
+                }
+                return null;
+            });
+        }
+        for(Future<?> future : futures) future.get();
+        exec.shutdown();
+
+        assertEquals(0, shared.get());
+        assertEquals(threads * 100000L, pool.getHits() + pool.getMisses());
+        // Objects are recycled, only the first magazines are allocated
+        assertTrue(created.get() < threads * 200);
+    }
+
     long memory(){
         return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
     }
@@ -0,0 +1,89 @@
+package math;
+
+import arc.math.geom.*;
+import arc.math.geom.QuadTree.*;
+import arc.struct.*;
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SpatialGridTest{
+
+    @Test
+    public void matchesBruteForce(){
+        Random random = new Random(11);
+        SpatialGrid<Box> grid = new SpatialGrid<>(new Rect(0, 0, 1000, 1000), 32);
+        Seq<Box> boxes = new Seq<>();
+        for(int i = 0; i < 2000; i++){
+            //Some boxes span several cells, and some are out of bounds
+            Box box = new Box(random.nextFloat() * 1200 - 100, random.nextFloat() * 1200 - 100, 1 + random.nextFloat() * (i % 10 == 0 ? 100 : 10));
+            boxes.add(box);
+            grid.insert(box);
+        }
+
+        for(int frame = 0; frame < 20; frame++){
+            for(Box box : boxes){
+                box.x += random.nextFloat() * 20 - 10;
+                box.y += random.nextFloat() * 20 - 10;
+                grid.update(box);
+            }
+            for(int i = 0; i < 30; i++){
+                Box removed = boxes.remove(random.nextInt(boxes.size));
+                assertTrue(grid.remove(removed));
+                assertFalse(grid.remove(removed));
+            }
+            assertEquals(boxes.size, grid.size);
+
+            for(int q = 0; q < 50; q++){
+                Rect query = new Rect(random.nextFloat() * 1000, random.nextFloat() * 1000, random.nextFloat() * 150, random.nextFloat() * 150);
+                ObjectSet<Box> expected = new ObjectSet<>();
+                for(Box box : boxes){
+                    if(box.rect().overlaps(query)) expected.add(box);
+                }
+
+                Seq<Box> found = new Seq<>();
+                grid.intersect(query, found);
+                assertEquals(expected.size, found.size);
+                assertEquals(expected, found.asSet());
+                assertEquals(expected.size > 0, grid.any(query.x, query.y, query.width, query.height));
+            }
+        }
+    }
+
+    @Test
+    public void nestedQueries(){
+        SpatialGrid<Box> grid = new SpatialGrid<>(new Rect(0, 0, 100, 100), 10);
+        Box a = new Box(5, 5, 30), b = new Box(20, 20, 4);
+        grid.insert(a);
+        grid.insert(b);
+
+        int[] pairs = {0};
+        grid.intersect(0, 0, 100, 100, (Box first) -> grid.intersect(0, 0, 100, 100, (Box second) -> pairs[0]++));
+        assertEquals(4, pairs[0]);
+        assertSame(b, grid.find(0, 0, 100, 100, box -> box.size < 10));
+
+        grid.clear();
+        assertFalse(grid.any(0, 0, 100, 100));
+    }
+
+    static class Box implements QuadTreeObject{
+        float x, y, size;
+
+        Box(float x, float y, float size){
+            this.x = x;
+            this.y = y;
+            this.size = size;
+        }
+
+        Rect rect(){
+            return new Rect(x, y, size, size);
+        }
+
+        @Override
+        public void hitbox(Rect out){
+            out.set(x, y, size, size);
+        }
+    }
+}
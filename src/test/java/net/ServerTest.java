@@ -0,0 +1,698 @@
+package net;
+
+import arc.files.*;
+import arc.func.*;
+import arc.net.*;
+import arc.net.FrameworkMessage.*;
+import arc.struct.*;
+import org.junit.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+import static org.junit.Assert.*;
+
+/** Loopback tests of a {@link Server} and its {@link Client Clients}. */
+public class ServerTest{
+    static final int timeout = 5000;
+
+    Server server;
+    Seq<Client> clients = new Seq<>();
+    ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+    Cons<Throwable> lastHandler;
+    int tcpPort, udpPort;
+
+    @Before
+    public void setup() throws IOException{
+        lastHandler = ArcNet.errorHandler;
+        ArcNet.errorHandler = errors::add;
+        tcpPort = freePort();
+        udpPort = freePort();
+    }
+
+    @After
+    public void cleanup(){
+        for(Client client : clients) client.dispose();
+        if(server != null){
+            server.stop();
+            server.dispose();
+        }
+        ArcNet.errorHandler = lastHandler;
+    }
+
+    @Test
+    public void broadcastWithWorkers() throws Exception{
+        server = new Server(8192, 8192, new TestSerializer());
+        server.setWorkers(2);
+        server.bind(tcpPort, udpPort);
+        server.start();
+
+        Seq<ConcurrentLinkedQueue<Object>> received = new Seq<>();
+        for(int i = 0; i < 4; i++){
+            ConcurrentLinkedQueue<Object> objects = new ConcurrentLinkedQueue<>();
+            received.add(objects);
+            connect(true).addListener(receiver(objects));
+        }
+        await(() -> server.getConnectionsSize() == 4);
+
+        server.sendToAllTCP("tcp");
+        server.sendToAllUDP(7);
+        server.sendToAllExceptTCP(clients.first().getID(), "others");
+        for(ConcurrentLinkedQueue<Object> objects : received){
+            await(() -> objects.contains("tcp") && objects.contains(7));
+        }
+        for(int i = 1; i < received.size; i++){
+            ConcurrentLinkedQueue<Object> objects = received.get(i);
+            await(() -> objects.contains("others"));
+        }
+        assertFalse(received.first().contains("others"));
+        assertNoErrors();
+    }
+
+    @Test
+    public void broadcastSerializesOnce() throws Exception{
+        AtomicInteger writes = new AtomicInteger();
+        server = new Server(8192, 8192, new TestSerializer(){
+            @Override
+            public void write(ByteBuffer buffer, Object object){
+                if("once".equals(object)) writes.incrementAndGet();
+                super.write(buffer, object);
+            }
+        });
+        server.bind(tcpPort, udpPort);
+        server.start();
+
+        Seq<ConcurrentLinkedQueue<Object>> received = new Seq<>();
+        for(int i = 0; i < 3; i++){
+            ConcurrentLinkedQueue<Object> objects = new ConcurrentLinkedQueue<>();
+            received.add(objects);
+            connect(true).addListener(receiver(objects));
+        }
+        await(() -> server.getConnectionsSize() == 3);
+
+        server.sendToAllTCP("once");
+        for(ConcurrentLinkedQueue<Object> objects : received){
+            await(() -> objects.contains("once"));
+            objects.clear();
+        }
+        assertEquals(1, writes.get());
+
+        int excluded = clients.get(1).getID();
+        server.sendToAllUDP(c -> c.getID() != excluded, "once");
+        await(() -> received.first().contains("once") && received.get(2).contains("once"));
+        assertEquals(2, writes.get());
+        server.sendToTCP(excluded, "last");
+        await(() -> received.get(1).contains("last"));
+        assertFalse(received.get(1).contains("once"));
+        assertNoErrors();
+    }
+
+    @Test
+    public void broadcastWhileConnecting() throws Exception{
+        server = new Server(8192, 8192, new TestSerializer());
+        server.setWorkers(2);
+        server.bind(tcpPort);
+        server.start();
+
+        //Workers add and remove connections while they are iterated by this thread
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger broadcasts = new AtomicInteger();
+        Thread broadcaster = new Thread(() -> {
+            while(running.get()){
+                server.sendToAllTCP("tick");
+                server.keepAlive();
+                server.eachConnections(c -> assertNotNull(c));
+                int size = server.getConnectionsSize();
+                if(size > 0) assertNotNull(server.getConnectionIndex(size - 1));
+                broadcasts.incrementAndGet();
+            }
+        });
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        broadcaster.setUncaughtExceptionHandler((t, e) -> failure.set(e));
+        broadcaster.start();
+
+        for(int i = 0; i < 20; i++){
+            Client client = connect(false);
+            if(i % 2 == 0){
+                client.close();
+                clients.remove(client);
+                client.dispose();
+            }
+        }
+        await(() -> server.getConnectionsSize() == 10);
+        running.set(false);
+        broadcaster.join(timeout);
+
+        assertNull(failure.get());
+        assertTrue(broadcasts.get() > 0);
+        assertNoErrors();
+    }
+
+    @Test
+    public void workerSurvivesListenerErrors() throws Exception{
+        server = new Server(8192, 8192, new TestSerializer());
+        server.setWorkers(1);
+        server.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if("boom".equals(object)) throw new IllegalStateException("boom");
+                if(object instanceof String) connection.sendTCP(object);
+            }
+        });
+        server.bind(tcpPort);
+        server.start();
+
+        Client failing = connect(false), other = connect(false);
+        ConcurrentLinkedQueue<Object> received = new ConcurrentLinkedQueue<>();
+        other.addListener(receiver(received));
+
+        failing.sendTCP("boom");
+        await(() -> !failing.isConnected());
+        await(() -> errors.size() == 1);
+        assertTrue(errors.peek().getCause() instanceof IllegalStateException);
+
+        //The worker is still running, and serves the other connections of its shard
+        other.sendTCP("echo");
+        await(() -> received.contains("echo"));
+    }
+
+    @Test
+    public void watermarksAndWriteLimit() throws Exception{
+        server = new Server(4096, 8192, new TestSerializer());
+        ConcurrentLinkedQueue<Boolean> writability = new ConcurrentLinkedQueue<>();
+        AtomicReference<DcReason> reason = new AtomicReference<>();
+        server.addListener(new NetListener(){
+            @Override
+            public void writabilityChanged(Connection connection, boolean writable){
+                writability.add(writable);
+            }
+
+            @Override
+            public void disconnected(Connection connection, DcReason dcReason){
+                reason.set(dcReason);
+            }
+        });
+        server.setTcpWriteLimit(256 * 1024);
+        server.bind(tcpPort);
+        server.start();
+
+        Client client = connect(false);
+        await(() -> server.getConnectionsSize() == 1);
+        Connection connection = server.getConnections()[0];
+        connection.setTcpWriteWatermarks(2048, 8192);
+
+        //The client stops reading, so the bytes pile up in the queue of the server
+        client.pauseTCPReading(true);
+        byte[] data = new byte[1000];
+        int sent = 0;
+        while(connection.isWritable() && sent < 100_000){
+            connection.sendTCP(data);
+            sent++;
+        }
+        assertFalse(connection.isWritable());
+        await(() -> writability.contains(false));
+        assertTrue(connection.getTcpWriteBufferSize() > 8192);
+
+        client.pauseTCPReading(false);
+        await(connection::isWritable);
+        await(() -> writability.contains(true));
+
+        //A client which never reads is closed once the limit is exceeded, even though it is still alive
+        client.pauseTCPReading(true);
+        for(sent = 0; connection.isConnected() && sent < 100_000; sent++){
+            connection.sendTCP(data);
+        }
+        assertFalse(connection.isConnected());
+        await(() -> reason.get() != null);
+        assertEquals(DcReason.error, reason.get());
+        assertTrue(errors.stream().anyMatch(e -> e.getMessage().contains("Write queue exceeded its limit")));
+    }
+
+    @Test
+    public void sendFileTCP() throws Exception{
+        server = new Server(8192, 8192, new TestSerializer());
+        server.bind(tcpPort);
+        server.start();
+
+        byte[] bytes = new byte[50_000];
+        new Random(7).nextBytes(bytes);
+        File file = File.createTempFile("arc-net", ".bin");
+        file.deleteOnExit();
+        try(FileOutputStream out = new FileOutputStream(file)){
+            out.write(bytes);
+        }
+
+        Client client = connect(false);
+        ConcurrentLinkedQueue<Object> received = new ConcurrentLinkedQueue<>();
+        client.addListener(receiver(received));
+        await(() -> server.getConnectionsSize() == 1);
+        Connection connection = server.getConnections()[0];
+
+        //A single region, in the middle of the file
+        try(FileChannel channel = FileChannel.open(file.toPath())){
+            connection.sendFileTCP(new ChunkHeader(1000), channel, 2000, 1000, false);
+            await(() -> received.size() == 1);
+        }
+        assertArrayEquals(Arrays.copyOfRange(bytes, 2000, 3000), (byte[])received.poll());
+
+        //The whole file, chunk by chunk, when the connection is idle
+        connection.addListener(new FileSender(new Fi(file), 4000){
+            @Override
+            protected Object header(long offset, int length){
+                return new ChunkHeader(length);
+            }
+        });
+        await(() -> received.stream().mapToInt(o -> ((byte[])o).length).sum() == bytes.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for(Object chunk : received) out.write((byte[])chunk);
+        assertArrayEquals(bytes, out.toByteArray());
+        assertEquals(0, connection.getTcpWriteBufferSize());
+        assertNoErrors();
+    }
+
+    @Test
+    public void udpCoalescing() throws Exception{
+        server = new Server(8192, 8192, new TestSerializer());
+        server.bind(tcpPort, udpPort);
+        server.start();
+        ConcurrentLinkedQueue<Object> serverReceived = new ConcurrentLinkedQueue<>();
+        server.addListener(receiver(serverReceived));
+
+        Client client = connect(true);
+        ConcurrentLinkedQueue<Object> received = new ConcurrentLinkedQueue<>();
+        client.addListener(receiver(received));
+        await(() -> server.getConnectionsSize() == 1);
+        Connection connection = server.getConnections()[0];
+
+        //Small integers start with a length of 0, like coalesced datagrams
+        client.sendUDP(7);
+        client.sendUDP("single");
+        await(() -> serverReceived.size() == 2);
+        assertEquals(7, serverReceived.poll());
+        assertEquals("single", serverReceived.poll());
+
+        connection.setUDPCoalescing(1400);
+        for(int i = 0; i < 100; i++){
+            connection.sendUDP(i % 2 == 0 ? (Object)i : "s" + i);
+        }
+        //Framed datagrams of broadcasts are coalesced too
+        server.sendToAllUDP(100);
+        connection.flushUDP();
+        await(() -> received.size() == 101);
+        int i = 0;
+        for(Object object : received){
+            assertEquals(i % 2 == 0 ? (Object)i : "s" + i, object);
+            i++;
+        }
+        assertTrue(connection.getStats().snapshot().udpPacketsSent < 20);
+
+        //Objects must use all the bytes of an uncoalesced datagram
+        try(DatagramChannel channel = DatagramChannel.open()){
+            ByteBuffer datagram = ByteBuffer.allocate(16);
+            //An empty string, then an extra byte
+            datagram.put((byte)1).putShort((short)0).put((byte)0).flip();
+            channel.send(datagram, new InetSocketAddress("127.0.0.1", udpPort));
+        }
+        await(() -> errors.size() == 1);
+        assertTrue(errors.peek().getCause().getCause().getMessage().startsWith("Incorrect number of bytes"));
+        errors.clear();
+
+        client.sendUDP("after");
+        await(() -> serverReceived.contains("after"));
+        assertNoErrors();
+    }
+
+    @Test
+    public void compressionNegotiation() throws Exception{
+        byte[] dictionary = "arc compression dictionary".getBytes(StandardCharsets.UTF_8);
+        server = new Server(8192, 8192, new TestSerializer());
+        server.setCompression(new NetCompression(Deflater.BEST_SPEED, 64, dictionary));
+        server.bind(tcpPort);
+        server.start();
+        ConcurrentLinkedQueue<Object> serverReceived = new ConcurrentLinkedQueue<>();
+        server.addListener(receiver(serverReceived));
+
+        Client client = new Client(8192, 8192, new TestSerializer());
+        clients.add(client);
+        client.setCompression(new NetCompression(Deflater.BEST_SPEED, 64, dictionary));
+        client.start();
+        client.connect(timeout, "127.0.0.1", tcpPort);
+        ConcurrentLinkedQueue<Object> received = new ConcurrentLinkedQueue<>();
+        client.addListener(receiver(received));
+        await(() -> server.getConnectionsSize() == 1);
+        Connection connection = server.getConnections()[0];
+        await(() -> client.isCompressed() && connection.isCompressed());
+
+        //Payloads above the threshold are deflated, the others sent as is
+        byte[] bytes = new byte[4000];
+        Arrays.fill(bytes, (byte)7);
+        long sent = connection.getStats().snapshot().tcpBytesSent;
+        connection.sendTCP(bytes);
+        connection.sendTCP("small");
+        client.sendTCP(bytes);
+        await(() -> received.size() == 2 && serverReceived.size() == 1);
+        assertArrayEquals(bytes, (byte[])received.poll());
+        assertEquals("small", received.poll());
+        assertArrayEquals(bytes, (byte[])serverReceived.poll());
+        assertTrue(connection.getStats().snapshot().tcpBytesSent - sent < 500);
+        assertNoErrors();
+    }
+
+    @Test
+    public void compressionFallback() throws Exception{
+        server = new Server(8192, 8192, new TestSerializer());
+        server.setCompression(new NetCompression());
+        server.bind(tcpPort);
+        server.start();
+        ConcurrentLinkedQueue<Object> serverReceived = new ConcurrentLinkedQueue<>();
+        server.addListener(receiver(serverReceived));
+
+        //Without compression on the client
+        Client plain = connect(false);
+        //With another dictionary
+        Client other = new Client(8192, 8192, new TestSerializer());
+        clients.add(other);
+        other.setCompression(new NetCompression(Deflater.BEST_SPEED, 0, new byte[]{1, 2, 3}));
+        other.start();
+        other.connect(timeout, "127.0.0.1", tcpPort);
+        await(() -> server.getConnectionsSize() == 2);
+
+        byte[] bytes = new byte[4000];
+        for(Client client : clients){
+            ConcurrentLinkedQueue<Object> received = new ConcurrentLinkedQueue<>();
+            client.addListener(receiver(received));
+            client.sendTCP(bytes);
+            server.sendToTCP(client.getID(), bytes);
+            await(() -> received.size() == 1);
+            assertArrayEquals(bytes, (byte[])received.poll());
+            assertFalse(client.isCompressed());
+        }
+        await(() -> serverReceived.size() == 2);
+        for(Connection connection : server.getConnections()){
+            assertFalse(connection.isCompressed());
+        }
+        assertFalse(plain.isCompressed());
+        assertNoErrors();
+    }
+
+    @Test
+    public void decoderOrderingAndThrottling() throws Exception{
+        int count = 10000;
+        CountDownLatch blocked = new CountDownLatch(1);
+        ConcurrentHashMap<Integer, IntSeq> received = new ConcurrentHashMap<>();
+        server = new Server(8192, 8192, new TestSerializer());
+        server.setDecoderThreads(4);
+        server.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(!(object instanceof Integer)) return;
+                //The first client blocks its decoder, until its frames throttle the reading
+                if(connection.getID() == clients.first().getID() && (Integer)object == 0){
+                    try{
+                        blocked.await();
+                    }catch(InterruptedException ex){
+                        throw new RuntimeException(ex);
+                    }
+                }
+                IntSeq objects = received.computeIfAbsent(connection.getID(), id -> new IntSeq());
+                synchronized(objects){
+                    objects.add((Integer)object);
+                }
+            }
+        });
+        server.bind(tcpPort);
+        server.start();
+
+        for(int i = 0; i < 3; i++) connect(false);
+        await(() -> server.getConnectionsSize() == 3);
+        for(Client client : clients){
+            for(int i = 0; i < count; i++) client.sendTCP(i);
+        }
+        for(int i = 1; i < clients.size; i++){
+            int id = clients.get(i).getID();
+            await(() -> received.containsKey(id) && received.get(id).size == count);
+        }
+
+        //Pausing the reading is kept when the throttling ends
+        Thread.sleep(200);
+        Connection throttled = server.getConnection(clients.first().getID());
+        throttled.pauseTCPReading(true);
+        blocked.countDown();
+        int id = clients.first().getID();
+        await(() -> received.containsKey(id));
+        Thread.sleep(300);
+        IntSeq objects = received.get(id);
+        int size;
+        synchronized(objects){
+            size = objects.size;
+        }
+        assertTrue(size < count);
+        assertTrue(throttled.isTCPPaused());
+
+        throttled.pauseTCPReading(false);
+        await(() -> received.get(id).size == count);
+        for(IntSeq seq : received.values()){
+            for(int i = 0; i < count; i++) assertEquals(i, seq.get(i));
+        }
+        assertNoErrors();
+    }
+
+    @Test
+    public void decoderSurvivesListenerErrors() throws Exception{
+        server = new Server(8192, 8192, new TestSerializer());
+        server.setDecoderThreads(1);
+        server.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if("boom".equals(object)) throw new IllegalStateException("boom");
+                if(object instanceof String) connection.sendTCP(object);
+            }
+        });
+        server.bind(tcpPort);
+        server.start();
+
+        Client failing = connect(false), other = connect(false);
+        ConcurrentLinkedQueue<Object> received = new ConcurrentLinkedQueue<>();
+        other.addListener(receiver(received));
+
+        failing.sendTCP("boom");
+        failing.sendTCP("dropped");
+        await(() -> !failing.isConnected());
+        await(() -> errors.stream().anyMatch(e -> e.getCause() instanceof IllegalStateException));
+        errors.removeIf(e -> e.getCause() instanceof IllegalStateException);
+        assertNoErrors();
+
+        //The decoder thread still decodes the other connections
+        for(int i = 0; i < 3; i++){
+            String text = "echo" + i;
+            other.sendTCP(text);
+            await(() -> received.contains(text));
+        }
+        assertEquals(1, server.getConnectionsSize());
+    }
+
+    @Test
+    public void acceptRate() throws Exception{
+        server = new Server(8192, 8192, new TestSerializer());
+        server.setAcceptRate(0.1f, 2);
+        server.bind(tcpPort);
+        server.start();
+
+        connect(false);
+        connect(false);
+        try(Socket socket = new Socket("127.0.0.1", tcpPort)){
+            await(() -> server.getRateLimitedAccepts() == 1);
+            assertEquals(-1, socket.getInputStream().read());
+        }catch(SocketException ignored){
+            //Reset by the server
+        }
+        assertEquals(1, server.getRejectedAccepts());
+        assertEquals(2, server.getConnectionsSize());
+        assertNoErrors();
+    }
+
+    @Test
+    public void maxPendingConnections() throws Exception{
+        server = new Server(8192, 8192, new TestSerializer());
+        server.setWorkers(2);
+        server.setMaxPendingConnections(2);
+        server.bind(tcpPort, udpPort);
+        server.start();
+
+        //Sockets which never register their UDP connection stay pending
+        Seq<Socket> sockets = new Seq<>();
+        try{
+            for(int i = 0; i < 2; i++) sockets.add(new Socket("127.0.0.1", tcpPort));
+            await(() -> server.getPendingConnectionsSize() == 2);
+            sockets.add(new Socket("127.0.0.1", tcpPort));
+            await(() -> server.getPendingLimitedAccepts() == 1);
+
+            //Closing disposes the pending connections, and rebinding accepts new ones
+            server.close();
+            assertEquals(0, server.getPendingConnectionsSize());
+            for(Socket socket : sockets){
+                socket.setSoTimeout(timeout);
+                try{
+                    InputStream input = socket.getInputStream();
+                    while(input.read() != -1);
+                }catch(SocketException ignored){
+                    //Reset
+                }
+            }
+
+            server.bind(tcpPort, udpPort);
+            Socket pending = new Socket("127.0.0.1", tcpPort);
+            sockets.add(pending);
+            await(() -> server.getPendingConnectionsSize() == 1);
+            Client client = connect(true);
+            assertTrue(client.isConnected());
+            await(() -> server.getConnectionsSize() == 1);
+            assertEquals(1, server.getPendingConnectionsSize());
+            assertEquals(1, server.getPendingLimitedAccepts());
+        }finally{
+            for(Socket socket : sockets) socket.close();
+        }
+        assertNoErrors();
+    }
+
+    Client connect(boolean udp) throws IOException{
+        Client client = new Client(8192, 8192, new TestSerializer());
+        clients.add(client);
+        client.start();
+        if(udp){
+            client.connect(timeout, "127.0.0.1", tcpPort, udpPort);
+        }else{
+            client.connect(timeout, "127.0.0.1", tcpPort);
+        }
+        return client;
+    }
+
+    NetListener receiver(ConcurrentLinkedQueue<Object> objects){
+        return new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(!(object instanceof FrameworkMessage)) objects.add(object);
+            }
+        };
+    }
+
+    /** Fails on the reported errors, except for the I/O errors of the connections closed by their remote end. */
+    void assertNoErrors(){
+        for(Throwable error : errors){
+            Throwable cause = error;
+            while(cause.getCause() != null) cause = cause.getCause();
+            if(!(cause instanceof IOException)) throw new AssertionError("Unexpected error", error);
+        }
+    }
+
+    static void await(Boolp condition) throws InterruptedException{
+        long end = System.currentTimeMillis() + timeout;
+        while(!condition.get()){
+            if(System.currentTimeMillis() > end) fail("Timed out.");
+            Thread.sleep(5);
+        }
+    }
+
+    static int freePort() throws IOException{
+        try(ServerSocket socket = new ServerSocket(0); DatagramSocket datagram = new DatagramSocket(socket.getLocalPort())){
+            return socket.getLocalPort();
+        }catch(SocketException ex){
+            //The UDP port is taken, try another one
+            return freePort();
+        }
+    }
+
+    static class ChunkHeader{
+        final int length;
+
+        ChunkHeader(int length){
+            this.length = length;
+        }
+    }
+
+    /**
+     * Serializes the framework messages, strings, byte arrays and integers, each after a tag byte.
+     * Integers are tagged with 0, so that small ones start with two zero bytes.
+     */
+    static class TestSerializer implements NetSerializer{
+        @Override
+        public void write(ByteBuffer buffer, Object object){
+            if(object instanceof Integer){
+                buffer.put((byte)0).putInt((Integer)object);
+            }else if(object instanceof String){
+                byte[] bytes = ((String)object).getBytes(StandardCharsets.UTF_8);
+                buffer.put((byte)1).putShort((short)bytes.length).put(bytes);
+            }else if(object instanceof ChunkHeader){
+                //The start of a byte array, whose bytes follow in the frame
+                buffer.put((byte)2).putInt(((ChunkHeader)object).length);
+            }else if(object instanceof byte[]){
+                byte[] bytes = (byte[])object;
+                buffer.put((byte)2).putInt(bytes.length).put(bytes);
+            }else if(object instanceof Ping){
+                buffer.put((byte)-1).putInt(((Ping)object).id).put((byte)(((Ping)object).isReply ? 1 : 0));
+            }else if(object instanceof DiscoverHost){
+                buffer.put((byte)-2);
+            }else if(object instanceof KeepAlive){
+                buffer.put((byte)-3);
+            }else if(object instanceof RegisterUDP){
+                buffer.put((byte)-4).putInt(((RegisterUDP)object).connectionID);
+            }else if(object instanceof RegisterTCP){
+                buffer.put((byte)-5).putInt(((RegisterTCP)object).connectionID);
+            }else if(object instanceof Compression){
+                buffer.put((byte)-6).putInt(((Compression)object).dictionaryId).put((byte)(((Compression)object).isReply ? 1 : 0));
+            }else{
+                throw new IllegalArgumentException("Unknown object: " + object);
+            }
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer){
+            byte tag = buffer.get();
+            switch(tag){
+                case 0: return buffer.getInt();
+                case 1:{
+                    byte[] bytes = new byte[buffer.getShort()];
+                    buffer.get(bytes);
+                    return new String(bytes, StandardCharsets.UTF_8);
+                }
+                case 2:{
+                    byte[] bytes = new byte[buffer.getInt()];
+                    buffer.get(bytes);
+                    return bytes;
+                }
+                case -1:{
+                    Ping ping = new Ping();
+                    ping.id = buffer.getInt();
+                    ping.isReply = buffer.get() == 1;
+                    return ping;
+                }
+                case -2: return FrameworkMessage.discoverHost;
+                case -3: return FrameworkMessage.keepAlive;
+                case -4:{
+                    RegisterUDP register = new RegisterUDP();
+                    register.connectionID = buffer.getInt();
+                    return register;
+                }
+                case -5:{
+                    RegisterTCP register = new RegisterTCP();
+                    register.connectionID = buffer.getInt();
+                    return register;
+                }
+                case -6:{
+                    Compression compression = new Compression();
+                    compression.dictionaryId = buffer.getInt();
+                    compression.isReply = buffer.get() == 1;
+                    return compression;
+                }
+                default: throw new IllegalArgumentException("Unknown tag: " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package utils;
+
+import arc.files.*;
+import arc.util.*;
+import arc.util.AsyncLogHandler.*;
+import arc.util.Log.*;
+import org.junit.*;
+
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class AsyncLogHandlerTest{
+
+    @Test
+    public void writesAndRotates(){
+        Fi dir = Fi.tempDirectory("logs");
+        Fi file = dir.child("server.log");
+        AsyncLogHandler handler = new AsyncLogHandler(file, 1000, 2, 64, OverflowPolicy.block);
+        //Logging from several threads, more than the buffer holds
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++){
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for(int i = 0; i < 500; i++) handler.log(LogLevel.info, "&lr" + id + " " + i);
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads) join(thread);
+        handler.flush();
+        assertEquals(0, handler.pending());
+        handler.dispose();
+        assertEquals(0, handler.dropped());
+
+        assertTrue(dir.child("server.1.log").exists());
+        assertTrue(dir.child("server.2.log").exists());
+        assertFalse(dir.child("server.3.log").exists());
+        assertTrue(file.length() < 1000);
+
+        //The records of each thread are kept in order, across files
+        String text = dir.child("server.2.log").readString() + dir.child("server.1.log").readString() + file.readString();
+        assertFalse(text.contains("&"));
+        int[] last = {-1, -1, -1, -1};
+        for(String line : text.split("\\R")){
+            String[] parts = line.split(" ");
+            int id = Integer.parseInt(parts[0]), i = Integer.parseInt(parts[1]);
+            assertTrue(line, i > last[id]);
+            last[id] = i;
+        }
+        dir.deleteDirectory();
+    }
+
+    @Test
+    public void dropsWhenFull() throws Exception{
+        Fi dir = Fi.tempDirectory("logs");
+        CountDownLatch latch = new CountDownLatch(1);
+        AsyncLogHandler handler = new AsyncLogHandler(dir.child("log.txt"), 0, 0, 4, OverflowPolicy.drop){
+            @Override
+            protected void format(LogLevel level, String text, boolean toFile, StringBuilder out){
+                //A stalled output
+                try{
+                    latch.await();
+                }catch(InterruptedException ignored){
+                }
+                super.format(level, text, toFile, out);
+            }
+        };
+        for(int i = 0; i < 100; i++) handler.log(i % 2 == 0 ? LogLevel.warn : LogLevel.err, "record " + i);
+        //The writer may have taken a record out before stalling
+        assertTrue(handler.dropped() >= 100 - 5);
+        assertEquals(handler.dropped(), handler.dropped(LogLevel.warn) + handler.dropped(LogLevel.err));
+
+        latch.countDown();
+        handler.flush();
+        handler.dispose();
+        String text = dir.child("log.txt").readString();
+        assertTrue(text.contains("record 0"));
+        assertTrue(text.contains("Dropped " + handler.dropped() + " log records."));
+        handler.log(LogLevel.info, "after");
+        assertEquals(100 - (text.split("record").length - 1) + 1, handler.dropped());
+        dir.deleteDirectory();
+    }
+
+    static void join(Thread thread){
+        try{
+            thread.join();
+        }catch(InterruptedException e){
+            throw new RuntimeException(e);
+        }
+    }
+}
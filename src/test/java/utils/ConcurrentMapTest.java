@@ -0,0 +1,121 @@
+package utils;
+
+import arc.struct.*;
+import org.junit.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentMapTest{
+
+    @Test
+    public void testIntMap(){
+        ConcurrentIntMap<String> map = new ConcurrentIntMap<>(4, 2);
+        for(int i = -500; i < 500; i++) assertNull(map.put(i, "v" + i));
+
+        assertEquals(1000, map.size());
+        assertEquals("v0", map.get(0));
+        assertEquals("v-42", map.get(-42));
+        assertEquals("v42", map.put(42, "x"));
+        assertEquals("x", map.putIfAbsent(42, "y"));
+        assertEquals("fallback", map.get(1000, "fallback"));
+        assertEquals("made", map.get(1000, () -> "made"));
+        assertEquals("made", map.get(1000, () -> "again"));
+
+        for(int i = -500; i < 500; i += 2) assertNotNull(map.remove(i));
+        assertEquals(501, map.size());
+        assertFalse(map.containsKey(0));
+        assertTrue(map.containsKey(1));
+
+        int count = 0;
+        for(ConcurrentIntMap.Entry<String> entry : map.entries()){
+            assertEquals(entry.key == 42 ? "x" : entry.key == 1000 ? "made" : "v" + entry.key, entry.value);
+            count++;
+        }
+        assertEquals(501, count);
+
+        // The removed keys reuse their slots, other keys trigger a rehash
+        for(int i = 0; i < 10000; i++) map.put(i + 2000, "r");
+        for(int i = 0; i < 10000; i++) map.remove(i + 2000);
+        assertEquals(501, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.keys().hasNext());
+    }
+
+    @Test
+    public void testLongMap(){
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        for(long i = 0; i < 1000; i++) map.put(i << 33, i);
+
+        assertEquals(1000, map.size());
+        assertEquals((Long)5L, map.get(5L << 33));
+        assertNull(map.get(5L));
+        assertTrue(map.remove(5L << 33, (Long)map.get(5L << 33)));
+        assertEquals(999, map.size());
+
+        LongSeq keys = map.keys().toArray();
+        assertEquals(999, keys.size);
+    }
+
+    @Test
+    public void testObjectIntMap(){
+        ConcurrentObjectIntMap<String> map = new ConcurrentObjectIntMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+
+        assertEquals(1, map.get("a"));
+        assertEquals(-1, map.get("c", -1));
+        assertEquals(2, map.increment("b", 3));
+        assertEquals(5, map.get("b"));
+        assertEquals(10, map.increment("c", 10, 1));
+        assertEquals(11, map.get("c"));
+        assertEquals(17, map.sum());
+
+        assertEquals(1, map.remove("a"));
+        assertFalse(map.containsKey("a"));
+        assertEquals(7, map.remove("a", 7));
+        map.put("a", 4);
+        assertEquals(4, map.get("a"));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception{
+        ConcurrentIntMap<Integer> map = new ConcurrentIntMap<>();
+        ConcurrentObjectIntMap<Integer> counts = new ConcurrentObjectIntMap<>();
+        int threads = 4, perThread = 20000;
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        AtomicInteger mismatches = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        Future<?>[] futures = new Future[threads];
+        for(int t = 0; t < threads; t++){
+            int base = t * perThread;
+            futures[t] = exec.submit(() -> {
+                start.await();
+                for(int i = 0; i < perThread; i++){
+                    int key = base + i;
+                    map.put(key, key);
+                    // Readers must never see the value of another key
+                    Integer other = map.get(key / 2);
+                    if(other != null && other != key / 2) mismatches.incrementAndGet();
+                    counts.increment(i % 100);
+                    if(i % 3 == 0) map.remove(key);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        for(Future<?> future : futures) future.get();
+        exec.shutdown();
+
+        assertEquals(0, mismatches.get());
+        int expected = threads * (perThread - (perThread + 2) / 3);
+        assertEquals(expected, map.size());
+        for(int i = 0; i < 100; i++) assertEquals(threads * perThread / 100, counts.get(i));
+    }
+}
@@ -0,0 +1,222 @@
+package utils;
+
+import arc.*;
+import arc.EventBus.*;
+import arc.func.*;
+import arc.struct.*;
+import org.junit.*;
+
+import java.util.concurrent.atomic.*;
+
+import static org.junit.Assert.*;
+
+@SuppressWarnings("unchecked")
+public class EventBusTest{
+    enum Trigger{
+        update, draw
+    }
+
+    interface Named{}
+
+    static class BaseEvent{}
+
+    static class UnitEvent extends BaseEvent implements Named{}
+
+    @Test
+    public void exactClass(){
+        EventBus bus = new EventBus();
+        IntSeq calls = new IntSeq();
+        bus.on(UnitEvent.class, e -> calls.add(1));
+        bus.on(BaseEvent.class, e -> calls.add(2));
+        bus.run(Trigger.update, () -> calls.add(3));
+
+        bus.fire(new UnitEvent());
+        bus.fire(new BaseEvent());
+        bus.fire(Trigger.update);
+        bus.fire(Trigger.draw);
+        bus.fire(BaseEvent.class, new UnitEvent());
+        assertArrayEquals(new int[]{1, 2, 3, 2}, calls.toArray());
+    }
+
+    @Test
+    public void priorities(){
+        EventBus bus = new EventBus();
+        IntSeq calls = new IntSeq();
+        bus.on(BaseEvent.class, e -> calls.add(1));
+        bus.on(BaseEvent.class, 10, e -> calls.add(2));
+        bus.on(BaseEvent.class, -5, e -> calls.add(3));
+        bus.on(BaseEvent.class, 10, e -> calls.add(4));
+        bus.on(BaseEvent.class, e -> calls.add(5));
+
+        bus.fire(new BaseEvent());
+        assertArrayEquals(new int[]{2, 4, 1, 5, 3}, calls.toArray());
+    }
+
+    @Test
+    public void hierarchy(){
+        EventBus bus = new EventBus(true);
+        IntSeq calls = new IntSeq();
+        bus.on(Object.class, -1, e -> calls.add(0));
+        bus.on(Named.class, e -> calls.add(1));
+        bus.on(BaseEvent.class, e -> calls.add(2));
+        bus.on(UnitEvent.class, e -> calls.add(3));
+
+        bus.fire(new UnitEvent());
+        assertArrayEquals(new int[]{1, 2, 3, 0}, calls.toArray());
+
+        //Registering invalidates the arrays of subtypes
+        calls.clear();
+        bus.on(BaseEvent.class, 1, e -> calls.add(4));
+        bus.fire(new UnitEvent());
+        bus.fire(new BaseEvent());
+        assertArrayEquals(new int[]{4, 1, 2, 3, 0, 4, 2, 0}, calls.toArray());
+
+        //Triggers are not classes, and have no supertypes
+        calls.clear();
+        bus.fire(Trigger.draw);
+        assertEquals(0, calls.size);
+    }
+
+    @Test
+    public void remove(){
+        EventBus bus = new EventBus(true);
+        IntSeq calls = new IntSeq();
+        Cons<BaseEvent> listener = bus.on(BaseEvent.class, e -> calls.add(1));
+        Runnable trigger = () -> calls.add(2);
+        bus.run(Trigger.update, trigger);
+
+        bus.fire(new UnitEvent());
+        assertTrue(bus.remove(BaseEvent.class, listener));
+        assertFalse(bus.remove(BaseEvent.class, listener));
+        assertFalse(bus.has(BaseEvent.class));
+        bus.fire(new UnitEvent());
+
+        bus.fire(Trigger.update);
+        assertTrue(bus.remove(Trigger.update, trigger));
+        bus.fire(Trigger.update);
+        assertArrayEquals(new int[]{1, 2}, calls.toArray());
+    }
+
+    @Test
+    public void changesDuringFire(){
+        EventBus bus = new EventBus();
+        IntSeq calls = new IntSeq();
+        Cons<BaseEvent>[] second = new Cons[1];
+        bus.on(BaseEvent.class, e -> {
+            calls.add(1);
+            //Applies from the next fire
+            bus.remove(BaseEvent.class, second[0]);
+            bus.on(BaseEvent.class, f -> calls.add(3));
+        });
+        second[0] = bus.on(BaseEvent.class, e -> calls.add(2));
+
+        bus.fire(new BaseEvent());
+        assertArrayEquals(new int[]{1, 2}, calls.toArray());
+        calls.clear();
+        bus.fire(new BaseEvent());
+        assertArrayEquals(new int[]{1, 3}, calls.toArray());
+    }
+
+    @Test
+    public void nested(){
+        EventBus bus = new EventBus();
+        IntSeq calls = new IntSeq();
+        bus.on(UnitEvent.class, e -> {
+            calls.add(1);
+            bus.fire(new BaseEvent());
+        });
+        bus.on(BaseEvent.class, e -> calls.add(2));
+        bus.on(UnitEvent.class, e -> calls.add(3));
+
+        bus.fire(new UnitEvent());
+        assertArrayEquals(new int[]{1, 2, 3}, calls.toArray());
+    }
+
+    @Test
+    public void stats(){
+        EventBus bus = new EventBus();
+        bus.on(BaseEvent.class, e -> {});
+        assertNull(bus.stats(BaseEvent.class));
+
+        for(int i = 0; i < 10; i++) bus.fire(new BaseEvent());
+        bus.timing = true;
+        for(int i = 0; i < 5; i++) bus.fire(new BaseEvent());
+        bus.fire(Trigger.draw);
+
+        EventStats stats = bus.stats(BaseEvent.class);
+        assertEquals(15, stats.fires.sum());
+        assertEquals(5, stats.timed);
+        long histogram = 0;
+        for(long count : stats.histogram) histogram += count;
+        assertEquals(5, histogram);
+        assertTrue(stats.percentileNanos(0.5f) <= stats.maxNanos);
+        assertEquals(stats.maxNanos, stats.percentileNanos(1f));
+        assertEquals(1, bus.stats(Trigger.draw).fires.sum());
+
+        //Statistics are kept when the listeners change
+        bus.on(BaseEvent.class, e -> {});
+        bus.fire(new BaseEvent());
+        assertEquals(16, stats.fires.sum());
+
+        ObjectSet<Object> types = new ObjectSet<>();
+        bus.eachStats((type, s) -> types.add(type));
+        assertEquals(2, types.size);
+
+        bus.resetStats();
+        assertEquals(0, stats.fires.sum());
+        assertEquals(0, stats.timed);
+        assertEquals(0, stats.percentileNanos(0.5f));
+    }
+
+    @Test
+    public void concurrentFires() throws Exception{
+        EventBus bus = new EventBus();
+        //Array classes give as many distinct types as needed
+        Class<?>[] types = new Class<?>[200];
+        types[0] = BaseEvent[].class;
+        for(int i = 1; i < types.length; i++) types[i] = java.lang.reflect.Array.newInstance(types[i - 1], 0).getClass();
+        AtomicLong calls = new AtomicLong();
+        Thread[] threads = new Thread[4];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for(int t = 0; t < threads.length; t++){
+            threads[t] = new Thread(() -> {
+                for(int round = 0; round < 50; round++){
+                    for(Class<?> type : types) bus.fire(type, null);
+                }
+            });
+            threads[t].setUncaughtExceptionHandler((thread, e) -> failure.set(e));
+            threads[t].start();
+        }
+        //Registering while the types are fired
+        for(int i = 0; i < types.length; i += 10){
+            bus.on((Class<Object>)types[i], e -> calls.incrementAndGet());
+        }
+        for(Thread thread : threads) thread.join();
+        assertNull(failure.get());
+
+        for(Class<?> type : types){
+            assertEquals(threads.length * 50, bus.stats(type).fires.sum());
+        }
+        long before = calls.get();
+        for(Class<?> type : types) bus.fire(type, null);
+        assertEquals(before + types.length / 10, calls.get());
+    }
+
+    @Test
+    public void globalEvents(){
+        IntSeq calls = new IntSeq();
+        Cons<BaseEvent> listener = e -> calls.add(1);
+        Events.on(BaseEvent.class, listener);
+        Events.run(Trigger.update, () -> calls.add(2));
+        try{
+            Events.fire(new BaseEvent());
+            Events.fire(new UnitEvent());
+            Events.fire(Trigger.update);
+            assertTrue(Events.remove(BaseEvent.class, listener));
+            Events.fire(new BaseEvent());
+            assertArrayEquals(new int[]{1, 2}, calls.toArray());
+        }finally{
+            Events.clear();
+        }
+    }
+}
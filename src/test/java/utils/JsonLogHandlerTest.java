@@ -0,0 +1,121 @@
+package utils;
+
+import arc.util.*;
+import arc.util.Log.*;
+import arc.util.serialization.*;
+import org.junit.*;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class JsonLogHandlerTest{
+    LogHandler handler;
+    LogFormatter formatter;
+
+    @Before
+    public void save(){
+        handler = Log.logger;
+        formatter = Log.formatter;
+    }
+
+    @After
+    public void restore(){
+        Log.logger = handler;
+        Log.formatter = formatter;
+    }
+
+    @Test
+    public void writesTypedRecords(){
+        StringWriter out = new StringWriter();
+        JsonLogHandler json = new JsonLogHandler(out).install();
+        Log.info("&lc@ joined in @ ms", "Anu\"ke", 12);
+        Log.warn("ratio @ @ @", 0.5f, true, null);
+        Log.infoTag("Net", "line\nbreak \u001B[0m");
+        Log.err("plain");
+        json.dispose();
+        assertFalse(json.checkError());
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(4, lines.length);
+        JsonReader reader = new JsonReader();
+
+        JsonValue first = reader.parse(lines[0]);
+        assertEquals("info", first.getString("level"));
+        assertEquals(Thread.currentThread().getName(), first.getString("thread"));
+        assertTrue(first.get("time").isLong());
+        assertEquals("Anu\"ke joined in 12 ms", first.getString("message"));
+        assertEquals("@ joined in @ ms", first.getString("template"));
+        assertEquals("Anu\"ke", first.get("args").getString(0));
+        assertEquals(12, first.get("args").getInt(1));
+        assertFalse(first.has("tag"));
+
+        JsonValue args = reader.parse(lines[1]).get("args");
+        assertEquals(0.5f, args.getFloat(0), 0f);
+        assertTrue(args.getBoolean(1));
+        assertTrue(args.get(2).isNull());
+
+        JsonValue tagged = reader.parse(lines[2]);
+        assertEquals("Net", tagged.getString("tag"));
+        assertEquals("line\nbreak \u001B[0m", tagged.getString("message"));
+        assertFalse(tagged.has("args"));
+
+        assertEquals("plain", reader.parse(lines[3]).getString("message"));
+    }
+
+    @Test
+    public void invalidRecordsKeepLinesValid(){
+        StringWriter out = new StringWriter();
+        JsonLogHandler json = new JsonLogHandler(out).install();
+        Log.info("@ @ @ @", Float.NaN, Double.POSITIVE_INFINITY, -Float.MAX_VALUE * 2, 1.5);
+        //Formatted once, then fails while the record is written
+        Object failing = new Object(){
+            int calls;
+
+            @Override
+            public String toString(){
+                if(calls++ > 0) throw new IllegalStateException("toString");
+                return "failing";
+            }
+        };
+        Log.info("@ @", 1, failing);
+        Log.info("after");
+        json.dispose();
+        assertTrue(json.checkError());
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        JsonReader reader = new JsonReader();
+        JsonValue args = reader.parse(lines[0]).get("args");
+        assertEquals("NaN", args.getString(0));
+        assertEquals("Infinity", args.getString(1));
+        assertEquals("-Infinity", args.getString(2));
+        assertEquals(1.5, args.getDouble(3), 0);
+        assertEquals("after", reader.parse(lines[1]).getString("message"));
+    }
+
+    @Test
+    public void disposeKeepsSharedWriters(){
+        boolean[] closed = {false};
+        StringWriter out = new StringWriter(){
+            @Override
+            public void close(){
+                closed[0] = true;
+            }
+        };
+        JsonLogHandler json = new JsonLogHandler(out, false);
+        json.autoFlush = false;
+        json.log(LogLevel.info, "kept");
+        json.dispose();
+        assertFalse(closed[0]);
+        assertTrue(out.toString().contains("\"kept\""));
+
+        //Records after disposal are ignored
+        json.log(LogLevel.info, "ignored");
+        assertFalse(json.checkError());
+        assertFalse(out.toString().contains("ignored"));
+
+        new JsonLogHandler(out).dispose();
+        assertTrue(closed[0]);
+    }
+}
@@ -0,0 +1,68 @@
+package utils;
+
+import arc.struct.*;
+import arc.util.*;
+import arc.util.Log.*;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class LogTest{
+    LogHandler handler;
+    LogLevel level;
+    Seq<String> lines = new Seq<>();
+
+    @Before
+    public void capture(){
+        handler = Log.logger;
+        level = Log.level;
+        Log.logger = (level, text) -> lines.add(level + " " + text);
+    }
+
+    @After
+    public void restore(){
+        Log.logger = handler;
+        Log.level = level;
+    }
+
+    @Test
+    public void matchesStringsFormat(){
+        String[] texts = {"plain", "&lrred @ and @&fr", "@@ @", "no args @", "&fb@", "trailing @", "@"};
+        Object[][] args = {{}, {1}, {"a", 2L}, {"&lgcolored", 1.5f, 'c'}, {null, new int[]{1, 2}, true, "extra"}};
+        for(boolean colors : new boolean[]{true, false}){
+            for(String text : texts){
+                for(Object[] arg : args){
+                    String expected = ColorCodes.apply(Strings.format(text, arg), colors);
+                    assertEquals(text, expected, Log.formatColors(text, colors, arg));
+                }
+            }
+        }
+        assertSame(LogTemplate.get("cached @", true), LogTemplate.get("cached @", true));
+        assertEquals(1, LogTemplate.get("cached @", true).placeholders());
+        assertNotSame(LogTemplate.get("not cached", true), LogTemplate.get("not cached", true));
+    }
+
+    @Test
+    public void overloads(){
+        Log.useColors = false;
+        Log.level = LogLevel.info;
+        Log.debug("hidden @", 1);
+        Log.debug("hidden @", new Object());
+        Log.info("int @", 5);
+        Log.info("char @", 'c');
+        Log.info("long @ float @", 3L, 1.5f);
+        Log.warn("double @", 2.5);
+        Log.err("three @ @ @", "a", null, 'b');
+        Log.info("array @", (Object)new int[]{1, 2});
+        Log.infoTag("tag", "text");
+        assertArrayEquals(new String[]{
+            "info int 5", "info char c", "info long 3 float 1.5", "warn double 2.5", "err three a null b", "info array [1, 2]", "info [tag] text"
+        }, lines.toArray(String.class));
+
+        assertEquals("ready", DefaultLogHandler.line(LogLevel.info, "&lgready"));
+
+        assertFalse(Log.enabled(LogLevel.debug));
+        assertTrue(Log.enabled(LogLevel.err));
+        Log.useColors = true;
+    }
+}
@@ -0,0 +1,92 @@
+package utils;
+
+import arc.files.*;
+import arc.struct.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class OffHeapSeqTest{
+
+    @Test
+    public void segments(){
+        //Small segments, to cross their boundaries
+        OffHeapIntSeq seq = new OffHeapIntSeq(true, 4);
+        IntSeq expected = new IntSeq();
+        for(int i = 0; i < 100; i++){
+            seq.add(i);
+            expected.add(i);
+        }
+        assertEquals(7, seq.capacity() / seq.segmentLength);
+        assertArrayEquals(expected.toArray(), seq.toArray());
+
+        seq.insert(5, -1);
+        expected.insert(5, -1);
+        seq.removeIndex(40);
+        expected.removeIndex(40);
+        seq.removeRange(10, 30);
+        expected.removeRange(10, 30);
+        seq.swap(0, 70);
+        expected.swap(0, 70);
+        assertArrayEquals(expected.toArray(), seq.toArray());
+        assertEquals(expected.sum(), seq.sum());
+        assertEquals(expected.indexOf(50), seq.indexOf(50));
+
+        seq.ordered = expected.ordered = false;
+        seq.removeRange(3, 8);
+        expected.removeRange(3, 8);
+        seq.removeIndex(2);
+        expected.removeIndex(2);
+        //Unordered removal may fill the range in another order
+        int[] items = seq.toArray();
+        Arrays.sort(items);
+        expected.sort();
+        assertArrayEquals(expected.toArray(), items);
+
+        seq.ordered = expected.ordered = true;
+        seq.clear();
+        seq.addAll(expected);
+        assertEquals(expected, seq.toSeq());
+        seq.shrink();
+        assertEquals(5, seq.capacity() / seq.segmentLength);
+
+        seq.dispose();
+        assertTrue(seq.isDisposed());
+        assertEquals(0, seq.capacity());
+    }
+
+    @Test
+    public void types(){
+        OffHeapFloatSeq floats = OffHeapFloatSeq.with(1f, 2.5f, -3f);
+        assertEquals(0.5f, floats.sum(), 0f);
+        assertEquals("[1.0, 2.5, -3.0]", floats.toString());
+        floats.dispose();
+
+        OffHeapLongSeq longs = new OffHeapLongSeq(true, 4);
+        for(long i = 0; i < 50; i++) longs.add(i << 40);
+        assertEquals(49L << 40, longs.peek());
+        assertEquals(longs.toSeq().hashCode(), longs.hashCode());
+        longs.dispose();
+    }
+
+    @Test
+    public void mapped() throws IOException{
+        File temp = File.createTempFile("offheap", ".bin");
+        temp.deleteOnExit();
+        Fi file = new Fi(temp);
+
+        OffHeapIntSeq seq = new OffHeapIntSeq(file, 4);
+        for(int i = 0; i < 1000; i++) seq.add(i * 3);
+        seq.dispose();
+        assertEquals(1000 * 4, file.length());
+
+        OffHeapIntSeq reopened = new OffHeapIntSeq(file, 4);
+        assertEquals(1000, reopened.size);
+        assertEquals(999 * 3, reopened.peek());
+        assertEquals(3 * 1000 * 999 / 2, reopened.sum());
+        reopened.dispose();
+    }
+}
@@ -0,0 +1,55 @@
+package utils;
+
+import arc.struct.*;
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ParallelTest{
+
+    @Test
+    public void sort(){
+        Random random = new Random(3);
+        Seq<int[]> seq = new Seq<>();
+        for(int i = 0; i < 200_000; i++){
+            //Few distinct keys, with the original index to check stability
+            seq.add(new int[]{random.nextInt(100), i});
+        }
+        Seq<int[]> expected = seq.copy().sort(Comparator.comparingInt(a -> a[0]));
+        seq.parallelSort(Comparator.comparingInt(a -> a[0]));
+        for(int i = 0; i < seq.size; i++){
+            assertSame(expected.get(i), seq.get(i));
+        }
+
+        Seq<Integer> boxed = new Seq<>();
+        for(int i = 0; i < 50_000; i++) boxed.add(random.nextInt());
+        Integer[] sorted = boxed.toArray(Integer.class);
+        Arrays.sort(sorted);
+        assertArrayEquals(sorted, boxed.parallelSort().toArray(Integer.class));
+
+        IntSeq ints = new IntSeq();
+        for(int i = 0; i < 100_000; i++) ints.add(random.nextInt());
+        int[] ordered = ints.toArray();
+        Arrays.sort(ordered);
+        ints.parallelSort();
+        assertArrayEquals(ordered, ints.toArray());
+    }
+
+    @Test
+    public void bulk(){
+        Seq<Integer> seq = new Seq<>();
+        for(int i = 0; i < 100_000; i++) seq.add(i);
+
+        assertEquals(seq.map(i -> i * 2), seq.parallelMap(i -> i * 2));
+        assertEquals(seq.select(i -> i % 7 == 0), seq.parallelSelect(i -> i % 7 == 0));
+        assertEquals(seq.count(i -> i % 3 == 0), seq.parallelCount(i -> i % 3 == 0));
+        assertEquals(seq.sum(i -> i), seq.parallelSum(i -> i));
+        assertEquals(99_999L * 100_000 / 2, (long)seq.parallelReduce(0L, (i, sum) -> sum + i, Long::sum));
+
+        int[] seen = new int[seq.size];
+        seq.parallelEach(i -> seen[i]++);
+        for(int count : seen) assertEquals(1, count);
+    }
+}
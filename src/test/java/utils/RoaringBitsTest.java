@@ -0,0 +1,118 @@
+package utils;
+
+import arc.struct.*;
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RoaringBitsTest{
+
+    @Test
+    public void matchesBits(){
+        Random random = new Random(7);
+        for(int round = 0; round < 20; round++){
+            //Mix sparse chunks, dense chunks and ranges, so all container types meet
+            Bits denseA = new Bits(), denseB = new Bits();
+            RoaringBits a = new RoaringBits(), b = new RoaringBits();
+            fill(random, denseA, a);
+            fill(random, denseB, b);
+
+            assertEquals(denseA, a.toBits());
+            assertEquals(a, RoaringBits.of(denseA));
+            assertEquals(count(denseA), a.cardinality());
+            assertEquals(denseA.length(), a.length());
+            assertEquals(denseA.intersects(denseB), a.intersects(b));
+
+            RoaringBits copy = new RoaringBits(a);
+            copy.optimize();
+            assertEquals(a, copy);
+            assertEquals(a.hashCode(), copy.hashCode());
+
+            //Once as built, once with runs
+            for(int pass = 0; pass < 2; pass++){
+                for(int op = 0; op < 4; op++){
+                    check(denseA, denseB, a, b, op);
+                }
+                a.optimize();
+                b.optimize();
+            }
+        }
+    }
+
+    @Test
+    public void compression(){
+        RoaringBits bits = new RoaringBits();
+        //Sparse indices over a large range, which a dense bitset would need 128 MiB for
+        for(int i = 0; i < 1000; i++) bits.set(i * 1_000_000);
+        assertEquals(1000, bits.cardinality());
+        assertTrue(bits.byteSize() < 64 * 1024);
+
+        bits.set(5_000_000, 5_000_000 + 200_000);
+        bits.optimize();
+        assertTrue(bits.byteSize() < 64 * 1024);
+        assertEquals(5_000_000, bits.nextSetBit(4_000_001));
+        assertEquals(5_200_000, bits.nextClearBit(5_000_000));
+        assertTrue(bits.get(5_199_999));
+        assertFalse(bits.getAndClear(5_200_000));
+        assertTrue(bits.getAndClear(5_100_000));
+        //5_000_000 was already set
+        assertEquals(1000 + 200_000 - 2, bits.cardinality());
+    }
+
+    @Test
+    public void interop(){
+        IntSet set = IntSet.with(3, 70000, 1 << 30);
+        RoaringBits bits = RoaringBits.of(set);
+        assertEquals(set, bits.toIntSet());
+        assertArrayEquals(new int[]{3, 70000, 1 << 30}, bits.toArray());
+        assertEquals("[3, 70000, 1073741824]", bits.toString());
+        bits.flip(3);
+        bits.flip(4);
+        assertEquals(4, bits.nextSetBit(0));
+    }
+
+    void fill(Random random, Bits dense, RoaringBits bits){
+        for(int chunk = 0; chunk < 6; chunk++){
+            int base = chunk << 16, type = random.nextInt(4);
+            if(type == 0) continue;
+            int amount = type == 1 ? 100 : type == 2 ? 10000 : 0;
+            for(int i = 0; i < amount; i++){
+                int index = base + random.nextInt(1 << 16);
+                dense.set(index);
+                bits.set(index);
+            }
+            if(type == 3){
+                int from = base + random.nextInt(30000), to = from + random.nextInt(70000);
+                dense.set(from, to);
+                bits.set(from, to);
+            }
+        }
+    }
+
+    void check(Bits denseA, Bits denseB, RoaringBits a, RoaringBits b, int op){
+        Bits dense = new Bits();
+        dense.or(denseA);
+        RoaringBits bits = new RoaringBits(a);
+        switch(op){
+            case 0: dense.and(denseB); bits.and(b); break;
+            case 1: dense.or(denseB); bits.or(b); break;
+            case 2: dense.xor(denseB); bits.xor(b); break;
+            default: dense.andNot(denseB); bits.andNot(b); break;
+        }
+        assertEquals("op " + op, dense, bits.toBits());
+        assertEquals(count(dense), bits.cardinality());
+        assertEquals(dense.containsAll(denseB), bits.containsAll(b));
+
+        int[] expected = new int[count(dense)];
+        for(int i = dense.nextSetBit(0), n = 0; i != -1; i = dense.nextSetBit(i + 1)) expected[n++] = i;
+        assertArrayEquals(expected, bits.toArray());
+    }
+
+    int count(Bits bits){
+        int count = 0;
+        for(int i = bits.nextSetBit(0); i != -1; i = bits.nextSetBit(i + 1)) count++;
+        return count;
+    }
+}
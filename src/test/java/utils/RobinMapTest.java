@@ -0,0 +1,108 @@
+package utils;
+
+import arc.struct.*;
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RobinMapTest{
+
+    @Test
+    public void testIntMapMatchesHashMap(){
+        RobinIntMap<Integer> map = new RobinIntMap<>(4);
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+
+        for(int i = 0; i < 200000; i++){
+            // Small key range so inserts and removes collide often, including the zero key
+            int key = random.nextInt(4000) - 2000;
+            if(random.nextInt(3) == 0){
+                assertEquals(expected.remove(key), map.remove(key));
+            }else{
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+            assertEquals(expected.size(), map.size);
+        }
+
+        for(int key = -2000; key < 2000; key++){
+            assertEquals(expected.get(key), map.get(key));
+        }
+
+        int count = 0;
+        for(int i = map.first(); i != -1; i = map.next(i)){
+            assertEquals(expected.get(map.keyAt(i)), map.valueAt(i));
+            count++;
+        }
+        assertEquals(expected.size(), count);
+
+        count = 0;
+        for(RobinIntMap.Entry<Integer> entry : map){
+            assertEquals(expected.get(entry.key), entry.value);
+            count++;
+        }
+        assertEquals(expected.size(), count);
+        assertEquals(expected.size(), map.keys().toArray().size);
+    }
+
+    @Test
+    public void testLongMapPackedKeys(){
+        RobinLongMap<String> map = new RobinLongMap<>();
+        for(int x = -50; x < 50; x++){
+            for(int y = -50; y < 50; y++){
+                map.put(((long)x << 32) | (y & 0xffffffffL), x + "," + y);
+            }
+        }
+        assertEquals(10000, map.size);
+        assertEquals("-3,7", map.get(((long)-3 << 32) | 7));
+        assertEquals("0,0", map.get(0L));
+
+        for(int x = -50; x < 50; x += 2){
+            for(int y = -50; y < 50; y++){
+                assertNotNull(map.remove(((long)x << 32) | (y & 0xffffffffL)));
+            }
+        }
+        assertEquals(5000, map.size);
+        assertNull(map.get(0L));
+        assertEquals("1,-1", map.get(((long)1 << 32) | 0xffffffffL));
+
+        RobinLongMap<String> copy = new RobinLongMap<>(map);
+        assertEquals(map, copy);
+        map.clear(10);
+        assertTrue(map.isEmpty());
+        assertFalse(map.keys().hasNext());
+    }
+
+    @Test
+    public void testObjectMapAndSet(){
+        RobinObjectMap<String, Integer> map = new RobinObjectMap<>();
+        RobinObjectSet<String> set = new RobinObjectSet<>();
+        for(int i = 0; i < 1000; i++){
+            map.put("k" + i, i);
+            assertTrue(set.add("k" + i));
+        }
+        assertFalse(set.add("k5"));
+
+        for(int i = 0; i < 1000; i += 3){
+            assertEquals((Integer)i, map.remove("k" + i));
+            assertTrue(set.remove("k" + i));
+        }
+
+        for(int i = 0; i < 1000; i++){
+            assertEquals(i % 3 == 0 ? null : (Integer)i, map.get("k" + i));
+            assertEquals(i % 3 != 0, set.contains("k" + i));
+        }
+        assertEquals(666, map.size);
+        assertEquals(666, set.size);
+        assertEquals("k1", map.findKey(1, false));
+        assertEquals(7, (int)map.get("missing", () -> 7));
+
+        int count = 0;
+        for(int i = set.first(); i != -1; i = set.next(i)){
+            assertTrue(map.containsKey(set.itemAt(i)));
+            count++;
+        }
+        assertEquals(666, count);
+    }
+}
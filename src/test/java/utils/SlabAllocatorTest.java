@@ -0,0 +1,83 @@
+package utils;
+
+import arc.struct.*;
+import arc.util.pooling.*;
+import arc.util.pooling.SlabAllocator.*;
+import org.junit.*;
+
+import java.nio.*;
+
+import static org.junit.Assert.*;
+
+public class SlabAllocatorTest{
+
+    @Test
+    public void sizeClasses(){
+        SlabAllocator slabs = new SlabAllocator(1024, 64 * 1024, 256 * 1024);
+        assertEquals(0, slabs.classOf(1));
+        assertEquals(0, slabs.classOf(1024));
+        assertEquals(1, slabs.classOf(1025));
+        assertEquals(6, slabs.classOf(64 * 1024));
+        assertEquals(-1, slabs.classOf(64 * 1024 + 1));
+
+        ByteBuffer a = slabs.obtain(1500), b = slabs.obtain(1500);
+        assertTrue(a.isDirect());
+        assertEquals(2048, a.capacity());
+        assertEquals(2048, b.capacity());
+        a.putInt(0, 42);
+        b.putInt(0, 7);
+        assertEquals(42, a.getInt(0));
+
+        SizeClass sc = slabs.sizeClass(1500);
+        assertEquals(1, sc.getChunks());
+        assertEquals(sc.chunkSize / 2048, sc.getSlots());
+        assertEquals(2, sc.getInUse());
+        assertEquals(2L * 2048, slabs.getUsedBytes());
+
+        assertTrue(slabs.free(a));
+        // Double release and foreign buffers are refused
+        assertFalse(slabs.free(a));
+        assertFalse(slabs.free(ByteBuffer.allocateDirect(2048)));
+        assertSame(a, slabs.obtain(2000));
+        assertEquals(2, sc.getObtained() - sc.getFreed());
+    }
+
+    @Test
+    public void boundedFootprint(){
+        SlabAllocator slabs = new SlabAllocator(1024, 64 * 1024, 128 * 1024);
+        Seq<ByteBuffer> held = new Seq<>();
+        ByteBuffer buf;
+        while((buf = slabs.obtain(64 * 1024)) != null) held.add(buf);
+
+        assertEquals(2, held.size);
+        assertEquals(128 * 1024, slabs.getReservedBytes());
+        assertNull(slabs.obtain(1024));
+        assertEquals(1, slabs.sizeClass(1024).getExhausted());
+
+        // The pool falls back to separate buffers, which are not slots
+        ByteBufferPool pool = new ByteBufferPool(1024, 16, slabs);
+        ByteBuffer fallback = pool.obtain(100, true);
+        assertFalse(slabs.owns(fallback));
+        assertEquals(100, fallback.limit());
+        assertTrue(pool.release(fallback));
+        assertTrue(pool.release(held.first()));
+        assertEquals(64 * 1024, pool.obtain(64 * 1024, true).capacity());
+    }
+
+    @Test
+    public void leaks(){
+        SlabAllocator slabs = new SlabAllocator();
+        slabs.trackLeaks = true;
+        ByteBuffer kept = slabs.obtain(100);
+        slabs.free(slabs.obtain(100));
+
+        Seq<Slot> leaks = slabs.findLeaks(0);
+        assertEquals(1, leaks.size);
+        assertEquals(1024, leaks.first().sizeClass.size);
+        assertNotNull(leaks.first().getTrace());
+        assertEquals(0, slabs.findLeaks(60_000).size);
+
+        slabs.free(kept);
+        assertEquals(0, slabs.findLeaks(0).size);
+    }
+}
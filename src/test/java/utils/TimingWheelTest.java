@@ -0,0 +1,120 @@
+package utils;
+
+import arc.struct.*;
+import arc.util.*;
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest{
+
+    @Test
+    public void matchesBruteForce(){
+        Random random = new Random(3);
+        long start = -5000;
+        TimingWheel<Timeout> wheel = new TimingWheel<>(start);
+        Seq<Timeout> pending = new Seq<>();
+        LongSeq fired = new LongSeq();
+        long[] now = {start};
+
+        for(int step = 0; step < 3000; step++){
+            for(int i = random.nextInt(20); i > 0; i--){
+                //Mostly short delays, some reaching the higher levels, a few beyond the range of the wheel
+                int kind = random.nextInt(100);
+                long delay = kind < 80 ? random.nextInt(200) : kind < 98 ? random.nextInt(1 << 20) : (1L << 36) + random.nextInt(1000);
+                Timeout timeout = new Timeout();
+                wheel.add(timeout, now[0] + delay - 5);
+                pending.add(timeout);
+            }
+            for(int i = random.nextInt(5); i > 0 && pending.size > 0; i--){
+                Timeout removed = pending.remove(random.nextInt(pending.size));
+                assertTrue(wheel.remove(removed));
+                assertFalse(wheel.remove(removed));
+            }
+            assertEquals(pending.size, wheel.size);
+
+            long next = wheel.nextDeadline();
+            for(Timeout timeout : pending){
+                assertTrue(next <= Math.max(timeout.getDeadline(), now[0]));
+            }
+
+            long before = now[0];
+            now[0] += step % 500 == 0 ? (1L << 30) : random.nextInt(step % 7 == 0 ? 5000 : 50);
+            fired.clear();
+            wheel.advance(now[0], timeout -> {
+                assertTrue(timeout.getDeadline() <= now[0]);
+                assertFalse(wheel.contains(timeout));
+                fired.add(timeout.getDeadline());
+                timeout.fired = true;
+            });
+
+            //Those already due fire first, the others in order
+            int expected = 0;
+            for(Timeout timeout : pending){
+                if(timeout.getDeadline() <= now[0]){
+                    assertTrue(timeout.fired);
+                    expected++;
+                }else{
+                    assertFalse(timeout.fired);
+                }
+            }
+            assertEquals(expected, fired.size);
+            for(int i = 1; i < fired.size; i++){
+                if(fired.get(i - 1) > before) assertTrue(fired.get(i) >= fired.get(i - 1));
+            }
+            pending.removeAll(t -> t.fired);
+            assertEquals(pending.size, wheel.size);
+        }
+    }
+
+    @Test
+    public void reentrant(){
+        TimingWheel<Timeout> wheel = new TimingWheel<>(0);
+        Timeout a = new Timeout(), b = new Timeout(), c = new Timeout();
+        wheel.add(a, 10);
+        wheel.add(b, 10);
+        wheel.add(c, 100);
+        IntSeq order = new IntSeq();
+        wheel.advance(10, timeout -> {
+            order.add(timeout == a ? 1 : 2);
+            if(timeout == a){
+                //Cancelling a sibling, and adding an entry that is already due
+                wheel.remove(b);
+                wheel.add(b, 5);
+            }
+        });
+        assertArrayEquals(new int[]{1}, order.toArray());
+        assertEquals(10, wheel.nextDeadline());
+
+        wheel.delay(-50);
+        wheel.advance(60, timeout -> order.add(timeout == b ? 2 : 3));
+        assertArrayEquals(new int[]{1, 2, 3}, order.toArray());
+        assertEquals(0, wheel.size);
+        assertEquals(Long.MAX_VALUE, wheel.nextDeadline());
+    }
+
+    @Test
+    public void timeRun(){
+        Time.clear();
+        Time.delta = 1f;
+        int[] runs = {0};
+        Time.run(3f, () -> runs[0]++);
+        Time.run(0f, () -> runs[0] += 10);
+        Time.update();
+        assertEquals(10, runs[0]);
+        Time.update();
+        Time.update();
+        assertEquals(11, runs[0]);
+
+        Time.run(5f, () -> runs[0]++);
+        Time.clear();
+        for(int i = 0; i < 10; i++) Time.update();
+        assertEquals(11, runs[0]);
+    }
+
+    static class Timeout extends TimingWheel.Entry{
+        boolean fired;
+    }
+}